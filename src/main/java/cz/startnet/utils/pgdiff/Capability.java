@@ -0,0 +1,123 @@
+/**
+ * Copyright 2006 StartNet s.r.o.
+ *
+ * Distributed under MIT license
+ */
+package cz.startnet.utils.pgdiff;
+
+/**
+ * Capabilities of PostgreSQL server that decide which form of statements
+ * can be used. Each capability has version of PostgreSQL that introduced it.
+ * If target version is not specified, capabilities that are needed by
+ * options that were explicitly requested are assumed to be available while
+ * capabilities that would only change the default output are not.
+ *
+ * @author fordfrog
+ */
+public enum Capability {
+
+    /**
+     * ALTER TABLE ... ADD CONSTRAINT ... USING INDEX.
+     */
+    CONSTRAINT_USING_INDEX(90100, true),
+    /**
+     * FOREIGN KEY (since 9.1) and CHECK (since 9.2) constraints added as
+     * NOT VALID and validated later.
+     */
+    NOT_VALID_CONSTRAINTS(90200, true),
+    /**
+     * DROP INDEX CONCURRENTLY.
+     */
+    DROP_INDEX_CONCURRENTLY(90200, true),
+    /**
+     * ALTER TABLE ... RENAME CONSTRAINT.
+     */
+    RENAME_CONSTRAINT(90200, true),
+    /**
+     * lock_timeout setting.
+     */
+    LOCK_TIMEOUT(90300, true),
+    /**
+     * ADD COLUMN with non-volatile default value that does not rewrite the
+     * table.
+     */
+    FAST_DEFAULT(110000, false),
+    /**
+     * COMMIT inside DO block.
+     */
+    COMMIT_IN_DO(110000, true),
+    /**
+     * SET NOT NULL that does not scan the table if validated check
+     * constraint proves that the column contains no null values.
+     */
+    NOT_NULL_FROM_CHECK(120000, true),
+    /**
+     * CREATE OR REPLACE TRIGGER.
+     */
+    CREATE_OR_REPLACE_TRIGGER(140000, false);
+    /**
+     * Version that introduced the capability, in format of server_version_num
+     * setting.
+     */
+    private final int version;
+    /**
+     * Whether the capability is assumed to be available if target version
+     * is not specified.
+     */
+    private final boolean assumed;
+
+    /**
+     * Creates a new Capability.
+     *
+     * @param version {@link #version}
+     * @param assumed {@link #assumed}
+     */
+    Capability(final int version, final boolean assumed) {
+        this.version = version;
+        this.assumed = assumed;
+    }
+
+    /**
+     * Getter for {@link #version}.
+     *
+     * @return {@link #version}
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Getter for {@link #assumed}.
+     *
+     * @return {@link #assumed}
+     */
+    public boolean isAssumed() {
+        return assumed;
+    }
+
+    /**
+     * Parses PostgreSQL version, like 9.6 or 14, to format of
+     * server_version_num setting.
+     *
+     * @param version version
+     *
+     * @return parsed version or -1 if the version is not valid
+     */
+    public static int parseVersion(final String version) {
+        final String[] parts = version.trim().split("\\.");
+
+        try {
+            final int major = Integer.parseInt(parts[0]);
+
+            if (major >= 10) {
+                return major * 10000;
+            } else if (major > 0 && parts.length > 1) {
+                return major * 10000 + Integer.parseInt(parts[1]) * 100;
+            }
+        } catch (final NumberFormatException ex) {
+            return -1;
+        }
+
+        return -1;
+    }
+}
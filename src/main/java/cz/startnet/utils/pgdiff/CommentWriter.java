@@ -0,0 +1,157 @@
+/**
+ * Copyright 2010 StartNet s.r.o.
+ */
+package cz.startnet.utils.pgdiff;
+
+import cz.startnet.utils.pgdiff.impact.ImpactWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+
+/**
+ * Writer that passes statements to the output except COMMENT ON statements,
+ * which are redirected to another writer. It is used to move comments that
+ * are output together with their objects in pre-data section to post-data
+ * section. Blank lines preceding redirected statement are redirected too.
+ *
+ * @author fordfrog
+ */
+public class CommentWriter extends Writer {
+
+    /**
+     * Writer statements other than comments are passed to.
+     */
+    private final PrintWriter output;
+    /**
+     * Writer comments are redirected to.
+     */
+    private final PrintWriter commentOutput;
+    /**
+     * Search path helper of {@link #commentOutput}.
+     */
+    private final SearchPathHelper commentSearchPathHelper;
+    /**
+     * Buffer of currently written line.
+     */
+    private final StringBuilder sbLine = new StringBuilder(256);
+    /**
+     * Buffer of currently written statement.
+     */
+    private final StringBuilder sbStatement = new StringBuilder(1024);
+    /**
+     * Number of blank lines that were not output yet as it is not known
+     * whether the following statement is comment.
+     */
+    private int blankLines;
+    /**
+     * Whether currently written statement is comment.
+     */
+    private boolean comment;
+
+    /**
+     * Creates a new CommentWriter.
+     *
+     * @param output                  {@link #output}
+     * @param commentOutput           {@link #commentOutput}
+     * @param commentSearchPathHelper {@link #commentSearchPathHelper}
+     */
+    public CommentWriter(final PrintWriter output,
+            final PrintWriter commentOutput,
+            final SearchPathHelper commentSearchPathHelper) {
+        this.output = output;
+        this.commentOutput = commentOutput;
+        this.commentSearchPathHelper = commentSearchPathHelper;
+    }
+
+    @Override
+    public void write(final char[] cbuf, final int off, final int len) {
+        for (int i = off; i < off + len; i++) {
+            sbLine.append(cbuf[i]);
+
+            if (cbuf[i] == '\n') {
+                processLine();
+            }
+        }
+    }
+
+    @Override
+    public void flush() {
+        output.flush();
+        commentOutput.flush();
+    }
+
+    /**
+     * Outputs rest of the buffered text. The underlying writers are not
+     * closed.
+     */
+    @Override
+    public void close() {
+        if (sbLine.length() > 0) {
+            processLine();
+        }
+
+        outputBlankLines();
+
+        if (sbStatement.length() > 0) {
+            (comment ? commentOutput : output).print(sbStatement);
+            sbStatement.setLength(0);
+        }
+
+        flush();
+    }
+
+    /**
+     * Processes buffered line. Lines of comment statements are buffered until
+     * the statement is complete, other lines are passed to the output.
+     */
+    private void processLine() {
+        final String line = sbLine.toString();
+        sbLine.setLength(0);
+
+        if (sbStatement.length() == 0) {
+            final String trimmed = line.trim();
+
+            if (trimmed.isEmpty()) {
+                blankLines++;
+
+                return;
+            }
+
+            comment = trimmed.regionMatches(true, 0, "COMMENT ON ", 0, 11);
+
+            if (!comment) {
+                outputBlankLines();
+            }
+        }
+
+        sbStatement.append(line);
+
+        final String statement = sbStatement.toString().trim();
+        final boolean complete = statement.startsWith("--")
+                || ImpactWriter.isComplete(statement);
+
+        if (comment) {
+            if (complete) {
+                commentSearchPathHelper.outputSearchPath(commentOutput);
+                commentOutput.println();
+                commentOutput.println(statement);
+                blankLines = 0;
+                sbStatement.setLength(0);
+            }
+        } else {
+            output.print(line);
+
+            if (complete) {
+                sbStatement.setLength(0);
+            }
+        }
+    }
+
+    /**
+     * Outputs buffered blank lines.
+     */
+    private void outputBlankLines() {
+        for (; blankLines > 0; blankLines--) {
+            output.println();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright 2006 StartNet s.r.o.
+ *
+ * Distributed under MIT license
+ */
+package cz.startnet.utils.pgdiff;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+/**
+ * Collects statements that cannot be run inside transaction block, like
+ * CREATE INDEX CONCURRENTLY, or that should not hold locks of the
+ * transaction, like VALIDATE CONSTRAINT. The statements are output after all
+ * other statements, that is after COMMIT TRANSACTION if transaction is
+ * added.
+ *
+ * @author fordfrog
+ */
+public class DeferredStatements {
+
+    /**
+     * Buffer containing the statements.
+     */
+    private final StringWriter buffer = new StringWriter();
+    /**
+     * Writer the statements are written to.
+     */
+    private final PrintWriter writer = new PrintWriter(buffer);
+    /**
+     * Search path helper of the current schema.
+     */
+    private SearchPathHelper searchPathHelper = new SearchPathHelper(null);
+
+    /**
+     * Sets search path statement of the schema that is being compared. The
+     * statement is output before first deferred statement of the schema.
+     *
+     * @param searchPath search path statement or null
+     */
+    public void setSearchPath(final String searchPath) {
+        searchPathHelper = new SearchPathHelper(searchPath);
+    }
+
+    /**
+     * Outputs search path of the current schema if it was not output yet and
+     * returns writer the deferred statements should be written to.
+     *
+     * @return writer
+     */
+    public PrintWriter getWriter() {
+        searchPathHelper.outputSearchPath(writer);
+
+        return writer;
+    }
+
+    /**
+     * Returns whether there are any deferred statements.
+     *
+     * @return true if there are no deferred statements, otherwise false
+     */
+    public boolean isEmpty() {
+        return buffer.getBuffer().length() == 0;
+    }
+
+    /**
+     * Outputs deferred statements.
+     *
+     * @param output writer the statements should be output to
+     */
+    public void writeTo(final PrintWriter output) {
+        writer.flush();
+        output.print(buffer.toString());
+    }
+}
@@ -5,6 +5,8 @@
  */
 package cz.startnet.utils.pgdiff;
 
+import cz.startnet.utils.pgdiff.executor.MigrationException;
+import cz.startnet.utils.pgdiff.impact.RewriteException;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
@@ -25,6 +27,7 @@ public class Main {
      * @throws UnsupportedEncodingException Thrown if unsupported output
      *                                      encoding has been encountered.
      */
+    @SuppressWarnings("UseOfSystemOutOrSystemErr")
     public static void main(final String[] args)
             throws UnsupportedEncodingException {
         @SuppressWarnings("UseOfSystemOutOrSystemErr")
@@ -36,7 +39,21 @@ public class Main {
             final PrintWriter encodedWriter = new PrintWriter(
                     new OutputStreamWriter(
                     System.out, arguments.getOutCharsetName()));
-            PgDiff.createDiff(encodedWriter, arguments);
+
+            try {
+                PgDiff.createDiff(encodedWriter, arguments);
+            } catch (final RewriteException ex) {
+                encodedWriter.close();
+                writer.close();
+                System.err.println(ex.getMessage());
+                System.exit(1);
+            } catch (final MigrationException ex) {
+                encodedWriter.close();
+                writer.close();
+                System.err.println(ex.getMessage());
+                System.exit(1);
+            }
+
             encodedWriter.close();
         }
 
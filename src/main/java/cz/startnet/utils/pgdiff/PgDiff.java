@@ -5,11 +5,28 @@
  */
 package cz.startnet.utils.pgdiff;
 
+import cz.startnet.utils.pgdiff.executor.DriverManagerConnectionProvider;
+import cz.startnet.utils.pgdiff.executor.MigrationException;
+import cz.startnet.utils.pgdiff.executor.MigrationExecutor;
+import cz.startnet.utils.pgdiff.impact.ImpactWriter;
+import cz.startnet.utils.pgdiff.impact.RewriteException;
+import cz.startnet.utils.pgdiff.impact.ShortTransactionWriter;
+import cz.startnet.utils.pgdiff.loader.PartitionedDump;
 import cz.startnet.utils.pgdiff.loader.PgDumpLoader;
+import cz.startnet.utils.pgdiff.loader.SnapshotCache;
+import cz.startnet.utils.pgdiff.loader.StatementFilter;
+import cz.startnet.utils.pgdiff.loader.StatementIndex;
+import cz.startnet.utils.pgdiff.loader.StatementIndexFile;
 import cz.startnet.utils.pgdiff.schema.PgDatabase;
 import cz.startnet.utils.pgdiff.schema.PgSchema;
+import cz.startnet.utils.pgdiff.steps.StepWriter;
+import java.io.File;
 import java.io.InputStream;
 import java.io.PrintWriter;
+import java.io.Writer;
+import java.text.MessageFormat;
+import java.util.List;
+import java.util.Set;
 
 /**
  * Creates diff of two database schemas.
@@ -26,16 +43,160 @@ public class PgDiff {
      */
     public static void createDiff(final PrintWriter writer,
             final PgDiffArguments arguments) {
-        final PgDatabase oldDatabase = PgDumpLoader.loadDatabaseSchema(
-                arguments.getOldDumpFile(), arguments.getInCharsetName(),
-                arguments.isOutputIgnoredStatements(),
-                arguments.isIgnoreSlonyTriggers());
-        final PgDatabase newDatabase = PgDumpLoader.loadDatabaseSchema(
-                arguments.getNewDumpFile(), arguments.getInCharsetName(),
+        final StatementIndex[] changedStatements =
+                getChangedStatements(arguments);
+        final StatementIndex oldIndex =
+                changedStatements == null ? null : changedStatements[0];
+        final StatementIndex newIndex =
+                changedStatements == null ? null : changedStatements[1];
+
+        if (arguments.isPartitionBySchema()) {
+            final PartitionedDump oldDump = openPartitionedDump(
+                    arguments, arguments.getOldDumpFile(), oldIndex);
+            final PartitionedDump newDump = openPartitionedDump(
+                    arguments, arguments.getNewDumpFile(), newIndex);
+
+            try {
+                // dumps in charsets that are not ASCII compatible cannot be
+                // partitioned so they are loaded whole
+                if (oldDump != null && newDump != null) {
+                    diffDatabaseSchemas(writer, arguments,
+                            oldDump.loadDatabase(), newDump.loadDatabase(),
+                            oldDump, newDump);
+
+                    return;
+                }
+            } finally {
+                if (oldDump != null) {
+                    oldDump.close();
+                }
+
+                if (newDump != null) {
+                    newDump.close();
+                }
+            }
+        }
+
+        final PgDatabase oldDatabase = loadDatabaseSchema(
+                arguments, arguments.getOldDumpFile(), oldIndex);
+        final PgDatabase newDatabase = loadDatabaseSchema(
+                arguments, arguments.getNewDumpFile(), newIndex);
+
+        diffDatabaseSchemas(
+                writer, arguments, oldDatabase, newDatabase, null, null);
+    }
+
+    /**
+     * Returns indexes of statements of objects that differ between the dumps
+     * if unchanged objects should be skipped. Unchanged objects are not
+     * skipped if ignored statements should be output, because ignored
+     * statements of all objects are part of the output.
+     *
+     * @param arguments object containing arguments settings
+     *
+     * @return array containing index of original dump and index of new dump
+     *         or null if all statements should be loaded
+     */
+    private static StatementIndex[] getChangedStatements(
+            final PgDiffArguments arguments) {
+        if (!arguments.isSkipUnchanged()
+                || arguments.isOutputIgnoredStatements()) {
+            return null;
+        }
+
+        final StatementIndex oldIndex =
+                createIndex(arguments, arguments.getOldDumpFile());
+        final StatementIndex newIndex =
+                createIndex(arguments, arguments.getNewDumpFile());
+
+        // dumps in charsets that are not ASCII compatible cannot be indexed
+        if (oldIndex == null || newIndex == null) {
+            return null;
+        }
+
+        return StatementFilter.filterUnchanged(arguments.getOldDumpFile(),
+                oldIndex, arguments.getNewDumpFile(), newIndex,
+                arguments.getInCharsetName());
+    }
+
+    /**
+     * Creates index of statements in dump file, using index file if it
+     * should be used.
+     *
+     * @param arguments object containing arguments settings
+     * @param file      name of file containing the dump
+     *
+     * @return index of statements or null if offsets of statements cannot be
+     *         tracked for input charset
+     */
+    private static StatementIndex createIndex(
+            final PgDiffArguments arguments, final String file) {
+        if (arguments.isUseIndex()) {
+            return StatementIndexFile.load(file, arguments.getInCharsetName());
+        }
+
+        return StatementIndex.create(file, arguments.getInCharsetName());
+    }
+
+    /**
+     * Opens dump file that is loaded one schema at a time.
+     *
+     * @param arguments object containing arguments settings
+     * @param file      name of file containing the dump
+     * @param index     index of statements that should be loaded or null if
+     *                  all statements should be loaded
+     *
+     * @return partitioned dump or null if the dump cannot be partitioned
+     */
+    private static PartitionedDump openPartitionedDump(
+            final PgDiffArguments arguments, final String file,
+            final StatementIndex index) {
+        if (index != null) {
+            return PartitionedDump.open(file, arguments.getInCharsetName(),
+                    index, arguments.isOutputIgnoredStatements(),
+                    arguments.isIgnoreSlonyTriggers(),
+                    arguments.isLazyDefinitions());
+        }
+
+        return PartitionedDump.open(file, arguments.getInCharsetName(),
                 arguments.isOutputIgnoredStatements(),
-                arguments.isIgnoreSlonyTriggers());
+                arguments.isIgnoreSlonyTriggers(),
+                arguments.isLazyDefinitions(), arguments.isUseIndex());
+    }
 
-        diffDatabaseSchemas(writer, arguments, oldDatabase, newDatabase);
+    /**
+     * Loads database schema from dump file, using snapshot cache if it is
+     * configured.
+     *
+     * @param arguments object containing arguments settings
+     * @param file      name of file containing the dump
+     * @param index     index of statements that should be loaded or null if
+     *                  all statements should be loaded
+     *
+     * @return database schema from dump file
+     */
+    private static PgDatabase loadDatabaseSchema(
+            final PgDiffArguments arguments, final String file,
+            final StatementIndex index) {
+        if (index != null) {
+            return PgDumpLoader.loadDatabaseSchema(file,
+                    arguments.getInCharsetName(), index,
+                    arguments.isOutputIgnoredStatements(),
+                    arguments.isIgnoreSlonyTriggers(),
+                    arguments.isLazyDefinitions());
+        } else if (arguments.getSnapshotCacheDirectory() != null) {
+            return new SnapshotCache(arguments.getSnapshotCacheDirectory()).
+                    loadDatabaseSchema(file, arguments.getInCharsetName(),
+                    arguments.isOutputIgnoredStatements(),
+                    arguments.isIgnoreSlonyTriggers(),
+                    arguments.isLazyDefinitions(), arguments.isUseIndex());
+        }
+
+        return PgDumpLoader.loadDatabaseSchema(file,
+                arguments.getInCharsetName(),
+                arguments.isOutputIgnoredStatements(),
+                arguments.isIgnoreSlonyTriggers(),
+                arguments.isLazyDefinitions(), arguments.isUseIndex());
     }
 
     /**
@@ -60,7 +221,8 @@ public class PgDiff {
                 arguments.isOutputIgnoredStatements(),
                 arguments.isIgnoreSlonyTriggers());
 
-        diffDatabaseSchemas(writer, arguments, oldDatabase, newDatabase);
+        diffDatabaseSchemas(
+                writer, arguments, oldDatabase, newDatabase, null, null);
     }
 
     /**
@@ -81,53 +243,246 @@ public class PgDiff {
     }
 
     /**
-     * Creates diff from comparison of two database schemas.
+     * Creates diff from comparison of two database schemas. If statements
+     * should be split into short transactions, the output is passed through
+     * {@link ShortTransactionWriter}. If migration steps should be written
+     * or applied, the output is split into steps by {@link StepWriter}, the
+     * steps are written to steps directory and applied to the database by
+     * {@link MigrationExecutor} after the diff is output.
      *
      * @param writer      writer the output should be written to
      * @param arguments   object containing arguments settings
      * @param oldDatabase original database schema
      * @param newDatabase new database schema
+     * @param oldDump     partitioned dump of original database or null
+     * @param newDump     partitioned dump of new database or null
+     *
+     * @throws RewriteException   Thrown if the diff rewrites tables and
+     *                            rewrites are not allowed.
+     * @throws MigrationException Thrown if migration step fails.
      */
     private static void diffDatabaseSchemas(final PrintWriter writer,
             final PgDiffArguments arguments, final PgDatabase oldDatabase,
-            final PgDatabase newDatabase) {
-        if (arguments.isAddTransaction()) {
+            final PgDatabase newDatabase, final PartitionedDump oldDump,
+            final PartitionedDump newDump) {
+        final PrintWriter transactionPrintWriter =
+                arguments.isShortTransactions() ? new PrintWriter(
+                new ShortTransactionWriter(writer, arguments)) : writer;
+
+        try {
+            if (arguments.getStepsDirectory() == null
+                    && arguments.getExecuteUrl() == null) {
+                analyzeDiff(transactionPrintWriter, arguments, oldDatabase,
+                        newDatabase, oldDump, newDump);
+
+                return;
+            }
+
+            // partitioned dumps do not keep loaded schemas in the database
+            final StepWriter stepWriter = new StepWriter(
+                    transactionPrintWriter, arguments,
+                    oldDump == null ? oldDatabase : null);
+            final PrintWriter stepPrintWriter = new PrintWriter(stepWriter);
+            RewriteException rewriteException = null;
+
+            try {
+                analyzeDiff(stepPrintWriter, arguments, oldDatabase,
+                        newDatabase, oldDump, newDump);
+            } catch (final RewriteException ex) {
+                rewriteException = ex;
+            }
+
+            stepPrintWriter.close();
+
+            if (arguments.getStepsDirectory() != null) {
+                stepWriter.getPlan().write(
+                        new File(arguments.getStepsDirectory()),
+                        arguments.getOutCharsetName());
+            }
+
+            if (rewriteException != null) {
+                throw rewriteException;
+            }
+
+            if (arguments.getExecuteUrl() != null) {
+                transactionPrintWriter.flush();
+
+                @SuppressWarnings("UseOfSystemOutOrSystemErr")
+                final PrintWriter log = new PrintWriter(System.err, true);
+                new MigrationExecutor(new DriverManagerConnectionProvider(
+                        arguments.getExecuteUrl()), arguments.getJobs(),
+                        log).execute(stepWriter.getPlan());
+            }
+        } finally {
+            if (transactionPrintWriter != writer) {
+                transactionPrintWriter.close();
+            }
+        }
+    }
+
+    /**
+     * Outputs diff from comparison of two database schemas. If impact of the
+     * statements should be analyzed, the output is passed through
+     * {@link ImpactWriter} and summary of the impacts is written after the
+     * diff is output.
+     *
+     * @param writer      writer the output should be written to
+     * @param arguments   object containing arguments settings
+     * @param oldDatabase original database schema
+     * @param newDatabase new database schema
+     * @param oldDump     partitioned dump of original database or null
+     * @param newDump     partitioned dump of new database or null
+     *
+     * @throws RewriteException Thrown if the diff rewrites tables and
+     *                          rewrites are not allowed.
+     */
+    private static void analyzeDiff(final PrintWriter writer,
+            final PgDiffArguments arguments, final PgDatabase oldDatabase,
+            final PgDatabase newDatabase, final PartitionedDump oldDump,
+            final PartitionedDump newDump) {
+        if (!arguments.isAnnotateLocks() && !arguments.isFailOnRewrite()
+                && arguments.getImpactSummaryFile() == null
+                && arguments.getStatisticsFile() == null
+                && !arguments.isExpensiveFirst()) {
+            outputDiff(writer, arguments, oldDatabase, newDatabase, oldDump,
+                    newDump);
+
+            return;
+        }
+
+        final ImpactWriter impactWriter = new ImpactWriter(writer, arguments);
+        final PrintWriter impactPrintWriter = new PrintWriter(impactWriter);
+        outputDiff(impactPrintWriter, arguments, oldDatabase, newDatabase,
+                oldDump, newDump);
+        impactPrintWriter.close();
+
+        if (arguments.getImpactSummaryFile() != null) {
+            impactWriter.writeSummary(
+                    new File(arguments.getImpactSummaryFile()));
+        }
+
+        final Set<String> rewrittenRelations =
+                impactWriter.getRewrittenRelations();
+
+        if (arguments.isFailOnRewrite() && !rewrittenRelations.isEmpty()) {
+            final StringBuilder sbRelations = new StringBuilder(100);
+
+            for (final String relation : rewrittenRelations) {
+                if (sbRelations.length() > 0) {
+                    sbRelations.append(", ");
+                }
+
+                sbRelations.append(relation);
+            }
+
+            throw new RewriteException(MessageFormat.format(
+                    Resources.getString("ErrorTableRewrite"), sbRelations));
+        }
+    }
+
+    /**
+     * Outputs diff from comparison of two database schemas. If partitioned
+     * dumps are provided, databases contain only empty schemas and content of
+     * every schema is loaded from the dumps just before the schema is
+     * compared. Transaction is not added if statements are split into short
+     * transactions or into migration steps. If only one section of the diff
+     * should be output, statements of the other section are discarded and
+     * comments output together with new schemas are moved to post-data
+     * section by {@link CommentWriter}. If renames should be detected,
+     * objects moved between schemas are moved after new schemas are created
+     * and before old schemas are dropped, except for partitioned dumps that
+     * never have all schemas loaded.
+     *
+     * @param writer      writer the output should be written to
+     * @param arguments   object containing arguments settings
+     * @param oldDatabase original database schema
+     * @param newDatabase new database schema
+     * @param oldDump     partitioned dump of original database or null
+     * @param newDump     partitioned dump of new database or null
+     */
+    private static void outputDiff(final PrintWriter writer,
+            final PgDiffArguments arguments, final PgDatabase oldDatabase,
+            final PgDatabase newDatabase, final PartitionedDump oldDump,
+            final PartitionedDump newDump) {
+        final boolean addTransaction = arguments.isAddTransaction()
+                && !arguments.isShortTransactions()
+                && arguments.getStepsDirectory() == null
+                && arguments.getExecuteUrl() == null;
+
+        if (addTransaction) {
             writer.println("START TRANSACTION;");
         }
 
+        final PrintWriter postDataWriter =
+                arguments.getSection() == Section.PRE_DATA
+                ? new PrintWriter(new NullWriter()) : writer;
+        final PrintWriter preDataWriter;
+
+        if (arguments.getSection() == null) {
+            preDataWriter = writer;
+        } else {
+            preDataWriter = new PrintWriter(new CommentWriter(
+                    arguments.getSection() == Section.POST_DATA
+                    ? new PrintWriter(new NullWriter()) : writer,
+                    postDataWriter, new SearchPathHelper(null)));
+        }
+
         if (oldDatabase.getComment() == null
                 && newDatabase.getComment() != null
                 || oldDatabase.getComment() != null
                 && newDatabase.getComment() != null
                 && !oldDatabase.getComment().equals(newDatabase.getComment())) {
-            writer.println();
-            writer.print("COMMENT ON DATABASE current_database() IS ");
-            writer.print(newDatabase.getComment());
-            writer.println(';');
+            postDataWriter.println();
+            postDataWriter.print("COMMENT ON DATABASE current_database() IS ");
+            postDataWriter.print(newDatabase.getComment());
+            postDataWriter.println(';');
         } else if (oldDatabase.getComment() != null
                 && newDatabase.getComment() == null) {
-            writer.println();
-            writer.println("COMMENT ON DATABASE current_database() IS NULL;");
+            postDataWriter.println();
+            postDataWriter.println(
+                    "COMMENT ON DATABASE current_database() IS NULL;");
         }
 
-        dropOldSchemas(writer, oldDatabase, newDatabase);
-        createNewSchemas(writer, oldDatabase, newDatabase);
-        updateSchemas(writer, arguments, oldDatabase, newDatabase);
+        if (arguments.isDetectRenames() && oldDump == null) {
+            createNewSchemas(preDataWriter, oldDatabase, newDatabase);
+            PgDiffRenames.moveObjects(
+                    preDataWriter, arguments, oldDatabase, newDatabase);
+            dropOldSchemas(preDataWriter, oldDatabase, newDatabase);
+        } else {
+            dropOldSchemas(preDataWriter, oldDatabase, newDatabase);
+            createNewSchemas(preDataWriter, oldDatabase, newDatabase);
+        }
+
+        if (preDataWriter != writer) {
+            preDataWriter.close();
+        }
 
-        if (arguments.isAddTransaction()) {
+        final DeferredStatements deferred = new DeferredStatements();
+        updateSchemas(writer, arguments, oldDatabase, newDatabase, oldDump,
+                newDump, deferred);
+
+        if (addTransaction) {
             writer.println();
             writer.println("COMMIT TRANSACTION;");
         }
 
+        deferred.writeTo(writer);
+
         if (arguments.isOutputIgnoredStatements()) {
-            if (!oldDatabase.getIgnoredStatements().isEmpty()) {
+            final List<String> oldIgnoredStatements = oldDump == null
+                    ? oldDatabase.getIgnoredStatements()
+                    : oldDump.getIgnoredStatements();
+            final List<String> newIgnoredStatements = newDump == null
+                    ? newDatabase.getIgnoredStatements()
+                    : newDump.getIgnoredStatements();
+
+            if (!oldIgnoredStatements.isEmpty()) {
                 writer.println();
                 writer.print("/* ");
                 writer.println(Resources.getString(
                         "OriginalDatabaseIgnoredStatements"));
 
-                for (final String statement :
-                        oldDatabase.getIgnoredStatements()) {
+                for (final String statement : oldIgnoredStatements) {
                     writer.println();
                     writer.println(statement);
                 }
@@ -135,14 +490,13 @@ public class PgDiff {
                 writer.println("*/");
             }
 
-            if (!newDatabase.getIgnoredStatements().isEmpty()) {
+            if (!newIgnoredStatements.isEmpty()) {
                 writer.println();
                 writer.print("/* ");
                 writer.println(
                         Resources.getString("NewDatabaseIgnoredStatements"));
 
-                for (final String statement :
-                        newDatabase.getIgnoredStatements()) {
+                for (final String statement : newIgnoredStatements) {
                     writer.println();
                     writer.println(statement);
                 }
@@ -178,105 +532,178 @@ public class PgDiff {
      * @param arguments   object containing arguments settings
      * @param oldDatabase original database schema
      * @param newDatabase new database schema
+     * @param oldDump     partitioned dump of original database or null
+     * @param newDump     partitioned dump of new database or null
+     * @param deferred    statements that are run outside transaction
      */
     private static void updateSchemas(final PrintWriter writer,
             final PgDiffArguments arguments, final PgDatabase oldDatabase,
-            final PgDatabase newDatabase) {
+            final PgDatabase newDatabase, final PartitionedDump oldDump,
+            final PartitionedDump newDump, final DeferredStatements deferred) {
         final boolean setSearchPath = newDatabase.getSchemas().size() > 1
                 || !newDatabase.getSchemas().get(0).getName().equals("public");
 
-        for (final PgSchema newSchema : newDatabase.getSchemas()) {
-            final SearchPathHelper searchPathHelper;
+        for (final PgSchema schema : newDatabase.getSchemas()) {
+            final String searchPath;
 
             if (setSearchPath) {
-                searchPathHelper = new SearchPathHelper("SET search_path = "
-                        + PgDiffUtils.getQuotedName(newSchema.getName(), true)
-                        + ", pg_catalog;");
+                searchPath = "SET search_path = "
+                        + PgDiffUtils.getQuotedName(schema.getName(), true)
+                        + ", pg_catalog;";
             } else {
-                searchPathHelper = new SearchPathHelper(null);
+                searchPath = null;
             }
 
-            final PgSchema oldSchema =
-                    oldDatabase.getSchema(newSchema.getName());
+            final SearchPathHelper searchPathHelper =
+                    new SearchPathHelper(searchPath);
+            deferred.setSearchPath(searchPath);
 
-            if (oldSchema != null) {
-                if (oldSchema.getComment() == null
-                        && newSchema.getComment() != null
-                        || oldSchema.getComment() != null
-                        && newSchema.getComment() != null
-                        && !oldSchema.getComment().equals(
-                        newSchema.getComment())) {
-                    writer.println();
-                    writer.print("COMMENT ON SCHEMA ");
-                    writer.print(
-                            PgDiffUtils.getQuotedName(newSchema.getName()));
-                    writer.print(" IS ");
-                    writer.print(newSchema.getComment());
-                    writer.println(';');
-                } else if (oldSchema.getComment() != null
-                        && newSchema.getComment() == null) {
-                    writer.println();
-                    writer.print("COMMENT ON SCHEMA ");
-                    writer.print(
-                            PgDiffUtils.getQuotedName(newSchema.getName()));
-                    writer.println(" IS NULL;");
+            PgSchema oldSchema = oldDatabase.getSchema(schema.getName());
+            PgSchema newSchema = schema;
+
+            if (newDump != null) {
+                newSchema = newDump.loadSchema(schema.getName());
+
+                if (oldSchema != null) {
+                    oldSchema = oldDump.loadSchema(schema.getName());
                 }
             }
 
-            PgDiffTriggers.dropTriggers(
-                    writer, oldSchema, newSchema, searchPathHelper);
-            PgDiffFunctions.dropFunctions(
-                    writer, arguments, oldSchema, newSchema, searchPathHelper);
-            PgDiffViews.dropViews(
-                    writer, oldSchema, newSchema, searchPathHelper);
-            PgDiffConstraints.dropConstraints(
-                    writer, oldSchema, newSchema, true, searchPathHelper);
-            PgDiffConstraints.dropConstraints(
-                    writer, oldSchema, newSchema, false, searchPathHelper);
-            PgDiffIndexes.dropIndexes(
-                    writer, oldSchema, newSchema, searchPathHelper);
-            PgDiffTables.dropClusters(
-                    writer, oldSchema, newSchema, searchPathHelper);
-            PgDiffTables.dropTables(
-                    writer, oldSchema, newSchema, searchPathHelper);
-            PgDiffSequences.dropSequences(
-                    writer, oldSchema, newSchema, searchPathHelper);
-
-            PgDiffSequences.createSequences(
-                    writer, oldSchema, newSchema, searchPathHelper);
-            PgDiffSequences.alterSequences(
-                    writer, arguments, oldSchema, newSchema, searchPathHelper);
-            PgDiffTables.createTables(
-                    writer, oldSchema, newSchema, searchPathHelper);
-            PgDiffTables.alterTables(
-                    writer, arguments, oldSchema, newSchema, searchPathHelper);
-            PgDiffSequences.alterCreatedSequences(
-                    writer, oldSchema, newSchema, searchPathHelper);
-            PgDiffFunctions.createFunctions(
-                    writer, arguments, oldSchema, newSchema, searchPathHelper);
-            PgDiffConstraints.createConstraints(
-                    writer, oldSchema, newSchema, true, searchPathHelper);
-            PgDiffConstraints.createConstraints(
-                    writer, oldSchema, newSchema, false, searchPathHelper);
-            PgDiffIndexes.createIndexes(
-                    writer, oldSchema, newSchema, searchPathHelper);
-            PgDiffTables.createClusters(
-                    writer, oldSchema, newSchema, searchPathHelper);
-            PgDiffTriggers.createTriggers(
-                    writer, oldSchema, newSchema, searchPathHelper);
-            PgDiffViews.createViews(
-                    writer, oldSchema, newSchema, searchPathHelper);
-            PgDiffViews.alterViews(
-                    writer, oldSchema, newSchema, searchPathHelper);
-
-            PgDiffFunctions.alterComments(
-                    writer, oldSchema, newSchema, searchPathHelper);
-            PgDiffConstraints.alterComments(
-                    writer, oldSchema, newSchema, searchPathHelper);
-            PgDiffIndexes.alterComments(
-                    writer, oldSchema, newSchema, searchPathHelper);
-            PgDiffTriggers.alterComments(
-                    writer, oldSchema, newSchema, searchPathHelper);
+            updateSchema(writer, arguments, oldSchema, newSchema,
+                    searchPathHelper, deferred);
+        }
+    }
+
+    /**
+     * Updates objects in single schema. If only one section of the diff
+     * should be output, statements of the other section are discarded and
+     * comments output by pre-data statements are moved to post-data section
+     * by {@link CommentWriter}.
+     *
+     * @param writer           writer the output should be written to
+     * @param arguments        object containing arguments settings
+     * @param oldSchema        original schema or null if the schema is new
+     * @param newSchema        new schema
+     * @param searchPathHelper search path helper
+     * @param deferred         statements that are run outside transaction
+     */
+    private static void updateSchema(final PrintWriter writer,
+            final PgDiffArguments arguments, final PgSchema oldSchema,
+            final PgSchema newSchema, final SearchPathHelper searchPathHelper,
+            final DeferredStatements deferred) {
+        final boolean preData = arguments.getSection() != Section.POST_DATA;
+        final boolean postData = arguments.getSection() != Section.PRE_DATA;
+        final PrintWriter skippedWriter = new PrintWriter(new NullWriter());
+        final SearchPathHelper skippedHelper = new SearchPathHelper(null);
+        final DeferredStatements skippedDeferred = new DeferredStatements();
+        final PrintWriter preWriter;
+
+        if (arguments.getSection() == null) {
+            preWriter = writer;
+        } else {
+            preWriter = new PrintWriter(new CommentWriter(
+                    preData ? writer : skippedWriter,
+                    postData ? writer : skippedWriter,
+                    postData ? searchPathHelper : skippedHelper));
+        }
+
+        final SearchPathHelper preHelper =
+                preData ? searchPathHelper : skippedHelper;
+        final DeferredStatements preDeferred =
+                preData ? deferred : skippedDeferred;
+        final PrintWriter postWriter = postData ? writer : skippedWriter;
+        final SearchPathHelper postHelper =
+                postData ? searchPathHelper : skippedHelper;
+        final DeferredStatements postDeferred =
+                postData ? deferred : skippedDeferred;
+
+        if (oldSchema != null) {
+            if (oldSchema.getComment() == null
+                    && newSchema.getComment() != null
+                    || oldSchema.getComment() != null
+                    && newSchema.getComment() != null
+                    && !oldSchema.getComment().equals(
+                    newSchema.getComment())) {
+                postWriter.println();
+                postWriter.print("COMMENT ON SCHEMA ");
+                postWriter.print(
+                        PgDiffUtils.getQuotedName(newSchema.getName()));
+                postWriter.print(" IS ");
+                postWriter.print(newSchema.getComment());
+                postWriter.println(';');
+            } else if (oldSchema.getComment() != null
+                    && newSchema.getComment() == null) {
+                postWriter.println();
+                postWriter.print("COMMENT ON SCHEMA ");
+                postWriter.print(
+                        PgDiffUtils.getQuotedName(newSchema.getName()));
+                postWriter.println(" IS NULL;");
+            }
+        }
+
+        PgDiffRenames.renameTables(
+                preWriter, arguments, oldSchema, newSchema, preHelper);
+        PgDiffRenames.renameIndexes(
+                preWriter, arguments, oldSchema, newSchema, preHelper);
+        PgDiffRenames.renameConstraints(
+                preWriter, arguments, oldSchema, newSchema, preHelper);
+        PgDiffTriggers.dropTriggers(
+                preWriter, arguments, oldSchema, newSchema, preHelper);
+        PgDiffFunctions.dropFunctions(
+                preWriter, arguments, oldSchema, newSchema, preHelper);
+        PgDiffViews.dropViews(
+                preWriter, arguments, oldSchema, newSchema, preHelper);
+        PgDiffConstraints.dropConstraints(preWriter, arguments, oldSchema,
+                newSchema, true, preHelper);
+        PgDiffConstraints.dropConstraints(preWriter, arguments, oldSchema,
+                newSchema, false, preHelper);
+        PgDiffIndexes.dropIndexes(preWriter, arguments, oldSchema, newSchema,
+                preHelper, preDeferred);
+        PgDiffTables.dropClusters(
+                preWriter, oldSchema, newSchema, preHelper);
+        PgDiffTables.dropTables(
+                preWriter, oldSchema, newSchema, preHelper);
+        PgDiffSequences.dropSequences(
+                preWriter, oldSchema, newSchema, preHelper);
+
+        PgDiffSequences.createSequences(
+                preWriter, oldSchema, newSchema, preHelper);
+        PgDiffSequences.alterSequences(
+                preWriter, arguments, oldSchema, newSchema, preHelper);
+        PgDiffTables.createTables(
+                preWriter, oldSchema, newSchema, preHelper);
+        PgDiffTables.alterTables(preWriter, arguments, oldSchema, newSchema,
+                preHelper, preDeferred);
+        PgDiffSequences.alterCreatedSequences(
+                preWriter, oldSchema, newSchema, preHelper);
+        PgDiffFunctions.createFunctions(
+                preWriter, arguments, oldSchema, newSchema, preHelper);
+        PgDiffConstraints.createConstraints(postWriter, arguments, oldSchema,
+                newSchema, true, postHelper, postDeferred);
+        PgDiffConstraints.createConstraints(postWriter, arguments, oldSchema,
+                newSchema, false, postHelper, postDeferred);
+        PgDiffIndexes.createIndexes(postWriter, arguments, oldSchema,
+                newSchema, postHelper, postDeferred);
+        PgDiffTables.createClusters(postWriter, arguments, oldSchema,
+                newSchema, postHelper, postDeferred);
+        PgDiffTriggers.createTriggers(
+                postWriter, arguments, oldSchema, newSchema, postHelper);
+        PgDiffViews.createViews(
+                preWriter, arguments, oldSchema, newSchema, preHelper);
+        PgDiffViews.alterViews(
+                preWriter, oldSchema, newSchema, preHelper);
+
+        PgDiffFunctions.alterComments(
+                postWriter, oldSchema, newSchema, postHelper);
+        PgDiffConstraints.alterComments(
+                postWriter, oldSchema, newSchema, postHelper);
+        PgDiffIndexes.alterComments(
+                postWriter, oldSchema, newSchema, postHelper);
+        PgDiffTriggers.alterComments(
+                postWriter, oldSchema, newSchema, postHelper);
+
+        if (preWriter != writer) {
+            preWriter.close();
         }
     }
 
@@ -285,4 +712,23 @@ public class PgDiff {
      */
     private PgDiff() {
     }
+
+    /**
+     * Writer that discards all output, used for statements of section that
+     * should not be output.
+     */
+    private static class NullWriter extends Writer {
+
+        @Override
+        public void write(final char[] cbuf, final int off, final int len) {
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
 }
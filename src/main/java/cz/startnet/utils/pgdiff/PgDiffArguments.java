@@ -5,6 +5,7 @@
  */
 package cz.startnet.utils.pgdiff;
 
+import cz.startnet.utils.pgdiff.impact.CostEstimator;
 import java.io.PrintWriter;
 import java.nio.charset.Charset;
 import java.util.SortedMap;
@@ -65,6 +66,162 @@ public class PgDiffArguments {
      * Whether Slony triggers should be ignored.
      */
     private boolean ignoreSlonyTriggers;
+    /**
+     * Whether definitions should be read from the dump files only when they
+     * are needed instead of keeping them in memory.
+     */
+    private boolean lazyDefinitions;
+    /**
+     * Whether dumps should be loaded and compared one schema at a time.
+     */
+    private boolean partitionBySchema;
+    /**
+     * Whether index files stored next to the dump files should be used.
+     */
+    private boolean useIndex;
+    /**
+     * Directory in which snapshots of parsed dumps are cached or null if
+     * snapshots should not be cached.
+     */
+    private String snapshotCacheDirectory;
+    /**
+     * Whether objects that have the same statements in both dumps should not
+     * be loaded.
+     */
+    private boolean skipUnchanged;
+    /**
+     * Whether indexes of existing tables should be created and dropped
+     * concurrently.
+     */
+    private boolean concurrentIndexes;
+    /**
+     * Whether modified indexes of existing tables should be built
+     * concurrently under temporary name and swapped with the original
+     * indexes.
+     */
+    private boolean swapIndexes;
+    /**
+     * Whether foreign keys and checks of existing tables should be added as
+     * NOT VALID and validated later.
+     */
+    private boolean notValidConstraints;
+    /**
+     * Whether columns of existing tables should be set NOT NULL using
+     * validated check constraint.
+     */
+    private boolean onlineNotNull;
+    /**
+     * Whether PRIMARY KEY and UNIQUE constraints of existing tables should be
+     * added using unique index built concurrently.
+     */
+    private boolean constraintsUsingIndex;
+    /**
+     * Whether changes of a table should be coalesced into as few ALTER TABLE
+     * statements as possible.
+     */
+    private boolean coalesceAlterTable;
+    /**
+     * Whether views that were extended with new columns should be replaced
+     * using CREATE OR REPLACE VIEW instead of being dropped and created.
+     */
+    private boolean replaceViews;
+    /**
+     * Whether column type changes that require table rewrite should be done
+     * online using shadow column that is backfilled in batches.
+     */
+    private boolean onlineTypeChange;
+    /**
+     * Number of keys updated in one batch of backfill.
+     */
+    private int batchSize = 10000;
+    /**
+     * Whether existing rows of columns that should be NOT NULL should be
+     * filled with default values in batches.
+     */
+    private boolean batchedDefaults;
+    /**
+     * Version of PostgreSQL the diff is created for, in format of
+     * server_version_num setting, or 0 if it is not specified.
+     */
+    private int targetVersion;
+    /**
+     * Whether generated statements should be annotated with comments
+     * describing locks they acquire and whether they rewrite or scan tables.
+     */
+    private boolean annotateLocks;
+    /**
+     * File the summary of locks and table rewrites should be written to or
+     * null if no summary should be written.
+     */
+    private String impactSummaryFile;
+    /**
+     * Whether the diff should fail if it contains statements that rewrite
+     * tables.
+     */
+    private boolean failOnRewrite;
+    /**
+     * File containing sizes of tables used to estimate run time of the
+     * statements or null if run time should not be estimated.
+     */
+    private String statisticsFile;
+    /**
+     * Throughput constants used to estimate run time of the statements or
+     * null if default throughput should be used.
+     */
+    private String throughput;
+    /**
+     * Whether consecutive independent statements should be reordered so that
+     * the most expensive ones start first.
+     */
+    private boolean expensiveFirst;
+    /**
+     * Whether statements should be grouped into short transactions per
+     * relation, each retried if lock cannot be acquired in time.
+     */
+    private boolean shortTransactions;
+    /**
+     * Value of lock_timeout setting used for short transactions.
+     */
+    private String lockTimeout = "5s";
+    /**
+     * Value of statement_timeout setting used for short transactions that
+     * do not rewrite or scan a table or build an index.
+     */
+    private String statementTimeout = "1min";
+    /**
+     * Number of attempts to run short transaction before the error is
+     * raised.
+     */
+    private int lockRetries = 5;
+    /**
+     * Directory the migration steps and their dependencies should be
+     * written to or null if the steps should not be written.
+     */
+    private String stepsDirectory;
+    /**
+     * JDBC URL of the database the migration should be applied to or null
+     * if the migration should not be applied.
+     */
+    private String executeUrl;
+    /**
+     * Maximum number of migration steps applied concurrently.
+     */
+    private int jobs = 4;
+    /**
+     * Section of the diff that should be output or null if whole diff
+     * should be output.
+     */
+    private Section section;
+    /**
+     * Whether renamed objects should be detected and renamed instead of
+     * being dropped and created.
+     */
+    private boolean detectRenames;
+    /**
+     * Minimum similarity of tables from 0 to 1 for the table to be
+     * considered renamed.
+     */
+    private double renameThreshold = 0.8;
 
     /**
      * Setter for {@link #addDefaults}.
@@ -237,22 +394,206 @@ public class PgDiffArguments {
                 setAddDefaults(true);
             } else if ("--add-transaction".equals(args[i])) {
                 setAddTransaction(true);
+            } else if ("--annotate-locks".equals(args[i])) {
+                setAnnotateLocks(true);
+            } else if ("--batch-size".equals(args[i])) {
+                try {
+                    setBatchSize(Integer.parseInt(args[i + 1]));
+                } catch (final NumberFormatException ex) {
+                    setBatchSize(0);
+                }
+
+                if (getBatchSize() <= 0) {
+                    writer.print(Resources.getString("ErrorInvalidBatchSize"));
+                    writer.print(": ");
+                    writer.println(args[i + 1]);
+                    success = false;
+
+                    break;
+                }
+
+                i++;
+            } else if ("--batched-defaults".equals(args[i])) {
+                setBatchedDefaults(true);
+            } else if ("--coalesce-alter-table".equals(args[i])) {
+                setCoalesceAlterTable(true);
+            } else if ("--concurrent-indexes".equals(args[i])) {
+                setConcurrentIndexes(true);
+            } else if ("--constraints-using-index".equals(args[i])) {
+                setConstraintsUsingIndex(true);
+            } else if ("--detect-renames".equals(args[i])) {
+                setDetectRenames(true);
+            } else if ("--execute".equals(args[i])) {
+                setExecuteUrl(args[i + 1]);
+                i++;
+            } else if ("--expensive-first".equals(args[i])) {
+                setExpensiveFirst(true);
+            } else if ("--fail-on-rewrite".equals(args[i])) {
+                setFailOnRewrite(true);
             } else if ("--ignore-function-whitespace".equals(args[i])) {
                 setIgnoreFunctionWhitespace(true);
             } else if ("--ignore-slony-triggers".equals(args[i])) {
                 setIgnoreSlonyTriggers(true);
             } else if ("--ignore-start-with".equals(args[i])) {
                 setIgnoreStartWith(true);
+            } else if ("--impact-summary".equals(args[i])) {
+                setImpactSummaryFile(args[i + 1]);
+                i++;
             } else if ("--in-charset-name".equals(args[i])) {
                 setInCharsetName(args[i + 1]);
                 i++;
+            } else if ("--jobs".equals(args[i])) {
+                try {
+                    setJobs(Integer.parseInt(args[i + 1]));
+                } catch (final NumberFormatException ex) {
+                    setJobs(0);
+                }
+
+                if (getJobs() <= 0) {
+                    writer.print(Resources.getString("ErrorInvalidJobs"));
+                    writer.print(": ");
+                    writer.println(args[i + 1]);
+                    success = false;
+
+                    break;
+                }
+
+                i++;
+            } else if ("--lazy-definitions".equals(args[i])) {
+                setLazyDefinitions(true);
             } else if ("--list-charsets".equals(args[i])) {
                 setListCharsets(true);
+            } else if ("--lock-retries".equals(args[i])) {
+                try {
+                    setLockRetries(Integer.parseInt(args[i + 1]));
+                } catch (final NumberFormatException ex) {
+                    setLockRetries(0);
+                }
+
+                if (getLockRetries() <= 0) {
+                    writer.print(
+                            Resources.getString("ErrorInvalidLockRetries"));
+                    writer.print(": ");
+                    writer.println(args[i + 1]);
+                    success = false;
+
+                    break;
+                }
+
+                i++;
+            } else if ("--lock-timeout".equals(args[i])) {
+                if (!isValidTimeout(args[i + 1])) {
+                    writer.print(Resources.getString("ErrorInvalidTimeout"));
+                    writer.print(": ");
+                    writer.println(args[i + 1]);
+                    success = false;
+
+                    break;
+                }
+
+                setLockTimeout(args[i + 1].trim());
+                i++;
+            } else if ("--not-valid-constraints".equals(args[i])) {
+                setNotValidConstraints(true);
+            } else if ("--online-not-null".equals(args[i])) {
+                setOnlineNotNull(true);
+            } else if ("--online-type-change".equals(args[i])) {
+                setOnlineTypeChange(true);
             } else if ("--out-charset-name".equals(args[i])) {
                 setOutCharsetName(args[i + 1]);
                 i++;
             } else if ("--output-ignored-statements".equals(args[i])) {
                 setOutputIgnoredStatements(true);
+            } else if ("--partition-by-schema".equals(args[i])) {
+                setPartitionBySchema(true);
+            } else if ("--rename-threshold".equals(args[i])) {
+                try {
+                    setRenameThreshold(Double.parseDouble(args[i + 1]));
+                } catch (final NumberFormatException ex) {
+                    setRenameThreshold(-1);
+                }
+
+                if (!(getRenameThreshold() >= 0 && getRenameThreshold() <= 1)) {
+                    writer.print(
+                            Resources.getString("ErrorInvalidRenameThreshold"));
+                    writer.print(": ");
+                    writer.println(args[i + 1]);
+                    success = false;
+
+                    break;
+                }
+
+                i++;
+            } else if ("--replace-views".equals(args[i])) {
+                setReplaceViews(true);
+            } else if ("--section".equals(args[i])) {
+                setSection(Section.fromName(args[i + 1]));
+
+                if (getSection() == null) {
+                    writer.print(Resources.getString("ErrorInvalidSection"));
+                    writer.print(": ");
+                    writer.println(args[i + 1]);
+                    success = false;
+
+                    break;
+                }
+
+                i++;
+            } else if ("--short-transactions".equals(args[i])) {
+                setShortTransactions(true);
+            } else if ("--skip-unchanged".equals(args[i])) {
+                setSkipUnchanged(true);
+            } else if ("--snapshot-cache".equals(args[i])) {
+                setSnapshotCacheDirectory(args[i + 1]);
+                i++;
+            } else if ("--statement-timeout".equals(args[i])) {
+                if (!isValidTimeout(args[i + 1])) {
+                    writer.print(Resources.getString("ErrorInvalidTimeout"));
+                    writer.print(": ");
+                    writer.println(args[i + 1]);
+                    success = false;
+
+                    break;
+                }
+
+                setStatementTimeout(args[i + 1].trim());
+                i++;
+            } else if ("--steps-directory".equals(args[i])) {
+                setStepsDirectory(args[i + 1]);
+                i++;
+            } else if ("--stats-file".equals(args[i])) {
+                setStatisticsFile(args[i + 1]);
+                i++;
+            } else if ("--swap-indexes".equals(args[i])) {
+                setSwapIndexes(true);
+            } else if ("--target-version".equals(args[i])) {
+                setTargetVersion(Capability.parseVersion(args[i + 1]));
+
+                if (getTargetVersion() <= 0) {
+                    writer.print(
+                            Resources.getString("ErrorInvalidTargetVersion"));
+                    writer.print(": ");
+                    writer.println(args[i + 1]);
+                    success = false;
+
+                    break;
+                }
+
+                i++;
+            } else if ("--throughput".equals(args[i])) {
+                if (CostEstimator.parseThroughput(args[i + 1]) == null) {
+                    writer.print(Resources.getString("ErrorInvalidThroughput"));
+                    writer.print(": ");
+                    writer.println(args[i + 1]);
+                    success = false;
+
+                    break;
+                }
+
+                setThroughput(args[i + 1]);
+                i++;
+            } else if ("--use-index".equals(args[i])) {
+                setUseIndex(true);
             } else if ("--version".equals(args[i])) {
                 setVersion(true);
             } else {
@@ -282,6 +623,18 @@ public class PgDiffArguments {
         return success;
     }
 
+    /**
+     * Checks whether the value is valid value of timeout setting, that is
+     * number optionally followed by unit.
+     *
+     * @param value value
+     *
+     * @return true if the value is valid, otherwise false
+     */
+    private static boolean isValidTimeout(final String value) {
+        return value.trim().matches("^\\d+\\s*(?:us|ms|s|min|h|d)?$");
+    }
+
     /**
      * Prints program usage.
      *
@@ -387,4 +740,597 @@ public class PgDiffArguments {
     public void setIgnoreSlonyTriggers(final boolean ignoreSlonyTriggers) {
         this.ignoreSlonyTriggers = ignoreSlonyTriggers;
     }
+
+    /**
+     * Getter for {@link #lazyDefinitions}.
+     *
+     * @return {@link #lazyDefinitions}
+     */
+    public boolean isLazyDefinitions() {
+        return lazyDefinitions;
+    }
+
+    /**
+     * Setter for {@link #lazyDefinitions}.
+     *
+     * @param lazyDefinitions {@link #lazyDefinitions}
+     */
+    public void setLazyDefinitions(final boolean lazyDefinitions) {
+        this.lazyDefinitions = lazyDefinitions;
+    }
+
+    /**
+     * Getter for {@link #partitionBySchema}.
+     *
+     * @return {@link #partitionBySchema}
+     */
+    public boolean isPartitionBySchema() {
+        return partitionBySchema;
+    }
+
+    /**
+     * Setter for {@link #partitionBySchema}.
+     *
+     * @param partitionBySchema {@link #partitionBySchema}
+     */
+    public void setPartitionBySchema(final boolean partitionBySchema) {
+        this.partitionBySchema = partitionBySchema;
+    }
+
+    /**
+     * Getter for {@link #useIndex}.
+     *
+     * @return {@link #useIndex}
+     */
+    public boolean isUseIndex() {
+        return useIndex;
+    }
+
+    /**
+     * Setter for {@link #useIndex}.
+     *
+     * @param useIndex {@link #useIndex}
+     */
+    public void setUseIndex(final boolean useIndex) {
+        this.useIndex = useIndex;
+    }
+
+    /**
+     * Getter for {@link #snapshotCacheDirectory}.
+     *
+     * @return {@link #snapshotCacheDirectory}
+     */
+    public String getSnapshotCacheDirectory() {
+        return snapshotCacheDirectory;
+    }
+
+    /**
+     * Setter for {@link #snapshotCacheDirectory}.
+     *
+     * @param snapshotCacheDirectory {@link #snapshotCacheDirectory}
+     */
+    public void setSnapshotCacheDirectory(
+            final String snapshotCacheDirectory) {
+        this.snapshotCacheDirectory = snapshotCacheDirectory;
+    }
+
+    /**
+     * Getter for {@link #skipUnchanged}.
+     *
+     * @return {@link #skipUnchanged}
+     */
+    public boolean isSkipUnchanged() {
+        return skipUnchanged;
+    }
+
+    /**
+     * Setter for {@link #skipUnchanged}.
+     *
+     * @param skipUnchanged {@link #skipUnchanged}
+     */
+    public void setSkipUnchanged(final boolean skipUnchanged) {
+        this.skipUnchanged = skipUnchanged;
+    }
+
+    /**
+     * Getter for {@link #concurrentIndexes}.
+     *
+     * @return {@link #concurrentIndexes}
+     */
+    public boolean isConcurrentIndexes() {
+        return concurrentIndexes;
+    }
+
+    /**
+     * Setter for {@link #concurrentIndexes}.
+     *
+     * @param concurrentIndexes {@link #concurrentIndexes}
+     */
+    public void setConcurrentIndexes(final boolean concurrentIndexes) {
+        this.concurrentIndexes = concurrentIndexes;
+    }
+
+    /**
+     * Getter for {@link #swapIndexes}.
+     *
+     * @return {@link #swapIndexes}
+     */
+    public boolean isSwapIndexes() {
+        return swapIndexes;
+    }
+
+    /**
+     * Setter for {@link #swapIndexes}.
+     *
+     * @param swapIndexes {@link #swapIndexes}
+     */
+    public void setSwapIndexes(final boolean swapIndexes) {
+        this.swapIndexes = swapIndexes;
+    }
+
+    /**
+     * Getter for {@link #notValidConstraints}.
+     *
+     * @return {@link #notValidConstraints}
+     */
+    public boolean isNotValidConstraints() {
+        return notValidConstraints;
+    }
+
+    /**
+     * Setter for {@link #notValidConstraints}.
+     *
+     * @param notValidConstraints {@link #notValidConstraints}
+     */
+    public void setNotValidConstraints(final boolean notValidConstraints) {
+        this.notValidConstraints = notValidConstraints;
+    }
+
+    /**
+     * Getter for {@link #onlineNotNull}.
+     *
+     * @return {@link #onlineNotNull}
+     */
+    public boolean isOnlineNotNull() {
+        return onlineNotNull;
+    }
+
+    /**
+     * Setter for {@link #onlineNotNull}.
+     *
+     * @param onlineNotNull {@link #onlineNotNull}
+     */
+    public void setOnlineNotNull(final boolean onlineNotNull) {
+        this.onlineNotNull = onlineNotNull;
+    }
+
+    /**
+     * Getter for {@link #constraintsUsingIndex}.
+     *
+     * @return {@link #constraintsUsingIndex}
+     */
+    public boolean isConstraintsUsingIndex() {
+        return constraintsUsingIndex;
+    }
+
+    /**
+     * Setter for {@link #constraintsUsingIndex}.
+     *
+     * @param constraintsUsingIndex {@link #constraintsUsingIndex}
+     */
+    public void setConstraintsUsingIndex(final boolean constraintsUsingIndex) {
+        this.constraintsUsingIndex = constraintsUsingIndex;
+    }
+
+    /**
+     * Getter for {@link #coalesceAlterTable}.
+     *
+     * @return {@link #coalesceAlterTable}
+     */
+    public boolean isCoalesceAlterTable() {
+        return coalesceAlterTable;
+    }
+
+    /**
+     * Setter for {@link #coalesceAlterTable}.
+     *
+     * @param coalesceAlterTable {@link #coalesceAlterTable}
+     */
+    public void setCoalesceAlterTable(final boolean coalesceAlterTable) {
+        this.coalesceAlterTable = coalesceAlterTable;
+    }
+
+    /**
+     * Getter for {@link #replaceViews}.
+     *
+     * @return {@link #replaceViews}
+     */
+    public boolean isReplaceViews() {
+        return replaceViews;
+    }
+
+    /**
+     * Setter for {@link #replaceViews}.
+     *
+     * @param replaceViews {@link #replaceViews}
+     */
+    public void setReplaceViews(final boolean replaceViews) {
+        this.replaceViews = replaceViews;
+    }
+
+    /**
+     * Getter for {@link #onlineTypeChange}.
+     *
+     * @return {@link #onlineTypeChange}
+     */
+    public boolean isOnlineTypeChange() {
+        return onlineTypeChange;
+    }
+
+    /**
+     * Setter for {@link #onlineTypeChange}.
+     *
+     * @param onlineTypeChange {@link #onlineTypeChange}
+     */
+    public void setOnlineTypeChange(final boolean onlineTypeChange) {
+        this.onlineTypeChange = onlineTypeChange;
+    }
+
+    /**
+     * Getter for {@link #batchSize}.
+     *
+     * @return {@link #batchSize}
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Setter for {@link #batchSize}.
+     *
+     * @param batchSize {@link #batchSize}
+     */
+    public void setBatchSize(final int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Getter for {@link #batchedDefaults}.
+     *
+     * @return {@link #batchedDefaults}
+     */
+    public boolean isBatchedDefaults() {
+        return batchedDefaults;
+    }
+
+    /**
+     * Setter for {@link #batchedDefaults}.
+     *
+     * @param batchedDefaults {@link #batchedDefaults}
+     */
+    public void setBatchedDefaults(final boolean batchedDefaults) {
+        this.batchedDefaults = batchedDefaults;
+    }
+
+    /**
+     * Getter for {@link #targetVersion}.
+     *
+     * @return {@link #targetVersion}
+     */
+    public int getTargetVersion() {
+        return targetVersion;
+    }
+
+    /**
+     * Setter for {@link #targetVersion}.
+     *
+     * @param targetVersion {@link #targetVersion}
+     */
+    public void setTargetVersion(final int targetVersion) {
+        this.targetVersion = targetVersion;
+    }
+
+    /**
+     * Checks whether the capability is available in target version of
+     * PostgreSQL.
+     *
+     * @param capability capability
+     *
+     * @return true if the capability is available, otherwise false
+     */
+    public boolean isSupported(final Capability capability) {
+        if (targetVersion == 0) {
+            return capability.isAssumed();
+        }
+
+        return targetVersion >= capability.getVersion();
+    }
+
+    /**
+     * Getter for {@link #annotateLocks}.
+     *
+     * @return {@link #annotateLocks}
+     */
+    public boolean isAnnotateLocks() {
+        return annotateLocks;
+    }
+
+    /**
+     * Setter for {@link #annotateLocks}.
+     *
+     * @param annotateLocks {@link #annotateLocks}
+     */
+    public void setAnnotateLocks(final boolean annotateLocks) {
+        this.annotateLocks = annotateLocks;
+    }
+
+    /**
+     * Getter for {@link #impactSummaryFile}.
+     *
+     * @return {@link #impactSummaryFile}
+     */
+    public String getImpactSummaryFile() {
+        return impactSummaryFile;
+    }
+
+    /**
+     * Setter for {@link #impactSummaryFile}.
+     *
+     * @param impactSummaryFile {@link #impactSummaryFile}
+     */
+    public void setImpactSummaryFile(final String impactSummaryFile) {
+        this.impactSummaryFile = impactSummaryFile;
+    }
+
+    /**
+     * Getter for {@link #failOnRewrite}.
+     *
+     * @return {@link #failOnRewrite}
+     */
+    public boolean isFailOnRewrite() {
+        return failOnRewrite;
+    }
+
+    /**
+     * Setter for {@link #failOnRewrite}.
+     *
+     * @param failOnRewrite {@link #failOnRewrite}
+     */
+    public void setFailOnRewrite(final boolean failOnRewrite) {
+        this.failOnRewrite = failOnRewrite;
+    }
+
+    /**
+     * Getter for {@link #statisticsFile}.
+     *
+     * @return {@link #statisticsFile}
+     */
+    public String getStatisticsFile() {
+        return statisticsFile;
+    }
+
+    /**
+     * Setter for {@link #statisticsFile}.
+     *
+     * @param statisticsFile {@link #statisticsFile}
+     */
+    public void setStatisticsFile(final String statisticsFile) {
+        this.statisticsFile = statisticsFile;
+    }
+
+    /**
+     * Getter for {@link #throughput}.
+     *
+     * @return {@link #throughput}
+     */
+    public String getThroughput() {
+        return throughput;
+    }
+
+    /**
+     * Setter for {@link #throughput}.
+     *
+     * @param throughput {@link #throughput}
+     */
+    public void setThroughput(final String throughput) {
+        this.throughput = throughput;
+    }
+
+    /**
+     * Getter for {@link #expensiveFirst}.
+     *
+     * @return {@link #expensiveFirst}
+     */
+    public boolean isExpensiveFirst() {
+        return expensiveFirst;
+    }
+
+    /**
+     * Setter for {@link #expensiveFirst}.
+     *
+     * @param expensiveFirst {@link #expensiveFirst}
+     */
+    public void setExpensiveFirst(final boolean expensiveFirst) {
+        this.expensiveFirst = expensiveFirst;
+    }
+
+    /**
+     * Getter for {@link #shortTransactions}.
+     *
+     * @return {@link #shortTransactions}
+     */
+    public boolean isShortTransactions() {
+        return shortTransactions;
+    }
+
+    /**
+     * Setter for {@link #shortTransactions}.
+     *
+     * @param shortTransactions {@link #shortTransactions}
+     */
+    public void setShortTransactions(final boolean shortTransactions) {
+        this.shortTransactions = shortTransactions;
+    }
+
+    /**
+     * Getter for {@link #lockTimeout}.
+     *
+     * @return {@link #lockTimeout}
+     */
+    public String getLockTimeout() {
+        return lockTimeout;
+    }
+
+    /**
+     * Setter for {@link #lockTimeout}.
+     *
+     * @param lockTimeout {@link #lockTimeout}
+     */
+    public void setLockTimeout(final String lockTimeout) {
+        this.lockTimeout = lockTimeout;
+    }
+
+    /**
+     * Getter for {@link #statementTimeout}.
+     *
+     * @return {@link #statementTimeout}
+     */
+    public String getStatementTimeout() {
+        return statementTimeout;
+    }
+
+    /**
+     * Setter for {@link #statementTimeout}.
+     *
+     * @param statementTimeout {@link #statementTimeout}
+     */
+    public void setStatementTimeout(final String statementTimeout) {
+        this.statementTimeout = statementTimeout;
+    }
+
+    /**
+     * Getter for {@link #lockRetries}.
+     *
+     * @return {@link #lockRetries}
+     */
+    public int getLockRetries() {
+        return lockRetries;
+    }
+
+    /**
+     * Setter for {@link #lockRetries}.
+     *
+     * @param lockRetries {@link #lockRetries}
+     */
+    public void setLockRetries(final int lockRetries) {
+        this.lockRetries = lockRetries;
+    }
+
+    /**
+     * Getter for {@link #stepsDirectory}.
+     *
+     * @return {@link #stepsDirectory}
+     */
+    public String getStepsDirectory() {
+        return stepsDirectory;
+    }
+
+    /**
+     * Setter for {@link #stepsDirectory}.
+     *
+     * @param stepsDirectory {@link #stepsDirectory}
+     */
+    public void setStepsDirectory(final String stepsDirectory) {
+        this.stepsDirectory = stepsDirectory;
+    }
+
+    /**
+     * Getter for {@link #executeUrl}.
+     *
+     * @return {@link #executeUrl}
+     */
+    public String getExecuteUrl() {
+        return executeUrl;
+    }
+
+    /**
+     * Setter for {@link #executeUrl}.
+     *
+     * @param executeUrl {@link #executeUrl}
+     */
+    public void setExecuteUrl(final String executeUrl) {
+        this.executeUrl = executeUrl;
+    }
+
+    /**
+     * Getter for {@link #jobs}.
+     *
+     * @return {@link #jobs}
+     */
+    public int getJobs() {
+        return jobs;
+    }
+
+    /**
+     * Setter for {@link #jobs}.
+     *
+     * @param jobs {@link #jobs}
+     */
+    public void setJobs(final int jobs) {
+        this.jobs = jobs;
+    }
+
+    /**
+     * Getter for {@link #section}.
+     *
+     * @return {@link #section}
+     */
+    public Section getSection() {
+        return section;
+    }
+
+    /**
+     * Setter for {@link #section}.
+     *
+     * @param section {@link #section}
+     */
+    public void setSection(final Section section) {
+        this.section = section;
+    }
+
+    /**
+     * Getter for {@link #detectRenames}.
+     *
+     * @return {@link #detectRenames}
+     */
+    public boolean isDetectRenames() {
+        return detectRenames;
+    }
+
+    /**
+     * Setter for {@link #detectRenames}.
+     *
+     * @param detectRenames {@link #detectRenames}
+     */
+    public void setDetectRenames(final boolean detectRenames) {
+        this.detectRenames = detectRenames;
+    }
+
+    /**
+     * Getter for {@link #renameThreshold}.
+     *
+     * @return {@link #renameThreshold}
+     */
+    public double getRenameThreshold() {
+        return renameThreshold;
+    }
+
+    /**
+     * Setter for {@link #renameThreshold}.
+     *
+     * @param renameThreshold {@link #renameThreshold}
+     */
+    public void setRenameThreshold(final double renameThreshold) {
+        this.renameThreshold = renameThreshold;
+    }
 }
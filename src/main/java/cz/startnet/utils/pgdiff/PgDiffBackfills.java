@@ -0,0 +1,214 @@
+/**
+ * Copyright 2006 StartNet s.r.o.
+ *
+ * Distributed under MIT license
+ */
+package cz.startnet.utils.pgdiff;
+
+import cz.startnet.utils.pgdiff.parsers.ParserUtils;
+import cz.startnet.utils.pgdiff.schema.PgColumn;
+import cz.startnet.utils.pgdiff.schema.PgConstraint;
+import cz.startnet.utils.pgdiff.schema.PgTable;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Creates statements that update existing rows of a table in batches of
+ * primary key ranges. Each batch is committed separately so that locks are
+ * held and WAL is generated only for one batch at a time. Progress of the
+ * backfill is stored in a bookkeeping table so that the backfill continues
+ * with the next batch when it is run again after interruption. Committing
+ * inside DO block requires PostgreSQL 11 or newer and the block must not be
+ * run inside transaction block.
+ *
+ * @author fordfrog
+ */
+public class PgDiffBackfills {
+
+    /**
+     * Name of the table that stores progress of backfills.
+     */
+    public static final String PROGRESS_TABLE = "apgdiff_backfill_progress";
+    /**
+     * Types of primary key columns that can be used for key ranges.
+     */
+    private static final List<String> KEY_TYPES = Arrays.asList(
+            "smallint", "integer", "bigint", "int2", "int4", "int8",
+            "smallserial", "serial", "bigserial", "serial2", "serial4",
+            "serial8");
+
+    /**
+     * Returns name of the column that can be used to split the table to key
+     * ranges, that is the column of single column integer primary key.
+     *
+     * @param table table
+     *
+     * @return name of the key column or null if the table has no such primary
+     *         key
+     */
+    public static String getKeyColumnName(final PgTable table) {
+        for (final PgConstraint constraint : table.getConstraints()) {
+            if (!constraint.isPrimaryKeyConstraint()) {
+                continue;
+            }
+
+            final String indexColumns = constraint.getIndexColumns();
+
+            if (indexColumns == null || indexColumns.indexOf(',') != -1) {
+                return null;
+            }
+
+            final PgColumn column = table.getColumn(ParserUtils.getObjectName(
+                    indexColumns.substring(1, indexColumns.length() - 1).
+                    trim()));
+
+            if (column == null || !KEY_TYPES.contains(
+                    column.getType().toLowerCase(Locale.ENGLISH))) {
+                return null;
+            }
+
+            return column.getName();
+        }
+
+        return null;
+    }
+
+    /**
+     * Outputs statements that create the bookkeeping table if it does not
+     * exist yet and register the backfill in it.
+     *
+     * @param writer     writer the output should be written to
+     * @param table      table that is backfilled
+     * @param columnName name of the backfilled column or columns
+     */
+    public static void createProgress(final PrintWriter writer,
+            final PgTable table, final String columnName) {
+        writer.println();
+        writer.println("CREATE TABLE IF NOT EXISTS " + PROGRESS_TABLE + " (");
+        writer.println("\ttable_name text NOT NULL,");
+        writer.println("\tcolumn_name text NOT NULL,");
+        writer.println("\tlast_key bigint,");
+        writer.println("\tPRIMARY KEY (table_name, column_name)");
+        writer.println(");");
+        writer.println();
+        writer.println("INSERT INTO " + PROGRESS_TABLE
+                + " (table_name, column_name)");
+        writer.println("\tSELECT " + getLiteral(table.getName()) + ", "
+                + getLiteral(columnName));
+        writer.println("\tWHERE NOT EXISTS (SELECT 1 FROM " + PROGRESS_TABLE);
+        writer.println("\t\t" + getProgressCondition(table, columnName)
+                + ");");
+    }
+
+    /**
+     * Outputs DO block that updates existing rows of the table in batches of
+     * key ranges, starting after the last batch recorded in the bookkeeping
+     * table.
+     *
+     * @param writer     writer the output should be written to
+     * @param arguments  object containing arguments settings
+     * @param table      table that is backfilled
+     * @param columnName name of the backfilled column or columns
+     * @param setClause  SET clause of the UPDATE statement
+     * @param condition  additional condition of the UPDATE statement or null
+     */
+    public static void backfill(final PrintWriter writer,
+            final PgDiffArguments arguments, final PgTable table,
+            final String columnName, final String setClause,
+            final String condition) {
+        final String quotedTableName =
+                PgDiffUtils.getQuotedName(table.getName());
+        final String keyColumnName =
+                PgDiffUtils.getQuotedName(getKeyColumnName(table));
+        final int batchSize = arguments.getBatchSize();
+
+        writer.println();
+        writer.println("DO $$");
+        writer.println("DECLARE");
+        writer.println("\tbatch_start bigint;");
+        writer.println("\tmax_key bigint;");
+        writer.println("BEGIN");
+        writer.println("\tSELECT last_key INTO batch_start FROM "
+                + PROGRESS_TABLE);
+        writer.println("\t\t" + getProgressCondition(table, columnName) + ";");
+        writer.println();
+        writer.println("\tIF batch_start IS NULL THEN");
+        writer.println("\t\tSELECT min(" + keyColumnName
+                + ") INTO batch_start FROM " + quotedTableName + ";");
+        writer.println("\tEND IF;");
+        writer.println();
+        writer.println("\tSELECT max(" + keyColumnName + ") INTO max_key FROM "
+                + quotedTableName + ";");
+        writer.println();
+        writer.println("\tWHILE batch_start <= max_key LOOP");
+        writer.println("\t\tUPDATE " + quotedTableName + " SET " + setClause);
+        writer.print("\t\t\tWHERE " + keyColumnName + " >= batch_start AND "
+                + keyColumnName + " < batch_start + " + batchSize);
+
+        if (condition != null) {
+            writer.print(" AND " + condition);
+        }
+
+        writer.println(';');
+        writer.println("\t\tbatch_start := batch_start + " + batchSize + ";");
+        writer.println();
+        writer.println("\t\tUPDATE " + PROGRESS_TABLE
+                + " SET last_key = batch_start");
+        writer.println("\t\t\t" + getProgressCondition(table, columnName)
+                + ";");
+        writer.println();
+        writer.println("\t\tCOMMIT;");
+        writer.println("\tEND LOOP;");
+        writer.println("END;");
+        writer.println("$$;");
+    }
+
+    /**
+     * Outputs statement that removes the backfill from the bookkeeping
+     * table.
+     *
+     * @param writer     writer the output should be written to
+     * @param table      table that was backfilled
+     * @param columnName name of the backfilled column or columns
+     */
+    public static void dropProgress(final PrintWriter writer,
+            final PgTable table, final String columnName) {
+        writer.println();
+        writer.println("DELETE FROM " + PROGRESS_TABLE);
+        writer.println("\t" + getProgressCondition(table, columnName) + ";");
+    }
+
+    /**
+     * Returns WHERE clause that selects the backfill in the bookkeeping
+     * table.
+     *
+     * @param table      table that is backfilled
+     * @param columnName name of the backfilled column or columns
+     *
+     * @return WHERE clause
+     */
+    private static String getProgressCondition(final PgTable table,
+            final String columnName) {
+        return "WHERE table_name = " + getLiteral(table.getName())
+                + " AND column_name = " + getLiteral(columnName);
+    }
+
+    /**
+     * Returns string literal containing the value.
+     *
+     * @param value value
+     *
+     * @return string literal
+     */
+    private static String getLiteral(final String value) {
+        return "'" + value.replace("'", "''") + "'";
+    }
+
+    /**
+     * Creates a new instance of PgDiffBackfills.
+     */
+    private PgDiffBackfills() {
+    }
+}
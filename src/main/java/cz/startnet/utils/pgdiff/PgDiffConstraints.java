@@ -5,12 +5,18 @@
  */
 package cz.startnet.utils.pgdiff;
 
+import cz.startnet.utils.pgdiff.parsers.ParserUtils;
 import cz.startnet.utils.pgdiff.schema.PgConstraint;
+import cz.startnet.utils.pgdiff.schema.PgIndex;
 import cz.startnet.utils.pgdiff.schema.PgSchema;
 import cz.startnet.utils.pgdiff.schema.PgTable;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Diffs constraints.
@@ -20,19 +26,48 @@ import java.util.List;
 public class PgDiffConstraints {
 
     /**
-     * Outputs statements for creation of new constraints.
+     * Suffix of temporary name of unique index that is used to add PRIMARY
+     * KEY or UNIQUE constraint.
+     */
+    private static final String INDEX_SUFFIX = "_idx";
+    /**
+     * Pattern for getting name of table referenced by FOREIGN KEY constraint.
+     */
+    private static final Pattern PATTERN_REFERENCES = Pattern.compile(
+            "\\bREFERENCES[\\s]+((?:\"[^\"]*\"|[^\\s(\"])+)",
+            Pattern.CASE_INSENSITIVE);
+
+    /**
+     * Outputs statements for creation of new constraints. If constraints
+     * should be added as NOT VALID, foreign keys and checks of tables that
+     * already exist are added as NOT VALID and validated in deferred
+     * statements, so that existing rows are checked without blocking writes
+     * to the tables. If constraints should be added using index, PRIMARY KEY
+     * and UNIQUE constraints of tables that already exist are added in
+     * deferred statements using unique index that is built concurrently,
+     * and so are foreign keys that reference tables with such constraints.
      *
      * @param writer           writer the output should be written to
+     * @param arguments        object containing arguments settings
      * @param oldSchema        original schema
      * @param newSchema        new schema
      * @param primaryKey       determines whether primary keys should be
      *                         processed or any other constraints should be
      *                         processed
      * @param searchPathHelper search path helper
+     * @param deferred         statements that are run outside transaction
      */
     public static void createConstraints(final PrintWriter writer,
-            final PgSchema oldSchema, final PgSchema newSchema,
-            final boolean primaryKey, final SearchPathHelper searchPathHelper) {
+            final PgDiffArguments arguments, final PgSchema oldSchema,
+            final PgSchema newSchema, final boolean primaryKey,
+            final SearchPathHelper searchPathHelper,
+            final DeferredStatements deferred) {
+        final Set<String> usingIndexTables =
+                getUsingIndexTables(arguments, oldSchema, newSchema);
+        @SuppressWarnings("CollectionWithoutInitialCapacity")
+        final List<PgConstraint> referencingConstraints =
+                new ArrayList<PgConstraint>();
+
         for (final PgTable newTable : newSchema.getTables()) {
             final PgTable oldTable;
 
@@ -42,20 +77,341 @@ public class PgDiffConstraints {
                 oldTable = oldSchema.getTable(newTable.getName());
             }
 
+            @SuppressWarnings("CollectionWithoutInitialCapacity")
+            final List<PgConstraint> constraints =
+                    new ArrayList<PgConstraint>();
+
             // Add new constraints
             for (final PgConstraint constraint :
                     getNewConstraints(oldTable, newTable, primaryKey)) {
+                if (arguments.isConstraintsUsingIndex() && oldTable != null
+                        && arguments.isSupported(
+                        Capability.CONSTRAINT_USING_INDEX)
+                        && constraint.getIndexColumns() != null) {
+                    addUsingIndex(deferred.getWriter(), constraint);
+                } else if (usingIndexTables.contains(
+                        getReferencedTableName(constraint))) {
+                    // referenced key does not exist until deferred
+                    // statements are run
+                    referencingConstraints.add(constraint);
+                } else if (isCoalesced(arguments, oldSchema, newSchema,
+                        oldTable, constraint, usingIndexTables)) {
+                    // added in coalesced ALTER TABLE statement of the table
+                    continue;
+                } else if (arguments.isCoalesceAlterTable()) {
+                    constraints.add(constraint);
+                } else {
+                    searchPathHelper.outputSearchPath(writer);
+                    writer.println();
+                    addConstraint(writer, arguments, oldTable, constraint,
+                            deferred);
+                }
+            }
+
+            if (!constraints.isEmpty()) {
                 searchPathHelper.outputSearchPath(writer);
                 writer.println();
-                writer.println(constraint.getCreationSQL());
+                addConstraints(writer, arguments, oldTable, newTable,
+                        constraints, deferred);
+            }
+        }
+
+        for (final PgConstraint constraint : referencingConstraints) {
+            final PrintWriter deferredWriter = deferred.getWriter();
+            deferredWriter.println();
+            addConstraint(deferredWriter, arguments, oldSchema.getTable(
+                    constraint.getTableName()), constraint, deferred);
+        }
+    }
+
+    /**
+     * Returns constraints of existing table that are added in coalesced
+     * ALTER TABLE statement of the table instead of separate statement output
+     * by {@link #createConstraints}. Constraints that are added as NOT VALID
+     * or using index, constraints that are output in post-data section and
+     * foreign keys that reference other tables that get new constraints are
+     * added separately.
+     *
+     * @param arguments object containing arguments settings
+     * @param oldSchema original schema
+     * @param newSchema new schema
+     * @param oldTable  original table
+     * @param newTable  new table
+     *
+     * @return list of constraints that should be added
+     */
+    public static List<PgConstraint> getCoalescedNewConstraints(
+            final PgDiffArguments arguments, final PgSchema oldSchema,
+            final PgSchema newSchema, final PgTable oldTable,
+            final PgTable newTable) {
+        @SuppressWarnings("CollectionWithoutInitialCapacity")
+        final List<PgConstraint> list = new ArrayList<PgConstraint>();
+
+        if (!arguments.isCoalesceAlterTable()) {
+            return list;
+        }
+
+        final Set<String> usingIndexTables =
+                getUsingIndexTables(arguments, oldSchema, newSchema);
+        final List<PgConstraint> constraints =
+                getNewConstraints(oldTable, newTable, true);
+        constraints.addAll(getNewConstraints(oldTable, newTable, false));
+
+        for (final PgConstraint constraint : constraints) {
+            if (isCoalesced(arguments, oldSchema, newSchema, oldTable,
+                    constraint, usingIndexTables)) {
+                list.add(constraint);
+            }
+        }
+
+        return list;
+    }
+
+    /**
+     * Checks whether the constraint is added in coalesced ALTER TABLE
+     * statement of the table. Foreign key can be added there only if the
+     * referenced key already exists, that is if it references the same table
+     * or table that existed and gets no new constraints except foreign keys.
+     *
+     * @param arguments        object containing arguments settings
+     * @param oldSchema        original schema
+     * @param newSchema        new schema
+     * @param oldTable         original table or null
+     * @param constraint       new constraint
+     * @param usingIndexTables names of tables that get constraints added
+     *                         using index
+     *
+     * @return true if the constraint is added in coalesced ALTER TABLE
+     *         statement, otherwise false
+     */
+    private static boolean isCoalesced(final PgDiffArguments arguments,
+            final PgSchema oldSchema, final PgSchema newSchema,
+            final PgTable oldTable, final PgConstraint constraint,
+            final Set<String> usingIndexTables) {
+        if (!arguments.isCoalesceAlterTable()
+                || arguments.getSection() != null || oldTable == null
+                || isNotValid(arguments, oldTable, constraint)
+                || arguments.isConstraintsUsingIndex()
+                && arguments.isSupported(Capability.CONSTRAINT_USING_INDEX)
+                && constraint.getIndexColumns() != null) {
+            return false;
+        }
+
+        final String referencedTableName = getReferencedTableName(constraint);
+
+        if (referencedTableName == null) {
+            return true;
+        } else if (usingIndexTables.contains(referencedTableName)) {
+            return false;
+        } else if (referencedTableName.equals(oldTable.getName())) {
+            return true;
+        }
+
+        final PgTable oldReferencedTable =
+                oldSchema.getTable(referencedTableName);
+        final PgTable newReferencedTable =
+                newSchema.getTable(referencedTableName);
+
+        if (oldReferencedTable == null || newReferencedTable == null) {
+            return false;
+        }
+
+        final List<PgConstraint> referencedConstraints = getNewConstraints(
+                oldReferencedTable, newReferencedTable, true);
+        referencedConstraints.addAll(getNewConstraints(
+                oldReferencedTable, newReferencedTable, false));
+
+        for (final PgConstraint referencedConstraint :
+                referencedConstraints) {
+            if (getReferencedTableName(referencedConstraint) == null) {
+                return false;
             }
         }
+
+        return true;
+    }
+
+    /**
+     * Outputs statement for creation of the constraint. If the constraint
+     * should be added as NOT VALID, statement for its validation is output
+     * to deferred statements.
+     *
+     * @param writer     writer the output should be written to
+     * @param arguments  object containing arguments settings
+     * @param oldTable   original table or null
+     * @param constraint constraint
+     * @param deferred   statements that are run outside transaction
+     */
+    private static void addConstraint(final PrintWriter writer,
+            final PgDiffArguments arguments, final PgTable oldTable,
+            final PgConstraint constraint, final DeferredStatements deferred) {
+        if (isNotValid(arguments, oldTable, constraint)) {
+            writer.println(constraint.getCreationSQL(true));
+
+            final PrintWriter deferredWriter = deferred.getWriter();
+            deferredWriter.println();
+            deferredWriter.println(constraint.getValidateSQL());
+        } else {
+            writer.println(constraint.getCreationSQL());
+        }
+    }
+
+    /**
+     * Outputs single ALTER TABLE statement for creation of the constraints
+     * of the table followed by their comments. If the constraints should be
+     * added as NOT VALID, statements for their validation are output to
+     * deferred statements.
+     *
+     * @param writer      writer the output should be written to
+     * @param arguments   object containing arguments settings
+     * @param oldTable    original table or null
+     * @param newTable    new table
+     * @param constraints constraints of the table
+     * @param deferred    statements that are run outside transaction
+     */
+    private static void addConstraints(final PrintWriter writer,
+            final PgDiffArguments arguments, final PgTable oldTable,
+            final PgTable newTable, final List<PgConstraint> constraints,
+            final DeferredStatements deferred) {
+        writer.println("ALTER TABLE "
+                + PgDiffUtils.getQuotedName(newTable.getName()));
+
+        for (int i = 0; i < constraints.size(); i++) {
+            writer.print('\t');
+            writer.print(constraints.get(i).getAddClause(
+                    isNotValid(arguments, oldTable, constraints.get(i))));
+            writer.println((i + 1) < constraints.size() ? "," : ";");
+        }
+
+        for (final PgConstraint constraint : constraints) {
+            final String commentSQL = constraint.getCommentSQL();
+
+            if (commentSQL != null) {
+                writer.println();
+                writer.println(commentSQL);
+            }
+        }
+
+        for (final PgConstraint constraint : constraints) {
+            if (isNotValid(arguments, oldTable, constraint)) {
+                final PrintWriter deferredWriter = deferred.getWriter();
+                deferredWriter.println();
+                deferredWriter.println(constraint.getValidateSQL());
+            }
+        }
+    }
+
+    /**
+     * Checks whether the constraint should be added as NOT VALID and
+     * validated in deferred statements.
+     *
+     * @param arguments  object containing arguments settings
+     * @param oldTable   original table or null
+     * @param constraint constraint
+     *
+     * @return true if the constraint should be added as NOT VALID, otherwise
+     *         false
+     */
+    private static boolean isNotValid(final PgDiffArguments arguments,
+            final PgTable oldTable, final PgConstraint constraint) {
+        return arguments.isNotValidConstraints()
+                && arguments.isSupported(Capability.NOT_VALID_CONSTRAINTS)
+                && oldTable != null
+                && constraint.canBeNotValid();
+    }
+
+    /**
+     * Outputs statements that build unique index for the constraint
+     * concurrently and add the constraint using the index.
+     *
+     * @param writer     writer the output should be written to
+     * @param constraint PRIMARY KEY or UNIQUE constraint
+     */
+    private static void addUsingIndex(final PrintWriter writer,
+            final PgConstraint constraint) {
+        final PgIndex index = new PgIndex(PgDiffUtils.getTemporaryName(
+                constraint.getName(), INDEX_SUFFIX));
+        index.setTableName(constraint.getTableName());
+        index.setUnique(true);
+        index.setDefinition("USING btree " + constraint.getIndexColumns());
+
+        writer.println();
+        writer.println(index.getCreationSQL(true));
+        writer.println();
+        writer.println(PgDiffIndexes.getInvalidIndexCheckSQL(index));
+        writer.println();
+        writer.println(constraint.getCreationSQLUsingIndex(index.getName()));
+    }
+
+    /**
+     * Returns names of tables that get PRIMARY KEY or UNIQUE constraint added
+     * using index in deferred statements.
+     *
+     * @param arguments object containing arguments settings
+     * @param oldSchema original schema
+     * @param newSchema new schema
+     *
+     * @return set of table names
+     */
+    private static Set<String> getUsingIndexTables(
+            final PgDiffArguments arguments, final PgSchema oldSchema,
+            final PgSchema newSchema) {
+        @SuppressWarnings("CollectionWithoutInitialCapacity")
+        final Set<String> tables = new HashSet<String>();
+
+        if (!arguments.isConstraintsUsingIndex()
+                || !arguments.isSupported(Capability.CONSTRAINT_USING_INDEX)
+                || oldSchema == null) {
+            return tables;
+        }
+
+        for (final PgTable newTable : newSchema.getTables()) {
+            final PgTable oldTable = oldSchema.getTable(newTable.getName());
+
+            if (oldTable == null) {
+                continue;
+            }
+
+            for (final PgConstraint constraint : newTable.getConstraints()) {
+                if ((!oldTable.containsConstraint(constraint.getName())
+                        || !oldTable.getConstraint(constraint.getName()).
+                        equals(constraint))
+                        && constraint.getIndexColumns() != null) {
+                    tables.add(newTable.getName());
+                    break;
+                }
+            }
+        }
+
+        return tables;
+    }
+
+    /**
+     * Returns name of table referenced by FOREIGN KEY constraint.
+     *
+     * @param constraint constraint
+     *
+     * @return name of referenced table without schema or null if the
+     *         constraint is not FOREIGN KEY constraint
+     */
+    private static String getReferencedTableName(
+            final PgConstraint constraint) {
+        final Matcher matcher =
+                PATTERN_REFERENCES.matcher(constraint.getDefinition());
+
+        return matcher.find()
+                ? ParserUtils.getObjectName(matcher.group(1)) : null;
     }
 
     /**
      * Outputs statements for dropping non-existent or modified constraints.
+     * If ALTER TABLE statements should be coalesced, foreign keys of each
+     * table are dropped in single statement, so that tables they reference
+     * can be dropped, and other constraints are dropped in coalesced ALTER
+     * TABLE statement of the table.
      *
      * @param writer           writer the output should be written to
+     * @param arguments        object containing arguments settings
      * @param oldSchema        original schema
      * @param newSchema        new schema
      * @param primaryKey       determines whether primary keys should be
@@ -64,8 +420,9 @@ public class PgDiffConstraints {
      * @param searchPathHelper search path helper
      */
     public static void dropConstraints(final PrintWriter writer,
-            final PgSchema oldSchema, final PgSchema newSchema,
-            final boolean primaryKey, final SearchPathHelper searchPathHelper) {
+            final PgDiffArguments arguments, final PgSchema oldSchema,
+            final PgSchema newSchema, final boolean primaryKey,
+            final SearchPathHelper searchPathHelper) {
         for (final PgTable newTable : newSchema.getTables()) {
             final PgTable oldTable;
 
@@ -75,9 +432,34 @@ public class PgDiffConstraints {
                 oldTable = oldSchema.getTable(newTable.getName());
             }
 
+            final List<PgConstraint> constraints =
+                    getDropConstraints(oldTable, newTable, primaryKey);
+
+            if (arguments.isCoalesceAlterTable()) {
+                for (final PgConstraint constraint :
+                        getCoalescedDropConstraints(
+                        arguments, oldTable, newTable)) {
+                    constraints.remove(constraint);
+                }
+            }
+
+            if (arguments.isCoalesceAlterTable() && !constraints.isEmpty()) {
+                searchPathHelper.outputSearchPath(writer);
+                writer.println();
+                writer.println("ALTER TABLE "
+                        + PgDiffUtils.getQuotedName(newTable.getName()));
+
+                for (int i = 0; i < constraints.size(); i++) {
+                    writer.print('\t');
+                    writer.print(constraints.get(i).getDropClause());
+                    writer.println((i + 1) < constraints.size() ? "," : ";");
+                }
+
+                continue;
+            }
+
             // Drop constraints that no more exist or are modified
-            for (final PgConstraint constraint :
-                    getDropConstraints(oldTable, newTable, primaryKey)) {
+            for (final PgConstraint constraint : constraints) {
                 searchPathHelper.outputSearchPath(writer);
                 writer.println();
                 writer.println(constraint.getDropSQL());
@@ -85,6 +467,40 @@ public class PgDiffConstraints {
         }
     }
 
+    /**
+     * Returns constraints of existing table that are dropped in coalesced
+     * ALTER TABLE statement of the table instead of separate statement output
+     * by {@link #dropConstraints}. Foreign keys are dropped separately.
+     *
+     * @param arguments object containing arguments settings
+     * @param oldTable  original table
+     * @param newTable  new table
+     *
+     * @return list of constraints that should be dropped
+     */
+    public static List<PgConstraint> getCoalescedDropConstraints(
+            final PgDiffArguments arguments, final PgTable oldTable,
+            final PgTable newTable) {
+        @SuppressWarnings("CollectionWithoutInitialCapacity")
+        final List<PgConstraint> list = new ArrayList<PgConstraint>();
+
+        if (!arguments.isCoalesceAlterTable()) {
+            return list;
+        }
+
+        final List<PgConstraint> constraints =
+                getDropConstraints(oldTable, newTable, true);
+        constraints.addAll(getDropConstraints(oldTable, newTable, false));
+
+        for (final PgConstraint constraint : constraints) {
+            if (getReferencedTableName(constraint) == null) {
+                list.add(constraint);
+            }
+        }
+
+        return list;
+    }
+
     /**
      * Returns list of constraints that should be dropped.
      *
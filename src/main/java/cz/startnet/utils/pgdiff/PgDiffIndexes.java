@@ -20,16 +20,29 @@ import java.util.List;
 public class PgDiffIndexes {
 
     /**
-     * Outputs statements for creation of new indexes.
+     * Suffix of temporary name of index that is swapped with the original
+     * index.
+     */
+    private static final String SWAP_SUFFIX = "_swap";
+
+    /**
+     * Outputs statements for creation of new indexes. If indexes should be
+     * created concurrently, indexes of tables that already exist are created
+     * concurrently in deferred statements. If indexes should be swapped,
+     * modified indexes of tables that already exist are swapped in deferred
+     * statements.
      *
      * @param writer           writer the output should be written to
+     * @param arguments        object containing arguments settings
      * @param oldSchema        original schema
      * @param newSchema        new schema
      * @param searchPathHelper search path helper
+     * @param deferred         statements that are run outside transaction
      */
     public static void createIndexes(final PrintWriter writer,
-            final PgSchema oldSchema, final PgSchema newSchema,
-            final SearchPathHelper searchPathHelper) {
+            final PgDiffArguments arguments, final PgSchema oldSchema,
+            final PgSchema newSchema, final SearchPathHelper searchPathHelper,
+            final DeferredStatements deferred) {
         for (final PgTable newTable : newSchema.getTables()) {
             final String newTableName = newTable.getName();
 
@@ -41,27 +54,110 @@ public class PgDiffIndexes {
                     writer.println(index.getCreationSQL());
                 }
             } else {
-                for (PgIndex index : getNewIndexes(
-                        oldSchema.getTable(newTableName), newTable)) {
-                    searchPathHelper.outputSearchPath(writer);
-                    writer.println();
-                    writer.println(index.getCreationSQL());
+                final PgTable oldTable = oldSchema.getTable(newTableName);
+
+                for (PgIndex index : getNewIndexes(oldTable, newTable,
+                        !isSwapIndexes(arguments))) {
+                    if (arguments.isConcurrentIndexes() && oldTable != null) {
+                        final PrintWriter deferredWriter =
+                                deferred.getWriter();
+                        deferredWriter.println();
+                        deferredWriter.println(index.getCreationSQL(true));
+                        deferredWriter.println();
+                        deferredWriter.println(getInvalidIndexCheckSQL(index));
+                    } else {
+                        searchPathHelper.outputSearchPath(writer);
+                        writer.println();
+                        writer.println(index.getCreationSQL());
+                    }
+                }
+
+                if (isSwapIndexes(arguments)) {
+                    for (final PgIndex index
+                            : getModifiedIndexes(oldTable, newTable)) {
+                        swapIndex(deferred.getWriter(), newTable, index);
+                    }
                 }
             }
         }
     }
 
     /**
-     * Outputs statements for dropping indexes that exist no more.
+     * Checks whether modified indexes should be swapped with concurrently
+     * built replacements, which requires DROP INDEX CONCURRENTLY.
+     *
+     * @param arguments object containing arguments settings
+     *
+     * @return true if modified indexes should be swapped, otherwise false
+     */
+    static boolean isSwapIndexes(final PgDiffArguments arguments) {
+        return arguments.isSwapIndexes()
+                && arguments.isSupported(Capability.DROP_INDEX_CONCURRENTLY);
+    }
+
+    /**
+     * Outputs statements that build the modified index concurrently under
+     * temporary name, move CLUSTER ON to it if the table should be clustered
+     * on the index, drop the original index concurrently and rename the new
+     * index to the original name. Queries can use the original index until
+     * the new index is built.
+     *
+     * @param writer   writer the output should be written to
+     * @param newTable new table
+     * @param index    new definition of the index
+     */
+    private static void swapIndex(final PrintWriter writer,
+            final PgTable newTable, final PgIndex index) {
+        final PgIndex swapIndex = new PgIndex(
+                PgDiffUtils.getTemporaryName(index.getName(), SWAP_SUFFIX));
+        swapIndex.setTableName(index.getTableName());
+        swapIndex.setDefinition(index.getDefinition());
+        swapIndex.setUnique(index.isUnique());
+        swapIndex.setComment(index.getComment());
+
+        writer.println();
+        writer.println(swapIndex.getCreationSQL(true));
+        writer.println();
+        writer.println(getInvalidIndexCheckSQL(swapIndex));
+
+        if (index.getName().equals(newTable.getClusterIndexName())) {
+            writer.println();
+            writer.print("ALTER TABLE ");
+            writer.print(PgDiffUtils.getQuotedName(newTable.getName()));
+            writer.print(" CLUSTER ON ");
+            writer.print(PgDiffUtils.getQuotedName(swapIndex.getName()));
+            writer.println(';');
+        }
+
+        writer.println();
+        writer.println(index.getDropSQL(true));
+        writer.println();
+        writer.println(getInvalidIndexCheckSQL(index));
+        writer.println();
+        writer.print("ALTER INDEX ");
+        writer.print(PgDiffUtils.getQuotedName(swapIndex.getName()));
+        writer.print(" RENAME TO ");
+        writer.print(PgDiffUtils.getQuotedName(index.getName()));
+        writer.println(';');
+    }
+
+    /**
+     * Outputs statements for dropping indexes that exist no more. If indexes
+     * should be dropped concurrently, they are dropped in deferred
+     * statements. Modified indexes that should be swapped are not dropped
+     * here but in {@link #createIndexes}.
      *
      * @param writer           writer the output should be written to
+     * @param arguments        object containing arguments settings
      * @param oldSchema        original schema
      * @param newSchema        new schema
      * @param searchPathHelper search path helper
+     * @param deferred         statements that are run outside transaction
      */
     public static void dropIndexes(final PrintWriter writer,
-            final PgSchema oldSchema, final PgSchema newSchema,
-            final SearchPathHelper searchPathHelper) {
+            final PgDiffArguments arguments, final PgSchema oldSchema,
+            final PgSchema newSchema, final SearchPathHelper searchPathHelper,
+            final DeferredStatements deferred) {
         for (final PgTable newTable : newSchema.getTables()) {
             final String newTableName = newTable.getName();
             final PgTable oldTable;
@@ -73,19 +169,51 @@ public class PgDiffIndexes {
             }
 
             // Drop indexes that do not exist in new schema or are modified
-            for (final PgIndex index : getDropIndexes(oldTable, newTable)) {
-                searchPathHelper.outputSearchPath(writer);
-                writer.println();
-                writer.println(index.getDropSQL());
+            for (final PgIndex index : getDropIndexes(
+                    oldTable, newTable, !isSwapIndexes(arguments))) {
+                if (arguments.isConcurrentIndexes()) {
+                    final PrintWriter deferredWriter = deferred.getWriter();
+                    deferredWriter.println();
+                    deferredWriter.println(index.getDropSQL(true));
+                    deferredWriter.println();
+                    deferredWriter.println(getInvalidIndexCheckSQL(index));
+                } else {
+                    searchPathHelper.outputSearchPath(writer);
+                    writer.println();
+                    writer.println(index.getDropSQL());
+                }
             }
         }
     }
 
+    /**
+     * Returns statement that fails if the index is left invalid by failed
+     * concurrent build or drop. The index is looked up in the current schema.
+     *
+     * @param index index
+     *
+     * @return statement checking validity of the index
+     */
+    static String getInvalidIndexCheckSQL(final PgIndex index) {
+        final String name = "'" + index.getName().replace("'", "''") + "'";
+
+        return "DO $$\nBEGIN\n"
+                + "\tIF EXISTS (SELECT 1 FROM pg_index i\n"
+                + "\t\t\tJOIN pg_class c ON c.oid = i.indexrelid\n"
+                + "\t\t\tJOIN pg_namespace n ON n.oid = c.relnamespace\n"
+                + "\t\t\tWHERE c.relname = " + name
+                + " AND n.nspname = current_schema()\n"
+                + "\t\t\tAND NOT i.indisvalid) THEN\n"
+                + "\t\tRAISE EXCEPTION 'Index % is invalid', " + name + ";\n"
+                + "\tEND IF;\nEND;\n$$;";
+    }
+
     /**
      * Returns list of indexes that should be dropped.
      *
-     * @param oldTable original table
-     * @param newTable new table
+     * @param oldTable        original table
+     * @param newTable        new table
+     * @param includeModified whether modified indexes should be included
      *
      * @return list of indexes that should be dropped
      *
@@ -93,14 +221,15 @@ public class PgDiffIndexes {
      * to drop because they are already removed.
      */
     private static List<PgIndex> getDropIndexes(final PgTable oldTable,
-            final PgTable newTable) {
+            final PgTable newTable, final boolean includeModified) {
         @SuppressWarnings("CollectionWithoutInitialCapacity")
         final List<PgIndex> list = new ArrayList<PgIndex>();
 
         if (newTable != null && oldTable != null) {
             for (final PgIndex index : oldTable.getIndexes()) {
                 if (!newTable.containsIndex(index.getName())
-                        || !newTable.getIndex(index.getName()).equals(index)) {
+                        || includeModified && !newTable.getIndex(
+                        index.getName()).equals(index)) {
                     list.add(index);
                 }
             }
@@ -112,13 +241,14 @@ public class PgDiffIndexes {
     /**
      * Returns list of indexes that should be added.
      *
-     * @param oldTable original table
-     * @param newTable new table
+     * @param oldTable        original table
+     * @param newTable        new table
+     * @param includeModified whether modified indexes should be included
      *
      * @return list of indexes that should be added
      */
-    private static List<PgIndex> getNewIndexes(final PgTable oldTable,
-            final PgTable newTable) {
+    static List<PgIndex> getNewIndexes(final PgTable oldTable,
+            final PgTable newTable, final boolean includeModified) {
         @SuppressWarnings("CollectionWithoutInitialCapacity")
         final List<PgIndex> list = new ArrayList<PgIndex>();
 
@@ -130,8 +260,8 @@ public class PgDiffIndexes {
             } else {
                 for (final PgIndex index : newTable.getIndexes()) {
                     if (!oldTable.containsIndex(index.getName())
-                            || !oldTable.getIndex(index.getName()).
-                            equals(index)) {
+                            || includeModified && !oldTable.getIndex(
+                            index.getName()).equals(index)) {
                         list.add(index);
                     }
                 }
@@ -141,6 +271,32 @@ public class PgDiffIndexes {
         return list;
     }
 
+    /**
+     * Returns list of indexes that exist in both tables but their
+     * definitions differ.
+     *
+     * @param oldTable original table
+     * @param newTable new table
+     *
+     * @return list of new definitions of modified indexes
+     */
+    static List<PgIndex> getModifiedIndexes(final PgTable oldTable,
+            final PgTable newTable) {
+        @SuppressWarnings("CollectionWithoutInitialCapacity")
+        final List<PgIndex> list = new ArrayList<PgIndex>();
+
+        if (newTable != null && oldTable != null) {
+            for (final PgIndex index : newTable.getIndexes()) {
+                if (oldTable.containsIndex(index.getName())
+                        && !oldTable.getIndex(index.getName()).equals(index)) {
+                    list.add(index);
+                }
+            }
+        }
+
+        return list;
+    }
+
     /**
      * Outputs statements for index comments that have changed.
      *
@@ -0,0 +1,1107 @@
+/**
+ * Copyright 2006 StartNet s.r.o.
+ *
+ * Distributed under MIT license
+ */
+package cz.startnet.utils.pgdiff;
+
+import cz.startnet.utils.pgdiff.schema.PgColumn;
+import cz.startnet.utils.pgdiff.schema.PgConstraint;
+import cz.startnet.utils.pgdiff.schema.PgDatabase;
+import cz.startnet.utils.pgdiff.schema.PgFunction;
+import cz.startnet.utils.pgdiff.schema.PgIndex;
+import cz.startnet.utils.pgdiff.schema.PgSchema;
+import cz.startnet.utils.pgdiff.schema.PgSequence;
+import cz.startnet.utils.pgdiff.schema.PgTable;
+import cz.startnet.utils.pgdiff.schema.PgTrigger;
+import cz.startnet.utils.pgdiff.schema.PgView;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Detects renamed and moved objects. Renamed and moved objects are renamed
+ * and moved in the original schema too, so that the rest of the diff
+ * compares them as existing objects and outputs only their remaining
+ * differences.
+ *
+ * @author fordfrog
+ */
+public class PgDiffRenames {
+
+    /**
+     * Outputs statements for renaming of tables that were dropped from the
+     * original schema while structurally similar table was added to the new
+     * schema. Similarity of tables is ratio of their common features
+     * (columns with their types, constraints, indexes and comments) to all
+     * their features. Tables are paired from the most similar ones and only
+     * pairs with similarity of at least rename threshold are renamed. Indexes,
+     * constraints, triggers and owned sequences of the renamed table, which
+     * names contain name of the table, are renamed too if the new schema
+     * contains equal object with the table name replaced.
+     *
+     * @param writer           writer the output should be written to
+     * @param arguments        object containing arguments settings
+     * @param oldSchema        original schema
+     * @param newSchema        new schema
+     * @param searchPathHelper search path helper
+     */
+    public static void renameTables(final PrintWriter writer,
+            final PgDiffArguments arguments, final PgSchema oldSchema,
+            final PgSchema newSchema,
+            final SearchPathHelper searchPathHelper) {
+        if (!arguments.isDetectRenames() || oldSchema == null) {
+            return;
+        }
+
+        @SuppressWarnings("CollectionWithoutInitialCapacity")
+        final List<TablePair> pairs = new ArrayList<TablePair>();
+
+        for (final PgTable oldTable : oldSchema.getTables()) {
+            if (newSchema.containsTable(oldTable.getName())) {
+                continue;
+            }
+
+            final Set<String> oldFeatures = getFeatures(oldTable);
+
+            for (final PgTable newTable : newSchema.getTables()) {
+                if (oldSchema.containsTable(newTable.getName())) {
+                    continue;
+                }
+
+                final double similarity =
+                        getSimilarity(oldFeatures, getFeatures(newTable));
+
+                if (similarity >= arguments.getRenameThreshold()) {
+                    pairs.add(new TablePair(oldTable, newTable, similarity));
+                }
+            }
+        }
+
+        Collections.sort(pairs, new Comparator<TablePair>() {
+            @Override
+            public int compare(final TablePair pair1, final TablePair pair2) {
+                return Double.compare(pair2.similarity, pair1.similarity);
+            }
+        });
+
+        @SuppressWarnings("CollectionWithoutInitialCapacity")
+        final Set<PgTable> paired = new HashSet<PgTable>();
+
+        for (final TablePair pair : pairs) {
+            if (paired.contains(pair.oldTable)
+                    || paired.contains(pair.newTable)) {
+                continue;
+            }
+
+            paired.add(pair.oldTable);
+            paired.add(pair.newTable);
+            renameTable(writer, arguments, oldSchema, newSchema,
+                    searchPathHelper, pair.oldTable, pair.newTable);
+        }
+    }
+
+    /**
+     * Outputs statements for renaming of the table and its dependent objects
+     * and renames them in the original schema.
+     *
+     * @param writer           writer the output should be written to
+     * @param arguments        object containing arguments settings
+     * @param oldSchema        original schema
+     * @param newSchema        new schema
+     * @param searchPathHelper search path helper
+     * @param oldTable         original table
+     * @param newTable         new table
+     */
+    private static void renameTable(final PrintWriter writer,
+            final PgDiffArguments arguments, final PgSchema oldSchema,
+            final PgSchema newSchema, final SearchPathHelper searchPathHelper,
+            final PgTable oldTable, final PgTable newTable) {
+        final String oldName = oldTable.getName();
+        final String newName = newTable.getName();
+
+        searchPathHelper.outputSearchPath(writer);
+        writer.println();
+        writer.println("ALTER TABLE " + PgDiffUtils.getQuotedName(oldName)
+                + " RENAME TO " + PgDiffUtils.getQuotedName(newName) + ';');
+        oldTable.setName(newName);
+
+        for (final PgIndex index : oldTable.getIndexes()) {
+            index.setTableName(newName);
+
+            final String name = getRenamedName(index.getName(), oldName,
+                    newName, !newTable.containsIndex(index.getName()));
+
+            if (name != null && index.equals(renamedIndex(
+                    newTable.getIndex(name), index.getName()))
+                    && !oldTable.containsIndex(name)) {
+                writer.println();
+                writer.println("ALTER INDEX "
+                        + PgDiffUtils.getQuotedName(index.getName())
+                        + " RENAME TO " + PgDiffUtils.getQuotedName(name)
+                        + ';');
+
+                if (index.getName().equals(oldTable.getClusterIndexName())) {
+                    oldTable.setClusterIndexName(name);
+                }
+
+                index.setName(name);
+            }
+        }
+
+        for (final PgConstraint constraint : oldTable.getConstraints()) {
+            constraint.setTableName(newName);
+
+            final String name = getRenamedName(constraint.getName(), oldName,
+                    newName, !newTable.containsConstraint(
+                    constraint.getName()));
+
+            if (name != null && newTable.containsConstraint(name)
+                    && !oldTable.containsConstraint(name)
+                    && constraint.getDefinition().equals(
+                    newTable.getConstraint(name).getDefinition())
+                    && arguments.isSupported(Capability.RENAME_CONSTRAINT)) {
+                writer.println();
+                writer.println("ALTER TABLE "
+                        + PgDiffUtils.getQuotedName(newName)
+                        + " RENAME CONSTRAINT "
+                        + PgDiffUtils.getQuotedName(constraint.getName())
+                        + " TO " + PgDiffUtils.getQuotedName(name) + ';');
+                constraint.setName(name);
+            }
+        }
+
+        for (final PgTrigger trigger : oldTable.getTriggers()) {
+            trigger.setTableName(newName);
+
+            final String originalName = trigger.getName();
+            final String name = getRenamedName(originalName, oldName,
+                    newName, newTable.getTrigger(originalName) == null);
+
+            if (name == null || oldTable.getTrigger(name) != null) {
+                continue;
+            }
+
+            trigger.setName(name);
+
+            if (trigger.equals(newTable.getTrigger(name))) {
+                writer.println();
+                writer.println("ALTER TRIGGER "
+                        + PgDiffUtils.getQuotedName(originalName) + " ON "
+                        + PgDiffUtils.getQuotedName(newName) + " RENAME TO "
+                        + PgDiffUtils.getQuotedName(name) + ';');
+            } else {
+                trigger.setName(originalName);
+            }
+        }
+
+        for (final PgSequence sequence : oldSchema.getSequences()) {
+            final String ownedBy = sequence.getOwnedBy();
+
+            if (ownedBy == null || !ownedBy.startsWith(oldName + '.')) {
+                continue;
+            }
+
+            sequence.setOwnedBy(newName + ownedBy.substring(oldName.length()));
+
+            final String originalName = sequence.getName();
+            final String name = getRenamedName(originalName, oldName,
+                    newName, !newSchema.containsSequence(originalName));
+
+            if (name != null && newSchema.containsSequence(name)
+                    && !oldSchema.containsSequence(name)) {
+                writer.println();
+                writer.println("ALTER SEQUENCE "
+                        + PgDiffUtils.getQuotedName(originalName)
+                        + " RENAME TO " + PgDiffUtils.getQuotedName(name)
+                        + ';');
+                sequence.setName(name);
+                replaceSequenceReferences(oldSchema, originalName, name);
+            }
+        }
+
+        replaceTableReferences(oldSchema, oldName, newName);
+    }
+
+    /**
+     * Outputs statements for renaming of indexes that were dropped from a
+     * table while index with the same definition was added to the same table.
+     * Definitions are compared with normalized whitespace using hashed lookup
+     * of added indexes. Renamed indexes are renamed in the original schema
+     * too, so they are neither dropped nor created.
+     *
+     * @param writer           writer the output should be written to
+     * @param arguments        object containing arguments settings
+     * @param oldSchema        original schema
+     * @param newSchema        new schema
+     * @param searchPathHelper search path helper
+     */
+    public static void renameIndexes(final PrintWriter writer,
+            final PgDiffArguments arguments, final PgSchema oldSchema,
+            final PgSchema newSchema,
+            final SearchPathHelper searchPathHelper) {
+        if (!arguments.isDetectRenames() || oldSchema == null) {
+            return;
+        }
+
+        for (final PgTable newTable : newSchema.getTables()) {
+            final PgTable oldTable = oldSchema.getTable(newTable.getName());
+
+            if (oldTable == null) {
+                continue;
+            }
+
+            @SuppressWarnings("CollectionWithoutInitialCapacity")
+            final Map<String, List<String>> added =
+                    new HashMap<String, List<String>>();
+
+            for (final PgIndex index : newTable.getIndexes()) {
+                if (!oldTable.containsIndex(index.getName())) {
+                    addRenameCandidate(
+                            added, getNormalizedDefinition(index),
+                            index.getName());
+                }
+            }
+
+            if (added.isEmpty()) {
+                continue;
+            }
+
+            for (final PgIndex index : oldTable.getIndexes()) {
+                if (newTable.containsIndex(index.getName())) {
+                    continue;
+                }
+
+                final String name = takeRenameCandidate(
+                        added, getNormalizedDefinition(index));
+
+                if (name == null || oldSchema.getIndex(name) != null) {
+                    continue;
+                }
+
+                searchPathHelper.outputSearchPath(writer);
+                writer.println();
+                writer.println("ALTER INDEX "
+                        + PgDiffUtils.getQuotedName(index.getName())
+                        + " RENAME TO " + PgDiffUtils.getQuotedName(name)
+                        + ';');
+
+                if (index.getName().equals(oldTable.getClusterIndexName())) {
+                    oldTable.setClusterIndexName(name);
+                }
+
+                index.setName(name);
+            }
+        }
+    }
+
+    /**
+     * Outputs statements for renaming of constraints that were dropped from
+     * a table while constraint with the same definition was added to the
+     * same table. Definitions are compared with normalized whitespace using
+     * hashed lookup of added constraints. Renamed constraints are renamed in
+     * the original schema too, so they are neither dropped nor created.
+     * Constraints are renamed only if target server supports renaming of
+     * constraints.
+     *
+     * @param writer           writer the output should be written to
+     * @param arguments        object containing arguments settings
+     * @param oldSchema        original schema
+     * @param newSchema        new schema
+     * @param searchPathHelper search path helper
+     */
+    public static void renameConstraints(final PrintWriter writer,
+            final PgDiffArguments arguments, final PgSchema oldSchema,
+            final PgSchema newSchema,
+            final SearchPathHelper searchPathHelper) {
+        if (!arguments.isDetectRenames() || oldSchema == null
+                || !arguments.isSupported(Capability.RENAME_CONSTRAINT)) {
+            return;
+        }
+
+        for (final PgTable newTable : newSchema.getTables()) {
+            final PgTable oldTable = oldSchema.getTable(newTable.getName());
+
+            if (oldTable == null) {
+                continue;
+            }
+
+            @SuppressWarnings("CollectionWithoutInitialCapacity")
+            final Map<String, List<String>> added =
+                    new HashMap<String, List<String>>();
+
+            for (final PgConstraint constraint : newTable.getConstraints()) {
+                if (!oldTable.containsConstraint(constraint.getName())) {
+                    addRenameCandidate(added,
+                            normalizeWhitespace(constraint.getDefinition()),
+                            constraint.getName());
+                }
+            }
+
+            if (added.isEmpty()) {
+                continue;
+            }
+
+            for (final PgConstraint constraint : oldTable.getConstraints()) {
+                if (newTable.containsConstraint(constraint.getName())) {
+                    continue;
+                }
+
+                final String name = takeRenameCandidate(added,
+                        normalizeWhitespace(constraint.getDefinition()));
+
+                if (name == null || oldSchema.getIndex(name) != null) {
+                    continue;
+                }
+
+                searchPathHelper.outputSearchPath(writer);
+                writer.println();
+                writer.println("ALTER TABLE "
+                        + PgDiffUtils.getQuotedName(oldTable.getName())
+                        + " RENAME CONSTRAINT "
+                        + PgDiffUtils.getQuotedName(constraint.getName())
+                        + " TO " + PgDiffUtils.getQuotedName(name) + ';');
+                constraint.setName(name);
+            }
+        }
+    }
+
+    /**
+     * Adds name of added object to the list of names of added objects with
+     * given definition.
+     *
+     * @param added      lists of names by definitions of added objects
+     * @param definition normalized definition of the object
+     * @param name       name of the object
+     */
+    private static void addRenameCandidate(
+            final Map<String, List<String>> added, final String definition,
+            final String name) {
+        List<String> names = added.get(definition);
+
+        if (names == null) {
+            names = new ArrayList<String>(1);
+            added.put(definition, names);
+        }
+
+        names.add(name);
+    }
+
+    /**
+     * Removes and returns first name of added object with given definition.
+     *
+     * @param added      lists of names by definitions of added objects
+     * @param definition normalized definition of the object
+     *
+     * @return name or null if no added object has given definition
+     */
+    private static String takeRenameCandidate(
+            final Map<String, List<String>> added, final String definition) {
+        final List<String> names = added.get(definition);
+
+        if (names == null) {
+            return null;
+        }
+
+        final String name = names.remove(0);
+
+        if (names.isEmpty()) {
+            added.remove(definition);
+        }
+
+        return name;
+    }
+
+    /**
+     * Returns definition of the index with normalized whitespace, prefixed
+     * with UNIQUE for unique indexes.
+     *
+     * @param index index
+     *
+     * @return normalized definition
+     */
+    private static String getNormalizedDefinition(final PgIndex index) {
+        return (index.isUnique() ? "UNIQUE " : "")
+                + normalizeWhitespace(index.getDefinition());
+    }
+
+    /**
+     * Replaces every sequence of whitespace with single space and removes
+     * leading and trailing whitespace.
+     *
+     * @param text text
+     *
+     * @return normalized text
+     */
+    private static String normalizeWhitespace(final String text) {
+        return text.trim().replaceAll("\\s+", " ");
+    }
+
+    /**
+     * Outputs statements for moving of tables, sequences, views and functions
+     * that were dropped from one schema while the same object was added to
+     * another schema. Objects are matched by their fingerprint, that contains
+     * name of the object and its essential content, using hashed lookup of
+     * objects added to the new database, so the cost grows only linearly
+     * with number of schemas and objects. Moved objects are moved in the
+     * original database too, so only their remaining differences are output
+     * when the schemas are diffed. Original schemas that do not exist yet
+     * are added to the original database, so new schemas must be created
+     * before and dropped schemas must be dropped after the objects are moved.
+     *
+     * @param writer      writer the output should be written to
+     * @param arguments   object containing arguments settings
+     * @param oldDatabase original database
+     * @param newDatabase new database
+     */
+    public static void moveObjects(final PrintWriter writer,
+            final PgDiffArguments arguments, final PgDatabase oldDatabase,
+            final PgDatabase newDatabase) {
+        if (!arguments.isDetectRenames()) {
+            return;
+        }
+
+        moveTables(writer, oldDatabase, newDatabase);
+        moveSequences(writer, oldDatabase, newDatabase);
+        moveViews(writer, oldDatabase, newDatabase);
+        moveFunctions(writer, oldDatabase, newDatabase);
+    }
+
+    /**
+     * Moves tables between schemas. Indexes, primary keys and owned
+     * sequences of the table are moved together with the table.
+     *
+     * @param writer      writer the output should be written to
+     * @param oldDatabase original database
+     * @param newDatabase new database
+     */
+    private static void moveTables(final PrintWriter writer,
+            final PgDatabase oldDatabase, final PgDatabase newDatabase) {
+        @SuppressWarnings("CollectionWithoutInitialCapacity")
+        final Map<String, List<PgSchema>> added =
+                new HashMap<String, List<PgSchema>>();
+
+        for (final PgSchema newSchema : newDatabase.getSchemas()) {
+            final PgSchema oldSchema =
+                    oldDatabase.getSchema(newSchema.getName());
+
+            for (final PgTable table : newSchema.getTables()) {
+                if (oldSchema == null
+                        || !oldSchema.containsTable(table.getName())) {
+                    addMoveCandidate(added, getFingerprint(table), newSchema);
+                }
+            }
+        }
+
+        if (added.isEmpty()) {
+            return;
+        }
+
+        for (final PgSchema oldSchema
+                : new ArrayList<PgSchema>(oldDatabase.getSchemas())) {
+            final PgSchema newSchema =
+                    newDatabase.getSchema(oldSchema.getName());
+
+            for (final PgTable table
+                    : new ArrayList<PgTable>(oldSchema.getTables())) {
+                if (newSchema != null
+                        && newSchema.containsTable(table.getName())) {
+                    continue;
+                }
+
+                final PgSchema target =
+                        takeMoveCandidate(added, getFingerprint(table));
+
+                if (target == null) {
+                    continue;
+                }
+
+                final PgSchema oldTarget =
+                        getOldSchema(oldDatabase, target);
+                writeSetSchema(writer, "TABLE", oldSchema,
+                        PgDiffUtils.getQuotedName(table.getName()), target);
+                oldSchema.removeTable(table);
+                oldTarget.addTable(table);
+
+                for (final PgIndex index : table.getIndexes()) {
+                    oldSchema.removeIndex(index);
+                    oldTarget.addIndex(index);
+                }
+
+                for (final PgConstraint constraint : table.getConstraints()) {
+                    if (oldSchema.getPrimaryKeys().contains(constraint)) {
+                        oldSchema.removePrimaryKey(constraint);
+                        oldTarget.addPrimaryKey(constraint);
+                    }
+                }
+
+                for (final PgSequence sequence
+                        : new ArrayList<PgSequence>(oldSchema.getSequences())) {
+                    if (sequence.getOwnedBy() != null
+                            && sequence.getOwnedBy().startsWith(
+                            table.getName() + '.')) {
+                        oldSchema.removeSequence(sequence);
+                        oldTarget.addSequence(sequence);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves sequences between schemas.
+     *
+     * @param writer      writer the output should be written to
+     * @param oldDatabase original database
+     * @param newDatabase new database
+     */
+    private static void moveSequences(final PrintWriter writer,
+            final PgDatabase oldDatabase, final PgDatabase newDatabase) {
+        @SuppressWarnings("CollectionWithoutInitialCapacity")
+        final Map<String, List<PgSchema>> added =
+                new HashMap<String, List<PgSchema>>();
+
+        for (final PgSchema newSchema : newDatabase.getSchemas()) {
+            final PgSchema oldSchema =
+                    oldDatabase.getSchema(newSchema.getName());
+
+            for (final PgSequence sequence : newSchema.getSequences()) {
+                if (oldSchema == null
+                        || !oldSchema.containsSequence(sequence.getName())) {
+                    addMoveCandidate(
+                            added, getFingerprint(sequence), newSchema);
+                }
+            }
+        }
+
+        if (added.isEmpty()) {
+            return;
+        }
+
+        for (final PgSchema oldSchema
+                : new ArrayList<PgSchema>(oldDatabase.getSchemas())) {
+            final PgSchema newSchema =
+                    newDatabase.getSchema(oldSchema.getName());
+
+            for (final PgSequence sequence
+                    : new ArrayList<PgSequence>(oldSchema.getSequences())) {
+                if (newSchema != null
+                        && newSchema.containsSequence(sequence.getName())) {
+                    continue;
+                }
+
+                final PgSchema target =
+                        takeMoveCandidate(added, getFingerprint(sequence));
+
+                if (target != null) {
+                    writeSetSchema(writer, "SEQUENCE", oldSchema,
+                            PgDiffUtils.getQuotedName(sequence.getName()),
+                            target);
+                    oldSchema.removeSequence(sequence);
+                    getOldSchema(oldDatabase, target).addSequence(sequence);
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves views between schemas.
+     *
+     * @param writer      writer the output should be written to
+     * @param oldDatabase original database
+     * @param newDatabase new database
+     */
+    private static void moveViews(final PrintWriter writer,
+            final PgDatabase oldDatabase, final PgDatabase newDatabase) {
+        @SuppressWarnings("CollectionWithoutInitialCapacity")
+        final Map<String, List<PgSchema>> added =
+                new HashMap<String, List<PgSchema>>();
+
+        for (final PgSchema newSchema : newDatabase.getSchemas()) {
+            final PgSchema oldSchema =
+                    oldDatabase.getSchema(newSchema.getName());
+
+            for (final PgView view : newSchema.getViews()) {
+                if (oldSchema == null
+                        || !oldSchema.containsView(view.getName())) {
+                    addMoveCandidate(added, getFingerprint(view), newSchema);
+                }
+            }
+        }
+
+        if (added.isEmpty()) {
+            return;
+        }
+
+        for (final PgSchema oldSchema
+                : new ArrayList<PgSchema>(oldDatabase.getSchemas())) {
+            final PgSchema newSchema =
+                    newDatabase.getSchema(oldSchema.getName());
+
+            for (final PgView view
+                    : new ArrayList<PgView>(oldSchema.getViews())) {
+                if (newSchema != null
+                        && newSchema.containsView(view.getName())) {
+                    continue;
+                }
+
+                final PgSchema target =
+                        takeMoveCandidate(added, getFingerprint(view));
+
+                if (target != null) {
+                    writeSetSchema(writer, "VIEW", oldSchema,
+                            PgDiffUtils.getQuotedName(view.getName()),
+                            target);
+                    oldSchema.removeView(view);
+                    getOldSchema(oldDatabase, target).addView(view);
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves functions between schemas.
+     *
+     * @param writer      writer the output should be written to
+     * @param oldDatabase original database
+     * @param newDatabase new database
+     */
+    private static void moveFunctions(final PrintWriter writer,
+            final PgDatabase oldDatabase, final PgDatabase newDatabase) {
+        @SuppressWarnings("CollectionWithoutInitialCapacity")
+        final Map<String, List<PgSchema>> added =
+                new HashMap<String, List<PgSchema>>();
+
+        for (final PgSchema newSchema : newDatabase.getSchemas()) {
+            final PgSchema oldSchema =
+                    oldDatabase.getSchema(newSchema.getName());
+
+            for (final PgFunction function : newSchema.getFunctions()) {
+                if (oldSchema == null || !oldSchema.containsFunction(
+                        function.getSignature())) {
+                    addMoveCandidate(
+                            added, getFingerprint(function), newSchema);
+                }
+            }
+        }
+
+        if (added.isEmpty()) {
+            return;
+        }
+
+        for (final PgSchema oldSchema
+                : new ArrayList<PgSchema>(oldDatabase.getSchemas())) {
+            final PgSchema newSchema =
+                    newDatabase.getSchema(oldSchema.getName());
+
+            for (final PgFunction function
+                    : new ArrayList<PgFunction>(oldSchema.getFunctions())) {
+                if (newSchema != null && newSchema.containsFunction(
+                        function.getSignature())) {
+                    continue;
+                }
+
+                final PgSchema target =
+                        takeMoveCandidate(added, getFingerprint(function));
+
+                if (target != null) {
+                    writeSetSchema(writer, "FUNCTION", oldSchema,
+                            getFunctionName(function), target);
+                    oldSchema.removeFunction(function);
+                    getOldSchema(oldDatabase, target).addFunction(function);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds schema to the list of schemas containing added object with given
+     * fingerprint.
+     *
+     * @param added       lists of schemas by fingerprints of added objects
+     * @param fingerprint fingerprint of the object
+     * @param schema      schema containing the object
+     */
+    private static void addMoveCandidate(
+            final Map<String, List<PgSchema>> added, final String fingerprint,
+            final PgSchema schema) {
+        List<PgSchema> schemas = added.get(fingerprint);
+
+        if (schemas == null) {
+            schemas = new ArrayList<PgSchema>(1);
+            added.put(fingerprint, schemas);
+        }
+
+        schemas.add(schema);
+    }
+
+    /**
+     * Removes and returns first schema containing added object with given
+     * fingerprint.
+     *
+     * @param added       lists of schemas by fingerprints of added objects
+     * @param fingerprint fingerprint of the object
+     *
+     * @return schema or null if no added object has given fingerprint
+     */
+    private static PgSchema takeMoveCandidate(
+            final Map<String, List<PgSchema>> added,
+            final String fingerprint) {
+        final List<PgSchema> schemas = added.get(fingerprint);
+
+        if (schemas == null) {
+            return null;
+        }
+
+        final PgSchema schema = schemas.remove(0);
+
+        if (schemas.isEmpty()) {
+            added.remove(fingerprint);
+        }
+
+        return schema;
+    }
+
+    /**
+     * Returns original schema with the same name as the new schema. If the
+     * original database does not contain such schema, empty schema with
+     * comment of the new schema is added to it, as the schema was already
+     * created.
+     *
+     * @param oldDatabase original database
+     * @param newSchema   new schema
+     *
+     * @return original schema
+     */
+    private static PgSchema getOldSchema(final PgDatabase oldDatabase,
+            final PgSchema newSchema) {
+        PgSchema oldSchema = oldDatabase.getSchema(newSchema.getName());
+
+        if (oldSchema == null) {
+            oldSchema = new PgSchema(newSchema.getName());
+            oldSchema.setAuthorization(newSchema.getAuthorization());
+            oldSchema.setComment(newSchema.getComment());
+            oldDatabase.addSchema(oldSchema);
+        }
+
+        return oldSchema;
+    }
+
+    /**
+     * Outputs ALTER ... SET SCHEMA statement.
+     *
+     * @param writer    writer the output should be written to
+     * @param type      type of the object
+     * @param oldSchema schema the object is moved from
+     * @param name      quoted name of the object
+     * @param newSchema schema the object is moved to
+     */
+    private static void writeSetSchema(final PrintWriter writer,
+            final String type, final PgSchema oldSchema, final String name,
+            final PgSchema newSchema) {
+        writer.println();
+        writer.println("ALTER " + type + ' '
+                + PgDiffUtils.getQuotedName(oldSchema.getName(), true) + '.'
+                + name + " SET SCHEMA "
+                + PgDiffUtils.getQuotedName(newSchema.getName(), true) + ';');
+    }
+
+    /**
+     * Returns quoted name of the function together with its arguments.
+     *
+     * @param function function
+     *
+     * @return name of the function with arguments
+     */
+    private static String getFunctionName(final PgFunction function) {
+        final StringBuilder sbName = new StringBuilder(100);
+        sbName.append(PgDiffUtils.getQuotedName(function.getName()));
+        sbName.append('(');
+
+        boolean addComma = false;
+
+        for (final PgFunction.Argument argument : function.getArguments()) {
+            if ("OUT".equalsIgnoreCase(argument.getMode())) {
+                continue;
+            }
+
+            if (addComma) {
+                sbName.append(", ");
+            }
+
+            sbName.append(argument.getDeclaration(false));
+
+            addComma = true;
+        }
+
+        sbName.append(')');
+
+        return sbName.toString();
+    }
+
+    /**
+     * Returns fingerprint of the table that consists of its name and names
+     * and types of its columns.
+     *
+     * @param table table
+     *
+     * @return fingerprint
+     */
+    private static String getFingerprint(final PgTable table) {
+        final StringBuilder sbFingerprint = new StringBuilder(100);
+        sbFingerprint.append(table.getName());
+
+        for (final PgColumn column : table.getColumns()) {
+            sbFingerprint.append('\n');
+            sbFingerprint.append(column.getName());
+            sbFingerprint.append(' ');
+            sbFingerprint.append(column.getType());
+        }
+
+        return sbFingerprint.toString();
+    }
+
+    /**
+     * Returns fingerprint of the sequence that consists of its name and
+     * parameters except the start value.
+     *
+     * @param sequence sequence
+     *
+     * @return fingerprint
+     */
+    private static String getFingerprint(final PgSequence sequence) {
+        return sequence.getName() + '\n' + sequence.getIncrement() + '\n'
+                + sequence.getMinValue() + '\n' + sequence.getMaxValue()
+                + '\n' + sequence.getCache() + '\n' + sequence.isCycle();
+    }
+
+    /**
+     * Returns fingerprint of the view that consists of its name and query.
+     *
+     * @param view view
+     *
+     * @return fingerprint
+     */
+    private static String getFingerprint(final PgView view) {
+        return view.getName() + '\n' + view.getQuery().trim();
+    }
+
+    /**
+     * Returns fingerprint of the function that consists of its signature and
+     * body.
+     *
+     * @param function function
+     *
+     * @return fingerprint
+     */
+    private static String getFingerprint(final PgFunction function) {
+        return function.getSignature() + '\n' + function.getBody().trim();
+    }
+
+    /**
+     * Returns name of dependent object with original table name replaced by
+     * new table name.
+     *
+     * @param name      name of the dependent object
+     * @param oldName   original name of the table
+     * @param newName   new name of the table
+     * @param candidate whether the object is candidate for renaming
+     *
+     * @return new name or null if the name does not contain table name or
+     *         the object is not candidate for renaming
+     */
+    private static String getRenamedName(final String name,
+            final String oldName, final String newName,
+            final boolean candidate) {
+        if (!candidate || !name.contains(oldName)) {
+            return null;
+        }
+
+        return name.replace(oldName, newName);
+    }
+
+    /**
+     * Returns copy of the index with given name, so that it can be compared
+     * with index that has not been renamed yet.
+     *
+     * @param index index or null
+     * @param name  name the copy should have
+     *
+     * @return copy of the index or null if the index is null
+     */
+    private static PgIndex renamedIndex(final PgIndex index,
+            final String name) {
+        if (index == null) {
+            return null;
+        }
+
+        final PgIndex copy = new PgIndex(name);
+        copy.setTableName(index.getTableName());
+        copy.setDefinition(index.getDefinition());
+        copy.setUnique(index.isUnique());
+
+        return copy;
+    }
+
+    /**
+     * Replaces references to the renamed sequence in default values of
+     * columns of the original schema, as server updates them automatically.
+     *
+     * @param oldSchema original schema
+     * @param oldName   original name of the sequence
+     * @param newName   new name of the sequence
+     */
+    private static void replaceSequenceReferences(final PgSchema oldSchema,
+            final String oldName, final String newName) {
+        final Pattern pattern = Pattern.compile(
+                "'" + Pattern.quote(PgDiffUtils.getQuotedName(oldName)) + "'");
+
+        for (final PgTable table : oldSchema.getTables()) {
+            for (final PgColumn column : table.getColumns()) {
+                if (column.getDefaultValue() != null) {
+                    column.setDefaultValue(pattern.matcher(
+                            column.getDefaultValue()).replaceAll(
+                            Matcher.quoteReplacement("'"
+                            + PgDiffUtils.getQuotedName(newName) + "'")));
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces references to the renamed table in foreign keys of the
+     * original schema, as server updates them automatically.
+     *
+     * @param oldSchema original schema
+     * @param oldName   original name of the table
+     * @param newName   new name of the table
+     */
+    private static void replaceTableReferences(final PgSchema oldSchema,
+            final String oldName, final String newName) {
+        final Pattern pattern = Pattern.compile("(\\bREFERENCES\\s+)"
+                + Pattern.quote(PgDiffUtils.getQuotedName(oldName))
+                + "(\\s*\\()", Pattern.CASE_INSENSITIVE);
+        final String replacement = "$1" + Matcher.quoteReplacement(
+                PgDiffUtils.getQuotedName(newName)) + "$2";
+
+        for (final PgTable table : oldSchema.getTables()) {
+            for (final PgConstraint constraint : table.getConstraints()) {
+                final Matcher matcher =
+                        pattern.matcher(constraint.getDefinition());
+
+                if (matcher.find()) {
+                    constraint.setDefinition(matcher.replaceAll(replacement));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns structural features of the table that are compared when
+     * looking for renamed tables.
+     *
+     * @param table table
+     *
+     * @return set of features
+     */
+    private static Set<String> getFeatures(final PgTable table) {
+        @SuppressWarnings("CollectionWithoutInitialCapacity")
+        final Set<String> features = new HashSet<String>();
+
+        for (final PgColumn column : table.getColumns()) {
+            features.add("column " + column.getName() + ' ' + column.getType()
+                    + (column.getNullValue() ? "" : " NOT NULL"));
+
+            if (column.getComment() != null) {
+                features.add("column comment " + column.getName() + ' '
+                        + column.getComment());
+            }
+        }
+
+        for (final PgConstraint constraint : table.getConstraints()) {
+            features.add("constraint " + constraint.getDefinition());
+        }
+
+        for (final PgIndex index : table.getIndexes()) {
+            features.add("index " + (index.isUnique() ? "UNIQUE " : "")
+                    + index.getDefinition());
+        }
+
+        if (table.getComment() != null) {
+            features.add("comment " + table.getComment());
+        }
+
+        return features;
+    }
+
+    /**
+     * Returns similarity of the feature sets, that is number of common
+     * features divided by number of all features.
+     *
+     * @param features1 first set of features
+     * @param features2 second set of features
+     *
+     * @return similarity from 0 to 1
+     */
+    private static double getSimilarity(final Set<String> features1,
+            final Set<String> features2) {
+        final Set<String> all = new HashSet<String>(features1);
+        all.addAll(features2);
+
+        if (all.isEmpty()) {
+            return 0;
+        }
+
+        final Set<String> common = new HashSet<String>(features1);
+        common.retainAll(features2);
+
+        return (double) common.size() / all.size();
+    }
+
+    /**
+     * Creates a new instance of PgDiffRenames.
+     */
+    private PgDiffRenames() {
+    }
+
+    /**
+     * Pair of original and new table with their similarity.
+     */
+    private static class TablePair {
+
+        /**
+         * Original table.
+         */
+        private final PgTable oldTable;
+        /**
+         * New table.
+         */
+        private final PgTable newTable;
+        /**
+         * Similarity of the tables.
+         */
+        private final double similarity;
+
+        /**
+         * Creates a new TablePair.
+         *
+         * @param oldTable   {@link #oldTable}
+         * @param newTable   {@link #newTable}
+         * @param similarity {@link #similarity}
+         */
+        TablePair(final PgTable oldTable, final PgTable newTable,
+                final double similarity) {
+            this.oldTable = oldTable;
+            this.newTable = newTable;
+            this.similarity = similarity;
+        }
+    }
+}
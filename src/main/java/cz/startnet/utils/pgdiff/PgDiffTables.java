@@ -5,17 +5,24 @@
  */
 package cz.startnet.utils.pgdiff;
 
+import cz.startnet.utils.pgdiff.parsers.ParserUtils;
 import cz.startnet.utils.pgdiff.schema.PgColumn;
 import cz.startnet.utils.pgdiff.schema.PgColumnUtils;
+import cz.startnet.utils.pgdiff.schema.PgConstraint;
+import cz.startnet.utils.pgdiff.schema.PgIndex;
 import cz.startnet.utils.pgdiff.schema.PgSchema;
 import cz.startnet.utils.pgdiff.schema.PgTable;
+import cz.startnet.utils.pgdiff.schema.PgView;
 import cz.startnet.utils.pgdiff.util.ColumnComparator;
 import java.io.PrintWriter;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 /**
  * Diffs tables.
@@ -24,6 +31,11 @@ import java.util.Map;
  */
 public class PgDiffTables {
 
+    /**
+     * Suffix of shadow column that replaces column which type is changed.
+     */
+    private static final String SHADOW_SUFFIX = "_new";
+
     /**
      * Outputs statements for creation of clusters.
      *
@@ -69,13 +81,16 @@ public class PgDiffTables {
      * Outputs statements for dropping of clusters.
      *
      * @param writer           writer the output should be written to
+     * @param arguments        object containing arguments settings
      * @param oldSchema        original schema
      * @param newSchema        new schema
      * @param searchPathHelper search path helper
+     * @param deferred         statements that are run outside transaction
      */
     public static void createClusters(final PrintWriter writer,
-            final PgSchema oldSchema, final PgSchema newSchema,
-            final SearchPathHelper searchPathHelper) {
+            final PgDiffArguments arguments, final PgSchema oldSchema,
+            final PgSchema newSchema, final SearchPathHelper searchPathHelper,
+            final DeferredStatements deferred) {
         for (final PgTable newTable : newSchema.getTables()) {
             final PgTable oldTable;
 
@@ -98,15 +113,56 @@ public class PgDiffTables {
             if ((oldCluster == null && newCluster != null)
                     || (oldCluster != null && newCluster != null
                     && newCluster.compareTo(oldCluster) != 0)) {
-                searchPathHelper.outputSearchPath(writer);
-                writer.println();
-                writer.print("ALTER TABLE ");
-                writer.print(PgDiffUtils.getQuotedName(newTable.getName()));
-                writer.print(" CLUSTER ON ");
-                writer.print(PgDiffUtils.getQuotedName(newCluster));
-                writer.println(';');
+                final PrintWriter clusterWriter;
+
+                // swapped index is clustered on when it is swapped
+                if (PgDiffIndexes.isSwapIndexes(arguments) && containsIndex(
+                        PgDiffIndexes.getModifiedIndexes(oldTable, newTable),
+                        newCluster)) {
+                    continue;
+                }
+
+                // index created concurrently does not exist until deferred
+                // statements are run
+                if (arguments.isConcurrentIndexes() && oldTable != null
+                        && containsIndex(PgDiffIndexes.getNewIndexes(
+                        oldTable, newTable,
+                        !PgDiffIndexes.isSwapIndexes(arguments)),
+                        newCluster)) {
+                    clusterWriter = deferred.getWriter();
+                } else {
+                    searchPathHelper.outputSearchPath(writer);
+                    clusterWriter = writer;
+                }
+
+                clusterWriter.println();
+                clusterWriter.print("ALTER TABLE ");
+                clusterWriter.print(
+                        PgDiffUtils.getQuotedName(newTable.getName()));
+                clusterWriter.print(" CLUSTER ON ");
+                clusterWriter.print(PgDiffUtils.getQuotedName(newCluster));
+                clusterWriter.println(';');
+            }
+        }
+    }
+
+    /**
+     * Checks whether list of indexes contains index of given name.
+     *
+     * @param indexes   list of indexes
+     * @param indexName name of the index
+     *
+     * @return true if the list contains the index, otherwise false
+     */
+    private static boolean containsIndex(final List<PgIndex> indexes,
+            final String indexName) {
+        for (final PgIndex index : indexes) {
+            if (index.getName().equals(indexName)) {
+                return true;
             }
         }
+
+        return false;
     }
 
     /**
@@ -117,10 +173,12 @@ public class PgDiffTables {
      * @param oldSchema        original schema
      * @param newSchema        new schema
      * @param searchPathHelper search path helper
+     * @param deferred         statements that are run outside transaction
      */
     public static void alterTables(final PrintWriter writer,
             final PgDiffArguments arguments, final PgSchema oldSchema,
-            final PgSchema newSchema, final SearchPathHelper searchPathHelper) {
+            final PgSchema newSchema, final SearchPathHelper searchPathHelper,
+            final DeferredStatements deferred) {
         for (final PgTable newTable : newSchema.getTables()) {
             if (oldSchema == null
                     || !oldSchema.containsTable(newTable.getName())) {
@@ -128,11 +186,58 @@ public class PgDiffTables {
             }
 
             final PgTable oldTable = oldSchema.getTable(newTable.getName());
-            updateTableColumns(
-                    writer, arguments, oldTable, newTable, searchPathHelper);
-            checkWithOIDS(writer, oldTable, newTable, searchPathHelper);
-            checkInherits(writer, oldTable, newTable, searchPathHelper);
-            checkTablespace(writer, oldTable, newTable, searchPathHelper);
+            @SuppressWarnings("CollectionWithoutInitialCapacity")
+            final List<String> tableStatements = new ArrayList<String>();
+            checkWithOIDS(tableStatements, oldTable, newTable);
+            checkInherits(tableStatements, oldTable, newTable);
+            checkTablespace(tableStatements, oldTable, newTable);
+
+            if (arguments.isCoalesceAlterTable()) {
+                @SuppressWarnings("CollectionWithoutInitialCapacity")
+                final List<String> dropStatements = new ArrayList<String>();
+
+                for (final PgConstraint constraint : PgDiffConstraints.
+                        getCoalescedDropConstraints(
+                        arguments, oldTable, newTable)) {
+                    dropStatements.add('\t' + constraint.getDropClause());
+                }
+
+                final List<PgConstraint> constraints = PgDiffConstraints.
+                        getCoalescedNewConstraints(arguments, oldSchema,
+                        newSchema, oldTable, newTable);
+
+                for (final PgConstraint constraint : constraints) {
+                    tableStatements.add(
+                            '\t' + constraint.getAddClause(false));
+                }
+
+                updateTableColumns(writer, arguments, oldSchema, oldTable,
+                        newTable, dropStatements, tableStatements,
+                        searchPathHelper, deferred);
+
+                for (final PgConstraint constraint : constraints) {
+                    final String commentSQL = constraint.getCommentSQL();
+
+                    if (commentSQL != null) {
+                        writer.println();
+                        writer.println(commentSQL);
+                    }
+                }
+            } else {
+                updateTableColumns(writer, arguments, oldSchema, oldTable,
+                        newTable, Collections.<String>emptyList(),
+                        Collections.<String>emptyList(), searchPathHelper,
+                        deferred);
+
+                for (final String statement : tableStatements) {
+                    searchPathHelper.outputSearchPath(writer);
+                    writer.println();
+                    writer.println("ALTER TABLE "
+                            + PgDiffUtils.getQuotedName(newTable.getName()));
+                    writer.println(statement + ';');
+                }
+            }
+
             addAlterStatistics(writer, oldTable, newTable, searchPathHelper);
             addAlterStorage(writer, oldTable, newTable, searchPathHelper);
             alterComments(writer, oldTable, newTable, searchPathHelper);
@@ -243,13 +348,36 @@ public class PgDiffTables {
      * @param newTable            new table
      * @param dropDefaultsColumns list for storing columns for which default
      *                            value should be dropped
+     * @param notNullColumns      list for storing columns that should be set
+     *                            NOT NULL after their check constraint is
+     *                            validated
+     * @param batchedColumns      list for storing columns which existing rows
+     *                            should be filled in batches before they are
+     *                            set NOT NULL
      */
     private static void addCreateTableColumns(final List<String> statements,
             final PgDiffArguments arguments, final PgTable oldTable,
-            final PgTable newTable, final List<PgColumn> dropDefaultsColumns) {
+            final PgTable newTable, final List<PgColumn> dropDefaultsColumns,
+            final List<PgColumn> notNullColumns,
+            final List<PgColumn> batchedColumns) {
         ColumnComparator comparator = new ColumnComparator(oldTable, newTable);
         for (final PgColumn column : newTable.getColumns()) {
             if (comparator.hasNotColumn(column.getName())) {
+                if (canBackfill(arguments, oldTable, newTable, column)) {
+                    final String columnName =
+                            PgDiffUtils.getQuotedName(column.getName());
+
+                    statements.add("\tADD COLUMN " + columnName + " "
+                            + column.getType());
+                    statements.add("\tALTER COLUMN " + columnName
+                            + " SET DEFAULT " + getFillValue(arguments, column));
+                    addBatchedNotNull(statements, arguments, newTable, column,
+                            notNullColumns);
+                    batchedColumns.add(column);
+
+                    continue;
+                }
+
                 statements.add("\tADD COLUMN "
                         + column.getFullDefinition(arguments.isAddDefaults()));
 
@@ -262,6 +390,222 @@ public class PgDiffTables {
         }
     }
 
+    /**
+     * Returns value that existing rows of the column should be filled with
+     * before the column is set NOT NULL, that is default value of the column
+     * or, if default values should be added, default value of the column
+     * type.
+     *
+     * @param arguments object containing arguments settings
+     * @param column    new column
+     *
+     * @return value or null if there is no value to fill the column with
+     */
+    private static String getFillValue(final PgDiffArguments arguments,
+            final PgColumn column) {
+        if (column.getDefaultValue() != null
+                && !column.getDefaultValue().isEmpty()) {
+            return column.getDefaultValue();
+        } else if (arguments.isAddDefaults()) {
+            return PgColumnUtils.getDefaultValue(column.getType());
+        }
+
+        return null;
+    }
+
+    /**
+     * Checks whether the new column that should be NOT NULL can be filled
+     * in batches. Only columns that are added are filled, existing columns
+     * keep their NULL values and fail to be set NOT NULL on them. The column
+     * must have value to be filled with and the table must already have
+     * single column integer primary key so that it can be backfilled in key
+     * ranges. Column with non-volatile fill value is not filled in batches if
+     * the target server adds such column without rewriting the table.
+     *
+     * @param arguments object containing arguments settings
+     * @param oldTable  original table
+     * @param newTable  new table
+     * @param column    new column
+     *
+     * @return true if the column can be filled in batches, otherwise false
+     */
+    private static boolean canBackfill(final PgDiffArguments arguments,
+            final PgTable oldTable, final PgTable newTable,
+            final PgColumn column) {
+        if (oldTable.containsColumn(column.getName())) {
+            return false;
+        }
+
+        final String fillValue = getFillValue(arguments, column);
+
+        if (!arguments.isBatchedDefaults() || column.getNullValue()
+                || fillValue == null
+                || !arguments.isSupported(Capability.COMMIT_IN_DO)) {
+            return false;
+        }
+
+        if (arguments.isSupported(Capability.FAST_DEFAULT)
+                && PgColumnUtils.isNonVolatileDefault(fillValue)) {
+            return false;
+        }
+
+        final String keyColumnName =
+                PgDiffBackfills.getKeyColumnName(newTable);
+
+        return keyColumnName != null
+                && !keyColumnName.equals(column.getName())
+                && oldTable.containsColumn(keyColumnName);
+    }
+
+    /**
+     * Adds check constraint that is used to set the column NOT NULL online,
+     * if it should be used, for column that is filled in batches. Otherwise
+     * the column is set NOT NULL directly after it is filled.
+     *
+     * @param statements     list of statements
+     * @param arguments      object containing arguments settings
+     * @param table          new table
+     * @param column         new column
+     * @param notNullColumns list for storing columns that should be set NOT
+     *                       NULL after their check constraint is validated
+     */
+    private static void addBatchedNotNull(final List<String> statements,
+            final PgDiffArguments arguments, final PgTable table,
+            final PgColumn column, final List<PgColumn> notNullColumns) {
+        if (isOnlineNotNull(arguments)) {
+            statements.add("\tADD CONSTRAINT "
+                    + PgDiffUtils.getQuotedName(getNotNullCheckName(
+                    table, column)) + " CHECK ("
+                    + PgDiffUtils.getQuotedName(column.getName())
+                    + " IS NOT NULL) NOT VALID");
+            notNullColumns.add(column);
+        }
+    }
+
+    /**
+     * Outputs statements that fill existing rows of the columns in batches.
+     * All the columns are filled in single pass over the table.
+     *
+     * @param writer         writer the output should be written to
+     * @param arguments      object containing arguments settings
+     * @param table          new table
+     * @param batchedColumns columns that should be filled in batches
+     */
+    private static void backfillColumns(final PrintWriter writer,
+            final PgDiffArguments arguments, final PgTable table,
+            final List<PgColumn> batchedColumns) {
+        final StringBuilder sbSet = new StringBuilder(100);
+        final StringBuilder sbCondition = new StringBuilder(100);
+
+        for (final PgColumn column : batchedColumns) {
+            final String columnName =
+                    PgDiffUtils.getQuotedName(column.getName());
+
+            if (sbSet.length() > 0) {
+                sbSet.append(", ");
+                sbCondition.append(" OR ");
+            }
+
+            sbSet.append(columnName);
+            sbSet.append(" = ");
+
+            if (batchedColumns.size() == 1) {
+                sbSet.append(getFillValue(arguments, column));
+            } else {
+                sbSet.append("coalesce(");
+                sbSet.append(columnName);
+                sbSet.append(", ");
+                sbSet.append(getFillValue(arguments, column));
+                sbSet.append(')');
+            }
+
+            sbCondition.append(columnName);
+            sbCondition.append(" IS NULL");
+        }
+
+        if (batchedColumns.size() > 1) {
+            sbCondition.insert(0, '(');
+            sbCondition.append(')');
+        }
+
+        final String backfillName = getBackfillName(batchedColumns);
+
+        PgDiffBackfills.createProgress(writer, table, backfillName);
+        PgDiffBackfills.backfill(writer, arguments, table, backfillName,
+                sbSet.toString(), sbCondition.toString());
+    }
+
+    /**
+     * Returns name under which backfill of the columns is stored in the
+     * bookkeeping table, that is names of the columns separated by comma.
+     *
+     * @param batchedColumns columns that are filled in batches
+     *
+     * @return name of the backfill
+     */
+    private static String getBackfillName(
+            final List<PgColumn> batchedColumns) {
+        final StringBuilder sbName = new StringBuilder(50);
+
+        for (final PgColumn column : batchedColumns) {
+            if (sbName.length() > 0) {
+                sbName.append(',');
+            }
+
+            sbName.append(column.getName());
+        }
+
+        return sbName.toString();
+    }
+
+    /**
+     * Outputs statements that set the columns filled in batches NOT NULL,
+     * unless check constraints are used for that, drop default values that
+     * were added only to fill the columns and remove the backfills from the
+     * bookkeeping table.
+     *
+     * @param writer         writer the output should be written to
+     * @param arguments      object containing arguments settings
+     * @param table          new table
+     * @param batchedColumns columns that were filled in batches
+     */
+    private static void finishBackfilledColumns(final PrintWriter writer,
+            final PgDiffArguments arguments, final PgTable table,
+            final List<PgColumn> batchedColumns) {
+        @SuppressWarnings("CollectionWithoutInitialCapacity")
+        final List<String> statements = new ArrayList<String>();
+
+        for (final PgColumn column : batchedColumns) {
+            final String columnName =
+                    PgDiffUtils.getQuotedName(column.getName());
+
+            if (!isOnlineNotNull(arguments)) {
+                statements.add("\tALTER COLUMN " + columnName
+                        + " SET NOT NULL");
+            }
+
+            if (column.getDefaultValue() == null
+                    || column.getDefaultValue().isEmpty()) {
+                statements.add("\tALTER COLUMN " + columnName
+                        + " DROP DEFAULT");
+            }
+        }
+
+        if (!statements.isEmpty()) {
+            writer.println();
+            writer.println("ALTER TABLE "
+                    + PgDiffUtils.getQuotedName(table.getName()));
+
+            for (int i = 0; i < statements.size(); i++) {
+                writer.print(statements.get(i));
+                writer.println((i + 1) < statements.size() ? "," : ";");
+            }
+        }
+
+        PgDiffBackfills.dropProgress(
+                writer, table, getBackfillName(batchedColumns));
+    }
+
     /**
      * Adds statements for removal of columns to the list of statements.
      *
@@ -285,14 +629,25 @@ public class PgDiffTables {
      *
      * @param statements          list of statements
      * @param arguments           object containing arguments settings
+     * @param oldSchema           original schema
      * @param oldTable            original table
      * @param newTable            new table
      * @param dropDefaultsColumns list for storing columns for which default
      *                            value should be dropped
+     * @param notNullColumns      list for storing columns that should be set
+     *                            NOT NULL after their check constraint is
+     *                            validated
+     * @param renameStatements    list of statements for renaming of columns
+     * @param onlineTypeColumns   list for storing columns which type should
+     *                            be changed using shadow column
      */
     private static void addModifyTableColumns(final List<String> statements,
-            final PgDiffArguments arguments, final PgTable oldTable,
-            final PgTable newTable, final List<PgColumn> dropDefaultsColumns) {
+            final PgDiffArguments arguments, final PgSchema oldSchema,
+            final PgTable oldTable, final PgTable newTable,
+            final List<PgColumn> dropDefaultsColumns,
+            final List<PgColumn> notNullColumns,
+            final List<String> renameStatements,
+            final List<PgColumn> onlineTypeColumns) {
         ColumnComparator comparator = new ColumnComparator(oldTable, newTable);
         for (final PgColumn newColumn : newTable.getColumns()) {
             if (comparator.hasNotColumn(newColumn.getName())) {
@@ -306,7 +661,7 @@ public class PgDiffTables {
                     PgDiffUtils.getQuotedName(newColumn.getName());
 
             if (!oldColumn.getName().equals(newColumn.getName())) {
-                statements.add("\tRENAME COLUMN " + oldColumnName + " TO " + newColumnName + " /* "
+                renameStatements.add("\tRENAME COLUMN " + oldColumnName + " TO " + newColumnName + " /* "
                         + MessageFormat.format(
                         Resources.getString("RenameColumn"),
                         newTable.getName(), oldColumn.getName(),
@@ -314,6 +669,19 @@ public class PgDiffTables {
             }
             
             if (!oldColumn.getType().equals(newColumn.getType())) {
+                // default and nullability are set after the columns are
+                // swapped
+                if (arguments.isOnlineTypeChange()
+                        && PgColumnUtils.isRewriteRequired(
+                        oldColumn.getType(), newColumn.getType())
+                        && arguments.isSupported(Capability.COMMIT_IN_DO)
+                        && canChangeTypeOnline(
+                        oldSchema, newTable, newColumn)) {
+                    onlineTypeColumns.add(newColumn);
+
+                    continue;
+                }
+
                 statements.add("\tALTER COLUMN " + newColumnName + " TYPE "
                         + newColumn.getType() + " /* "
                         + MessageFormat.format(
@@ -355,44 +723,297 @@ public class PgDiffTables {
                         }
                     }
 
-                    statements.add("\tALTER COLUMN " + newColumnName
-                            + " SET NOT NULL");
+                    if (isOnlineNotNull(arguments)) {
+                        statements.add("\tADD CONSTRAINT "
+                                + PgDiffUtils.getQuotedName(getNotNullCheckName(
+                                newTable, newColumn)) + " CHECK ("
+                                + newColumnName + " IS NOT NULL) NOT VALID");
+                        notNullColumns.add(newColumn);
+                    } else {
+                        statements.add("\tALTER COLUMN " + newColumnName
+                                + " SET NOT NULL");
+                    }
                 }
             }
         }
     }
 
+    /**
+     * Checks whether columns should be set NOT NULL using validated check
+     * constraint, which avoids scanning the table under exclusive lock only
+     * if the server uses the check constraint.
+     *
+     * @param arguments object containing arguments settings
+     *
+     * @return true if columns should be set NOT NULL using check constraint,
+     *         otherwise false
+     */
+    private static boolean isOnlineNotNull(final PgDiffArguments arguments) {
+        return arguments.isOnlineNotNull()
+                && arguments.isSupported(Capability.NOT_NULL_FROM_CHECK);
+    }
+
+    /**
+     * Checks whether type of the column can be changed using shadow column.
+     * The table must have single column integer primary key so that it can
+     * be backfilled in key ranges. The column must not be the primary key
+     * and must not be used by indexes and constraints as these would be
+     * dropped together with the original column. Columns using sequences
+     * are not supported either as owned sequence would be dropped too. The
+     * column must not be used by views of the original schema, as the
+     * original column could not be dropped after the backfill.
+     *
+     * @param oldSchema original schema
+     * @param table     new table
+     * @param column    new column
+     *
+     * @return true if type of the column can be changed online, otherwise
+     *         false
+     */
+    private static boolean canChangeTypeOnline(final PgSchema oldSchema,
+            final PgTable table, final PgColumn column) {
+        final String keyColumnName = PgDiffBackfills.getKeyColumnName(table);
+
+        if (keyColumnName == null || keyColumnName.equals(column.getName())
+                || column.getDefaultValue() != null
+                && column.getDefaultValue().toLowerCase(Locale.ENGLISH).
+                contains("nextval(")) {
+            return false;
+        }
+
+        final Pattern pattern = Pattern.compile("(^|[^\\w$])\"?"
+                + Pattern.quote(column.getName()) + "\"?($|[^\\w$])",
+                Pattern.CASE_INSENSITIVE);
+
+        for (final PgIndex index : table.getIndexes()) {
+            if (pattern.matcher(index.getDefinition()).find()) {
+                return false;
+            }
+        }
+
+        for (final PgConstraint constraint : table.getConstraints()) {
+            if (pattern.matcher(constraint.getDefinition()).find()) {
+                return false;
+            }
+        }
+
+        for (final PgView view : oldSchema.getViews()) {
+            if (view.getReferencedRelations().contains(table.getName())
+                    && pattern.matcher(view.getQuery()).find()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Outputs statements that change type of the column using shadow column.
+     * The shadow column with the new type is added and trigger keeps it in
+     * sync with the original column. Existing rows are backfilled in batches
+     * and then the original column is dropped and the shadow column is
+     * renamed to its name in single transaction. Statements before the swap
+     * can be run again if the backfill is interrupted.
+     *
+     * @param writer    writer the output should be written to
+     * @param arguments object containing arguments settings
+     * @param table     new table
+     * @param column    new column
+     */
+    private static void changeTypeOnline(final PrintWriter writer,
+            final PgDiffArguments arguments, final PgTable table,
+            final PgColumn column) {
+        final String quotedTableName =
+                PgDiffUtils.getQuotedName(table.getName());
+        final String columnName = PgDiffUtils.getQuotedName(column.getName());
+        final String shadowName = PgDiffUtils.getQuotedName(
+                PgDiffUtils.getTemporaryName(column.getName(), SHADOW_SUFFIX));
+        final String syncName = PgDiffUtils.getQuotedName(
+                ParserUtils.generateName(table.getName() + "_",
+                Collections.singletonList(column.getName()), "_sync"));
+        final String checkName = PgDiffUtils.getQuotedName(
+                getNotNullCheckName(table, column));
+
+        writer.println();
+        writer.println("ALTER TABLE " + quotedTableName);
+        writer.println("\tADD COLUMN IF NOT EXISTS " + shadowName + " "
+                + column.getType() + ";");
+        writer.println();
+        writer.println("CREATE OR REPLACE FUNCTION " + syncName
+                + "() RETURNS trigger AS $$");
+        writer.println("BEGIN");
+        writer.println("\tNEW." + shadowName + " := NEW." + columnName + ";");
+        writer.println("\tRETURN NEW;");
+        writer.println("END;");
+        writer.println("$$ LANGUAGE plpgsql;");
+        writer.println();
+        writer.println("DROP TRIGGER IF EXISTS " + syncName + " ON "
+                + quotedTableName + ";");
+        writer.println();
+        writer.println("CREATE TRIGGER " + syncName);
+        writer.println("\tBEFORE INSERT OR UPDATE ON " + quotedTableName);
+        writer.println("\tFOR EACH ROW");
+        writer.println("\tEXECUTE PROCEDURE " + syncName + "();");
+
+        PgDiffBackfills.createProgress(writer, table, column.getName());
+        PgDiffBackfills.backfill(writer, arguments, table, column.getName(),
+                shadowName + " = " + columnName, null);
+
+        if (!column.getNullValue()) {
+            writer.println();
+            writer.println("ALTER TABLE " + quotedTableName);
+            writer.println("\tDROP CONSTRAINT IF EXISTS " + checkName + ",");
+            writer.println("\tADD CONSTRAINT " + checkName + " CHECK ("
+                    + shadowName + " IS NOT NULL) NOT VALID;");
+            writer.println();
+            writer.println("ALTER TABLE " + quotedTableName);
+            writer.println("\tVALIDATE CONSTRAINT " + checkName + ";");
+        }
+
+        writer.println();
+        writer.println("START TRANSACTION;");
+        writer.println();
+        writer.println("DROP TRIGGER " + syncName + " ON " + quotedTableName
+                + ";");
+        writer.println();
+        writer.println("DROP FUNCTION " + syncName + "();");
+        writer.println();
+        writer.println("ALTER TABLE " + quotedTableName);
+        writer.println("\tDROP COLUMN " + columnName + ";");
+        writer.println();
+        writer.println("ALTER TABLE " + quotedTableName);
+        writer.println("\tRENAME COLUMN " + shadowName + " TO " + columnName
+                + ";");
+
+        @SuppressWarnings("CollectionWithoutInitialCapacity")
+        final List<String> statements = new ArrayList<String>();
+
+        if (column.getDefaultValue() != null) {
+            statements.add("\tALTER COLUMN " + columnName + " SET DEFAULT "
+                    + column.getDefaultValue());
+        }
+
+        if (!column.getNullValue()) {
+            statements.add("\tALTER COLUMN " + columnName + " SET NOT NULL");
+            statements.add("\tDROP CONSTRAINT " + checkName);
+        }
+
+        if (column.getStatistics() != null) {
+            statements.add("\tALTER COLUMN " + columnName + " SET STATISTICS "
+                    + column.getStatistics());
+        }
+
+        if (column.getStorage() != null) {
+            statements.add("\tALTER COLUMN " + columnName + " SET STORAGE "
+                    + column.getStorage());
+        }
+
+        if (!statements.isEmpty()) {
+            writer.println();
+            writer.println("ALTER TABLE " + quotedTableName);
+
+            for (int i = 0; i < statements.size(); i++) {
+                writer.print(statements.get(i));
+                writer.println((i + 1) < statements.size() ? "," : ";");
+            }
+        }
+
+        if (column.getComment() != null) {
+            writer.println();
+            writer.println("COMMENT ON COLUMN " + quotedTableName + "."
+                    + columnName + " IS " + column.getComment() + ";");
+        }
+
+        PgDiffBackfills.dropProgress(writer, table, column.getName());
+
+        writer.println();
+        writer.println("COMMIT TRANSACTION;");
+    }
+
+    /**
+     * Returns name of temporary check constraint that is used to set the
+     * column NOT NULL without scanning the table under exclusive lock.
+     *
+     * @param table  table
+     * @param column column
+     *
+     * @return name of the check constraint
+     */
+    private static String getNotNullCheckName(final PgTable table,
+            final PgColumn column) {
+        return ParserUtils.generateName(table.getName() + "_",
+                Collections.singletonList(column.getName()),
+                "_not_null_check");
+    }
+
+    /**
+     * Outputs statements that validate check constraints of the columns, set
+     * the columns NOT NULL and drop the check constraints. The columns are
+     * set NOT NULL in single statement so that the table is locked
+     * exclusively only once. Validation does
+     * not block writes to the table and PostgreSQL 12 and newer uses the
+     * validated check constraint instead of scanning the table when setting
+     * the column NOT NULL.
+     *
+     * @param writer         writer the output should be written to
+     * @param table          new table
+     * @param notNullColumns columns that should be set NOT NULL
+     */
+    private static void setNotNullOnline(final PrintWriter writer,
+            final PgTable table, final List<PgColumn> notNullColumns) {
+        final String quotedTableName =
+                PgDiffUtils.getQuotedName(table.getName());
+
+        for (final PgColumn column : notNullColumns) {
+            writer.println();
+            writer.println("ALTER TABLE " + quotedTableName);
+            writer.println("\tVALIDATE CONSTRAINT " + PgDiffUtils.getQuotedName(
+                    getNotNullCheckName(table, column)) + ";");
+        }
+
+        writer.println();
+        writer.println("ALTER TABLE " + quotedTableName);
+
+        for (int i = 0; i < notNullColumns.size(); i++) {
+            writer.print("\tALTER COLUMN ");
+            writer.print(PgDiffUtils.getQuotedName(
+                    notNullColumns.get(i).getName()));
+            writer.print(" SET NOT NULL");
+            writer.println((i + 1) < notNullColumns.size() ? "," : ";");
+        }
+
+        writer.println();
+        writer.println("ALTER TABLE " + quotedTableName);
+
+        for (int i = 0; i < notNullColumns.size(); i++) {
+            writer.print("\tDROP CONSTRAINT ");
+            writer.print(PgDiffUtils.getQuotedName(
+                    getNotNullCheckName(table, notNullColumns.get(i))));
+            writer.println((i + 1) < notNullColumns.size() ? "," : ";");
+        }
+    }
+
     /**
      * Checks whether there is a discrepancy in INHERITS for original and new
-     * table.
+     * table and adds statements for its fixing to the list of statements.
      *
-     * @param writer           writer the output should be written to
-     * @param oldTable         original table
-     * @param newTable         new table
-     * @param searchPathHelper search path helper
+     * @param statements list of statements
+     * @param oldTable   original table
+     * @param newTable   new table
      */
-    private static void checkInherits(final PrintWriter writer,
-            final PgTable oldTable, final PgTable newTable,
-            final SearchPathHelper searchPathHelper) {
+    private static void checkInherits(final List<String> statements,
+            final PgTable oldTable, final PgTable newTable) {
         for (final String tableName : oldTable.getInherits()) {
             if (!newTable.getInherits().contains(tableName)) {
-                searchPathHelper.outputSearchPath(writer);
-                writer.println();
-                writer.println("ALTER TABLE "
-                        + PgDiffUtils.getQuotedName(newTable.getName()));
-                writer.println("\tNO INHERIT "
-                        + PgDiffUtils.getQuotedName(tableName) + ';');
+                statements.add(
+                        "\tNO INHERIT " + PgDiffUtils.getQuotedName(tableName));
             }
         }
 
         for (final String tableName : newTable.getInherits()) {
             if (!oldTable.getInherits().contains(tableName)) {
-                searchPathHelper.outputSearchPath(writer);
-                writer.println();
-                writer.println("ALTER TABLE "
-                        + PgDiffUtils.getQuotedName(newTable.getName()));
-                writer.println("\tINHERIT "
-                        + PgDiffUtils.getQuotedName(tableName) + ';');
+                statements.add(
+                        "\tINHERIT " + PgDiffUtils.getQuotedName(tableName));
             }
         }
     }
@@ -402,58 +1023,45 @@ public class PgDiffTables {
      * add OIDS to existing table so we do not create SQL statement for addition
      * of OIDS but we issue warning.
      *
-     * @param writer           writer the output should be written to
-     * @param oldTable         original table
-     * @param newTable         new table
-     * @param searchPathHelper search path helper
+     * @param statements list of statements
+     * @param oldTable   original table
+     * @param newTable   new table
      */
-    private static void checkWithOIDS(final PrintWriter writer,
-            final PgTable oldTable, final PgTable newTable,
-            final SearchPathHelper searchPathHelper) {
+    private static void checkWithOIDS(final List<String> statements,
+            final PgTable oldTable, final PgTable newTable) {
         if (oldTable.getWith() == null && newTable.getWith() == null
                 || oldTable.getWith() != null
                 && oldTable.getWith().equals(newTable.getWith())) {
             return;
         }
 
-        searchPathHelper.outputSearchPath(writer);
-        writer.println();
-        writer.println("ALTER TABLE "
-                + PgDiffUtils.getQuotedName(newTable.getName()));
-
         if (newTable.getWith() == null
                 || "OIDS=false".equalsIgnoreCase(newTable.getWith())) {
-            writer.println("\tSET WITHOUT OIDS;");
+            statements.add("\tSET WITHOUT OIDS");
         } else if ("OIDS".equalsIgnoreCase(newTable.getWith())
                 || "OIDS=true".equalsIgnoreCase(newTable.getWith())) {
-            writer.println("\tSET WITH OIDS;");
+            statements.add("\tSET WITH OIDS");
         } else {
-            writer.println("\tSET " + newTable.getWith() + ";");
+            statements.add("\tSET " + newTable.getWith());
         }
     }
 
     /**
      * Checks tablespace modification.
      *
-     * @param writer           writer
-     * @param oldTable         old table
-     * @param newTable         new table
-     * @param searchPathHelper search path helper
+     * @param statements list of statements
+     * @param oldTable   old table
+     * @param newTable   new table
      */
-    private static void checkTablespace(final PrintWriter writer,
-            final PgTable oldTable, final PgTable newTable,
-            final SearchPathHelper searchPathHelper) {
+    private static void checkTablespace(final List<String> statements,
+            final PgTable oldTable, final PgTable newTable) {
         if (oldTable.getTablespace() == null && newTable.getTablespace() == null
                 || oldTable.getTablespace() != null
                 && oldTable.getTablespace().equals(newTable.getTablespace())) {
             return;
         }
 
-        searchPathHelper.outputSearchPath(writer);
-        writer.println();
-        writer.println("ALTER TABLE "
-                + PgDiffUtils.getQuotedName(newTable.getName()));
-        writer.println("\tTABLESPACE " + newTable.getTablespace() + ';');
+        statements.add("\tTABLESPACE " + newTable.getTablespace());
     }
 
     /**
@@ -507,26 +1115,63 @@ public class PgDiffTables {
      *
      * @param writer           writer the output should be written to
      * @param arguments        object containing arguments settings
+     * @param oldSchema        original schema
      * @param oldTable         original table
      * @param newTable         new table
+     * @param dropStatements   statements that should be added to the
+     *                         beginning of the same ALTER TABLE statement
+     * @param tableStatements  other statements that should be added to the
+     *                         same ALTER TABLE statement
      * @param searchPathHelper search path helper
+     * @param deferred         statements that are run outside transaction
      */
     private static void updateTableColumns(final PrintWriter writer,
-            final PgDiffArguments arguments, final PgTable oldTable,
-            final PgTable newTable, final SearchPathHelper searchPathHelper) {
-        @SuppressWarnings("CollectionWithoutInitialCapacity")
-        final List<String> statements = new ArrayList<String>();
+            final PgDiffArguments arguments, final PgSchema oldSchema,
+            final PgTable oldTable, final PgTable newTable,
+            final List<String> dropStatements,
+            final List<String> tableStatements,
+            final SearchPathHelper searchPathHelper,
+            final DeferredStatements deferred) {
+        final List<String> statements = new ArrayList<String>(dropStatements);
         @SuppressWarnings("CollectionWithoutInitialCapacity")
         final List<PgColumn> dropDefaultsColumns = new ArrayList<PgColumn>();
+        @SuppressWarnings("CollectionWithoutInitialCapacity")
+        final List<PgColumn> notNullColumns = new ArrayList<PgColumn>();
+        @SuppressWarnings("CollectionWithoutInitialCapacity")
+        final List<PgColumn> onlineTypeColumns = new ArrayList<PgColumn>();
+        @SuppressWarnings("CollectionWithoutInitialCapacity")
+        final List<PgColumn> batchedColumns = new ArrayList<PgColumn>();
+        final List<String> renameStatements;
+
+        // RENAME cannot be combined with other actions, so it has to be
+        // output separately when the statements are coalesced
+        if (arguments.isCoalesceAlterTable()) {
+            renameStatements = new ArrayList<String>(1);
+        } else {
+            renameStatements = statements;
+        }
+
         addDropTableColumns(statements, oldTable, newTable);
-        addCreateTableColumns(
-                statements, arguments, oldTable, newTable, dropDefaultsColumns);
-        addModifyTableColumns(
-                statements, arguments, oldTable, newTable, dropDefaultsColumns);
+        addCreateTableColumns(statements, arguments, oldTable, newTable,
+                dropDefaultsColumns, notNullColumns, batchedColumns);
+        addModifyTableColumns(statements, arguments, oldSchema, oldTable,
+                newTable, dropDefaultsColumns, notNullColumns,
+                renameStatements, onlineTypeColumns);
+        statements.addAll(tableStatements);
+
+        final String quotedTableName =
+                PgDiffUtils.getQuotedName(newTable.getName());
+
+        if (renameStatements != statements) {
+            for (final String statement : renameStatements) {
+                searchPathHelper.outputSearchPath(writer);
+                writer.println();
+                writer.println("ALTER TABLE " + quotedTableName);
+                writer.println(statement + ';');
+            }
+        }
 
         if (!statements.isEmpty()) {
-            final String quotedTableName =
-                    PgDiffUtils.getQuotedName(newTable.getName());
             searchPathHelper.outputSearchPath(writer);
             writer.println();
             writer.println("ALTER TABLE " + quotedTableName);
@@ -549,6 +1194,25 @@ public class PgDiffTables {
                             (i + 1) < dropDefaultsColumns.size() ? "," : ";");
                 }
             }
+
+        }
+
+        if (!batchedColumns.isEmpty()) {
+            backfillColumns(
+                    deferred.getWriter(), arguments, newTable, batchedColumns);
+        }
+
+        if (!notNullColumns.isEmpty()) {
+            setNotNullOnline(deferred.getWriter(), newTable, notNullColumns);
+        }
+
+        if (!batchedColumns.isEmpty()) {
+            finishBackfilledColumns(
+                    deferred.getWriter(), arguments, newTable, batchedColumns);
+        }
+
+        for (final PgColumn column : onlineTypeColumns) {
+            changeTypeOnline(deferred.getWriter(), arguments, newTable, column);
         }
     }
 
@@ -23,12 +23,14 @@ public class PgDiffTriggers {
      * Outputs statements for creation of new triggers.
      *
      * @param writer           writer the output should be written to
+     * @param arguments        object containing arguments settings
      * @param oldSchema        original schema
      * @param newSchema        new schema
      * @param searchPathHelper search path helper
      */
     public static void createTriggers(final PrintWriter writer,
-            final PgSchema oldSchema, final PgSchema newSchema,
+            final PgDiffArguments arguments, final PgSchema oldSchema,
+            final PgSchema newSchema,
             final SearchPathHelper searchPathHelper) {
         for (final PgTable newTable : newSchema.getTables()) {
             final PgTable oldTable;
@@ -43,7 +45,9 @@ public class PgDiffTriggers {
             for (final PgTrigger trigger : getNewTriggers(oldTable, newTable)) {
                 searchPathHelper.outputSearchPath(writer);
                 writer.println();
-                writer.println(trigger.getCreationSQL());
+                writer.println(trigger.getCreationSQL(
+                        canReplaceTrigger(arguments, oldTable, newTable,
+                        trigger)));
             }
         }
     }
@@ -52,12 +56,14 @@ public class PgDiffTriggers {
      * Outputs statements for dropping triggers.
      *
      * @param writer           writer the output should be written to
+     * @param arguments        object containing arguments settings
      * @param oldSchema        original schema
      * @param newSchema        new schema
      * @param searchPathHelper search path helper
      */
     public static void dropTriggers(final PrintWriter writer,
-            final PgSchema oldSchema, final PgSchema newSchema,
+            final PgDiffArguments arguments, final PgSchema oldSchema,
+            final PgSchema newSchema,
             final SearchPathHelper searchPathHelper) {
         for (final PgTable newTable : newSchema.getTables()) {
             final PgTable oldTable;
@@ -71,6 +77,11 @@ public class PgDiffTriggers {
             // Drop triggers that no more exist or are modified
             for (final PgTrigger trigger :
                     getDropTriggers(oldTable, newTable)) {
+                if (canReplaceTrigger(arguments, oldTable, newTable,
+                        newTable.getTrigger(trigger.getName()))) {
+                    continue;
+                }
+
                 searchPathHelper.outputSearchPath(writer);
                 writer.println();
                 writer.println(trigger.getDropSQL());
@@ -104,6 +115,53 @@ public class PgDiffTriggers {
         return list;
     }
 
+    /**
+     * Checks whether modified trigger can be replaced using CREATE OR
+     * REPLACE TRIGGER instead of dropping and creating it again, so that
+     * the table is not left without the trigger. The trigger must call the
+     * same function and must not depend on columns that might be dropped,
+     * as the function and the columns are dropped before the trigger would
+     * be replaced.
+     *
+     * @param arguments object containing arguments settings
+     * @param oldTable  original table
+     * @param newTable  new table
+     * @param trigger   new trigger or null
+     *
+     * @return true if the trigger can be replaced, otherwise false
+     */
+    private static boolean canReplaceTrigger(final PgDiffArguments arguments,
+            final PgTable oldTable, final PgTable newTable,
+            final PgTrigger trigger) {
+        if (trigger == null || oldTable == null
+                || !arguments.isSupported(
+                Capability.CREATE_OR_REPLACE_TRIGGER)) {
+            return false;
+        }
+
+        final PgTrigger oldTrigger = oldTable.getTrigger(trigger.getName());
+
+        if (oldTrigger == null
+                || !oldTrigger.getFunction().equals(trigger.getFunction())) {
+            return false;
+        }
+
+        final String oldWhen = oldTrigger.getWhen();
+
+        if (oldWhen != null && !oldWhen.isEmpty()
+                && !oldWhen.equals(trigger.getWhen())) {
+            return false;
+        }
+
+        for (final String columnName : oldTrigger.getUpdateColumns()) {
+            if (!newTable.containsColumn(columnName)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
     /**
      * Returns list of triggers that should be added.
      *
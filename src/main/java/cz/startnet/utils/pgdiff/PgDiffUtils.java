@@ -475,6 +475,10 @@ public class PgDiffUtils {
         "XMLVALIDATE",
         "YEAR",
         "ZONE"};
+    /**
+     * Maximum length of identifier in PostgreSQL.
+     */
+    private static final int MAX_NAME_LENGTH = 63;
 
     /**
      * If name contains only lower case characters and digits and is not
@@ -528,6 +532,76 @@ public class PgDiffUtils {
         return getQuotedName(name, false);
     }
 
+    /**
+     * Returns name of temporary object derived from name of the object. The
+     * name is shortened if needed so that the temporary name is not truncated
+     * by PostgreSQL.
+     *
+     * @param name   name of the object
+     * @param suffix suffix of the temporary name
+     *
+     * @return temporary name
+     */
+    public static String getTemporaryName(final String name,
+            final String suffix) {
+        final int maxLength = MAX_NAME_LENGTH - suffix.length();
+
+        if (name.length() > maxLength) {
+            return name.substring(0, maxLength) + suffix;
+        }
+
+        return name + suffix;
+    }
+
+    /**
+     * Returns JSON string containing the value.
+     *
+     * @param value value or null
+     *
+     * @return JSON string or null literal
+     */
+    public static String getJsonString(final String value) {
+        if (value == null) {
+            return "null";
+        }
+
+        final StringBuilder sbString = new StringBuilder(value.length() + 2);
+        sbString.append('"');
+
+        for (int i = 0; i < value.length(); i++) {
+            final char chr = value.charAt(i);
+
+            switch (chr) {
+                case '"':
+                    sbString.append("\\\"");
+                    break;
+                case '\\':
+                    sbString.append("\\\\");
+                    break;
+                case '\n':
+                    sbString.append("\\n");
+                    break;
+                case '\r':
+                    sbString.append("\\r");
+                    break;
+                case '\t':
+                    sbString.append("\\t");
+                    break;
+                default:
+                    if (chr < ' ') {
+                        sbString.append(String.format(
+                                Locale.ENGLISH, "\\u%04x", (int) chr));
+                    } else {
+                        sbString.append(chr);
+                    }
+            }
+        }
+
+        sbString.append('"');
+
+        return sbString.toString();
+    }
+
     /**
      * Creates a new PgDiffUtils object.
      */
@@ -5,12 +5,17 @@
  */
 package cz.startnet.utils.pgdiff;
 
+import cz.startnet.utils.pgdiff.parsers.QueryParser;
 import cz.startnet.utils.pgdiff.schema.PgSchema;
 import cz.startnet.utils.pgdiff.schema.PgView;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Diffs views.
@@ -20,47 +25,61 @@ import java.util.List;
 public class PgDiffViews {
 
     /**
-     * Outputs statements for creation of views.
+     * Outputs statements for creation of views. Views are created after the
+     * views they depend on.
      *
      * @param writer           writer the output should be written to
+     * @param arguments        object containing arguments settings
      * @param oldSchema        original schema
      * @param newSchema        new schema
      * @param searchPathHelper search path helper
      */
     public static void createViews(final PrintWriter writer,
-            final PgSchema oldSchema, final PgSchema newSchema,
+            final PgDiffArguments arguments, final PgSchema oldSchema,
+            final PgSchema newSchema,
             final SearchPathHelper searchPathHelper) {
-        for (final PgView newView : newSchema.getViews()) {
-            if (oldSchema == null
-                    || !oldSchema.containsView(newView.getName())
-                    || isViewModified(
-                    oldSchema.getView(newView.getName()), newView)) {
+        final Set<String> droppedViews =
+                getDroppedViews(arguments, oldSchema, newSchema);
+
+        for (final PgView newView : sortViews(newSchema.getViews(), false)) {
+            final PgView oldView = oldSchema == null
+                    ? null : oldSchema.getView(newView.getName());
+
+            if (oldView == null || droppedViews.contains(newView.getName())) {
                 searchPathHelper.outputSearchPath(writer);
                 writer.println();
                 writer.println(newView.getCreationSQL());
+            } else if (isViewModified(oldView, newView)) {
+                searchPathHelper.outputSearchPath(writer);
+                writer.println();
+                writer.println(newView.getReplaceSQL());
             }
         }
     }
 
     /**
-     * Outputs statements for dropping views.
+     * Outputs statements for dropping views. Views are dropped before the
+     * views they depend on.
      *
      * @param writer           writer the output should be written to
+     * @param arguments        object containing arguments settings
      * @param oldSchema        original schema
      * @param newSchema        new schema
      * @param searchPathHelper search path helper
      */
     public static void dropViews(final PrintWriter writer,
-            final PgSchema oldSchema, final PgSchema newSchema,
+            final PgDiffArguments arguments, final PgSchema oldSchema,
+            final PgSchema newSchema,
             final SearchPathHelper searchPathHelper) {
         if (oldSchema == null) {
             return;
         }
 
-        for (final PgView oldView : oldSchema.getViews()) {
-            final PgView newView = newSchema.getView(oldView.getName());
+        final Set<String> droppedViews =
+                getDroppedViews(arguments, oldSchema, newSchema);
 
-            if (newView == null || isViewModified(oldView, newView)) {
+        for (final PgView oldView : sortViews(oldSchema.getViews(), true)) {
+            if (droppedViews.contains(oldView.getName())) {
                 searchPathHelper.outputSearchPath(writer);
                 writer.println();
                 writer.println(oldView.getDropSQL());
@@ -68,6 +87,149 @@ public class PgDiffViews {
         }
     }
 
+    /**
+     * Returns names of views that have to be dropped. These are views that
+     * were removed or modified so that they cannot be replaced, and all views
+     * that depend on them, directly or transitively.
+     *
+     * @param arguments object containing arguments settings
+     * @param oldSchema original schema
+     * @param newSchema new schema
+     *
+     * @return set of names of views to drop
+     */
+    private static Set<String> getDroppedViews(
+            final PgDiffArguments arguments, final PgSchema oldSchema,
+            final PgSchema newSchema) {
+        @SuppressWarnings("CollectionWithoutInitialCapacity")
+        final Set<String> droppedViews = new HashSet<String>();
+
+        if (oldSchema == null) {
+            return droppedViews;
+        }
+
+        for (final PgView oldView : oldSchema.getViews()) {
+            final PgView newView = newSchema.getView(oldView.getName());
+
+            if (newView == null || isViewModified(oldView, newView)
+                    && !(arguments.isReplaceViews()
+                    && canReplaceView(oldView, newView))) {
+                droppedViews.add(oldView.getName());
+            }
+        }
+
+        boolean added = !droppedViews.isEmpty();
+
+        while (added) {
+            added = false;
+
+            for (final PgView oldView : oldSchema.getViews()) {
+                if (droppedViews.contains(oldView.getName())) {
+                    continue;
+                }
+
+                for (final String relationName
+                        : oldView.getReferencedRelations()) {
+                    if (droppedViews.contains(relationName)) {
+                        droppedViews.add(oldView.getName());
+                        added = true;
+
+                        break;
+                    }
+                }
+            }
+        }
+
+        return droppedViews;
+    }
+
+    /**
+     * Sorts views so that each view is preceded either by the views it
+     * depends on or by the views that depend on it. Otherwise the original
+     * order of views is kept.
+     *
+     * @param views           views to sort
+     * @param dependentsFirst whether views that depend on a view should
+     *                        precede the view
+     *
+     * @return sorted views
+     */
+    private static List<PgView> sortViews(final List<PgView> views,
+            final boolean dependentsFirst) {
+        @SuppressWarnings("CollectionWithoutInitialCapacity")
+        final Map<String, PgView> viewsMap = new HashMap<String, PgView>();
+
+        for (final PgView view : views) {
+            viewsMap.put(view.getName(), view);
+        }
+
+        // views that have to precede the view with given name
+        @SuppressWarnings("CollectionWithoutInitialCapacity")
+        final Map<String, List<PgView>> predecessors =
+                new HashMap<String, List<PgView>>();
+
+        for (final PgView view : views) {
+            for (final String relationName : view.getReferencedRelations()) {
+                final PgView relationView = viewsMap.get(relationName);
+
+                if (relationView == null || relationView == view) {
+                    continue;
+                }
+
+                final PgView predecessor =
+                        dependentsFirst ? view : relationView;
+                final String successorName = dependentsFirst
+                        ? relationName : view.getName();
+                List<PgView> list = predecessors.get(successorName);
+
+                if (list == null) {
+                    list = new ArrayList<PgView>(1);
+                    predecessors.put(successorName, list);
+                }
+
+                list.add(predecessor);
+            }
+        }
+
+        final List<PgView> sortedViews = new ArrayList<PgView>(views.size());
+        @SuppressWarnings("CollectionWithoutInitialCapacity")
+        final Set<String> visited = new HashSet<String>();
+
+        for (final PgView view : views) {
+            addSortedView(view, predecessors, visited, sortedViews);
+        }
+
+        return sortedViews;
+    }
+
+    /**
+     * Adds view to the sorted views after its predecessors, unless the view
+     * has been already added.
+     *
+     * @param view         view
+     * @param predecessors map of view names to views that have to precede
+     *                     them
+     * @param visited      names of views that were already visited
+     * @param sortedViews  sorted views
+     */
+    private static void addSortedView(final PgView view,
+            final Map<String, List<PgView>> predecessors,
+            final Set<String> visited, final List<PgView> sortedViews) {
+        if (!visited.add(view.getName())) {
+            return;
+        }
+
+        final List<PgView> list = predecessors.get(view.getName());
+
+        if (list != null) {
+            for (final PgView predecessor : list) {
+                addSortedView(predecessor, predecessors, visited, sortedViews);
+            }
+        }
+
+        sortedViews.add(view);
+    }
+
     /**
      * Returns true if either column names or query of the view has been
      * modified.
@@ -100,12 +262,64 @@ public class PgDiffViews {
         }
 
         if (oldViewColumnNames == null && newViewColumnNames == null) {
-            return !oldView.getQuery().trim().equals(newView.getQuery().trim());
+            return !oldView.isQueryEqual(newView);
         } else {
             return !Arrays.equals(oldViewColumnNames, newViewColumnNames);
         }
     }
 
+    /**
+     * Checks whether the old view can be replaced by the new view using
+     * CREATE OR REPLACE VIEW. PostgreSQL allows only adding new columns at
+     * the end of the view, so column names of the old view must be prefix of
+     * column names of the new view and select list items of the old query
+     * must be prefix of select list items of the new query. As column types
+     * are not known, equal select list items are taken as columns of the
+     * same type.
+     *
+     * @param oldView old view
+     * @param newView new view
+     *
+     * @return true if the view can be replaced, otherwise false
+     */
+    private static boolean canReplaceView(final PgView oldView,
+            final PgView newView) {
+        final List<String> oldColumnNames = getColumnNames(oldView);
+        final List<String> newColumnNames = getColumnNames(newView);
+
+        if (oldColumnNames.size() > newColumnNames.size()
+                || !oldColumnNames.equals(
+                newColumnNames.subList(0, oldColumnNames.size()))
+                || oldColumnNames.isEmpty() != newColumnNames.isEmpty()) {
+            return false;
+        }
+
+        final List<String> oldItems =
+                QueryParser.getSelectItems(oldView.getQuery());
+        final List<String> newItems =
+                QueryParser.getSelectItems(newView.getQuery());
+
+        return oldItems != null && newItems != null
+                && oldItems.size() <= newItems.size()
+                && oldItems.equals(newItems.subList(0, oldItems.size()));
+    }
+
+    /**
+     * Returns column names of the view.
+     *
+     * @param view view
+     *
+     * @return list of column names, empty if the column names are not
+     *         specified
+     */
+    private static List<String> getColumnNames(final PgView view) {
+        if (view.getColumnNames() == null) {
+            return new ArrayList<String>(0);
+        }
+
+        return view.getColumnNames();
+    }
+
     /**
      * Outputs statements for altering view default values.
      *
@@ -0,0 +1,67 @@
+/**
+ * Copyright 2006 StartNet s.r.o.
+ *
+ * Distributed under MIT license
+ */
+package cz.startnet.utils.pgdiff;
+
+/**
+ * Sections the diff can be split into, similarly to sections of pg_restore.
+ * Pre-data section contains changes of schemas, sequences, tables, columns,
+ * functions and views and drops of indexes, constraints, triggers and
+ * clusters. Post-data section contains creation of indexes, constraints,
+ * triggers and clusters and comments on them, so that data can be loaded
+ * between the two sections without maintaining the indexes.
+ *
+ * @author fordfrog
+ */
+public enum Section {
+
+    /**
+     * Changes that must be applied before data are loaded.
+     */
+    PRE_DATA("pre-data"),
+    /**
+     * Changes that should be applied after data are loaded.
+     */
+    POST_DATA("post-data");
+    /**
+     * Name of the section used on command line.
+     */
+    private final String name;
+
+    /**
+     * Creates a new Section.
+     *
+     * @param name {@link #name}
+     */
+    Section(final String name) {
+        this.name = name;
+    }
+
+    /**
+     * Getter for {@link #name}.
+     *
+     * @return {@link #name}
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns section with given name.
+     *
+     * @param name name of the section
+     *
+     * @return section or null if there is no section with given name
+     */
+    public static Section fromName(final String name) {
+        for (final Section section : values()) {
+            if (section.name.equals(name)) {
+                return section;
+            }
+        }
+
+        return null;
+    }
+}
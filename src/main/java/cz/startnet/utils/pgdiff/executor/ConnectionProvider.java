@@ -0,0 +1,27 @@
+/**
+ * Copyright 2006 StartNet s.r.o.
+ *
+ * Distributed under MIT license
+ */
+package cz.startnet.utils.pgdiff.executor;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Provider of connections migration steps are run on. Every call should
+ * return new connection, connections are closed by the executor.
+ *
+ * @author fordfrog
+ */
+public interface ConnectionProvider {
+
+    /**
+     * Opens new connection to the database.
+     *
+     * @return new connection
+     *
+     * @throws SQLException Thrown if the connection cannot be opened.
+     */
+    Connection getConnection() throws SQLException;
+}
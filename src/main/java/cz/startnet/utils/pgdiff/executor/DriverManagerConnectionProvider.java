@@ -0,0 +1,38 @@
+/**
+ * Copyright 2006 StartNet s.r.o.
+ *
+ * Distributed under MIT license
+ */
+package cz.startnet.utils.pgdiff.executor;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+/**
+ * Provider of connections opened by {@link DriverManager} using JDBC URL.
+ * User name and password can be part of the URL.
+ *
+ * @author fordfrog
+ */
+public class DriverManagerConnectionProvider implements ConnectionProvider {
+
+    /**
+     * JDBC URL of the database.
+     */
+    private final String url;
+
+    /**
+     * Creates a new DriverManagerConnectionProvider.
+     *
+     * @param url {@link #url}
+     */
+    public DriverManagerConnectionProvider(final String url) {
+        this.url = url;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return DriverManager.getConnection(url);
+    }
+}
@@ -0,0 +1,30 @@
+/**
+ * Copyright 2006 StartNet s.r.o.
+ *
+ * Distributed under MIT license
+ */
+package cz.startnet.utils.pgdiff.executor;
+
+/**
+ * Exception thrown if migration step fails to run.
+ *
+ * @author fordfrog
+ */
+public class MigrationException extends RuntimeException {
+
+    /**
+     * Serial version uid.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs an instance of {@code MigrationException} with the specified
+     * detail message and cause.
+     *
+     * @param msg   the detail message
+     * @param cause cause of the exception
+     */
+    public MigrationException(final String msg, final Throwable cause) {
+        super(msg, cause);
+    }
+}
@@ -0,0 +1,412 @@
+/**
+ * Copyright 2006 StartNet s.r.o.
+ *
+ * Distributed under MIT license
+ */
+package cz.startnet.utils.pgdiff.executor;
+
+import cz.startnet.utils.pgdiff.Resources;
+import cz.startnet.utils.pgdiff.steps.MigrationPlan;
+import cz.startnet.utils.pgdiff.steps.MigrationStep;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Runs steps of migration plan on the database. Step is started as soon as
+ * all steps it depends on have finished, up to given number of steps run
+ * concurrently, each on its own connection. Connections are opened when
+ * needed and reused by following steps. Time of every step is written to
+ * log as soon as the step finishes. If a step fails, no further steps are
+ * started, steps that are already running are let finish and
+ * {@link MigrationException} is thrown. Every step is committed as soon as
+ * it finishes, so the executor relies on the plan containing all
+ * dependencies between the steps, see {@link MigrationPlan}.
+ *
+ * @author fordfrog
+ */
+public class MigrationExecutor {
+
+    /**
+     * Provider of connections.
+     */
+    private final ConnectionProvider connectionProvider;
+    /**
+     * Maximum number of steps run concurrently, that is also maximum number
+     * of open connections.
+     */
+    private final int jobs;
+    /**
+     * Writer the log of the steps is written to.
+     */
+    private final PrintWriter log;
+    /**
+     * Connections that are not used by any running step.
+     */
+    @SuppressWarnings("CollectionWithoutInitialCapacity")
+    private final BlockingQueue<SessionConnection> idleConnections =
+            new LinkedBlockingQueue<SessionConnection>();
+    /**
+     * All connections opened by the executor.
+     */
+    @SuppressWarnings("CollectionWithoutInitialCapacity")
+    private final List<SessionConnection> connections =
+            new ArrayList<SessionConnection>();
+    /**
+     * Whether a step has failed, in which case steps that have not started
+     * yet are skipped.
+     */
+    private volatile boolean failed;
+
+    /**
+     * Creates a new MigrationExecutor.
+     *
+     * @param connectionProvider {@link #connectionProvider}
+     * @param jobs               {@link #jobs}
+     * @param log                {@link #log}
+     */
+    public MigrationExecutor(final ConnectionProvider connectionProvider,
+            final int jobs, final PrintWriter log) {
+        this.connectionProvider = connectionProvider;
+        this.jobs = jobs;
+        this.log = log;
+    }
+
+    /**
+     * Runs all steps of the plan. All opened connections are closed before
+     * the method returns.
+     *
+     * @param plan migration plan
+     *
+     * @throws MigrationException Thrown if a step fails.
+     */
+    public void execute(final MigrationPlan plan) {
+        final List<MigrationStep> steps = plan.getSteps();
+        final Map<Integer, List<MigrationStep>> dependents =
+                new HashMap<Integer, List<MigrationStep>>(steps.size());
+        final Map<Integer, Integer> remaining =
+                new HashMap<Integer, Integer>(steps.size());
+
+        for (final MigrationStep step : steps) {
+            dependents.put(step.getId(), new ArrayList<MigrationStep>(1));
+        }
+
+        for (final MigrationStep step : steps) {
+            remaining.put(step.getId(), step.getDependencies().size());
+
+            for (final Integer dependency : step.getDependencies()) {
+                dependents.get(dependency).add(step);
+            }
+        }
+
+        final ExecutorService pool = Executors.newFixedThreadPool(jobs);
+        final CompletionService<StepResult> completion =
+                new ExecutorCompletionService<StepResult>(pool);
+        final long startTime = System.currentTimeMillis();
+        StepResult failure = null;
+        int running = 0;
+
+        try {
+            for (final MigrationStep step : steps) {
+                if (step.getDependencies().isEmpty()) {
+                    completion.submit(createTask(step));
+                    running++;
+                }
+            }
+
+            while (running > 0) {
+                final StepResult result = completion.take().get();
+                running--;
+
+                if (result.skipped) {
+                    continue;
+                }
+
+                logResult(result);
+
+                if (result.error != null) {
+                    if (failure == null) {
+                        failure = result;
+                    }
+
+                    continue;
+                } else if (failure != null) {
+                    continue;
+                }
+
+                for (final MigrationStep dependent
+                        : dependents.get(result.step.getId())) {
+                    final int count = remaining.get(dependent.getId()) - 1;
+                    remaining.put(dependent.getId(), count);
+
+                    if (count == 0) {
+                        completion.submit(createTask(dependent));
+                        running++;
+                    }
+                }
+            }
+        } catch (final InterruptedException ex) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+
+            throw new MigrationException(
+                    Resources.getString("MigrationInterrupted"), ex);
+        } catch (final ExecutionException ex) {
+            pool.shutdownNow();
+
+            throw new MigrationException(ex.getCause().getMessage(),
+                    ex.getCause());
+        } finally {
+            pool.shutdown();
+            closeConnections();
+        }
+
+        if (failure != null) {
+            throw new MigrationException(MessageFormat.format(
+                    Resources.getString("MigrationStepFailed"),
+                    failure.step.getId(), failure.step.getFileName(),
+                    String.valueOf(failure.duration),
+                    failure.error.getMessage()),
+                    failure.error);
+        }
+
+        log.println(MessageFormat.format(
+                Resources.getString("MigrationFinished"), steps.size(),
+                String.valueOf(System.currentTimeMillis() - startTime)));
+        log.flush();
+    }
+
+    /**
+     * Writes result of the step to the log.
+     *
+     * @param result result of the step
+     */
+    private void logResult(final StepResult result) {
+        if (result.error == null) {
+            log.println(MessageFormat.format(
+                    Resources.getString("MigrationStepFinished"),
+                    result.step.getId(), result.step.getFileName(),
+                    String.valueOf(result.duration)));
+        } else {
+            log.println(MessageFormat.format(
+                    Resources.getString("MigrationStepFailed"),
+                    result.step.getId(), result.step.getFileName(),
+                    String.valueOf(result.duration),
+                    result.error.getMessage()));
+        }
+
+        log.flush();
+    }
+
+    /**
+     * Creates task that runs the step.
+     *
+     * @param step migration step
+     *
+     * @return task
+     */
+    private Callable<StepResult> createTask(final MigrationStep step) {
+        return new Callable<StepResult>() {
+            @Override
+            public StepResult call() {
+                return runStep(step);
+            }
+        };
+    }
+
+    /**
+     * Runs the step on idle connection or on newly opened connection if no
+     * connection is idle. The step is skipped if another step has failed.
+     * Connection the step failed on is not reused.
+     *
+     * @param step migration step
+     *
+     * @return result of the step
+     */
+    private StepResult runStep(final MigrationStep step) {
+        if (failed) {
+            return new StepResult(step, 0, null, true);
+        }
+
+        final long start = System.currentTimeMillis();
+        SQLException error = null;
+        SessionConnection connection = idleConnections.poll();
+
+        try {
+            if (connection == null) {
+                connection = openConnection();
+            }
+
+            connection.setSearchPath(step.getSearchPath());
+            connection.execute(step.getStatement());
+        } catch (final SQLException ex) {
+            error = ex;
+            failed = true;
+        } finally {
+            if (connection != null && error == null) {
+                idleConnections.add(connection);
+            }
+        }
+
+        return new StepResult(
+                step, System.currentTimeMillis() - start, error, false);
+    }
+
+    /**
+     * Opens new connection in auto-commit mode, so that every step runs in
+     * its own transaction or without transaction.
+     *
+     * @return new connection
+     *
+     * @throws SQLException Thrown if the connection cannot be opened.
+     */
+    private SessionConnection openConnection() throws SQLException {
+        final Connection connection = connectionProvider.getConnection();
+        final SessionConnection sessionConnection =
+                new SessionConnection(connection);
+
+        synchronized (connections) {
+            connections.add(sessionConnection);
+        }
+
+        connection.setAutoCommit(true);
+
+        return sessionConnection;
+    }
+
+    /**
+     * Closes all opened connections.
+     */
+    private void closeConnections() {
+        synchronized (connections) {
+            for (final SessionConnection connection : connections) {
+                try {
+                    connection.connection.close();
+                } catch (final SQLException ex) {
+                    log.println(ex.getMessage());
+                }
+            }
+
+            connections.clear();
+        }
+
+        idleConnections.clear();
+        log.flush();
+    }
+
+    /**
+     * Connection together with search path set in its session.
+     */
+    private static class SessionConnection {
+
+        /**
+         * Database connection.
+         */
+        private final Connection connection;
+        /**
+         * SET search_path statement last run on the connection or null if
+         * search path was not set.
+         */
+        private String searchPath;
+
+        /**
+         * Creates a new SessionConnection.
+         *
+         * @param connection {@link #connection}
+         */
+        SessionConnection(final Connection connection) {
+            this.connection = connection;
+        }
+
+        /**
+         * Sets search path of the session if it differs from the search path
+         * set by previous step. If the step does not set search path, search
+         * path of the session is reset to default.
+         *
+         * @param stepSearchPath SET search_path statement of the step or null
+         *
+         * @throws SQLException Thrown if the statement fails.
+         */
+        void setSearchPath(final String stepSearchPath)
+                throws SQLException {
+            if (stepSearchPath == null ? searchPath == null
+                    : stepSearchPath.equals(searchPath)) {
+                return;
+            }
+
+            execute(stepSearchPath == null
+                    ? "RESET search_path;" : stepSearchPath);
+            searchPath = stepSearchPath;
+        }
+
+        /**
+         * Runs the SQL on the connection.
+         *
+         * @param sql SQL statements
+         *
+         * @throws SQLException Thrown if the statements fail.
+         */
+        void execute(final String sql) throws SQLException {
+            final Statement statement = connection.createStatement();
+
+            try {
+                statement.execute(sql);
+            } finally {
+                statement.close();
+            }
+        }
+    }
+
+    /**
+     * Result of migration step.
+     */
+    private static class StepResult {
+
+        /**
+         * Migration step.
+         */
+        private final MigrationStep step;
+        /**
+         * Duration of the step in milliseconds.
+         */
+        private final long duration;
+        /**
+         * Error the step failed with or null if the step succeeded.
+         */
+        private final SQLException error;
+        /**
+         * Whether the step was not run because another step failed.
+         */
+        private final boolean skipped;
+
+        /**
+         * Creates a new StepResult.
+         *
+         * @param step     {@link #step}
+         * @param duration {@link #duration}
+         * @param error    {@link #error}
+         * @param skipped  {@link #skipped}
+         */
+        StepResult(final MigrationStep step, final long duration,
+                final SQLException error, final boolean skipped) {
+            this.step = step;
+            this.duration = duration;
+            this.error = error;
+            this.skipped = skipped;
+        }
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * Contains executor that applies migration steps to database over JDBC,
+ * running independent steps concurrently.
+ */
+package cz.startnet.utils.pgdiff.executor;
@@ -0,0 +1,326 @@
+/**
+ * Copyright 2006 StartNet s.r.o.
+ *
+ * Distributed under MIT license
+ */
+package cz.startnet.utils.pgdiff.impact;
+
+import cz.startnet.utils.pgdiff.Resources;
+import cz.startnet.utils.pgdiff.loader.FileException;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Estimates how long statements run from sizes of the relations they
+ * affect. Sizes are read from statistics file containing CSV lines in form
+ * {@code relation,table_bytes,rows,index_bytes}, which can be exported from
+ * the database using:
+ * <pre>
+ * SELECT quote_ident(n.nspname) || '.' || quote_ident(c.relname),
+ *     pg_table_size(c.oid), c.reltuples::bigint, pg_indexes_size(c.oid)
+ * FROM pg_class c JOIN pg_namespace n ON n.oid = c.relnamespace
+ * WHERE c.relkind = 'r'
+ * </pre>
+ *
+ * @author fordfrog
+ */
+public class CostEstimator {
+
+    /**
+     * Number of bytes in megabyte.
+     */
+    private static final double MEGABYTE = 1024 * 1024;
+    /**
+     * Names of throughput constants.
+     */
+    private static final String[] THROUGHPUT_NAMES =
+            {"rewrite", "scan", "index", "update"};
+    /**
+     * Default throughput of table rewrite, table scan and index build in
+     * megabytes per second and of batched update in rows per second.
+     */
+    private static final double[] DEFAULT_THROUGHPUT = {50, 200, 30, 20000};
+    /**
+     * Index of rewrite throughput.
+     */
+    private static final int REWRITE = 0;
+    /**
+     * Index of scan throughput.
+     */
+    private static final int SCAN = 1;
+    /**
+     * Index of index build throughput.
+     */
+    private static final int INDEX = 2;
+    /**
+     * Index of batched update throughput.
+     */
+    private static final int UPDATE = 3;
+    /**
+     * Statistics of relations, keyed by schema qualified relation name.
+     */
+    private final Map<String, RelationStatistics> statistics;
+    /**
+     * Throughput constants.
+     */
+    private final double[] throughput;
+
+    /**
+     * Creates a new CostEstimator.
+     *
+     * @param statistics {@link #statistics}
+     * @param throughput throughput constants in format accepted by
+     *                   {@link #parseThroughput(java.lang.String)} or null
+     *                   to use default throughput
+     */
+    public CostEstimator(final Map<String, RelationStatistics> statistics,
+            final String throughput) {
+        this.statistics = statistics;
+        this.throughput = parseThroughput(throughput == null ? "" : throughput);
+
+        if (this.throughput == null) {
+            throw new IllegalArgumentException(throughput);
+        }
+    }
+
+    /**
+     * Parses throughput constants in form
+     * {@code rewrite=50,scan=200,index=30,update=20000}. Constants that are
+     * not specified keep their default values. Throughput of rewrite, scan
+     * and index build is in megabytes per second, throughput of batched
+     * update is in rows per second.
+     *
+     * @param throughput throughput constants
+     *
+     * @return array of throughput constants or null if the constants are
+     *         not valid
+     */
+    public static double[] parseThroughput(final String throughput) {
+        final double[] result = DEFAULT_THROUGHPUT.clone();
+
+        for (final String constant : throughput.split(",")) {
+            if (constant.trim().isEmpty()) {
+                continue;
+            }
+
+            final String[] parts = constant.split("=", 2);
+            int index = -1;
+
+            for (int i = 0; i < THROUGHPUT_NAMES.length; i++) {
+                if (THROUGHPUT_NAMES[i].equals(parts[0].trim())) {
+                    index = i;
+                }
+            }
+
+            if (index == -1 || parts.length < 2) {
+                return null;
+            }
+
+            try {
+                result[index] = Double.parseDouble(parts[1].trim());
+            } catch (final NumberFormatException ex) {
+                return null;
+            }
+
+            if (!(result[index] > 0)) {
+                return null;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Estimates how long the statement runs in seconds.
+     *
+     * @param impact impact of the statement
+     *
+     * @return estimated number of seconds or -1 if there are no statistics
+     *         of the affected relation
+     */
+    public double estimate(final StatementImpact impact) {
+        final RelationStatistics relationStatistics =
+                impact.getRelation() == null
+                ? null : statistics.get(impact.getRelation());
+
+        if (relationStatistics == null) {
+            return -1;
+        }
+
+        final double tableSize = relationStatistics.getTableBytes() / MEGABYTE;
+
+        switch (impact.getEffect()) {
+            case REWRITE:
+                return tableSize / throughput[REWRITE]
+                        + relationStatistics.getIndexBytes() / MEGABYTE
+                        / throughput[INDEX];
+            case INDEX_BUILD:
+                return tableSize / throughput[INDEX];
+            case SCAN:
+                return tableSize / throughput[SCAN];
+            case BACKFILL:
+                return relationStatistics.getRows() / throughput[UPDATE];
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Formats duration for output.
+     *
+     * @param seconds number of seconds
+     *
+     * @return formatted duration
+     */
+    public static String formatDuration(final double seconds) {
+        final long rounded = Math.round(seconds);
+
+        if (rounded < 1) {
+            return "< 1 s";
+        } else if (rounded < 60) {
+            return rounded + " s";
+        } else if (rounded < 3600) {
+            return rounded / 60 + " min " + rounded % 60 + " s";
+        } else {
+            return rounded / 3600 + " h " + rounded % 3600 / 60 + " min";
+        }
+    }
+
+    /**
+     * Reads statistics file. Empty lines, lines starting with # and lines
+     * that do not contain number in the second column (header) are skipped.
+     * Relation names that are not schema qualified are expected to be in
+     * public schema.
+     *
+     * @param file statistics file
+     *
+     * @return statistics of relations, keyed by schema qualified relation
+     *         name
+     */
+    public static Map<String, RelationStatistics> readStatistics(
+            final File file) {
+        @SuppressWarnings("CollectionWithoutInitialCapacity")
+        final Map<String, RelationStatistics> result =
+                new HashMap<String, RelationStatistics>();
+
+        try {
+            final BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(new FileInputStream(file), "UTF-8"));
+
+            try {
+                String line = reader.readLine();
+
+                while (line != null) {
+                    if (!line.trim().isEmpty() && !line.startsWith("#")) {
+                        addStatistics(result, line, file);
+                    }
+
+                    line = reader.readLine();
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (final IOException ex) {
+            throw new FileException(MessageFormat.format(
+                    Resources.getString("CannotReadFile"), file), ex);
+        }
+
+        return result;
+    }
+
+    /**
+     * Parses line of statistics file and adds the statistics to the map.
+     *
+     * @param statistics map of statistics
+     * @param line       line of statistics file
+     * @param file       statistics file
+     */
+    private static void addStatistics(
+            final Map<String, RelationStatistics> statistics,
+            final String line, final File file) {
+        final List<String> values = splitCsvLine(line);
+
+        if (values.size() < 3) {
+            throw new FileException(MessageFormat.format(
+                    Resources.getString("InvalidStatisticsLine"), file, line));
+        }
+
+        final long tableBytes;
+
+        try {
+            tableBytes = (long) Double.parseDouble(values.get(1));
+        } catch (final NumberFormatException ex) {
+            // header line
+            return;
+        }
+
+        final long rows;
+        final long indexBytes;
+
+        try {
+            rows = (long) Double.parseDouble(values.get(2));
+            indexBytes = values.size() > 3
+                    ? (long) Double.parseDouble(values.get(3)) : 0;
+        } catch (final NumberFormatException ex) {
+            throw new FileException(MessageFormat.format(
+                    Resources.getString("InvalidStatisticsLine"), file, line),
+                    ex);
+        }
+
+        final String relation = values.get(0);
+
+        statistics.put(relation.indexOf('.') == -1
+                ? "public." + relation : relation,
+                new RelationStatistics(tableBytes, rows, indexBytes));
+    }
+
+    /**
+     * Splits CSV line to values. Values can be quoted with double quotes,
+     * double quote inside quoted value is written as two double quotes.
+     *
+     * @param line CSV line
+     *
+     * @return list of values
+     */
+    @SuppressWarnings("AssignmentToForLoopParameter")
+    private static List<String> splitCsvLine(final String line) {
+        final List<String> values = new ArrayList<String>(4);
+        final StringBuilder sbValue = new StringBuilder(line.length());
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            final char chr = line.charAt(i);
+
+            if (quoted) {
+                if (chr != '"') {
+                    sbValue.append(chr);
+                } else if (i + 1 < line.length()
+                        && line.charAt(i + 1) == '"') {
+                    sbValue.append(chr);
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (chr == '"') {
+                quoted = true;
+            } else if (chr == ',') {
+                values.add(sbValue.toString().trim());
+                sbValue.setLength(0);
+            } else {
+                sbValue.append(chr);
+            }
+        }
+
+        values.add(sbValue.toString().trim());
+
+        return values;
+    }
+}
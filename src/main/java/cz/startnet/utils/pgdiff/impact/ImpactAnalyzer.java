@@ -0,0 +1,622 @@
+/**
+ * Copyright 2006 StartNet s.r.o.
+ *
+ * Distributed under MIT license
+ */
+package cz.startnet.utils.pgdiff.impact;
+
+import cz.startnet.utils.pgdiff.Capability;
+import cz.startnet.utils.pgdiff.PgDiffArguments;
+import cz.startnet.utils.pgdiff.PgDiffBackfills;
+import cz.startnet.utils.pgdiff.Resources;
+import cz.startnet.utils.pgdiff.schema.PgColumnUtils;
+import java.text.MessageFormat;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Classifies generated statements by the lock they acquire and by their
+ * effect on data of the locked relation. Statements are analyzed in the
+ * order they are output, so that the analyzer can track current search path,
+ * relations created by the diff (that are empty and thus cheap to modify)
+ * and NOT NULL check constraints that allow setting columns NOT NULL without
+ * scanning the table.
+ *
+ * @author fordfrog
+ */
+public class ImpactAnalyzer {
+
+    /**
+     * Flags of all patterns.
+     */
+    private static final int FLAGS = Pattern.CASE_INSENSITIVE | Pattern.DOTALL;
+    /**
+     * Pattern part matching single, possibly quoted, identifier.
+     */
+    private static final String IDENTIFIER =
+            "(?:\"(?:[^\"]|\"\")*\"|[^\\s\"(),;.]+)";
+    /**
+     * Pattern part matching possibly schema qualified name, as a group.
+     */
+    private static final String NAME =
+            "(" + IDENTIFIER + "(?:\\." + IDENTIFIER + ")?)";
+    /**
+     * Pattern for parsing schema from SET search_path statement.
+     */
+    private static final Pattern PATTERN_SEARCH_PATH = Pattern.compile(
+            "^SET\\s+search_path\\s*=\\s*(" + IDENTIFIER + ")", FLAGS);
+    /**
+     * Pattern for matching statements that are not annotated, that is
+     * transaction control and settings.
+     */
+    private static final Pattern PATTERN_NOT_ANNOTATED = Pattern.compile(
+            "^(?:START\\s+TRANSACTION|BEGIN|COMMIT|ROLLBACK|END|SET)\\b",
+            FLAGS);
+    /**
+     * Pattern for parsing CREATE TABLE statement.
+     */
+    private static final Pattern PATTERN_CREATE_TABLE = Pattern.compile(
+            "^CREATE\\s+(?:UNLOGGED\\s+)?TABLE\\s+(?:IF\\s+NOT\\s+EXISTS\\s+)?"
+            + NAME, FLAGS);
+    /**
+     * Pattern for parsing CREATE INDEX statement.
+     */
+    private static final Pattern PATTERN_CREATE_INDEX = Pattern.compile(
+            "^CREATE\\s+(?:UNIQUE\\s+)?INDEX\\s+(CONCURRENTLY\\s+)?"
+            + "(?:IF\\s+NOT\\s+EXISTS\\s+)?(?:" + IDENTIFIER + "\\s+)?"
+            + "ON\\s+(?:ONLY\\s+)?" + NAME, FLAGS);
+    /**
+     * Pattern for parsing CREATE TRIGGER statement.
+     */
+    private static final Pattern PATTERN_CREATE_TRIGGER = Pattern.compile(
+            "^CREATE\\s+(?:OR\\s+REPLACE\\s+)?(?:CONSTRAINT\\s+)?TRIGGER\\s+"
+            + IDENTIFIER + "\\s.*?\\sON\\s+" + NAME, FLAGS);
+    /**
+     * Pattern for parsing CREATE OR REPLACE VIEW statement.
+     */
+    private static final Pattern PATTERN_REPLACE_VIEW = Pattern.compile(
+            "^CREATE\\s+OR\\s+REPLACE\\s+(?:RECURSIVE\\s+)?VIEW\\s+" + NAME,
+            FLAGS);
+    /**
+     * Pattern for parsing DROP INDEX statement.
+     */
+    private static final Pattern PATTERN_DROP_INDEX = Pattern.compile(
+            "^DROP\\s+INDEX\\s+(CONCURRENTLY\\s+)?(?:IF\\s+EXISTS\\s+)?"
+            + NAME, FLAGS);
+    /**
+     * Pattern for parsing DROP TRIGGER statement.
+     */
+    private static final Pattern PATTERN_DROP_TRIGGER = Pattern.compile(
+            "^DROP\\s+TRIGGER\\s+(?:IF\\s+EXISTS\\s+)?" + IDENTIFIER
+            + "\\s+ON\\s+" + NAME, FLAGS);
+    /**
+     * Pattern for parsing DROP TABLE, DROP VIEW and DROP SEQUENCE
+     * statements.
+     */
+    private static final Pattern PATTERN_DROP_RELATION = Pattern.compile(
+            "^DROP\\s+(?:TABLE|VIEW|SEQUENCE)\\s+(?:IF\\s+EXISTS\\s+)?"
+            + NAME, FLAGS);
+    /**
+     * Pattern for parsing DROP SCHEMA statement.
+     */
+    private static final Pattern PATTERN_DROP_SCHEMA = Pattern.compile(
+            "^DROP\\s+SCHEMA\\s+(?:IF\\s+EXISTS\\s+)?(" + IDENTIFIER + ")",
+            FLAGS);
+    /**
+     * Pattern for parsing ALTER TABLE, ALTER INDEX, ALTER VIEW and ALTER
+     * SEQUENCE statements.
+     */
+    private static final Pattern PATTERN_ALTER_RELATION = Pattern.compile(
+            "^ALTER\\s+(TABLE|INDEX|VIEW|SEQUENCE)\\s+(?:IF\\s+EXISTS\\s+)?"
+            + "(?:ONLY\\s+)?" + NAME + "\\s+(.*?)\\s*;?\\s*$", FLAGS);
+    /**
+     * Pattern for parsing COMMENT ON TABLE, VIEW, INDEX and SEQUENCE
+     * statements.
+     */
+    private static final Pattern PATTERN_COMMENT_RELATION = Pattern.compile(
+            "^COMMENT\\s+ON\\s+(?:TABLE|VIEW|INDEX|SEQUENCE)\\s+" + NAME,
+            FLAGS);
+    /**
+     * Pattern for parsing COMMENT ON COLUMN statement.
+     */
+    private static final Pattern PATTERN_COMMENT_COLUMN = Pattern.compile(
+            "^COMMENT\\s+ON\\s+COLUMN\\s+" + NAME + "\\." + IDENTIFIER
+            + "\\s+IS\\b", FLAGS);
+    /**
+     * Pattern for parsing COMMENT ON CONSTRAINT and TRIGGER statements.
+     */
+    private static final Pattern PATTERN_COMMENT_ON = Pattern.compile(
+            "^COMMENT\\s+ON\\s+(?:CONSTRAINT|TRIGGER)\\s+" + IDENTIFIER
+            + "\\s+ON\\s+" + NAME, FLAGS);
+    /**
+     * Pattern for parsing INSERT, UPDATE and DELETE statements.
+     */
+    private static final Pattern PATTERN_DML = Pattern.compile(
+            "^(?:INSERT\\s+INTO|DELETE\\s+FROM|UPDATE)\\s+(?:ONLY\\s+)?"
+            + NAME, FLAGS);
+    /**
+     * Pattern for matching DO statement.
+     */
+    private static final Pattern PATTERN_DO =
+            Pattern.compile("^DO\\s", FLAGS);
+    /**
+     * Pattern for finding UPDATE statements inside DO block.
+     */
+    private static final Pattern PATTERN_UPDATE = Pattern.compile(
+            "\\bUPDATE\\s+(?:ONLY\\s+)?" + NAME + "\\s+SET\\b", FLAGS);
+    /**
+     * Pattern for parsing ADD CONSTRAINT action.
+     */
+    private static final Pattern PATTERN_ADD_CONSTRAINT = Pattern.compile(
+            "^ADD\\s+(?:CONSTRAINT\\s+" + IDENTIFIER + "\\s+)?"
+            + "(CHECK|FOREIGN\\s+KEY|PRIMARY\\s+KEY|UNIQUE|EXCLUDE)\\b(.*)$",
+            FLAGS);
+    /**
+     * Pattern for parsing ADD COLUMN action.
+     */
+    private static final Pattern PATTERN_ADD_COLUMN = Pattern.compile(
+            "^ADD\\s+(?:COLUMN\\s+)?(?:IF\\s+NOT\\s+EXISTS\\s+)?" + IDENTIFIER
+            + "\\s+(.*)$", FLAGS);
+    /**
+     * Pattern for parsing ALTER COLUMN action.
+     */
+    private static final Pattern PATTERN_ALTER_COLUMN = Pattern.compile(
+            "^ALTER\\s+(?:COLUMN\\s+)?(" + IDENTIFIER + ")\\s+(.*)$", FLAGS);
+    /**
+     * Pattern for matching NOT VALID at the end of constraint definition.
+     */
+    private static final Pattern PATTERN_NOT_VALID =
+            Pattern.compile("\\bNOT\\s+VALID\\s*$", FLAGS);
+    /**
+     * Pattern for parsing check constraint that only checks that the column
+     * is not null.
+     */
+    private static final Pattern PATTERN_NOT_NULL_CHECK = Pattern.compile(
+            "^\\s*\\(+\\s*(" + IDENTIFIER + ")\\s+IS\\s+NOT\\s+NULL\\s*\\)+"
+            + "\\s*(?:NOT\\s+VALID\\s*)?$", FLAGS);
+    /**
+     * Pattern for parsing default value of added column.
+     */
+    private static final Pattern PATTERN_DEFAULT = Pattern.compile(
+            "\\sDEFAULT\\s+(.+?)(?:\\s+(?:NOT\\s+)?NULL)?\\s*$", FLAGS);
+    /**
+     * Pattern for matching column types and clauses that always rewrite the
+     * table when the column is added.
+     */
+    private static final Pattern PATTERN_REWRITING_COLUMN = Pattern.compile(
+            "^(?:small|big)?serial[248]?\\b|\\sGENERATED\\s", FLAGS);
+    /**
+     * Pattern for matching comments.
+     */
+    private static final Pattern PATTERN_COMMENT =
+            Pattern.compile("/\\*\\s*(.*?)\\s*\\*/", FLAGS);
+    /**
+     * Pattern for matching unqualified name.
+     */
+    private static final Pattern PATTERN_UNQUALIFIED =
+            Pattern.compile("^" + IDENTIFIER + "$", FLAGS);
+    /**
+     * Object containing arguments settings.
+     */
+    private final PgDiffArguments arguments;
+    /**
+     * Relations created by the analyzed statements.
+     */
+    @SuppressWarnings("CollectionWithoutInitialCapacity")
+    private final Set<String> createdRelations = new HashSet<String>();
+    /**
+     * Columns that have check constraint ensuring they are not null, in form
+     * relation.column.
+     */
+    @SuppressWarnings("CollectionWithoutInitialCapacity")
+    private final Set<String> notNullChecks = new HashSet<String>();
+    /**
+     * Schema unqualified names are resolved in.
+     */
+    private String schema = "public";
+
+    /**
+     * Creates a new ImpactAnalyzer.
+     *
+     * @param arguments {@link #arguments}
+     */
+    public ImpactAnalyzer(final PgDiffArguments arguments) {
+        this.arguments = arguments;
+    }
+
+    /**
+     * Analyzes the statement.
+     *
+     * @param statement statement
+     *
+     * @return impact of the statement or null if the statement is not
+     *         classified (transaction control and settings)
+     */
+    public StatementImpact analyze(final String statement) {
+        final String sql = statement.trim();
+        Matcher matcher = PATTERN_SEARCH_PATH.matcher(sql);
+
+        if (matcher.find()) {
+            schema = matcher.group(1);
+
+            return null;
+        } else if (PATTERN_NOT_ANNOTATED.matcher(sql).find()) {
+            return null;
+        }
+
+        matcher = PATTERN_CREATE_TABLE.matcher(sql);
+
+        if (matcher.find()) {
+            createdRelations.add(qualify(matcher.group(1)));
+
+            return new StatementImpact(sql, null, null, TableEffect.NONE);
+        }
+
+        matcher = PATTERN_CREATE_INDEX.matcher(sql);
+
+        if (matcher.find()) {
+            return getImpact(sql, matcher.group(2), matcher.group(1) == null
+                    ? LockMode.SHARE : LockMode.SHARE_UPDATE_EXCLUSIVE,
+                    TableEffect.INDEX_BUILD);
+        }
+
+        matcher = PATTERN_CREATE_TRIGGER.matcher(sql);
+
+        if (matcher.find()) {
+            return getImpact(sql, matcher.group(1),
+                    LockMode.SHARE_ROW_EXCLUSIVE, TableEffect.NONE);
+        }
+
+        matcher = PATTERN_REPLACE_VIEW.matcher(sql);
+
+        if (matcher.find()) {
+            return getImpact(sql, matcher.group(1), LockMode.ACCESS_EXCLUSIVE,
+                    TableEffect.NONE);
+        }
+
+        matcher = PATTERN_DROP_INDEX.matcher(sql);
+
+        if (matcher.find()) {
+            return getImpact(sql, matcher.group(2), matcher.group(1) == null
+                    ? LockMode.ACCESS_EXCLUSIVE
+                    : LockMode.SHARE_UPDATE_EXCLUSIVE, TableEffect.NONE);
+        }
+
+        matcher = PATTERN_DROP_TRIGGER.matcher(sql);
+
+        if (!matcher.find()) {
+            matcher = PATTERN_DROP_RELATION.matcher(sql);
+        }
+
+        if (matcher.reset().find()) {
+            return getImpact(sql, matcher.group(1), LockMode.ACCESS_EXCLUSIVE,
+                    TableEffect.NONE);
+        }
+
+        matcher = PATTERN_DROP_SCHEMA.matcher(sql);
+
+        if (matcher.find()) {
+            return new StatementImpact(sql, matcher.group(1),
+                    LockMode.ACCESS_EXCLUSIVE, TableEffect.NONE);
+        }
+
+        matcher = PATTERN_ALTER_RELATION.matcher(sql);
+
+        if (matcher.find()) {
+            return analyzeAlter(sql, matcher.group(1), matcher.group(2),
+                    matcher.group(3));
+        }
+
+        matcher = PATTERN_COMMENT_RELATION.matcher(sql);
+
+        if (!matcher.find()) {
+            matcher = PATTERN_COMMENT_COLUMN.matcher(sql);
+        }
+
+        if (!matcher.reset().find()) {
+            matcher = PATTERN_COMMENT_ON.matcher(sql);
+        }
+
+        if (matcher.reset().find()) {
+            return getImpact(sql, matcher.group(1),
+                    LockMode.SHARE_UPDATE_EXCLUSIVE, TableEffect.NONE);
+        }
+
+        matcher = PATTERN_DML.matcher(sql);
+
+        if (matcher.find()) {
+            return getImpact(sql, matcher.group(1), LockMode.ROW_EXCLUSIVE,
+                    TableEffect.NONE);
+        }
+
+        if (PATTERN_DO.matcher(sql).find()) {
+            // backfills update the table in batches, each batch in its own
+            // transaction
+            matcher = PATTERN_UPDATE.matcher(sql);
+
+            while (matcher.find()) {
+                if (!PgDiffBackfills.PROGRESS_TABLE.equals(
+                        matcher.group(1))) {
+                    return getImpact(sql, matcher.group(1),
+                            LockMode.ROW_EXCLUSIVE, TableEffect.BACKFILL);
+                }
+            }
+        }
+
+        return new StatementImpact(sql, null, null, TableEffect.NONE);
+    }
+
+    /**
+     * Analyzes ALTER statement.
+     *
+     * @param sql     the statement
+     * @param kind    kind of the altered relation
+     * @param name    name of the altered relation
+     * @param actions actions of the statement
+     *
+     * @return impact of the statement
+     */
+    private StatementImpact analyzeAlter(final String sql, final String kind,
+            final String name, final String actions) {
+        if ("INDEX".equalsIgnoreCase(kind)) {
+            return getImpact(sql, name, LockMode.ACCESS_EXCLUSIVE,
+                    actions.matches("(?is)^SET\\s+TABLESPACE\\b.*")
+                    ? TableEffect.REWRITE : TableEffect.NONE);
+        } else if ("VIEW".equalsIgnoreCase(kind)) {
+            return getImpact(sql, name, LockMode.ACCESS_EXCLUSIVE,
+                    TableEffect.NONE);
+        } else if ("SEQUENCE".equalsIgnoreCase(kind)) {
+            return getImpact(sql, name, LockMode.SHARE_ROW_EXCLUSIVE,
+                    TableEffect.NONE);
+        }
+
+        final String relation = qualify(name);
+        LockMode lockMode = null;
+        TableEffect effect = TableEffect.NONE;
+
+        for (final String action : splitActions(actions)) {
+            final LockMode actionLockMode;
+            final TableEffect actionEffect;
+            final String comment;
+            final Matcher commentMatcher = PATTERN_COMMENT.matcher(action);
+
+            if (commentMatcher.find()) {
+                comment = commentMatcher.group(1);
+            } else {
+                comment = null;
+            }
+
+            final String adjAction = commentMatcher.replaceAll(" ").trim();
+            final Matcher constraintMatcher =
+                    PATTERN_ADD_CONSTRAINT.matcher(adjAction);
+            final Matcher columnMatcher =
+                    PATTERN_ADD_COLUMN.matcher(adjAction);
+            final Matcher alterMatcher =
+                    PATTERN_ALTER_COLUMN.matcher(adjAction);
+
+            if (constraintMatcher.find()) {
+                final String type =
+                        constraintMatcher.group(1).toUpperCase(Locale.ENGLISH);
+                final String definition = constraintMatcher.group(2);
+                final boolean notValid =
+                        PATTERN_NOT_VALID.matcher(definition).find();
+
+                if (type.startsWith("FOREIGN")) {
+                    actionLockMode = LockMode.SHARE_ROW_EXCLUSIVE;
+                    actionEffect =
+                            notValid ? TableEffect.NONE : TableEffect.SCAN;
+                } else if ("CHECK".equals(type)) {
+                    final Matcher checkMatcher =
+                            PATTERN_NOT_NULL_CHECK.matcher(definition);
+
+                    if (checkMatcher.find()) {
+                        notNullChecks.add(
+                                relation + "." + checkMatcher.group(1));
+                    }
+
+                    actionLockMode = LockMode.ACCESS_EXCLUSIVE;
+                    actionEffect =
+                            notValid ? TableEffect.NONE : TableEffect.SCAN;
+                } else {
+                    actionLockMode = LockMode.ACCESS_EXCLUSIVE;
+                    actionEffect = definition.matches(
+                            "(?is)^\\s*USING\\s+INDEX\\b.*")
+                            ? TableEffect.NONE : TableEffect.INDEX_BUILD;
+                }
+            } else if (columnMatcher.find()) {
+                actionLockMode = LockMode.ACCESS_EXCLUSIVE;
+                actionEffect = getAddColumnEffect(columnMatcher.group(1));
+            } else if (alterMatcher.find()) {
+                final String column = alterMatcher.group(1);
+                final String columnAction = alterMatcher.group(2);
+
+                if (columnAction.matches(
+                        "(?is)^(?:SET\\s+DATA\\s+)?TYPE\\b.*")) {
+                    actionLockMode = LockMode.ACCESS_EXCLUSIVE;
+                    actionEffect = getTypeChangeEffect(comment);
+                } else if (columnAction.matches(
+                        "(?is)^SET\\s+NOT\\s+NULL\\b.*")) {
+                    actionLockMode = LockMode.ACCESS_EXCLUSIVE;
+                    actionEffect = arguments.isSupported(
+                            Capability.NOT_NULL_FROM_CHECK)
+                            && notNullChecks.contains(relation + "." + column)
+                            ? TableEffect.NONE : TableEffect.SCAN;
+                } else if (columnAction.matches(
+                        "(?is)^SET\\s+STATISTICS\\b.*")) {
+                    actionLockMode = LockMode.SHARE_UPDATE_EXCLUSIVE;
+                    actionEffect = TableEffect.NONE;
+                } else {
+                    actionLockMode = LockMode.ACCESS_EXCLUSIVE;
+                    actionEffect = TableEffect.NONE;
+                }
+            } else if (adjAction.matches("(?is)^VALIDATE\\s+CONSTRAINT\\b.*")) {
+                actionLockMode = LockMode.SHARE_UPDATE_EXCLUSIVE;
+                actionEffect = TableEffect.SCAN;
+            } else if (adjAction.matches("(?is)^(?:(?:SET\\s+)?TABLESPACE"
+                    + "|SET\\s+WITH\\s+OIDS|SET\\s+WITHOUT\\s+OIDS)\\b.*")) {
+                actionLockMode = LockMode.ACCESS_EXCLUSIVE;
+                actionEffect = TableEffect.REWRITE;
+            } else if (adjAction.matches("(?is)^(?:CLUSTER\\s+ON"
+                    + "|SET\\s+WITHOUT\\s+CLUSTER)\\b.*")) {
+                actionLockMode = LockMode.SHARE_UPDATE_EXCLUSIVE;
+                actionEffect = TableEffect.NONE;
+            } else if (adjAction.matches("(?is)^(?:ENABLE|DISABLE)\\s+"
+                    + "(?:ALWAYS\\s+|REPLICA\\s+)?TRIGGER\\b.*")) {
+                actionLockMode = LockMode.SHARE_ROW_EXCLUSIVE;
+                actionEffect = TableEffect.NONE;
+            } else {
+                actionLockMode = LockMode.ACCESS_EXCLUSIVE;
+                actionEffect = TableEffect.NONE;
+            }
+
+            if (lockMode == null || actionLockMode.compareTo(lockMode) > 0) {
+                lockMode = actionLockMode;
+            }
+
+            if (actionEffect.compareTo(effect) > 0) {
+                effect = actionEffect;
+            }
+        }
+
+        return getImpact(sql, name, lockMode, effect);
+    }
+
+    /**
+     * Returns effect of adding column with given definition. Adding column
+     * with default value rewrites the table unless the server supports fast
+     * defaults and the default value is not volatile.
+     *
+     * @param definition definition of the column without its name
+     *
+     * @return effect of adding the column
+     */
+    private TableEffect getAddColumnEffect(final String definition) {
+        if (PATTERN_REWRITING_COLUMN.matcher(definition).find()) {
+            return TableEffect.REWRITE;
+        }
+
+        final Matcher matcher = PATTERN_DEFAULT.matcher(definition);
+
+        if (!matcher.find() || "NULL".equalsIgnoreCase(matcher.group(1))) {
+            return TableEffect.NONE;
+        }
+
+        return arguments.isSupported(Capability.FAST_DEFAULT)
+                && PgColumnUtils.isNonVolatileDefault(matcher.group(1))
+                ? TableEffect.NONE : TableEffect.REWRITE;
+    }
+
+    /**
+     * Returns effect of column type change. Original and new type are parsed
+     * from the comment that is output next to the type change. If the
+     * comment cannot be parsed, the table is expected to be rewritten.
+     *
+     * @param comment comment of the type change or null
+     *
+     * @return effect of the type change
+     */
+    private static TableEffect getTypeChangeEffect(final String comment) {
+        if (comment == null) {
+            return TableEffect.REWRITE;
+        }
+
+        final Object[] values;
+
+        try {
+            values = new MessageFormat(Resources.getString(
+                    "TypeParameterChange")).parse(comment);
+        } catch (final ParseException ex) {
+            return TableEffect.REWRITE;
+        }
+
+        if (values.length < 3 || values[1] == null || values[2] == null) {
+            return TableEffect.REWRITE;
+        }
+
+        return PgColumnUtils.isRewriteRequired(values[1].toString(),
+                values[2].toString())
+                ? TableEffect.REWRITE : TableEffect.NONE;
+    }
+
+    /**
+     * Creates impact of statement on the relation. Relations that were
+     * created by the diff are empty, so statements have no effect on their
+     * data.
+     *
+     * @param sql      the statement
+     * @param name     name of the relation, possibly schema qualified
+     * @param lockMode lock mode acquired on the relation
+     * @param effect   effect of the statement on data of the relation
+     *
+     * @return impact of the statement
+     */
+    private StatementImpact getImpact(final String sql, final String name,
+            final LockMode lockMode, final TableEffect effect) {
+        final String relation = qualify(name);
+
+        return new StatementImpact(sql, relation, lockMode,
+                createdRelations.contains(relation) ? TableEffect.NONE
+                : effect);
+    }
+
+    /**
+     * Qualifies the name with current schema if it is not qualified yet.
+     *
+     * @param name name
+     *
+     * @return schema qualified name
+     */
+    private String qualify(final String name) {
+        if (PATTERN_UNQUALIFIED.matcher(name).matches()) {
+            return schema + "." + name;
+        }
+
+        return name;
+    }
+
+    /**
+     * Splits actions of ALTER TABLE statement separated by commas. Commas
+     * inside parentheses, quotes and comments are not considered to be
+     * separators.
+     *
+     * @param actions actions
+     *
+     * @return list of actions
+     */
+    @SuppressWarnings("AssignmentToForLoopParameter")
+    private static List<String> splitActions(final String actions) {
+        @SuppressWarnings("CollectionWithoutInitialCapacity")
+        final List<String> list = new ArrayList<String>();
+        int depth = 0;
+        int start = 0;
+
+        for (int pos = 0; pos < actions.length(); pos++) {
+            final char chr = actions.charAt(pos);
+
+            if (chr == '\'' || chr == '"') {
+                final int endPos = actions.indexOf(chr, pos + 1);
+                pos = endPos == -1 ? actions.length() : endPos;
+            } else if (chr == '/' && actions.startsWith("/*", pos)) {
+                final int endPos = actions.indexOf("*/", pos + 2);
+                pos = endPos == -1 ? actions.length() : endPos + 1;
+            } else if (chr == '(') {
+                depth++;
+            } else if (chr == ')') {
+                depth--;
+            } else if (chr == ',' && depth == 0) {
+                list.add(actions.substring(start, pos).trim());
+                start = pos + 1;
+            }
+        }
+
+        list.add(actions.substring(start).trim());
+
+        return list;
+    }
+}
@@ -0,0 +1,500 @@
+/**
+ * Copyright 2006 StartNet s.r.o.
+ *
+ * Distributed under MIT license
+ */
+package cz.startnet.utils.pgdiff.impact;
+
+import cz.startnet.utils.pgdiff.PgDiffArguments;
+import cz.startnet.utils.pgdiff.PgDiffUtils;
+import cz.startnet.utils.pgdiff.Resources;
+import cz.startnet.utils.pgdiff.loader.FileException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Writer that splits the output into statements, classifies every statement
+ * using {@link ImpactAnalyzer} and optionally annotates the statement with
+ * SQL comment describing the lock it acquires, whether it rewrites or scans
+ * the table and how long it is estimated to run. Text is passed to the
+ * underlying writer once the whole statement is written. Runs of
+ * consecutive statements that do not depend on each other, like index
+ * builds, can be reordered so that the most expensive statements start
+ * first.
+ *
+ * @author fordfrog
+ */
+public class ImpactWriter extends Writer {
+
+    /**
+     * Pattern for matching dollar quote tag.
+     */
+    private static final Pattern PATTERN_DOLLAR_TAG =
+            Pattern.compile("\\$[a-zA-Z_0-9]*\\$");
+    /**
+     * Pattern for matching statements that do not depend on other
+     * statements of the same run, that is index builds and constraint
+     * validations.
+     */
+    private static final Pattern PATTERN_INDEPENDENT = Pattern.compile(
+            "^(?:CREATE\\s+(?:UNIQUE\\s+)?INDEX\\s.*"
+            + "|ALTER\\s+TABLE\\s+[^,]+\\sVALIDATE\\s+CONSTRAINT\\s+[^,]+)$",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    /**
+     * Writer the output is passed to.
+     */
+    private final PrintWriter output;
+    /**
+     * Analyzer of the statements.
+     */
+    private final ImpactAnalyzer analyzer;
+    /**
+     * Whether the statements should be annotated.
+     */
+    private final boolean annotate;
+    /**
+     * Estimator of statement run times or null if statistics are not
+     * available.
+     */
+    private final CostEstimator estimator;
+    /**
+     * Whether independent statements should be reordered so that the most
+     * expensive ones start first.
+     */
+    private final boolean expensiveFirst;
+    /**
+     * Impacts of the statements written so far.
+     */
+    @SuppressWarnings("CollectionWithoutInitialCapacity")
+    private final List<StatementImpact> impacts =
+            new ArrayList<StatementImpact>();
+    /**
+     * Buffer of currently written line.
+     */
+    private final StringBuilder sbLine = new StringBuilder(256);
+    /**
+     * Buffer of currently written statement.
+     */
+    private final StringBuilder sbStatement = new StringBuilder(1024);
+    /**
+     * Whitespace preceding currently written statement.
+     */
+    private final StringBuilder sbWhitespace = new StringBuilder(16);
+    /**
+     * Run of independent statements that are waiting to be reordered, each
+     * including its preceding whitespace and annotation.
+     */
+    @SuppressWarnings("CollectionWithoutInitialCapacity")
+    private final List<String> run = new ArrayList<String>();
+    /**
+     * Estimated run times of statements in {@link #run}.
+     */
+    @SuppressWarnings("CollectionWithoutInitialCapacity")
+    private final List<Double> runEstimates = new ArrayList<Double>();
+    /**
+     * Estimated run time of all statements in seconds.
+     */
+    private double totalEstimate;
+
+    /**
+     * Creates a new ImpactWriter.
+     *
+     * @param output    {@link #output}
+     * @param arguments object containing arguments settings
+     */
+    public ImpactWriter(final PrintWriter output,
+            final PgDiffArguments arguments) {
+        this.output = output;
+        analyzer = new ImpactAnalyzer(arguments);
+        expensiveFirst = arguments.isExpensiveFirst();
+
+        if (arguments.getStatisticsFile() == null) {
+            estimator = null;
+        } else {
+            estimator = new CostEstimator(CostEstimator.readStatistics(
+                    new File(arguments.getStatisticsFile())),
+                    arguments.getThroughput());
+        }
+
+        annotate = arguments.isAnnotateLocks() || estimator != null;
+    }
+
+    @Override
+    public void write(final char[] cbuf, final int off, final int len) {
+        for (int i = off; i < off + len; i++) {
+            sbLine.append(cbuf[i]);
+
+            if (cbuf[i] == '\n') {
+                processLine();
+            }
+        }
+    }
+
+    @Override
+    public void flush() {
+        output.flush();
+    }
+
+    /**
+     * Passes rest of the buffered text to the underlying writer and outputs
+     * estimated run time of all statements if it is known. The underlying
+     * writer is not closed.
+     */
+    @Override
+    public void close() {
+        if (sbLine.length() > 0) {
+            processLine();
+        }
+
+        flushRun();
+        output.print(sbWhitespace);
+        output.print(sbStatement);
+        sbWhitespace.setLength(0);
+        sbStatement.setLength(0);
+
+        if (annotate && estimator != null) {
+            output.println();
+            output.println("-- " + MessageFormat.format(
+                    Resources.getString("EstimatedTotalTime"),
+                    CostEstimator.formatDuration(totalEstimate)));
+        }
+
+        output.flush();
+    }
+
+    /**
+     * Getter for {@link #impacts}.
+     *
+     * @return {@link #impacts}
+     */
+    public List<StatementImpact> getImpacts() {
+        return Collections.unmodifiableList(impacts);
+    }
+
+    /**
+     * Returns relations that are rewritten by the statements.
+     *
+     * @return set of schema qualified relation names
+     */
+    public Set<String> getRewrittenRelations() {
+        return getRelations(TableEffect.REWRITE);
+    }
+
+    /**
+     * Writes summary of the impacts in JSON format to the file.
+     *
+     * @param file file the summary should be written to
+     */
+    public void writeSummary(final File file) {
+        try {
+            final PrintWriter writer = new PrintWriter(new OutputStreamWriter(
+                    new FileOutputStream(file), "UTF-8"));
+
+            try {
+                writeSummary(writer);
+            } finally {
+                writer.close();
+            }
+        } catch (final IOException ex) {
+            throw new FileException(MessageFormat.format(
+                    Resources.getString("CannotWriteFile"), file), ex);
+        }
+    }
+
+    /**
+     * Writes summary of the impacts in JSON format.
+     *
+     * @param writer writer the summary should be written to
+     */
+    public void writeSummary(final PrintWriter writer) {
+        LockMode strongestLock = null;
+
+        writer.println('{');
+        writer.println("\t\"statements\": [");
+
+        for (int i = 0; i < impacts.size(); i++) {
+            final StatementImpact impact = impacts.get(i);
+
+            if (impact.getLockMode() != null && (strongestLock == null
+                    || impact.getLockMode().compareTo(strongestLock) > 0)) {
+                strongestLock = impact.getLockMode();
+            }
+
+            writer.println("\t\t{");
+            writer.println("\t\t\t\"relation\": "
+                    + PgDiffUtils.getJsonString(impact.getRelation()) + ',');
+            writer.println("\t\t\t\"lock\": " + PgDiffUtils.getJsonString(
+                    impact.getLockMode() == null
+                    ? null : impact.getLockMode().getName()) + ',');
+            writer.println("\t\t\t\"effect\": " + PgDiffUtils.getJsonString(
+                    impact.getEffect().name().toLowerCase(Locale.ENGLISH))
+                    + ',');
+            if (estimator != null) {
+                final double estimate = estimator.estimate(impact);
+                writer.println("\t\t\t\"estimatedSeconds\": "
+                        + (estimate < 0 ? "null" : String.format(
+                        Locale.ENGLISH, "%.1f", estimate)) + ',');
+            }
+
+            writer.println("\t\t\t\"statement\": "
+                    + PgDiffUtils.getJsonString(impact.getStatement()));
+            writer.println(i < impacts.size() - 1 ? "\t\t}," : "\t\t}");
+        }
+
+        writer.println("\t],");
+        writer.println("\t\"rewrittenRelations\": "
+                + getJsonArray(getRelations(TableEffect.REWRITE)) + ',');
+        writer.println("\t\"scannedRelations\": "
+                + getJsonArray(getRelations(TableEffect.SCAN)) + ',');
+        writer.println("\t\"indexedRelations\": "
+                + getJsonArray(getRelations(TableEffect.INDEX_BUILD)) + ',');
+
+        if (estimator != null) {
+            writer.println("\t\"estimatedTotalSeconds\": " + String.format(
+                    Locale.ENGLISH, "%.1f", totalEstimate) + ',');
+        }
+
+        writer.println("\t\"strongestLock\": " + PgDiffUtils.getJsonString(
+                strongestLock == null ? null : strongestLock.getName()));
+        writer.println('}');
+    }
+
+    /**
+     * Returns relations that are affected by the statements with given
+     * effect.
+     *
+     * @param effect effect
+     *
+     * @return set of schema qualified relation names
+     */
+    private Set<String> getRelations(final TableEffect effect) {
+        @SuppressWarnings("CollectionWithoutInitialCapacity")
+        final Set<String> relations = new LinkedHashSet<String>();
+
+        for (final StatementImpact impact : impacts) {
+            if (impact.getEffect() == effect) {
+                relations.add(impact.getRelation());
+            }
+        }
+
+        return relations;
+    }
+
+    /**
+     * Processes buffered line. If the line completes statement, the
+     * statement is analyzed, annotated and passed to the underlying writer
+     * or added to the run of independent statements.
+     */
+    private void processLine() {
+        final String line = sbLine.toString();
+        sbLine.setLength(0);
+
+        if (sbStatement.length() == 0 && line.trim().isEmpty()) {
+            sbWhitespace.append(line);
+
+            return;
+        }
+
+        sbStatement.append(line);
+
+        final String statement = sbStatement.toString().trim();
+        final StringBuilder sbChunk = new StringBuilder(
+                sbWhitespace.length() + sbStatement.length() + 100);
+        sbChunk.append(sbWhitespace);
+        double estimate = -1;
+
+        if (statement.startsWith("/*")) {
+            if (!statement.endsWith("*/")) {
+                return;
+            }
+        } else if (!statement.startsWith("--")) {
+            if (!isComplete(statement)) {
+                return;
+            }
+
+            final StatementImpact impact = analyzer.analyze(statement);
+
+            if (impact != null) {
+                impacts.add(impact);
+
+                if (estimator != null) {
+                    estimate = estimator.estimate(impact);
+                    totalEstimate += Math.max(estimate, 0);
+                }
+
+                if (annotate) {
+                    sbChunk.append(getAnnotation(impact, estimate));
+                    sbChunk.append(System.getProperty("line.separator"));
+                }
+            }
+        }
+
+        sbChunk.append(sbStatement);
+        sbWhitespace.setLength(0);
+        sbStatement.setLength(0);
+
+        if (expensiveFirst
+                && PATTERN_INDEPENDENT.matcher(statement).matches()) {
+            run.add(sbChunk.toString());
+            runEstimates.add(estimate);
+        } else {
+            flushRun();
+            output.print(sbChunk);
+        }
+    }
+
+    /**
+     * Outputs run of independent statements, ordered from the most
+     * expensive one to the cheapest one. Statements with the same estimate
+     * keep their order.
+     */
+    private void flushRun() {
+        while (!run.isEmpty()) {
+            int maxIndex = 0;
+
+            for (int i = 1; i < run.size(); i++) {
+                if (runEstimates.get(i) > runEstimates.get(maxIndex)) {
+                    maxIndex = i;
+                }
+            }
+
+            output.print(run.remove(maxIndex));
+            runEstimates.remove(maxIndex);
+        }
+    }
+
+    /**
+     * Returns SQL comment describing impact of the statement.
+     *
+     * @param impact   impact of the statement
+     * @param estimate estimated run time of the statement in seconds or -1
+     *                 if it is not known
+     *
+     * @return SQL comment
+     */
+    private static String getAnnotation(final StatementImpact impact,
+            final double estimate) {
+        final String annotation;
+
+        if (impact.getLockMode() == null) {
+            annotation = Resources.getString("LockNone");
+        } else {
+            final String key;
+
+            switch (impact.getEffect()) {
+                case REWRITE:
+                    key = "LockRewrite";
+                    break;
+                case INDEX_BUILD:
+                    key = "LockIndexBuild";
+                    break;
+                case SCAN:
+                    key = "LockScan";
+                    break;
+                case BACKFILL:
+                    key = "LockBackfill";
+                    break;
+                default:
+                    key = "Lock";
+            }
+
+            annotation = MessageFormat.format(Resources.getString(key),
+                    impact.getLockMode().getName(), impact.getRelation());
+        }
+
+        if (estimate < 0 || impact.getEffect() == TableEffect.NONE) {
+            return "-- " + annotation;
+        }
+
+        return "-- " + annotation + ", " + MessageFormat.format(
+                Resources.getString("EstimatedTime"),
+                CostEstimator.formatDuration(estimate));
+    }
+
+    /**
+     * Checks whether the text is complete statement, that is whether it ends
+     * with semicolon that is not inside quotes or comment.
+     *
+     * @param text text
+     *
+     * @return true if the text is complete statement, otherwise false
+     */
+    @SuppressWarnings("AssignmentToForLoopParameter")
+    public static boolean isComplete(final String text) {
+        if (!text.endsWith(";")) {
+            return false;
+        }
+
+        final int last = text.length() - 1;
+
+        for (int pos = 0; pos < last; pos++) {
+            final char chr = text.charAt(pos);
+            final int endPos;
+
+            if (chr == '\'' || chr == '"') {
+                endPos = text.indexOf(chr, pos + 1);
+            } else if (text.startsWith("/*", pos)) {
+                endPos = text.indexOf("*/", pos + 2) + 1;
+            } else if (text.startsWith("--", pos)) {
+                endPos = text.indexOf('\n', pos);
+            } else if (chr == '$') {
+                final Matcher matcher = PATTERN_DOLLAR_TAG.matcher(text);
+
+                if (!matcher.find(pos) || matcher.start() != pos) {
+                    continue;
+                }
+
+                final int tagEnd = text.indexOf(matcher.group(), matcher.end());
+                endPos = tagEnd == -1
+                        ? -1 : tagEnd + matcher.group().length() - 1;
+            } else {
+                continue;
+            }
+
+            if (endPos <= 0 || endPos >= last) {
+                return false;
+            }
+
+            pos = endPos;
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns JSON array containing the values.
+     *
+     * @param values values
+     *
+     * @return JSON array
+     */
+    private static String getJsonArray(final Set<String> values) {
+        final StringBuilder sbArray = new StringBuilder(100);
+        sbArray.append('[');
+
+        for (final String value : values) {
+            if (sbArray.length() > 1) {
+                sbArray.append(", ");
+            }
+
+            sbArray.append(PgDiffUtils.getJsonString(value));
+        }
+
+        sbArray.append(']');
+
+        return sbArray.toString();
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ * Copyright 2006 StartNet s.r.o.
+ *
+ * Distributed under MIT license
+ */
+package cz.startnet.utils.pgdiff.impact;
+
+/**
+ * Table-level lock modes of PostgreSQL, ordered from the weakest to the
+ * strongest one.
+ *
+ * @author fordfrog
+ */
+public enum LockMode {
+
+    /**
+     * ACCESS SHARE lock, conflicts only with ACCESS EXCLUSIVE.
+     */
+    ACCESS_SHARE,
+    /**
+     * ROW SHARE lock.
+     */
+    ROW_SHARE,
+    /**
+     * ROW EXCLUSIVE lock, acquired by commands that modify data.
+     */
+    ROW_EXCLUSIVE,
+    /**
+     * SHARE UPDATE EXCLUSIVE lock, does not block reads nor writes.
+     */
+    SHARE_UPDATE_EXCLUSIVE,
+    /**
+     * SHARE lock, blocks writes.
+     */
+    SHARE,
+    /**
+     * SHARE ROW EXCLUSIVE lock, blocks writes.
+     */
+    SHARE_ROW_EXCLUSIVE,
+    /**
+     * EXCLUSIVE lock, blocks everything except reads.
+     */
+    EXCLUSIVE,
+    /**
+     * ACCESS EXCLUSIVE lock, blocks both reads and writes.
+     */
+    ACCESS_EXCLUSIVE;
+
+    /**
+     * Returns name of the lock mode as used by PostgreSQL.
+     *
+     * @return name of the lock mode
+     */
+    public String getName() {
+        return name().replace('_', ' ');
+    }
+}
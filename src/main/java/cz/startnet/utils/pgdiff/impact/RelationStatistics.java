@@ -0,0 +1,68 @@
+/**
+ * Copyright 2006 StartNet s.r.o.
+ *
+ * Distributed under MIT license
+ */
+package cz.startnet.utils.pgdiff.impact;
+
+/**
+ * Size statistics of single relation as exported from pg_class.
+ *
+ * @author fordfrog
+ */
+public class RelationStatistics {
+
+    /**
+     * Size of the table in bytes, excluding indexes.
+     */
+    private final long tableBytes;
+    /**
+     * Estimated number of rows.
+     */
+    private final long rows;
+    /**
+     * Size of all indexes of the table in bytes.
+     */
+    private final long indexBytes;
+
+    /**
+     * Creates a new RelationStatistics.
+     *
+     * @param tableBytes {@link #tableBytes}
+     * @param rows       {@link #rows}
+     * @param indexBytes {@link #indexBytes}
+     */
+    public RelationStatistics(final long tableBytes, final long rows,
+            final long indexBytes) {
+        this.tableBytes = tableBytes;
+        this.rows = rows;
+        this.indexBytes = indexBytes;
+    }
+
+    /**
+     * Getter for {@link #tableBytes}.
+     *
+     * @return {@link #tableBytes}
+     */
+    public long getTableBytes() {
+        return tableBytes;
+    }
+
+    /**
+     * Getter for {@link #rows}.
+     *
+     * @return {@link #rows}
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * Getter for {@link #indexBytes}.
+     *
+     * @return {@link #indexBytes}
+     */
+    public long getIndexBytes() {
+        return indexBytes;
+    }
+}
@@ -0,0 +1,30 @@
+/**
+ * Copyright 2006 StartNet s.r.o.
+ *
+ * Distributed under MIT license
+ */
+package cz.startnet.utils.pgdiff.impact;
+
+/**
+ * Exception thrown if the diff rewrites tables while rewrites are not
+ * allowed.
+ *
+ * @author fordfrog
+ */
+public class RewriteException extends RuntimeException {
+
+    /**
+     * Serial version uid.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs an instance of {@code RewriteException} with the specified
+     * detail message.
+     *
+     * @param msg the detail message
+     */
+    public RewriteException(final String msg) {
+        super(msg);
+    }
+}
@@ -0,0 +1,452 @@
+/**
+ * Copyright 2006 StartNet s.r.o.
+ *
+ * Distributed under MIT license
+ */
+package cz.startnet.utils.pgdiff.impact;
+
+import cz.startnet.utils.pgdiff.Capability;
+import cz.startnet.utils.pgdiff.PgDiffArguments;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Writer that splits the output into short transactions. Consecutive
+ * statements that lock the same relation are grouped, statements that do
+ * not lock any known relation form groups of their own, and every group is
+ * run in its own transaction, inside DO block that retries the group with
+ * exponential backoff if a lock cannot be acquired in time or a deadlock is
+ * detected. Every group is preceded by SET lock_timeout and SET
+ * statement_timeout, so that the statements do not wait in lock queue for
+ * long and thus do not block other sessions waiting behind them. Groups
+ * containing statements that rewrite or scan a table or build an index run
+ * with statement_timeout disabled, as their duration grows with size of the
+ * table and retrying them after cancellation would not help.
+ * Statements that cannot run inside transaction block, like CREATE INDEX
+ * CONCURRENTLY or DO blocks that commit batches, are output unwrapped with
+ * statement_timeout disabled. Statements enclosed in START TRANSACTION and
+ * COMMIT TRANSACTION are kept in one group.
+ *
+ * @author fordfrog
+ */
+public class ShortTransactionWriter extends Writer {
+
+    /**
+     * Flags of all patterns.
+     */
+    private static final int FLAGS = Pattern.CASE_INSENSITIVE | Pattern.DOTALL;
+    /**
+     * Pattern for matching start of transaction block.
+     */
+    private static final Pattern PATTERN_BEGIN = Pattern.compile(
+            "^(?:START\\s+TRANSACTION|BEGIN)\\b(?:\\s+(?:TRANSACTION|WORK))?"
+            + "\\s*;$", FLAGS);
+    /**
+     * Pattern for matching end of transaction block.
+     */
+    private static final Pattern PATTERN_END = Pattern.compile(
+            "^(?:COMMIT|END|ROLLBACK)\\b(?:\\s+(?:TRANSACTION|WORK))?\\s*;$",
+            FLAGS);
+    /**
+     * Pattern for matching settings.
+     */
+    private static final Pattern PATTERN_SET =
+            Pattern.compile("^SET\\s", FLAGS);
+    /**
+     * Pattern for matching statements that cannot run inside transaction
+     * block.
+     */
+    private static final Pattern PATTERN_NO_TRANSACTION = Pattern.compile(
+            "^(?:(?:CREATE\\s+(?:UNIQUE\\s+)?INDEX|DROP\\s+INDEX|REINDEX\\s+"
+            + "\\w+)\\s+CONCURRENTLY\\b.*|VACUUM\\b.*"
+            + "|DO\\s.*\\bCOMMIT\\s*;.*)$", FLAGS);
+    /**
+     * Writer the output is passed to.
+     */
+    private final PrintWriter output;
+    /**
+     * Analyzer used to find relations locked by the statements.
+     */
+    private final ImpactAnalyzer analyzer;
+    /**
+     * Value of lock_timeout setting or null if lock_timeout is not supported
+     * by target version.
+     */
+    private final String lockTimeout;
+    /**
+     * Value of statement_timeout setting of the groups.
+     */
+    private final String statementTimeout;
+    /**
+     * Number of attempts to run a group before the error is raised.
+     */
+    private final int lockRetries;
+    /**
+     * Buffer of currently written line.
+     */
+    private final StringBuilder sbLine = new StringBuilder(256);
+    /**
+     * Buffer of currently written statement.
+     */
+    private final StringBuilder sbStatement = new StringBuilder(1024);
+    /**
+     * Comment lines preceding currently written statement.
+     */
+    @SuppressWarnings("CollectionWithoutInitialCapacity")
+    private final List<String> comments = new ArrayList<String>();
+    /**
+     * Statements of current group and comment lines preceding them.
+     */
+    @SuppressWarnings("CollectionWithoutInitialCapacity")
+    private final List<String> group = new ArrayList<String>();
+    /**
+     * Relation locked by statements of current group or null if no
+     * statement of the group locks a relation.
+     */
+    private String groupRelation;
+    /**
+     * Whether any statement of current group locks existing relation.
+     */
+    private boolean groupLocks;
+    /**
+     * Whether any statement of current group rewrites or scans a table or
+     * builds an index.
+     */
+    private boolean groupLongRunning;
+    /**
+     * Whether current group is enclosed in explicit transaction block.
+     */
+    private boolean inTransaction;
+
+    /**
+     * Creates a new ShortTransactionWriter.
+     *
+     * @param output    {@link #output}
+     * @param arguments object containing arguments settings
+     */
+    public ShortTransactionWriter(final PrintWriter output,
+            final PgDiffArguments arguments) {
+        this.output = output;
+        analyzer = new ImpactAnalyzer(arguments);
+        lockTimeout = arguments.isSupported(Capability.LOCK_TIMEOUT)
+                ? arguments.getLockTimeout() : null;
+        statementTimeout = arguments.getStatementTimeout();
+        lockRetries = arguments.getLockRetries();
+    }
+
+    @Override
+    public void write(final char[] cbuf, final int off, final int len) {
+        for (int i = off; i < off + len; i++) {
+            sbLine.append(cbuf[i]);
+
+            if (cbuf[i] == '\n') {
+                processLine();
+            }
+        }
+    }
+
+    @Override
+    public void flush() {
+        output.flush();
+    }
+
+    /**
+     * Outputs current group and rest of the buffered text. The underlying
+     * writer is not closed.
+     */
+    @Override
+    public void close() {
+        if (sbLine.length() > 0) {
+            processLine();
+        }
+
+        flushGroup();
+
+        for (final String comment : comments) {
+            output.println();
+            output.println(comment);
+        }
+
+        comments.clear();
+
+        if (sbStatement.toString().trim().length() > 0) {
+            output.println();
+            output.println(sbStatement.toString().trim());
+        }
+
+        sbStatement.setLength(0);
+        output.flush();
+    }
+
+    /**
+     * Processes buffered line. If the line completes statement, the
+     * statement is added to current group or output.
+     */
+    private void processLine() {
+        final String line = sbLine.toString();
+        sbLine.setLength(0);
+
+        if (sbStatement.length() == 0) {
+            final String trimmed = line.trim();
+
+            if (trimmed.isEmpty()) {
+                return;
+            } else if (trimmed.startsWith("--")) {
+                comments.add(trimmed);
+
+                return;
+            }
+        }
+
+        sbStatement.append(line);
+
+        final String statement = sbStatement.toString().trim();
+
+        if (statement.startsWith("/*")) {
+            if (!statement.endsWith("*/")) {
+                return;
+            }
+
+            sbStatement.setLength(0);
+            flushGroup();
+            outputStatement(statement);
+
+            return;
+        } else if (!ImpactWriter.isComplete(statement)) {
+            return;
+        }
+
+        sbStatement.setLength(0);
+        processStatement(statement);
+    }
+
+    /**
+     * Adds the statement to current group, starts new group or outputs the
+     * statement unwrapped.
+     *
+     * @param statement complete statement
+     */
+    private void processStatement(final String statement) {
+        final StatementImpact impact = analyzer.analyze(statement);
+
+        if (PATTERN_BEGIN.matcher(statement).matches()) {
+            flushGroup();
+            comments.clear();
+            inTransaction = true;
+        } else if (PATTERN_END.matcher(statement).matches()) {
+            flushGroup();
+            comments.clear();
+            inTransaction = false;
+        } else if (inTransaction) {
+            groupLocks = true;
+            groupLongRunning |= isLongRunning(impact);
+            addToGroup(statement);
+        } else if (PATTERN_SET.matcher(statement).find()) {
+            flushGroup();
+            outputStatement(statement);
+        } else if (PATTERN_NO_TRANSACTION.matcher(statement).matches()) {
+            flushGroup();
+            outputSettings("0");
+            outputStatement(statement);
+        } else {
+            final String relation =
+                    impact == null ? null : impact.getRelation();
+
+            // statement that does not lock known relation forms its own
+            // group, so that it is not retried with unrelated statements
+            if (relation == null || !relation.equals(groupRelation)) {
+                flushGroup();
+            }
+
+            groupRelation = relation;
+
+            if (impact != null && impact.getLockMode() != null) {
+                groupLocks = true;
+            }
+
+            groupLongRunning |= isLongRunning(impact);
+
+            addToGroup(statement);
+
+            if (relation == null) {
+                flushGroup();
+            }
+        }
+    }
+
+    /**
+     * Adds the statement with its preceding comments to current group.
+     *
+     * @param statement complete statement
+     */
+    private void addToGroup(final String statement) {
+        group.addAll(comments);
+        group.add(statement);
+        comments.clear();
+    }
+
+    /**
+     * Outputs the statement with its preceding comments unwrapped.
+     *
+     * @param statement complete statement
+     */
+    private void outputStatement(final String statement) {
+        output.println();
+
+        for (final String comment : comments) {
+            output.println(comment);
+        }
+
+        comments.clear();
+        output.println(statement);
+    }
+
+    /**
+     * Outputs lock_timeout and statement_timeout settings.
+     *
+     * @param timeout value of statement_timeout setting
+     */
+    private void outputSettings(final String timeout) {
+        output.println();
+
+        if (lockTimeout != null) {
+            output.println("SET lock_timeout = " + quote(lockTimeout) + ';');
+        }
+
+        output.println("SET statement_timeout = " + quote(timeout) + ';');
+    }
+
+    /**
+     * Outputs statements of current group in DO block that retries the
+     * statements with exponential backoff if lock cannot be acquired. Groups
+     * that do not lock any existing relation, like creation of new tables,
+     * are output unwrapped.
+     */
+    private void flushGroup() {
+        if (group.isEmpty()) {
+            return;
+        } else if (!groupLocks) {
+            for (final String item : group) {
+                if (item.startsWith("--")) {
+                    comments.add(item);
+                } else {
+                    outputStatement(item);
+                }
+            }
+
+            group.clear();
+            groupRelation = null;
+            groupLongRunning = false;
+
+            return;
+        }
+
+        final String blockTag = getDollarTag("apgdiff", group);
+
+        outputSettings(groupLongRunning ? "0" : statementTimeout);
+        output.println();
+        output.println("DO " + blockTag);
+        output.println("DECLARE");
+        output.println("\tattempt integer := 1;");
+        output.println("BEGIN");
+        output.println("\tLOOP");
+        output.println("\t\tBEGIN");
+
+        for (final String item : group) {
+            if (item.startsWith("--")) {
+                output.println("\t\t\t" + item);
+            } else {
+                final String tag = getDollarTag("statement", item);
+                output.println("\t\t\tEXECUTE " + tag
+                        + item.substring(0, item.length() - 1).trim() + tag
+                        + ';');
+            }
+        }
+
+        output.println();
+        output.println("\t\t\tEXIT;");
+        output.println("\t\tEXCEPTION WHEN lock_not_available"
+                + " OR deadlock_detected THEN");
+        output.println("\t\t\tIF attempt >= " + lockRetries + " THEN");
+        output.println("\t\t\t\tRAISE;");
+        output.println("\t\t\tEND IF;");
+        output.println();
+        output.println("\t\t\tPERFORM pg_sleep(0.1 * 2 ^ attempt);");
+        output.println("\t\t\tattempt := attempt + 1;");
+        output.println("\t\tEND;");
+        output.println("\tEND LOOP;");
+        output.println("END;");
+        output.println(blockTag + ';');
+
+        group.clear();
+        groupRelation = null;
+        groupLocks = false;
+        groupLongRunning = false;
+    }
+
+    /**
+     * Checks whether the statement rewrites or scans a table or builds an
+     * index, so its duration depends on size of the table.
+     *
+     * @param impact impact of the statement or null
+     *
+     * @return true if the statement is long running, otherwise false
+     */
+    private static boolean isLongRunning(final StatementImpact impact) {
+        return impact != null && (impact.getEffect() == TableEffect.REWRITE
+                || impact.getEffect() == TableEffect.SCAN
+                || impact.getEffect() == TableEffect.INDEX_BUILD);
+    }
+
+    /**
+     * Returns dollar quote tag that does not occur in the text.
+     *
+     * @param name name the tag is based on
+     * @param text text that should be quoted
+     *
+     * @return dollar quote tag
+     */
+    private static String getDollarTag(final String name, final String text) {
+        return getDollarTag(name, Collections.singletonList(text));
+    }
+
+    /**
+     * Returns dollar quote tag that does not occur in any of the texts.
+     *
+     * @param name  name the tag is based on
+     * @param texts texts that should be quoted
+     *
+     * @return dollar quote tag
+     */
+    @SuppressWarnings("AssignmentToForLoopParameter")
+    private static String getDollarTag(final String name,
+            final List<String> texts) {
+        int suffix = 0;
+        String tag = "$" + name + "$";
+
+        for (int i = 0; i < texts.size(); i++) {
+            if (texts.get(i).contains(tag)) {
+                suffix++;
+                tag = "$" + name + suffix + "$";
+                i = -1;
+            }
+        }
+
+        return tag;
+    }
+
+    /**
+     * Quotes the setting value as string literal.
+     *
+     * @param value value
+     *
+     * @return quoted value
+     */
+    private static String quote(final String value) {
+        return "'" + value.replace("'", "''") + "'";
+    }
+}
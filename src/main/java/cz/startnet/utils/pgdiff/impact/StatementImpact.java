@@ -0,0 +1,86 @@
+/**
+ * Copyright 2006 StartNet s.r.o.
+ *
+ * Distributed under MIT license
+ */
+package cz.startnet.utils.pgdiff.impact;
+
+/**
+ * Lock acquired by generated statement and its effect on data of the
+ * relation.
+ *
+ * @author fordfrog
+ */
+public class StatementImpact {
+
+    /**
+     * The statement.
+     */
+    private final String statement;
+    /**
+     * Schema qualified name of the relation that is locked or null if the
+     * statement does not lock any existing relation.
+     */
+    private final String relation;
+    /**
+     * Lock acquired on the relation or null if the statement does not lock
+     * any existing relation.
+     */
+    private final LockMode lockMode;
+    /**
+     * Effect of the statement on data of the relation.
+     */
+    private final TableEffect effect;
+
+    /**
+     * Creates a new StatementImpact.
+     *
+     * @param statement {@link #statement}
+     * @param relation  {@link #relation}
+     * @param lockMode  {@link #lockMode}
+     * @param effect    {@link #effect}
+     */
+    public StatementImpact(final String statement, final String relation,
+            final LockMode lockMode, final TableEffect effect) {
+        this.statement = statement;
+        this.relation = relation;
+        this.lockMode = lockMode;
+        this.effect = effect;
+    }
+
+    /**
+     * Getter for {@link #statement}.
+     *
+     * @return {@link #statement}
+     */
+    public String getStatement() {
+        return statement;
+    }
+
+    /**
+     * Getter for {@link #relation}.
+     *
+     * @return {@link #relation}
+     */
+    public String getRelation() {
+        return relation;
+    }
+
+    /**
+     * Getter for {@link #lockMode}.
+     *
+     * @return {@link #lockMode}
+     */
+    public LockMode getLockMode() {
+        return lockMode;
+    }
+
+    /**
+     * Getter for {@link #effect}.
+     *
+     * @return {@link #effect}
+     */
+    public TableEffect getEffect() {
+        return effect;
+    }
+}
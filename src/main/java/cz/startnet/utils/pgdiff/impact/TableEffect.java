@@ -0,0 +1,37 @@
+/**
+ * Copyright 2006 StartNet s.r.o.
+ *
+ * Distributed under MIT license
+ */
+package cz.startnet.utils.pgdiff.impact;
+
+/**
+ * Effect of statement on data of the table, ordered from the cheapest to
+ * the most expensive one in terms of how long the table is blocked.
+ *
+ * @author fordfrog
+ */
+public enum TableEffect {
+
+    /**
+     * Only catalog is changed, data of the table are not touched.
+     */
+    NONE,
+    /**
+     * All rows of the table are updated in batches, each batch in its own
+     * transaction.
+     */
+    BACKFILL,
+    /**
+     * All rows of the table are read, for example to validate constraint.
+     */
+    SCAN,
+    /**
+     * All rows of the table are read to build index.
+     */
+    INDEX_BUILD,
+    /**
+     * The table and its indexes are rewritten.
+     */
+    REWRITE
+}
@@ -0,0 +1,6 @@
+/**
+ * Contains analysis of locks and table rewrites caused by generated
+ * statements and writers that annotate the statements or split them into
+ * short transactions.
+ */
+package cz.startnet.utils.pgdiff.impact;
@@ -0,0 +1,864 @@
+/**
+ * Copyright 2006 StartNet s.r.o.
+ *
+ * Distributed under MIT license
+ */
+package cz.startnet.utils.pgdiff.loader;
+
+import cz.startnet.utils.pgdiff.schema.PgColumn;
+import cz.startnet.utils.pgdiff.schema.PgConstraint;
+import cz.startnet.utils.pgdiff.schema.PgDatabase;
+import cz.startnet.utils.pgdiff.schema.PgFunction;
+import cz.startnet.utils.pgdiff.schema.PgIndex;
+import cz.startnet.utils.pgdiff.schema.PgSchema;
+import cz.startnet.utils.pgdiff.schema.PgSequence;
+import cz.startnet.utils.pgdiff.schema.PgTable;
+import cz.startnet.utils.pgdiff.schema.PgTrigger;
+import cz.startnet.utils.pgdiff.schema.PgView;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary serialization of {@link PgDatabase}. Every distinct string
+ * is stored only once in string table at the beginning of the snapshot and
+ * the model refers to strings by their position in the table. All numbers
+ * are stored as variable length integers, so most of them take single byte.
+ * Indexes and primary keys that are stored in schema are stored as
+ * references to the indexes and constraints of tables.
+ *
+ * @author fordfrog
+ */
+public class DatabaseSnapshot {
+
+    /**
+     * Magic bytes at the beginning of snapshot.
+     */
+    private static final byte[] MAGIC = {'A', 'P', 'G', 'S', 'N', 'P'};
+    /**
+     * Version of snapshot format. Must be increased whenever the format or
+     * the model changes.
+     */
+    static final int VERSION = 2;
+    /**
+     * Charset used for strings in string table.
+     */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    /**
+     * Trigger flag for BEFORE trigger.
+     */
+    private static final int FLAG_BEFORE = 1;
+    /**
+     * Trigger flag for FOR EACH ROW trigger.
+     */
+    private static final int FLAG_FOR_EACH_ROW = 2;
+    /**
+     * Trigger flag for ON DELETE trigger.
+     */
+    private static final int FLAG_ON_DELETE = 4;
+    /**
+     * Trigger flag for ON INSERT trigger.
+     */
+    private static final int FLAG_ON_INSERT = 8;
+    /**
+     * Trigger flag for ON UPDATE trigger.
+     */
+    private static final int FLAG_ON_UPDATE = 16;
+    /**
+     * Trigger flag for ON TRUNCATE trigger.
+     */
+    private static final int FLAG_ON_TRUNCATE = 32;
+    /**
+     * Positions of strings in string table.
+     */
+    @SuppressWarnings("CollectionWithoutInitialCapacity")
+    private final Map<String, Integer> stringPositions =
+            new HashMap<String, Integer>();
+    /**
+     * String table.
+     */
+    @SuppressWarnings("CollectionWithoutInitialCapacity")
+    private final List<String> strings = new ArrayList<String>();
+    /**
+     * Serialized model.
+     */
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    /**
+     * Input the snapshot is read from.
+     */
+    private final DataInputStream input;
+    /**
+     * String table read from the snapshot.
+     */
+    private String[] readStrings;
+
+    /**
+     * Creates a new DatabaseSnapshot object.
+     *
+     * @param input {@link #input} or null if snapshot is written
+     */
+    private DatabaseSnapshot(final InputStream input) {
+        this.input = input == null ? null : new DataInputStream(input);
+    }
+
+    /**
+     * Writes snapshot of the database. Lazily loaded definitions are read
+     * during writing, so the snapshot does not depend on the dump file.
+     *
+     * @param outputStream output stream the snapshot is written to
+     * @param database     database
+     *
+     * @throws IOException Thrown if problem occurred while writing.
+     */
+    public static void write(final OutputStream outputStream,
+            final PgDatabase database) throws IOException {
+        final DatabaseSnapshot snapshot = new DatabaseSnapshot(null);
+        snapshot.writeDatabase(database);
+
+        outputStream.write(MAGIC);
+        writeInt(outputStream, VERSION);
+        writeInt(outputStream, snapshot.strings.size());
+
+        for (final String string : snapshot.strings) {
+            final byte[] bytes = string.getBytes(UTF_8);
+            writeInt(outputStream, bytes.length);
+            outputStream.write(bytes);
+        }
+
+        snapshot.body.writeTo(outputStream);
+    }
+
+    /**
+     * Reads database from snapshot.
+     *
+     * @param inputStream input stream the snapshot is read from
+     *
+     * @return database
+     *
+     * @throws IOException Thrown if problem occurred while reading or if the
+     *                     snapshot is not valid.
+     */
+    public static PgDatabase read(final InputStream inputStream)
+            throws IOException {
+        final DatabaseSnapshot snapshot = new DatabaseSnapshot(inputStream);
+        final byte[] magic = new byte[MAGIC.length];
+        snapshot.input.readFully(magic);
+
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (magic[i] != MAGIC[i]) {
+                throw new IOException("Invalid snapshot");
+            }
+        }
+
+        if (snapshot.readInt() != VERSION) {
+            throw new IOException("Unsupported snapshot version");
+        }
+
+        snapshot.readStrings = new String[snapshot.readInt()];
+
+        for (int i = 0; i < snapshot.readStrings.length; i++) {
+            final byte[] bytes = new byte[snapshot.readInt()];
+            snapshot.input.readFully(bytes);
+            snapshot.readStrings[i] = new String(bytes, UTF_8);
+        }
+
+        return snapshot.readDatabase();
+    }
+
+    /**
+     * Writes database.
+     *
+     * @param database database
+     */
+    private void writeDatabase(final PgDatabase database) {
+        writeString(database.getComment());
+        writeStrings(database.getIgnoredStatements());
+        writeInt(database.getSchemas().size());
+
+        for (final PgSchema schema : database.getSchemas()) {
+            writeSchema(schema);
+        }
+
+        writeInt(database.getSchemas().indexOf(database.getDefaultSchema()));
+    }
+
+    /**
+     * Reads database.
+     *
+     * @return database
+     *
+     * @throws IOException Thrown if problem occurred while reading.
+     */
+    private PgDatabase readDatabase() throws IOException {
+        final PgDatabase database = new PgDatabase();
+        database.setComment(readString());
+
+        for (final String statement : readStrings()) {
+            database.addIgnoredStatement(statement);
+        }
+
+        final int schemaCount = readInt();
+
+        for (int i = 0; i < schemaCount; i++) {
+            final String name = readString();
+            final PgSchema schema;
+
+            // public schema is always created by the database
+            if (i == 0) {
+                schema = database.getSchemas().get(0);
+            } else {
+                schema = new PgSchema(name);
+                database.addSchema(schema);
+            }
+
+            readSchema(schema);
+        }
+
+        database.setDefaultSchema(
+                database.getSchemas().get(readInt()).getName());
+
+        return database;
+    }
+
+    /**
+     * Writes schema.
+     *
+     * @param schema schema
+     */
+    private void writeSchema(final PgSchema schema) {
+        writeString(schema.getName());
+        writeString(schema.getAuthorization());
+        writeString(schema.getDefinition());
+        writeString(schema.getComment());
+
+        writeInt(schema.getFunctions().size());
+
+        for (final PgFunction function : schema.getFunctions()) {
+            writeFunction(function);
+        }
+
+        writeInt(schema.getSequences().size());
+
+        for (final PgSequence sequence : schema.getSequences()) {
+            writeSequence(sequence);
+        }
+
+        @SuppressWarnings("CollectionWithoutInitialCapacity")
+        final Map<Object, int[]> references =
+                new IdentityHashMap<Object, int[]>();
+        writeInt(schema.getTables().size());
+
+        for (int i = 0; i < schema.getTables().size(); i++) {
+            final PgTable table = schema.getTables().get(i);
+            writeTable(table);
+
+            for (int j = 0; j < table.getIndexes().size(); j++) {
+                references.put(table.getIndexes().get(j), new int[]{i, j});
+            }
+
+            for (int j = 0; j < table.getConstraints().size(); j++) {
+                references.put(
+                        table.getConstraints().get(j), new int[]{i, j});
+            }
+        }
+
+        writeInt(schema.getViews().size());
+
+        for (final PgView view : schema.getViews()) {
+            writeView(view);
+        }
+
+        writeReferences(references, schema.getIndexes());
+        writeReferences(references, schema.getPrimaryKeys());
+    }
+
+    /**
+     * Reads schema.
+     *
+     * @param schema schema that is filled with read values
+     *
+     * @throws IOException Thrown if problem occurred while reading.
+     */
+    private void readSchema(final PgSchema schema) throws IOException {
+        schema.setAuthorization(readString());
+        schema.setDefinition(readString());
+        schema.setComment(readString());
+
+        final int functionCount = readInt();
+
+        for (int i = 0; i < functionCount; i++) {
+            schema.addFunction(readFunction());
+        }
+
+        final int sequenceCount = readInt();
+
+        for (int i = 0; i < sequenceCount; i++) {
+            schema.addSequence(readSequence());
+        }
+
+        final int tableCount = readInt();
+
+        for (int i = 0; i < tableCount; i++) {
+            schema.addTable(readTable());
+        }
+
+        final int viewCount = readInt();
+
+        for (int i = 0; i < viewCount; i++) {
+            schema.addView(readView());
+        }
+
+        final int indexCount = readInt();
+
+        for (int i = 0; i < indexCount; i++) {
+            schema.addIndex(schema.getTables().get(readInt()).getIndexes().
+                    get(readInt()));
+        }
+
+        final int primaryKeyCount = readInt();
+
+        for (int i = 0; i < primaryKeyCount; i++) {
+            schema.addPrimaryKey(schema.getTables().get(readInt()).
+                    getConstraints().get(readInt()));
+        }
+    }
+
+    /**
+     * Writes references to table objects.
+     *
+     * @param references positions of table objects
+     * @param objects    objects that are referenced
+     */
+    private void writeReferences(final Map<Object, int[]> references,
+            final List<?> objects) {
+        writeInt(objects.size());
+
+        for (final Object object : objects) {
+            final int[] reference = references.get(object);
+
+            if (reference == null) {
+                throw new IllegalStateException(
+                        "Schema object does not belong to any table");
+            }
+
+            writeInt(reference[0]);
+            writeInt(reference[1]);
+        }
+    }
+
+    /**
+     * Writes function.
+     *
+     * @param function function
+     */
+    private void writeFunction(final PgFunction function) {
+        writeString(function.getName());
+        writeString(function.getBody());
+        writeString(function.getComment());
+        writeInt(function.getArguments().size());
+
+        for (final PgFunction.Argument argument : function.getArguments()) {
+            writeString(argument.getMode());
+            writeString(argument.getName());
+            writeString(argument.getDataType());
+            writeString(argument.getDefaultExpression());
+        }
+    }
+
+    /**
+     * Reads function.
+     *
+     * @return function
+     *
+     * @throws IOException Thrown if problem occurred while reading.
+     */
+    private PgFunction readFunction() throws IOException {
+        final PgFunction function = new PgFunction();
+        function.setName(readString());
+        function.setBody(readString());
+        function.setComment(readString());
+
+        final int argumentCount = readInt();
+
+        for (int i = 0; i < argumentCount; i++) {
+            final PgFunction.Argument argument = new PgFunction.Argument();
+            argument.setMode(readString());
+            argument.setName(readString());
+            argument.setDataType(readString());
+            argument.setDefaultExpression(readString());
+            function.addArgument(argument);
+        }
+
+        return function;
+    }
+
+    /**
+     * Writes sequence.
+     *
+     * @param sequence sequence
+     */
+    private void writeSequence(final PgSequence sequence) {
+        writeString(sequence.getName());
+        writeString(sequence.getCache());
+        writeString(sequence.getIncrement());
+        writeString(sequence.getMaxValue());
+        writeString(sequence.getMinValue());
+        writeString(sequence.getStartWith());
+        writeBoolean(sequence.isCycle());
+        writeString(sequence.getOwnedBy());
+        writeString(sequence.getComment());
+    }
+
+    /**
+     * Reads sequence.
+     *
+     * @return sequence
+     *
+     * @throws IOException Thrown if problem occurred while reading.
+     */
+    private PgSequence readSequence() throws IOException {
+        final PgSequence sequence = new PgSequence(readString());
+        sequence.setCache(readString());
+        sequence.setIncrement(readString());
+        sequence.setMaxValue(readString());
+        sequence.setMinValue(readString());
+        sequence.setStartWith(readString());
+        sequence.setCycle(readBoolean());
+        sequence.setOwnedBy(readString());
+        sequence.setComment(readString());
+
+        return sequence;
+    }
+
+    /**
+     * Writes table including its columns, constraints, indexes and
+     * triggers.
+     *
+     * @param table table
+     */
+    private void writeTable(final PgTable table) {
+        writeString(table.getName());
+        writeString(table.getClusterIndexName());
+        writeString(table.getWith());
+        writeString(table.getTablespace());
+        writeString(table.getComment());
+        writeStrings(table.getInherits());
+        writeInt(table.getColumns().size());
+
+        for (final PgColumn column : table.getColumns()) {
+            writeString(column.getName());
+            writeString(column.getType());
+            writeString(column.getDefaultValue());
+            writeBoolean(column.getNullValue());
+            writeInteger(column.getStatistics());
+            writeString(column.getStorage());
+            writeString(column.getComment());
+        }
+
+        writeInt(table.getConstraints().size());
+
+        for (final PgConstraint constraint : table.getConstraints()) {
+            writeString(constraint.getName());
+            writeString(constraint.getTableName());
+            writeString(constraint.getDefinition());
+            writeString(constraint.getComment());
+        }
+
+        writeInt(table.getIndexes().size());
+
+        for (final PgIndex index : table.getIndexes()) {
+            writeString(index.getName());
+            writeString(index.getTableName());
+            writeString(index.getDefinition());
+            writeBoolean(index.isUnique());
+            writeString(index.getComment());
+        }
+
+        writeInt(table.getTriggers().size());
+
+        for (final PgTrigger trigger : table.getTriggers()) {
+            writeTrigger(trigger);
+        }
+    }
+
+    /**
+     * Reads table including its columns, constraints, indexes and triggers.
+     *
+     * @return table
+     *
+     * @throws IOException Thrown if problem occurred while reading.
+     */
+    private PgTable readTable() throws IOException {
+        final PgTable table = new PgTable(readString());
+        table.setClusterIndexName(readString());
+        table.setWith(readString());
+        table.setTablespace(readString());
+        table.setComment(readString());
+
+        for (final String inherits : readStrings()) {
+            table.addInherits(inherits);
+        }
+
+        final int columnCount = readInt();
+
+        for (int i = 0; i < columnCount; i++) {
+            final PgColumn column = new PgColumn(readString());
+            column.setType(readString());
+            column.setDefaultValue(readString());
+            column.setNullValue(readBoolean());
+            column.setStatistics(readInteger());
+            column.setStorage(readString());
+            column.setComment(readString());
+            table.addColumn(column);
+        }
+
+        final int constraintCount = readInt();
+
+        for (int i = 0; i < constraintCount; i++) {
+            final PgConstraint constraint = new PgConstraint(readString());
+            constraint.setTableName(readString());
+            constraint.setDefinition(readString());
+            constraint.setComment(readString());
+            table.addConstraint(constraint);
+        }
+
+        final int indexCount = readInt();
+
+        for (int i = 0; i < indexCount; i++) {
+            final PgIndex index = new PgIndex(readString());
+            index.setTableName(readString());
+            index.setDefinition(readString());
+            index.setUnique(readBoolean());
+            index.setComment(readString());
+            table.addIndex(index);
+        }
+
+        final int triggerCount = readInt();
+
+        for (int i = 0; i < triggerCount; i++) {
+            table.addTrigger(readTrigger());
+        }
+
+        return table;
+    }
+
+    /**
+     * Writes trigger.
+     *
+     * @param trigger trigger
+     */
+    private void writeTrigger(final PgTrigger trigger) {
+        writeString(trigger.getName());
+        writeString(trigger.getTableName());
+        writeString(trigger.getFunction());
+        writeInt((trigger.isBefore() ? FLAG_BEFORE : 0)
+                | (trigger.isForEachRow() ? FLAG_FOR_EACH_ROW : 0)
+                | (trigger.isOnDelete() ? FLAG_ON_DELETE : 0)
+                | (trigger.isOnInsert() ? FLAG_ON_INSERT : 0)
+                | (trigger.isOnUpdate() ? FLAG_ON_UPDATE : 0)
+                | (trigger.isOnTruncate() ? FLAG_ON_TRUNCATE : 0));
+        writeStrings(trigger.getUpdateColumns());
+        writeString(trigger.getWhen());
+        writeString(trigger.getComment());
+    }
+
+    /**
+     * Reads trigger.
+     *
+     * @return trigger
+     *
+     * @throws IOException Thrown if problem occurred while reading.
+     */
+    private PgTrigger readTrigger() throws IOException {
+        final PgTrigger trigger = new PgTrigger();
+        trigger.setName(readString());
+        trigger.setTableName(readString());
+        trigger.setFunction(readString());
+
+        final int flags = readInt();
+        trigger.setBefore((flags & FLAG_BEFORE) != 0);
+        trigger.setForEachRow((flags & FLAG_FOR_EACH_ROW) != 0);
+        trigger.setOnDelete((flags & FLAG_ON_DELETE) != 0);
+        trigger.setOnInsert((flags & FLAG_ON_INSERT) != 0);
+        trigger.setOnUpdate((flags & FLAG_ON_UPDATE) != 0);
+        trigger.setOnTruncate((flags & FLAG_ON_TRUNCATE) != 0);
+
+        for (final String column : readStrings()) {
+            trigger.addUpdateColumn(column);
+        }
+
+        trigger.setWhen(readString());
+        trigger.setComment(readString());
+
+        return trigger;
+    }
+
+    /**
+     * Writes view.
+     *
+     * @param view view
+     */
+    private void writeView(final PgView view) {
+        writeString(view.getName());
+        writeBoolean(view.getColumnNames() != null);
+
+        if (view.getColumnNames() != null) {
+            writeStrings(view.getColumnNames());
+        }
+
+        writeString(view.getQuery());
+        writeString(view.getComment());
+        writeInt(view.getDefaultValues().size());
+
+        for (final PgView.DefaultValue defaultValue
+                : view.getDefaultValues()) {
+            writeString(defaultValue.getColumnName());
+            writeString(defaultValue.getDefaultValue());
+        }
+
+        writeInt(view.getColumnComments().size());
+
+        for (final PgView.ColumnComment columnComment
+                : view.getColumnComments()) {
+            writeString(columnComment.getColumnName());
+            writeString(columnComment.getComment());
+        }
+
+        writeStrings(view.getReferencedRelations());
+    }
+
+    /**
+     * Reads view.
+     *
+     * @return view
+     *
+     * @throws IOException Thrown if problem occurred while reading.
+     */
+    private PgView readView() throws IOException {
+        final PgView view = new PgView(readString());
+
+        if (readBoolean()) {
+            view.setColumnNames(readStrings());
+        }
+
+        view.setQuery(readString());
+        view.setComment(readString());
+
+        final int defaultValueCount = readInt();
+
+        for (int i = 0; i < defaultValueCount; i++) {
+            view.addColumnDefaultValue(readString(), readString());
+        }
+
+        final int columnCommentCount = readInt();
+
+        for (int i = 0; i < columnCommentCount; i++) {
+            view.addColumnComment(readString(), readString());
+        }
+
+        for (final String relationName : readStrings()) {
+            view.addReferencedRelation(relationName);
+        }
+
+        return view;
+    }
+
+    /**
+     * Writes list of strings.
+     *
+     * @param list list of strings
+     */
+    private void writeStrings(final List<String> list) {
+        writeInt(list.size());
+
+        for (final String string : list) {
+            writeString(string);
+        }
+    }
+
+    /**
+     * Reads list of strings.
+     *
+     * @return list of strings
+     *
+     * @throws IOException Thrown if problem occurred while reading.
+     */
+    private List<String> readStrings() throws IOException {
+        final int count = readInt();
+        final List<String> list = new ArrayList<String>(count);
+
+        for (int i = 0; i < count; i++) {
+            list.add(readString());
+        }
+
+        return list;
+    }
+
+    /**
+     * Writes reference to string in string table. Zero is used for null,
+     * other strings are referenced by their position increased by one.
+     *
+     * @param string string or null
+     */
+    private void writeString(final String string) {
+        if (string == null) {
+            writeInt(0);
+
+            return;
+        }
+
+        Integer position = stringPositions.get(string);
+
+        if (position == null) {
+            position = strings.size();
+            strings.add(string);
+            stringPositions.put(string, position);
+        }
+
+        writeInt(position + 1);
+    }
+
+    /**
+     * Reads reference to string in string table.
+     *
+     * @return string or null
+     *
+     * @throws IOException Thrown if problem occurred while reading.
+     */
+    private String readString() throws IOException {
+        final int reference = readInt();
+
+        return reference == 0 ? null : readStrings[reference - 1];
+    }
+
+    /**
+     * Writes integer that might be null. Zero is used for null, other values
+     * are zigzag encoded and increased by one so that small negative values
+     * take single byte too.
+     *
+     * @param value value or null
+     */
+    private void writeInteger(final Integer value) {
+        writeInt(value == null ? 0 : ((value << 1) ^ (value >> 31)) + 1);
+    }
+
+    /**
+     * Reads integer that might be null.
+     *
+     * @return value or null
+     *
+     * @throws IOException Thrown if problem occurred while reading.
+     */
+    private Integer readInteger() throws IOException {
+        final int encoded = readInt();
+
+        if (encoded == 0) {
+            return null;
+        }
+
+        return ((encoded - 1) >>> 1) ^ -((encoded - 1) & 1);
+    }
+
+    /**
+     * Writes boolean.
+     *
+     * @param value value
+     */
+    private void writeBoolean(final boolean value) {
+        body.write(value ? 1 : 0);
+    }
+
+    /**
+     * Reads boolean.
+     *
+     * @return value
+     *
+     * @throws IOException Thrown if problem occurred while reading.
+     */
+    private boolean readBoolean() throws IOException {
+        return readByte() != 0;
+    }
+
+    /**
+     * Writes non-negative integer to body.
+     *
+     * @param value value
+     */
+    private void writeInt(final int value) {
+        try {
+            writeInt(body, value);
+        } catch (final IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Writes non-negative integer as variable length integer, using seven
+     * bits per byte.
+     *
+     * @param outputStream output stream
+     * @param value        value
+     *
+     * @throws IOException Thrown if problem occurred while writing.
+     */
+    private static void writeInt(final OutputStream outputStream,
+            final int value) throws IOException {
+        int rest = value;
+
+        while ((rest & ~0x7F) != 0) {
+            outputStream.write((rest & 0x7F) | 0x80);
+            rest >>>= 7;
+        }
+
+        outputStream.write(rest);
+    }
+
+    /**
+     * Reads variable length integer.
+     *
+     * @return value
+     *
+     * @throws IOException Thrown if problem occurred while reading.
+     */
+    private int readInt() throws IOException {
+        int value = 0;
+
+        for (int shift = 0; shift < 32; shift += 7) {
+            final int part = readByte();
+            value |= (part & 0x7F) << shift;
+
+            if ((part & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IOException("Invalid snapshot");
+    }
+
+    /**
+     * Reads single byte.
+     *
+     * @return read byte
+     *
+     * @throws IOException Thrown if problem occurred while reading or end of
+     *                     input was reached.
+     */
+    private int readByte() throws IOException {
+        final int value = input.read();
+
+        if (value == -1) {
+            throw new EOFException();
+        }
+
+        return value;
+    }
+}
@@ -0,0 +1,162 @@
+/**
+ * Copyright 2006 StartNet s.r.o.
+ *
+ * Distributed under MIT license
+ */
+package cz.startnet.utils.pgdiff.loader;
+
+import cz.startnet.utils.pgdiff.Resources;
+import cz.startnet.utils.pgdiff.schema.SourceText;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.MessageFormat;
+
+/**
+ * Dump file that is mapped into memory so that statements can be read from it
+ * at any time by their byte offset and length. Files that are too big to be
+ * mapped at once are kept open until the dump file is closed.
+ *
+ * @author fordfrog
+ */
+public class MappedDumpFile implements SourceText.Source, Closeable {
+
+    /**
+     * Path of the dump file.
+     */
+    private final String file;
+    /**
+     * Charset of the dump file.
+     */
+    private final String charsetName;
+    /**
+     * Memory mapped content of the dump file or null if the file is too big
+     * to be mapped at once.
+     */
+    private final MappedByteBuffer buffer;
+    /**
+     * File channel used for reading of files that are too big to be mapped
+     * at once, null otherwise.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Creates a new MappedDumpFile object.
+     *
+     * @param file        {@link #file}
+     * @param charsetName {@link #charsetName}
+     */
+    public MappedDumpFile(final String file, final String charsetName) {
+        this.file = file;
+        this.charsetName = charsetName;
+
+        final FileInputStream inputStream;
+
+        try {
+            inputStream = new FileInputStream(file);
+        } catch (final FileNotFoundException ex) {
+            throw new FileException(MessageFormat.format(
+                    Resources.getString("FileNotFound"), file), ex);
+        }
+
+        try {
+            final FileChannel fileChannel = inputStream.getChannel();
+            final long size = fileChannel.size();
+
+            if (size <= Integer.MAX_VALUE) {
+                buffer = fileChannel.map(
+                        FileChannel.MapMode.READ_ONLY, 0, size);
+                channel = null;
+                inputStream.close();
+            } else {
+                buffer = null;
+                channel = fileChannel;
+            }
+        } catch (final IOException ex) {
+            try {
+                inputStream.close();
+            } catch (final IOException closeEx) {
+                // the original exception is more important
+            }
+
+            throw new FileException(MessageFormat.format(
+                    Resources.getString("CannotReadFile"), file), ex);
+        }
+    }
+
+    /**
+     * Getter for {@link #file}.
+     *
+     * @return {@link #file}
+     */
+    public String getFile() {
+        return file;
+    }
+
+    /**
+     * Reads bytes from the dump file.
+     *
+     * @param offset byte offset
+     * @param length number of bytes
+     *
+     * @return read bytes
+     */
+    public byte[] readBytes(final long offset, final int length) {
+        final byte[] bytes = new byte[length];
+
+        if (buffer != null) {
+            final ByteBuffer slice = buffer.duplicate();
+            slice.position((int) offset);
+            slice.get(bytes);
+        } else {
+            final ByteBuffer target = ByteBuffer.wrap(bytes);
+
+            try {
+                synchronized (channel) {
+                    while (target.hasRemaining()) {
+                        if (channel.read(target,
+                                offset + target.position()) == -1) {
+                            break;
+                        }
+                    }
+                }
+            } catch (final IOException ex) {
+                throw new FileException(MessageFormat.format(
+                        Resources.getString("CannotReadFile"), file), ex);
+            }
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Closes the file channel of file that is too big to be mapped at once.
+     * Statements cannot be read from such file after it is closed. Mapped
+     * files stay readable as the file itself was closed when it was mapped.
+     */
+    @Override
+    public void close() {
+        if (channel == null) {
+            return;
+        }
+
+        try {
+            channel.close();
+        } catch (final IOException ex) {
+            throw new FileException(MessageFormat.format(
+                    Resources.getString("CannotReadFile"), file), ex);
+        }
+    }
+
+    @Override
+    public String readStatement(final long offset, final int length) {
+        return new StatementReader(
+                new ByteArrayInputStream(readBytes(offset, length)),
+                charsetName).readStatement();
+    }
+}
@@ -0,0 +1,279 @@
+/**
+ * Copyright 2006 StartNet s.r.o.
+ *
+ * Distributed under MIT license
+ */
+package cz.startnet.utils.pgdiff.loader;
+
+import cz.startnet.utils.pgdiff.schema.PgDatabase;
+import cz.startnet.utils.pgdiff.schema.PgSchema;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Dump file that is loaded one schema at a time. In the first pass, index of
+ * statements grouped by schema is created. Schemas are then loaded from the
+ * dump file on request, so only the schemas that are currently needed are
+ * kept in memory. The dump must be closed when it is not needed anymore.
+ *
+ * @author fordfrog
+ */
+public class PartitionedDump implements Closeable {
+
+    /**
+     * Kinds of database level statements that are loaded together with every
+     * schema.
+     */
+    private static final Set<StatementKind> SCHEMA_LEVEL_KINDS =
+            new HashSet<StatementKind>(3);
+
+    static {
+        SCHEMA_LEVEL_KINDS.add(StatementKind.CREATE_SCHEMA);
+        SCHEMA_LEVEL_KINDS.add(StatementKind.SET_SEARCH_PATH);
+        SCHEMA_LEVEL_KINDS.add(StatementKind.COMMENT);
+    }
+    /**
+     * Dump file.
+     */
+    private final MappedDumpFile dumpFile;
+    /**
+     * Index of statements in the dump file.
+     */
+    private final StatementIndex index;
+    /**
+     * Whether ignored statements should be included in the output.
+     */
+    private final boolean outputIgnoredStatements;
+    /**
+     * Whether Slony triggers should be ignored.
+     */
+    private final boolean ignoreSlonyTriggers;
+    /**
+     * Whether definitions should be read from the dump file only when they
+     * are needed.
+     */
+    private final boolean lazyDefinitions;
+    /**
+     * Ignored statements by ordinal number of the statement they come from.
+     */
+    @SuppressWarnings("CollectionWithoutInitialCapacity")
+    private final Map<Integer, List<String>> ignoredStatements =
+            new TreeMap<Integer, List<String>>();
+    /**
+     * Names of schemas that were already loaded.
+     */
+    @SuppressWarnings("CollectionWithoutInitialCapacity")
+    private final Set<String> loadedSchemas = new HashSet<String>();
+
+    /**
+     * Creates a new PartitionedDump object.
+     *
+     * @param dumpFile                {@link #dumpFile}
+     * @param index                   {@link #index}
+     * @param outputIgnoredStatements {@link #outputIgnoredStatements}
+     * @param ignoreSlonyTriggers     {@link #ignoreSlonyTriggers}
+     * @param lazyDefinitions         {@link #lazyDefinitions}
+     */
+    private PartitionedDump(final MappedDumpFile dumpFile,
+            final StatementIndex index, final boolean outputIgnoredStatements,
+            final boolean ignoreSlonyTriggers, final boolean lazyDefinitions) {
+        this.dumpFile = dumpFile;
+        this.index = index;
+        this.outputIgnoredStatements = outputIgnoredStatements;
+        this.ignoreSlonyTriggers = ignoreSlonyTriggers;
+        this.lazyDefinitions = lazyDefinitions;
+    }
+
+    /**
+     * Opens the dump file and creates or loads index of its statements.
+     *
+     * @param file                    name of file containing the dump
+     * @param charsetName             charset that should be used to read the
+     *                                file
+     * @param outputIgnoredStatements whether ignored statements should be
+     *                                included in the output
+     * @param ignoreSlonyTriggers     whether Slony triggers should be ignored
+     * @param lazyDefinitions         whether definitions should be read from
+     *                                the dump file only when they are needed
+     * @param useIndexFile            whether index file stored next to the
+     *                                dump file should be used, the index file
+     *                                is created if it does not exist or is
+     *                                out of date
+     *
+     * @return partitioned dump or null if the dump cannot be partitioned
+     *         because offsets of statements cannot be tracked for given
+     *         charset
+     */
+    public static PartitionedDump open(final String file,
+            final String charsetName, final boolean outputIgnoredStatements,
+            final boolean ignoreSlonyTriggers, final boolean lazyDefinitions,
+            final boolean useIndexFile) {
+        final StatementIndex index;
+
+        if (useIndexFile) {
+            index = StatementIndexFile.load(file, charsetName);
+        } else {
+            index = StatementIndex.create(file, charsetName);
+        }
+
+        if (index == null) {
+            return null;
+        }
+
+        return open(file, charsetName, index, outputIgnoredStatements,
+                ignoreSlonyTriggers, lazyDefinitions);
+    }
+
+    /**
+     * Opens the dump file using already created index of its statements.
+     * Only the statements that are in the index are loaded.
+     *
+     * @param file                    name of file containing the dump
+     * @param charsetName             charset that should be used to read the
+     *                                file
+     * @param index                   index of statements in the dump
+     * @param outputIgnoredStatements whether ignored statements should be
+     *                                included in the output
+     * @param ignoreSlonyTriggers     whether Slony triggers should be ignored
+     * @param lazyDefinitions         whether definitions should be read from
+     *                                the dump file only when they are needed
+     *
+     * @return partitioned dump
+     */
+    public static PartitionedDump open(final String file,
+            final String charsetName, final StatementIndex index,
+            final boolean outputIgnoredStatements,
+            final boolean ignoreSlonyTriggers, final boolean lazyDefinitions) {
+        return new PartitionedDump(new MappedDumpFile(file, charsetName),
+                index, outputIgnoredStatements, ignoreSlonyTriggers,
+                lazyDefinitions);
+    }
+
+    /**
+     * Loads database level information from the dump, that is schemas
+     * without their content, database comment and ignored statements.
+     *
+     * @return database containing empty schemas
+     */
+    public PgDatabase loadDatabase() {
+        return load(index.getDatabaseEntries(), null);
+    }
+
+    /**
+     * Loads single schema with all its content from the dump.
+     *
+     * @param schemaName name of the schema
+     *
+     * @return loaded schema
+     */
+    public PgSchema loadSchema(final String schemaName) {
+        loadedSchemas.add(schemaName);
+
+        return load(index.getDatabaseEntries(),
+                index.getSchemaEntries(schemaName)).getSchema(schemaName);
+    }
+
+    /**
+     * Returns ignored statements in the order in which they are in the dump.
+     * Schemas that were not loaded yet are loaded to collect their ignored
+     * statements.
+     *
+     * @return list of ignored statements
+     */
+    public List<String> getIgnoredStatements() {
+        if (outputIgnoredStatements) {
+            for (final String schemaName : index.getSchemaNames()) {
+                if (!loadedSchemas.contains(schemaName)) {
+                    loadSchema(schemaName);
+                }
+            }
+        }
+
+        @SuppressWarnings("CollectionWithoutInitialCapacity")
+        final List<String> result = new ArrayList<String>();
+
+        for (final List<String> statements : ignoredStatements.values()) {
+            result.addAll(statements);
+        }
+
+        return result;
+    }
+
+    /**
+     * Loads statements into new database. Database level statements are
+     * merged with schema statements in the order in which they are in the
+     * dump. If schema statements are loaded, only those database level
+     * statements that influence schemas are loaded.
+     *
+     * @param databaseEntries database level statements
+     * @param schemaEntries   schema statements or null
+     *
+     * @return loaded database
+     */
+    private PgDatabase load(final List<StatementIndex.Entry> databaseEntries,
+            final List<StatementIndex.Entry> schemaEntries) {
+        final PgDatabase database = new PgDatabase();
+        int databasePos = 0;
+        int schemaPos = 0;
+
+        while (true) {
+            final StatementIndex.Entry entry;
+
+            if (databasePos < databaseEntries.size() && (schemaEntries == null
+                    || schemaPos == schemaEntries.size()
+                    || databaseEntries.get(databasePos).getOrdinal()
+                    < schemaEntries.get(schemaPos).getOrdinal())) {
+                entry = databaseEntries.get(databasePos++);
+
+                if (schemaEntries != null
+                        && !SCHEMA_LEVEL_KINDS.contains(entry.getKind())) {
+                    continue;
+                }
+            } else if (schemaEntries != null
+                    && schemaPos < schemaEntries.size()) {
+                entry = schemaEntries.get(schemaPos++);
+            } else {
+                break;
+            }
+
+            loadStatement(database, entry);
+        }
+
+        return database;
+    }
+
+    /**
+     * Loads single statement into the database.
+     *
+     * @param database database
+     * @param entry    index entry of the statement
+     */
+    private void loadStatement(final PgDatabase database,
+            final StatementIndex.Entry entry) {
+        final int ignoredCount = database.getIgnoredStatements().size();
+
+        PgDumpLoader.loadStatement(database, dumpFile, entry,
+                lazyDefinitions, outputIgnoredStatements, ignoreSlonyTriggers);
+
+        final List<String> ignored = database.getIgnoredStatements();
+
+        if (ignored.size() > ignoredCount) {
+            ignoredStatements.put(entry.getOrdinal(), new ArrayList<String>(
+                    ignored.subList(ignoredCount, ignored.size())));
+        }
+    }
+
+    /**
+     * Closes the dump file. Schemas cannot be loaded after the dump is
+     * closed.
+     */
+    @Override
+    public void close() {
+        dumpFile.close();
+    }
+}
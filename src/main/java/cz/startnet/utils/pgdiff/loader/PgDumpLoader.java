@@ -18,13 +18,11 @@ import cz.startnet.utils.pgdiff.parsers.CreateTableParser;
 import cz.startnet.utils.pgdiff.parsers.CreateTriggerParser;
 import cz.startnet.utils.pgdiff.parsers.CreateViewParser;
 import cz.startnet.utils.pgdiff.schema.PgDatabase;
-import java.io.BufferedReader;
+import cz.startnet.utils.pgdiff.schema.SourceText;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.UnsupportedEncodingException;
 import java.text.MessageFormat;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -131,11 +129,6 @@ public class PgDumpLoader { //NOPMD
     private static final Pattern PATTERN_COMMENT = Pattern.compile(
             "^COMMENT[\\s]+ON[\\s]+.*$",
             Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
-    /**
-     * Storage of unprocessed line part.
-     */
-    private static String lineBuffer;
-
     /**
      * Loads database schema from dump file.
      *
@@ -151,70 +144,50 @@ public class PgDumpLoader { //NOPMD
     public static PgDatabase loadDatabaseSchema(final InputStream inputStream,
             final String charsetName, final boolean outputIgnoredStatements,
             final boolean ignoreSlonyTriggers) {
+        return loadDatabaseSchema(inputStream, charsetName,
+                outputIgnoredStatements, ignoreSlonyTriggers, null);
+    }
 
-        final PgDatabase database = new PgDatabase();
-        BufferedReader reader = null;
-
-        try {
-            reader = new BufferedReader(
-                    new InputStreamReader(inputStream, charsetName));
-        } catch (final UnsupportedEncodingException ex) {
-            throw new UnsupportedOperationException(
-                    Resources.getString("UnsupportedEncoding") + ": "
-                    + charsetName, ex);
-        }
-
-        String statement = getWholeStatement(reader);
-
-        while (statement != null) {
-            if (PATTERN_CREATE_SCHEMA.matcher(statement).matches()) {
-                CreateSchemaParser.parse(database, statement);
-            } else if (PATTERN_DEFAULT_SCHEMA.matcher(statement).matches()) {
-                final Matcher matcher =
-                        PATTERN_DEFAULT_SCHEMA.matcher(statement);
-                matcher.matches();
-                database.setDefaultSchema(matcher.group(1));
-            } else if (PATTERN_CREATE_TABLE.matcher(statement).matches()) {
-                CreateTableParser.parse(database, statement);
-            } else if (PATTERN_ALTER_TABLE.matcher(statement).matches()) {
-                AlterTableParser.parse(
-                        database, statement, outputIgnoredStatements);
-            } else if (PATTERN_CREATE_SEQUENCE.matcher(statement).matches()) {
-                CreateSequenceParser.parse(database, statement);
-            } else if (PATTERN_ALTER_SEQUENCE.matcher(statement).matches()) {
-                AlterSequenceParser.parse(
-                        database, statement, outputIgnoredStatements);
-            } else if (PATTERN_CREATE_INDEX.matcher(statement).matches()) {
-                CreateIndexParser.parse(database, statement);
-            } else if (PATTERN_CREATE_VIEW.matcher(statement).matches()) {
-                CreateViewParser.parse(database, statement);
-            } else if (PATTERN_ALTER_VIEW.matcher(statement).matches()) {
-                AlterViewParser.parse(
-                        database, statement, outputIgnoredStatements);
-            } else if (PATTERN_CREATE_TRIGGER.matcher(statement).matches()) {
-                CreateTriggerParser.parse(
-                        database, statement, ignoreSlonyTriggers);
-            } else if (PATTERN_CREATE_FUNCTION.matcher(statement).matches()) {
-                CreateFunctionParser.parse(database, statement);
-            } else if (PATTERN_COMMENT.matcher(statement).matches()) {
-                CommentParser.parse(
-                        database, statement, outputIgnoredStatements);
-            } else if (PATTERN_SELECT.matcher(statement).matches()
-                    || PATTERN_INSERT_INTO.matcher(statement).matches()
-                    || PATTERN_UPDATE.matcher(statement).matches()
-                    || PATTERN_DELETE_FROM.matcher(statement).matches()) {
-                // we just ignore these statements
-            } else if (outputIgnoredStatements) {
-                database.addIgnoredStatement(statement);
-            } else {
-                // these statements are ignored if outputIgnoredStatements
-                // is false
-            }
-
-            statement = getWholeStatement(reader);
-        }
+    /**
+     * Loads database schema from dump file.
+     *
+     * @param file                    name of file containing the dump
+     * @param charsetName             charset that should be used to read the
+     *                                file
+     * @param outputIgnoredStatements whether ignored statements should be
+     *                                included in the output
+     * @param ignoreSlonyTriggers     whether Slony triggers should be ignored
+     *
+     * @return database schema from dump file
+     */
+    public static PgDatabase loadDatabaseSchema(final String file,
+            final String charsetName, final boolean outputIgnoredStatements,
+            final boolean ignoreSlonyTriggers) {
+        return loadDatabaseSchema(file, charsetName, outputIgnoredStatements,
+                ignoreSlonyTriggers, false);
+    }
 
-        return database;
+    /**
+     * Loads database schema from dump file.
+     *
+     * @param file                    name of file containing the dump
+     * @param charsetName             charset that should be used to read the
+     *                                file
+     * @param outputIgnoredStatements whether ignored statements should be
+     *                                included in the output
+     * @param ignoreSlonyTriggers     whether Slony triggers should be ignored
+     * @param lazyDefinitions         whether function bodies, view queries,
+     *                                trigger conditions and constraint
+     *                                definitions should not be kept in memory
+     *                                but read from the dump file when needed
+     *
+     * @return database schema from dump file
+     */
+    public static PgDatabase loadDatabaseSchema(final String file,
+            final String charsetName, final boolean outputIgnoredStatements,
+            final boolean ignoreSlonyTriggers, final boolean lazyDefinitions) {
+        return loadDatabaseSchema(file, charsetName, outputIgnoredStatements,
+                ignoreSlonyTriggers, lazyDefinitions, false);
     }
 
     /**
@@ -226,154 +199,295 @@ public class PgDumpLoader { //NOPMD
      * @param outputIgnoredStatements whether ignored statements should be
      *                                included in the output
      * @param ignoreSlonyTriggers     whether Slony triggers should be ignored
+     * @param lazyDefinitions         whether function bodies, view queries,
+     *                                trigger conditions and constraint
+     *                                definitions should not be kept in memory
+     *                                but read from the dump file when needed
+     * @param useIndexFile            whether statements should be located
+     *                                using index file stored next to the dump
+     *                                file, the index file is created if it
+     *                                does not exist or is out of date
      *
      * @return database schema from dump file
      */
     public static PgDatabase loadDatabaseSchema(final String file,
             final String charsetName, final boolean outputIgnoredStatements,
-            final boolean ignoreSlonyTriggers) {
+            final boolean ignoreSlonyTriggers, final boolean lazyDefinitions,
+            final boolean useIndexFile) {
+        if (useIndexFile) {
+            final StatementIndex index =
+                    StatementIndexFile.load(file, charsetName);
+
+            if (index != null) {
+                return loadDatabaseSchema(file, charsetName, index,
+                        outputIgnoredStatements, ignoreSlonyTriggers,
+                        lazyDefinitions);
+            }
+        }
+
+        final InputStream inputStream;
+
         try {
-            return loadDatabaseSchema(new FileInputStream(file), charsetName,
-                    outputIgnoredStatements, ignoreSlonyTriggers);
+            inputStream = new FileInputStream(file);
         } catch (final FileNotFoundException ex) {
             throw new FileException(MessageFormat.format(
                     Resources.getString("FileNotFound"), file), ex);
         }
+
+        try {
+            return loadDatabaseSchema(inputStream, charsetName,
+                    outputIgnoredStatements, ignoreSlonyTriggers,
+                    lazyDefinitions
+                    ? new MappedDumpFile(file, charsetName) : null);
+        } finally {
+            try {
+                inputStream.close();
+            } catch (final IOException ex) {
+                throw new FileException(MessageFormat.format(
+                        Resources.getString("CannotReadFile"), file), ex);
+            }
+        }
     }
 
     /**
-     * Reads whole statement from the reader into single-line string.
+     * Loads database schema from dump file using already created index of its
+     * statements. Only the statements that are in the index are loaded.
      *
-     * @param reader reader to be read
+     * @param file                    name of file containing the dump
+     * @param charsetName             charset that should be used to read the
+     *                                file
+     * @param index                   index of statements in the dump
+     * @param outputIgnoredStatements whether ignored statements should be
+     *                                included in the output
+     * @param ignoreSlonyTriggers     whether Slony triggers should be ignored
+     * @param lazyDefinitions         whether function bodies, view queries,
+     *                                trigger conditions and constraint
+     *                                definitions should not be kept in memory
+     *                                but read from the dump file when needed
      *
-     * @return whole statement from the reader into single-line string
+     * @return database schema from dump file
      */
-    private static String getWholeStatement(final BufferedReader reader) {
-        final StringBuilder sbStatement = new StringBuilder(1024);
+    public static PgDatabase loadDatabaseSchema(final String file,
+            final String charsetName, final StatementIndex index,
+            final boolean outputIgnoredStatements,
+            final boolean ignoreSlonyTriggers, final boolean lazyDefinitions) {
+        final MappedDumpFile dumpFile = new MappedDumpFile(file, charsetName);
+        final PgDatabase database = new PgDatabase();
 
-        if (lineBuffer != null) {
-            sbStatement.append(lineBuffer);
-            lineBuffer = null;
-            stripComment(sbStatement);
+        try {
+            for (final StatementIndex.Entry entry : index.getEntries()) {
+                loadStatement(database, dumpFile, entry, lazyDefinitions,
+                        outputIgnoredStatements, ignoreSlonyTriggers);
+            }
+        } finally {
+            // lazy definitions are read from the dump file later
+            if (!lazyDefinitions) {
+                dumpFile.close();
+            }
         }
 
-        int pos = sbStatement.indexOf(";");
-
-        while (true) {
-            if (pos == -1) {
-                final String newLine;
-
-                try {
-                    newLine = reader.readLine();
-                } catch (IOException ex) {
-                    throw new FileException(
-                            Resources.getString("CannotReadFile"), ex);
-                }
-
-                if (newLine == null) {
-                    if (sbStatement.toString().trim().length() == 0) {
-                        return null;
-                    } else {
-                        throw new RuntimeException(MessageFormat.format(
-                                Resources.getString("EndOfStatementNotFound"),
-                                sbStatement.toString()));
-                    }
-                }
+        return database;
+    }
 
-                if (sbStatement.length() > 0) {
-                    sbStatement.append('\n');
-                }
+    /**
+     * Loads database schema from dump file.
+     *
+     * @param inputStream             input stream that should be read
+     * @param charsetName             charset that should be used to read the
+     *                                file
+     * @param outputIgnoredStatements whether ignored statements should be
+     *                                included in the output
+     * @param ignoreSlonyTriggers     whether Slony triggers should be ignored
+     * @param source                  source from which definitions are read
+     *                                when needed, or null if definitions
+     *                                should be kept in memory
+     *
+     * @return database schema from dump file
+     */
+    private static PgDatabase loadDatabaseSchema(final InputStream inputStream,
+            final String charsetName, final boolean outputIgnoredStatements,
+            final boolean ignoreSlonyTriggers,
+            final SourceText.Source source) {
+        final PgDatabase database = new PgDatabase();
+        final StatementReader reader =
+                new StatementReader(inputStream, charsetName);
+        final boolean lazy = source != null && reader.isTrackingOffsets();
 
-                pos = sbStatement.length();
-                sbStatement.append(newLine);
-                stripComment(sbStatement);
+        String statement = reader.readStatement();
 
-                pos = sbStatement.indexOf(";", pos);
-            } else {
-                if (!isQuoted(sbStatement, pos)) {
-                    if (pos == sbStatement.length() - 1) {
-                        lineBuffer = null;
-                    } else {
-                        lineBuffer = sbStatement.substring(pos + 1);
-                        sbStatement.setLength(pos + 1);
-                    }
+        while (statement != null) {
+            final SourceText.Location location = lazy
+                    ? new SourceText.Location(source,
+                    reader.getStatementOffset(), reader.getStatementLength())
+                    : null;
 
-                    return sbStatement.toString().trim();
-                }
+            parseStatement(database, statement, getStatementKind(statement),
+                    location, outputIgnoredStatements, ignoreSlonyTriggers);
 
-                pos = sbStatement.indexOf(";", pos + 1);
-            }
+            statement = reader.readStatement();
         }
+
+        return database;
     }
 
     /**
-     * Strips comment from statement line.
+     * Returns kind of the statement.
+     *
+     * @param statement statement
      *
-     * @param sbStatement string builder containing statement
+     * @return kind of the statement
      */
-    private static void stripComment(final StringBuilder sbStatement) {
-        int pos = sbStatement.indexOf("--");
-
-        while (pos >= 0) {
-            if (pos == 0) {
-                sbStatement.setLength(0);
-
-                return;
-            } else {
-                if (!isQuoted(sbStatement, pos)) {
-                    sbStatement.setLength(pos);
-
-                    return;
-                }
-            }
-
-            pos = sbStatement.indexOf("--", pos + 1);
+    public static StatementKind getStatementKind(final String statement) {
+        if (PATTERN_CREATE_SCHEMA.matcher(statement).matches()) {
+            return StatementKind.CREATE_SCHEMA;
+        } else if (PATTERN_DEFAULT_SCHEMA.matcher(statement).matches()) {
+            return StatementKind.SET_SEARCH_PATH;
+        } else if (PATTERN_CREATE_TABLE.matcher(statement).matches()) {
+            return StatementKind.CREATE_TABLE;
+        } else if (PATTERN_ALTER_TABLE.matcher(statement).matches()) {
+            return StatementKind.ALTER_TABLE;
+        } else if (PATTERN_CREATE_SEQUENCE.matcher(statement).matches()) {
+            return StatementKind.CREATE_SEQUENCE;
+        } else if (PATTERN_ALTER_SEQUENCE.matcher(statement).matches()) {
+            return StatementKind.ALTER_SEQUENCE;
+        } else if (PATTERN_CREATE_INDEX.matcher(statement).matches()) {
+            return StatementKind.CREATE_INDEX;
+        } else if (PATTERN_CREATE_VIEW.matcher(statement).matches()) {
+            return StatementKind.CREATE_VIEW;
+        } else if (PATTERN_ALTER_VIEW.matcher(statement).matches()) {
+            return StatementKind.ALTER_VIEW;
+        } else if (PATTERN_CREATE_TRIGGER.matcher(statement).matches()) {
+            return StatementKind.CREATE_TRIGGER;
+        } else if (PATTERN_CREATE_FUNCTION.matcher(statement).matches()) {
+            return StatementKind.CREATE_FUNCTION;
+        } else if (PATTERN_COMMENT.matcher(statement).matches()) {
+            return StatementKind.COMMENT;
+        } else if (PATTERN_SELECT.matcher(statement).matches()
+                || PATTERN_INSERT_INTO.matcher(statement).matches()
+                || PATTERN_UPDATE.matcher(statement).matches()
+                || PATTERN_DELETE_FROM.matcher(statement).matches()) {
+            return StatementKind.DATA;
+        } else {
+            return StatementKind.OTHER;
         }
     }
 
     /**
-     * Checks whether specified position in the string builder is quoted. It
-     * might be quoted either by single quote or by dollar sign quoting.
+     * Returns name of the default schema set by SET search_path statement.
      *
-     * @param sbString string builder
-     * @param pos      position to be checked
+     * @param statement SET search_path statement
      *
-     * @return true if the specified position is quoted, otherwise false
+     * @return name of the default schema
      */
-    @SuppressWarnings("AssignmentToForLoopParameter")
-    private static boolean isQuoted(final StringBuilder sbString,
-            final int pos) {
-        boolean isQuoted = false;
+    public static String getDefaultSchemaName(final String statement) {
+        final Matcher matcher = PATTERN_DEFAULT_SCHEMA.matcher(statement);
+        matcher.matches();
 
-        for (int curPos = 0; curPos < pos; curPos++) {
-            if (sbString.charAt(curPos) == '\'') {
-                isQuoted = !isQuoted;
+        return matcher.group(1);
+    }
 
-                // if quote was escaped by backslash, it's like double quote
-                if (pos > 0 && sbString.charAt(pos - 1) == '\\') {
-                    isQuoted = !isQuoted;
-                }
-            } else if (sbString.charAt(curPos) == '$' && !isQuoted) {
-                final int endPos = sbString.indexOf("$", curPos + 1);
+    /**
+     * Reads statement from the dump file using its index entry, parses it and
+     * stores parsed information in the database.
+     *
+     * @param database                database
+     * @param dumpFile                dump file
+     * @param entry                   index entry of the statement
+     * @param lazyDefinitions         whether definitions should be read from
+     *                                the dump file only when they are needed
+     * @param outputIgnoredStatements whether ignored statements should be
+     *                                included in the output
+     * @param ignoreSlonyTriggers     whether Slony triggers should be ignored
+     */
+    static void loadStatement(final PgDatabase database,
+            final MappedDumpFile dumpFile, final StatementIndex.Entry entry,
+            final boolean lazyDefinitions,
+            final boolean outputIgnoredStatements,
+            final boolean ignoreSlonyTriggers) {
+        final String statement =
+                dumpFile.readStatement(entry.getOffset(), entry.getLength());
 
-                if (endPos == -1) {
-                    return true;
-                }
+        if (statement == null || statement.hashCode() != entry.getHash()) {
+            throw new IllegalStateException(MessageFormat.format(
+                    Resources.getString("TextInDumpModified"), statement));
+        }
 
-                final String tag = sbString.substring(curPos, endPos + 1);
-                final int endTagPos = sbString.indexOf(tag, endPos + 1);
+        final SourceText.Location location = lazyDefinitions
+                ? new SourceText.Location(
+                dumpFile, entry.getOffset(), entry.getLength()) : null;
 
-                // if end tag was not found or it was found after the checked
-                // position, it's quoted
-                if (endTagPos == -1 || endTagPos > pos) {
-                    return true;
-                }
+        parseStatement(database, statement, entry.getKind(), location,
+                outputIgnoredStatements, ignoreSlonyTriggers);
+    }
 
-                curPos = endTagPos + tag.length() - 1;
-            }
+    /**
+     * Parses single statement and stores parsed information in the database.
+     *
+     * @param database                database
+     * @param statement               statement
+     * @param kind                    kind of the statement
+     * @param location                location of the statement in the dump
+     *                                or null if definitions should be stored
+     *                                directly
+     * @param outputIgnoredStatements whether ignored statements should be
+     *                                included in the output
+     * @param ignoreSlonyTriggers     whether Slony triggers should be ignored
+     */
+    static void parseStatement(final PgDatabase database,
+            final String statement, final StatementKind kind,
+            final SourceText.Location location,
+            final boolean outputIgnoredStatements,
+            final boolean ignoreSlonyTriggers) {
+        switch (kind) {
+            case CREATE_SCHEMA:
+                CreateSchemaParser.parse(database, statement);
+                break;
+            case SET_SEARCH_PATH:
+                database.setDefaultSchema(getDefaultSchemaName(statement));
+                break;
+            case CREATE_TABLE:
+                CreateTableParser.parse(database, statement, location);
+                break;
+            case ALTER_TABLE:
+                AlterTableParser.parse(database, statement,
+                        outputIgnoredStatements, location);
+                break;
+            case CREATE_SEQUENCE:
+                CreateSequenceParser.parse(database, statement);
+                break;
+            case ALTER_SEQUENCE:
+                AlterSequenceParser.parse(
+                        database, statement, outputIgnoredStatements);
+                break;
+            case CREATE_INDEX:
+                CreateIndexParser.parse(database, statement);
+                break;
+            case CREATE_VIEW:
+                CreateViewParser.parse(database, statement, location);
+                break;
+            case ALTER_VIEW:
+                AlterViewParser.parse(
+                        database, statement, outputIgnoredStatements);
+                break;
+            case CREATE_TRIGGER:
+                CreateTriggerParser.parse(
+                        database, statement, ignoreSlonyTriggers, location);
+                break;
+            case CREATE_FUNCTION:
+                CreateFunctionParser.parse(database, statement, location);
+                break;
+            case COMMENT:
+                CommentParser.parse(
+                        database, statement, outputIgnoredStatements);
+                break;
+            case DATA:
+                // we just ignore these statements
+                break;
+            default:
+                if (outputIgnoredStatements) {
+                    database.addIgnoredStatement(statement);
+                }
         }
-
-        return isQuoted;
     }
 
     /**
@@ -0,0 +1,227 @@
+/**
+ * Copyright 2006 StartNet s.r.o.
+ *
+ * Distributed under MIT license
+ */
+package cz.startnet.utils.pgdiff.loader;
+
+import cz.startnet.utils.pgdiff.Resources;
+import cz.startnet.utils.pgdiff.schema.PgDatabase;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.MessageFormat;
+
+/**
+ * Cache of {@link DatabaseSnapshot}s of parsed dumps. Snapshots are stored
+ * in cache directory under name derived from content hash of the dump and
+ * from loader options that influence the parsed model, so the same dump is
+ * parsed only once no matter where it is stored or how it is named.
+ *
+ * @author fordfrog
+ */
+public class SnapshotCache {
+
+    /**
+     * Suffix of snapshot file name.
+     */
+    public static final String FILE_SUFFIX = ".apgsnap";
+    /**
+     * Size of buffer used for reading and writing files.
+     */
+    private static final int BUFFER_SIZE = 65536;
+    /**
+     * Cache directory.
+     */
+    private final File directory;
+
+    /**
+     * Creates a new SnapshotCache object.
+     *
+     * @param directory {@link #directory}
+     */
+    public SnapshotCache(final String directory) {
+        this.directory = new File(directory);
+    }
+
+    /**
+     * Loads database schema from the cache if snapshot of the dump exists,
+     * otherwise the dump file is loaded and its snapshot is stored in the
+     * cache. Failure to store the snapshot is not an error, the dump is just
+     * parsed again next time.
+     *
+     * @param file                    name of file containing the dump
+     * @param charsetName             charset that should be used to read the
+     *                                file
+     * @param outputIgnoredStatements whether ignored statements should be
+     *                                included in the output
+     * @param ignoreSlonyTriggers     whether Slony triggers should be ignored
+     * @param lazyDefinitions         whether definitions should be read from
+     *                                the dump file only when they are needed
+     *                                in case the dump has to be parsed
+     * @param useIndexFile            whether index file stored next to the
+     *                                dump file should be used in case the
+     *                                dump has to be parsed
+     *
+     * @return database schema from dump file
+     */
+    public PgDatabase loadDatabaseSchema(final String file,
+            final String charsetName, final boolean outputIgnoredStatements,
+            final boolean ignoreSlonyTriggers, final boolean lazyDefinitions,
+            final boolean useIndexFile) {
+        final File snapshotFile = new File(directory, getKey(file,
+                charsetName, outputIgnoredStatements, ignoreSlonyTriggers)
+                + FILE_SUFFIX);
+
+        if (snapshotFile.isFile()) {
+            final PgDatabase database = read(snapshotFile);
+
+            if (database != null) {
+                return database;
+            }
+        }
+
+        final PgDatabase database = PgDumpLoader.loadDatabaseSchema(file,
+                charsetName, outputIgnoredStatements, ignoreSlonyTriggers,
+                lazyDefinitions, useIndexFile);
+        write(snapshotFile, database);
+
+        return database;
+    }
+
+    /**
+     * Returns key of the snapshot, that is hex encoded MD5 digest of the
+     * dump file content, loader options and snapshot format version.
+     *
+     * @param file                    name of file containing the dump
+     * @param charsetName             charset that should be used to read the
+     *                                file
+     * @param outputIgnoredStatements whether ignored statements should be
+     *                                included in the output
+     * @param ignoreSlonyTriggers     whether Slony triggers should be ignored
+     *
+     * @return key of the snapshot
+     */
+    static String getKey(final String file, final String charsetName,
+            final boolean outputIgnoredStatements,
+            final boolean ignoreSlonyTriggers) {
+        final MessageDigest digest;
+
+        try {
+            digest = MessageDigest.getInstance("MD5");
+        } catch (final NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+
+        final InputStream input;
+
+        try {
+            input = new FileInputStream(file);
+        } catch (final FileNotFoundException ex) {
+            throw new FileException(MessageFormat.format(
+                    Resources.getString("FileNotFound"), file), ex);
+        }
+
+        try {
+            try {
+                final byte[] buffer = new byte[BUFFER_SIZE];
+                int count = input.read(buffer);
+
+                while (count != -1) {
+                    digest.update(buffer, 0, count);
+                    count = input.read(buffer);
+                }
+            } finally {
+                input.close();
+            }
+        } catch (final IOException ex) {
+            throw new FileException(MessageFormat.format(
+                    Resources.getString("CannotReadFile"), file), ex);
+        }
+
+        final String options = DatabaseSnapshot.VERSION + "\n" + charsetName
+                + "\n" + outputIgnoredStatements + "\n" + ignoreSlonyTriggers;
+
+        try {
+            digest.update(options.getBytes("UTF-8"));
+        } catch (final IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+
+        final StringBuilder sbKey = new StringBuilder(32);
+
+        for (final byte value : digest.digest()) {
+            sbKey.append(Character.forDigit((value >> 4) & 0xF, 16));
+            sbKey.append(Character.forDigit(value & 0xF, 16));
+        }
+
+        return sbKey.toString();
+    }
+
+    /**
+     * Reads snapshot file.
+     *
+     * @param snapshotFile snapshot file
+     *
+     * @return database or null if the snapshot file is not valid
+     */
+    private static PgDatabase read(final File snapshotFile) {
+        try {
+            final InputStream input = new BufferedInputStream(
+                    new FileInputStream(snapshotFile), BUFFER_SIZE);
+
+            try {
+                return DatabaseSnapshot.read(input);
+            } finally {
+                input.close();
+            }
+        } catch (final IOException ex) {
+            return null;
+        } catch (final IndexOutOfBoundsException ex) {
+            return null;
+        } catch (final NegativeArraySizeException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes snapshot file. The snapshot is first written to temporary file
+     * that is then renamed, so the snapshot file is never left incomplete.
+     *
+     * @param snapshotFile snapshot file
+     * @param database     database
+     */
+    private void write(final File snapshotFile, final PgDatabase database) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            return;
+        }
+
+        final File tmpFile = new File(snapshotFile.getPath() + ".tmp");
+
+        try {
+            final OutputStream output = new BufferedOutputStream(
+                    new FileOutputStream(tmpFile), BUFFER_SIZE);
+
+            try {
+                DatabaseSnapshot.write(output, database);
+            } finally {
+                output.close();
+            }
+
+            if (snapshotFile.exists() && !snapshotFile.delete()
+                    || !tmpFile.renameTo(snapshotFile)) {
+                tmpFile.delete();
+            }
+        } catch (final IOException ex) {
+            tmpFile.delete();
+        }
+    }
+}
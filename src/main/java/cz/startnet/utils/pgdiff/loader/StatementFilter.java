@@ -0,0 +1,250 @@
+/**
+ * Copyright 2006 StartNet s.r.o.
+ *
+ * Distributed under MIT license
+ */
+package cz.startnet.utils.pgdiff.loader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Filters out statements of objects that are the same in both dumps, so that
+ * only the objects that differ have to be parsed and compared. Statements
+ * are grouped by the object that owns them, that is indexes, triggers,
+ * comments and ALTER TABLE statements are grouped with their table. An
+ * object is unchanged if its statements have the same hashes in both dumps
+ * and their bytes are equal too. Database level statements are always kept.
+ * Views are always kept too, as views that depend on a modified view have to
+ * be dropped and created even if their statements did not change.
+ *
+ * @author fordfrog
+ */
+public class StatementFilter {
+
+    /**
+     * Returns indexes of the dumps that contain only database level
+     * statements and statements of objects that differ between the dumps.
+     *
+     * @param oldFile     name of file containing the original dump
+     * @param oldIndex    index of the original dump
+     * @param newFile     name of file containing the new dump
+     * @param newIndex    index of the new dump
+     * @param charsetName charset that should be used to read the files
+     *
+     * @return array containing filtered index of the original dump and
+     *         filtered index of the new dump
+     */
+    public static StatementIndex[] filterUnchanged(final String oldFile,
+            final StatementIndex oldIndex, final String newFile,
+            final StatementIndex newIndex, final String charsetName) {
+        final Map<String, String> oldIndexOwners = getIndexOwners(oldIndex);
+        final Map<String, String> newIndexOwners = getIndexOwners(newIndex);
+        final Map<String, List<StatementIndex.Entry>> oldObjects =
+                getObjects(oldIndex, oldIndexOwners);
+        final Map<String, List<StatementIndex.Entry>> newObjects =
+                getObjects(newIndex, newIndexOwners);
+        final MappedDumpFile oldDump = new MappedDumpFile(oldFile, charsetName);
+        @SuppressWarnings("CollectionWithoutInitialCapacity")
+        final Set<String> unchanged = new HashSet<String>();
+
+        try {
+            final MappedDumpFile newDump =
+                    new MappedDumpFile(newFile, charsetName);
+
+            try {
+                for (final Map.Entry<String, List<StatementIndex.Entry>> object
+                        : oldObjects.entrySet()) {
+                    final List<StatementIndex.Entry> newEntries =
+                            newObjects.get(object.getKey());
+
+                    if (newEntries != null && !isView(newEntries)
+                            && isEqual(oldDump, object.getValue(), newDump,
+                            newEntries)) {
+                        unchanged.add(object.getKey());
+                    }
+                }
+            } finally {
+                newDump.close();
+            }
+        } finally {
+            oldDump.close();
+        }
+
+        return new StatementIndex[]{
+                    filter(oldIndex, oldIndexOwners, unchanged),
+                    filter(newIndex, newIndexOwners, unchanged)};
+    }
+
+    /**
+     * Returns map of index names to names of tables the indexes belong to.
+     * It is used to find owner of COMMENT ON INDEX statements.
+     *
+     * @param index index of the dump
+     *
+     * @return map of schema qualified index names to schema qualified table
+     *         names
+     */
+    private static Map<String, String> getIndexOwners(
+            final StatementIndex index) {
+        @SuppressWarnings("CollectionWithoutInitialCapacity")
+        final Map<String, String> indexOwners = new HashMap<String, String>();
+
+        for (final StatementIndex.Entry entry : index.getEntries()) {
+            if (entry.getKind() == StatementKind.CREATE_INDEX) {
+                indexOwners.put(entry.getObjectName(), entry.getOwnerName());
+            }
+        }
+
+        return indexOwners;
+    }
+
+    /**
+     * Returns name of the object that owns the statement.
+     *
+     * @param entry       index entry of the statement
+     * @param indexOwners map of index names to names of their tables
+     *
+     * @return schema qualified name of the owner
+     */
+    private static String getOwner(final StatementIndex.Entry entry,
+            final Map<String, String> indexOwners) {
+        final String indexOwner = indexOwners.get(entry.getOwnerName());
+
+        return indexOwner == null ? entry.getOwnerName() : indexOwner;
+    }
+
+    /**
+     * Groups statements that belong to a schema by their owner.
+     *
+     * @param index       index of the dump
+     * @param indexOwners map of index names to names of their tables
+     *
+     * @return statements grouped by schema qualified name of their owner
+     */
+    private static Map<String, List<StatementIndex.Entry>> getObjects(
+            final StatementIndex index,
+            final Map<String, String> indexOwners) {
+        @SuppressWarnings("CollectionWithoutInitialCapacity")
+        final Map<String, List<StatementIndex.Entry>> objects =
+                new LinkedHashMap<String, List<StatementIndex.Entry>>();
+
+        for (final StatementIndex.Entry entry : index.getEntries()) {
+            if (entry.getSchemaName() == null) {
+                continue;
+            }
+
+            final String owner = getOwner(entry, indexOwners);
+            List<StatementIndex.Entry> entries = objects.get(owner);
+
+            if (entries == null) {
+                entries = new ArrayList<StatementIndex.Entry>(1);
+                objects.put(owner, entries);
+            }
+
+            entries.add(entry);
+        }
+
+        return objects;
+    }
+
+    /**
+     * Checks whether the statements belong to a view.
+     *
+     * @param entries statements of the object
+     *
+     * @return true if the statements belong to a view, otherwise false
+     */
+    private static boolean isView(final List<StatementIndex.Entry> entries) {
+        for (final StatementIndex.Entry entry : entries) {
+            if (entry.getKind() == StatementKind.CREATE_VIEW) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Checks whether statements of the object are equal in both dumps.
+     * Hashes and lengths are compared first, so that the statements are read
+     * only if they are very likely equal.
+     *
+     * @param oldDump    original dump
+     * @param oldEntries statements of the object in original dump
+     * @param newDump    new dump
+     * @param newEntries statements of the object in new dump
+     *
+     * @return true if the statements are equal, otherwise false
+     */
+    private static boolean isEqual(final MappedDumpFile oldDump,
+            final List<StatementIndex.Entry> oldEntries,
+            final MappedDumpFile newDump,
+            final List<StatementIndex.Entry> newEntries) {
+        if (oldEntries.size() != newEntries.size()) {
+            return false;
+        }
+
+        for (int i = 0; i < oldEntries.size(); i++) {
+            final StatementIndex.Entry oldEntry = oldEntries.get(i);
+            final StatementIndex.Entry newEntry = newEntries.get(i);
+
+            if (oldEntry.getHash() != newEntry.getHash()
+                    || oldEntry.getLength() != newEntry.getLength()) {
+                return false;
+            }
+        }
+
+        for (int i = 0; i < oldEntries.size(); i++) {
+            final StatementIndex.Entry oldEntry = oldEntries.get(i);
+            final StatementIndex.Entry newEntry = newEntries.get(i);
+
+            if (!Arrays.equals(
+                    oldDump.readBytes(oldEntry.getOffset(),
+                    oldEntry.getLength()),
+                    newDump.readBytes(newEntry.getOffset(),
+                    newEntry.getLength()))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Creates index containing only database level statements and statements
+     * of objects that are not unchanged.
+     *
+     * @param index       index of the dump
+     * @param indexOwners map of index names to names of their tables
+     * @param unchanged   names of unchanged objects
+     *
+     * @return filtered index
+     */
+    private static StatementIndex filter(final StatementIndex index,
+            final Map<String, String> indexOwners,
+            final Set<String> unchanged) {
+        final StatementIndex result = new StatementIndex();
+
+        for (final StatementIndex.Entry entry : index.getEntries()) {
+            if (entry.getSchemaName() == null
+                    || !unchanged.contains(getOwner(entry, indexOwners))) {
+                result.add(entry);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Creates a new instance of StatementFilter.
+     */
+    private StatementFilter() {
+    }
+}
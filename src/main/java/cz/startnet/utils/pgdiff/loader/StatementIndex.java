@@ -0,0 +1,545 @@
+/**
+ * Copyright 2006 StartNet s.r.o.
+ *
+ * Distributed under MIT license
+ */
+package cz.startnet.utils.pgdiff.loader;
+
+import cz.startnet.utils.pgdiff.Resources;
+import cz.startnet.utils.pgdiff.parsers.Parser;
+import cz.startnet.utils.pgdiff.parsers.ParserUtils;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of statements in dump. For every statement it stores its location in
+ * the dump, its kind and the schema it belongs to, so that the dump can be
+ * loaded one schema at a time. Statements that do not belong to any schema
+ * (CREATE SCHEMA, SET search_path, COMMENT ON SCHEMA, COMMENT ON DATABASE and
+ * statements that are not parsed) are database level statements.
+ *
+ * @author fordfrog
+ */
+public class StatementIndex {
+
+    /**
+     * All statements in the order in which they are in the dump.
+     */
+    @SuppressWarnings("CollectionWithoutInitialCapacity")
+    private final List<Entry> entries = new ArrayList<Entry>();
+    /**
+     * Database level statements.
+     */
+    @SuppressWarnings("CollectionWithoutInitialCapacity")
+    private final List<Entry> databaseEntries = new ArrayList<Entry>();
+    /**
+     * Statements grouped by schema name, schemas are in the order in which
+     * they first appear in the dump.
+     */
+    @SuppressWarnings("CollectionWithoutInitialCapacity")
+    private final Map<String, List<Entry>> schemaEntries =
+            new LinkedHashMap<String, List<Entry>>();
+
+    /**
+     * Reads the dump file and creates index of its statements.
+     *
+     * @param file        name of file containing the dump
+     * @param charsetName charset that should be used to read the file
+     *
+     * @return created index or null if offsets of statements cannot be
+     *         tracked for given charset
+     */
+    public static StatementIndex create(final String file,
+            final String charsetName) {
+        final InputStream inputStream;
+
+        try {
+            inputStream = new FileInputStream(file);
+        } catch (final FileNotFoundException ex) {
+            throw new FileException(MessageFormat.format(
+                    Resources.getString("FileNotFound"), file), ex);
+        }
+
+        try {
+            return create(inputStream, charsetName);
+        } finally {
+            try {
+                inputStream.close();
+            } catch (final IOException ex) {
+                throw new FileException(MessageFormat.format(
+                        Resources.getString("CannotReadFile"), file), ex);
+            }
+        }
+    }
+
+    /**
+     * Reads the dump and creates index of its statements. Index can be
+     * created only if the reader tracks offsets of the statements.
+     *
+     * @param inputStream input stream that should be read
+     * @param charsetName charset that should be used to read the stream
+     *
+     * @return created index or null if offsets of statements cannot be
+     *         tracked for given charset
+     */
+    public static StatementIndex create(final InputStream inputStream,
+            final String charsetName) {
+        final StatementReader reader =
+                new StatementReader(inputStream, charsetName);
+
+        if (!reader.isTrackingOffsets()) {
+            return null;
+        }
+
+        final StatementIndex index = new StatementIndex();
+        String defaultSchemaName = "public";
+        String statement = reader.readStatement();
+
+        while (statement != null) {
+            final StatementKind kind =
+                    PgDumpLoader.getStatementKind(statement);
+
+            if (kind == StatementKind.SET_SEARCH_PATH) {
+                defaultSchemaName =
+                        PgDumpLoader.getDefaultSchemaName(statement);
+            }
+
+            index.add(createEntry(index.getSize(), reader.getStatementOffset(),
+                    reader.getStatementLength(), kind, statement,
+                    defaultSchemaName));
+
+            statement = reader.readStatement();
+        }
+
+        return index;
+    }
+
+    /**
+     * Adds entry to the index. Entries must be added in the order of the
+     * statements in the dump.
+     *
+     * @param entry entry
+     */
+    void add(final Entry entry) {
+        entries.add(entry);
+
+        if (entry.getSchemaName() == null) {
+            databaseEntries.add(entry);
+        } else {
+            List<Entry> schemaStatements =
+                    schemaEntries.get(entry.getSchemaName());
+
+            if (schemaStatements == null) {
+                schemaStatements = new ArrayList<Entry>(10);
+                schemaEntries.put(entry.getSchemaName(), schemaStatements);
+            }
+
+            schemaStatements.add(entry);
+        }
+    }
+
+    /**
+     * Returns number of statements in the index.
+     *
+     * @return number of statements
+     */
+    public int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * Getter for {@link #entries}. The list cannot be modified.
+     *
+     * @return {@link #entries}
+     */
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Getter for {@link #databaseEntries}. The list cannot be modified.
+     *
+     * @return {@link #databaseEntries}
+     */
+    public List<Entry> getDatabaseEntries() {
+        return Collections.unmodifiableList(databaseEntries);
+    }
+
+    /**
+     * Returns names of schemas that have some statements in the index.
+     *
+     * @return list of schema names
+     */
+    public List<String> getSchemaNames() {
+        return new ArrayList<String>(schemaEntries.keySet());
+    }
+
+    /**
+     * Returns statements belonging to the schema.
+     *
+     * @param schemaName name of the schema
+     *
+     * @return list of entries, empty if schema has no statements in the index
+     */
+    public List<Entry> getSchemaEntries(final String schemaName) {
+        final List<Entry> schemaStatements = schemaEntries.get(schemaName);
+
+        if (schemaStatements == null) {
+            return Collections.emptyList();
+        }
+
+        return Collections.unmodifiableList(schemaStatements);
+    }
+
+    /**
+     * Creates index entry for the statement.
+     *
+     * @param ordinal           ordinal number of the statement in the dump
+     * @param offset            byte offset of the statement in the dump
+     * @param length            byte length of the statement in the dump
+     * @param kind              kind of the statement
+     * @param statement         statement
+     * @param defaultSchemaName name of the default schema
+     *
+     * @return created entry
+     */
+    private static Entry createEntry(final int ordinal, final long offset,
+            final int length, final StatementKind kind,
+            final String statement, final String defaultSchemaName) {
+        final String[] names = getNames(kind, statement, defaultSchemaName);
+
+        return new Entry(ordinal, offset, length, kind, names[0], names[1],
+                names[2], statement.hashCode());
+    }
+
+    /**
+     * Returns name of the schema the statement belongs to, name of the object
+     * the statement is about and name of the object that owns it.
+     *
+     * @param kind              kind of the statement
+     * @param statement         statement
+     * @param defaultSchemaName name of the default schema
+     *
+     * @return array containing schema name, object name and owner name, all
+     *         can be null
+     */
+    private static String[] getNames(final StatementKind kind,
+            final String statement, final String defaultSchemaName) {
+        final Parser parser = new Parser(statement);
+        final String name;
+
+        switch (kind) {
+            case CREATE_SCHEMA:
+                parser.expect("CREATE", "SCHEMA");
+                parser.expectOptional("AUTHORIZATION");
+
+                return getDatabaseObjectNames(
+                        ParserUtils.getObjectName(parser.parseIdentifier()));
+            case CREATE_TABLE:
+                parser.expect("CREATE", "TABLE");
+                parser.expectOptional("IF", "NOT", "EXISTS");
+                name = parser.parseIdentifier();
+                break;
+            case ALTER_TABLE:
+                parser.expect("ALTER", "TABLE");
+                parser.expectOptional("ONLY");
+                name = parser.parseIdentifier();
+                break;
+            case CREATE_SEQUENCE:
+                parser.expect("CREATE", "SEQUENCE");
+                name = parser.parseIdentifier();
+                break;
+            case ALTER_SEQUENCE:
+                parser.expect("ALTER", "SEQUENCE");
+                name = parser.parseIdentifier();
+                break;
+            case CREATE_INDEX:
+                parser.expect("CREATE");
+                parser.expectOptional("UNIQUE");
+                parser.expect("INDEX");
+                parser.expectOptional("CONCURRENTLY");
+
+                final String indexName = parser.parseIdentifier();
+                parser.expect("ON");
+
+                final String tableName = parser.parseIdentifier();
+
+                return getSchemaObjectNames(ParserUtils.getSchemaName(
+                        tableName, defaultSchemaName), indexName, tableName);
+            case CREATE_VIEW:
+                parser.expect("CREATE");
+                parser.expectOptional("OR", "REPLACE");
+                parser.expect("VIEW");
+                name = parser.parseIdentifier();
+                break;
+            case ALTER_VIEW:
+                parser.expect("ALTER", "VIEW");
+                name = parser.parseIdentifier();
+                break;
+            case CREATE_TRIGGER:
+                parser.expect("CREATE", "TRIGGER");
+
+                final String triggerName = parser.parseIdentifier();
+
+                while (!parser.expectOptional("ON")) {
+                    final int position = parser.getPosition();
+
+                    if (!parser.expectOptional(",")) {
+                        parser.parseIdentifier();
+                    }
+
+                    if (parser.getPosition() == position) {
+                        parser.throwUnsupportedCommand();
+                    }
+                }
+
+                final String triggerTableName = parser.parseIdentifier();
+
+                return getSchemaObjectNames(ParserUtils.getSchemaName(
+                        triggerTableName, defaultSchemaName), triggerName,
+                        triggerTableName);
+            case CREATE_FUNCTION:
+                parser.expect("CREATE");
+                parser.expectOptional("OR", "REPLACE");
+                parser.expect("FUNCTION");
+                name = parser.parseIdentifier();
+                break;
+            case COMMENT:
+                return getCommentNames(parser, defaultSchemaName);
+            default:
+                return getDatabaseObjectNames(null);
+        }
+
+        final String schemaName =
+                ParserUtils.getSchemaName(name, defaultSchemaName);
+
+        return getSchemaObjectNames(schemaName, name, name);
+    }
+
+    /**
+     * Returns names for COMMENT statement. Schemas are resolved the same way
+     * as CommentParser resolves them.
+     *
+     * @param parser            parser of the statement
+     * @param defaultSchemaName name of the default schema
+     *
+     * @return array containing schema name, object name and owner name, all
+     *         can be null
+     */
+    private static String[] getCommentNames(final Parser parser,
+            final String defaultSchemaName) {
+        parser.expect("COMMENT", "ON");
+
+        if (parser.expectOptional("TABLE")
+                || parser.expectOptional("FUNCTION")
+                || parser.expectOptional("INDEX")
+                || parser.expectOptional("SEQUENCE")
+                || parser.expectOptional("VIEW")) {
+            final String name = parser.parseIdentifier();
+
+            return getSchemaObjectNames(
+                    ParserUtils.getSchemaName(name, defaultSchemaName), name,
+                    name);
+        } else if (parser.expectOptional("COLUMN")) {
+            final String name = parser.parseIdentifier();
+            final String schemaName = ParserUtils.getThirdObjectName(name);
+
+            return getSchemaObjectNames(
+                    schemaName == null ? defaultSchemaName : schemaName, name,
+                    ParserUtils.getSecondObjectName(name));
+        } else if (parser.expectOptional("CONSTRAINT")
+                || parser.expectOptional("TRIGGER")) {
+            final String name = parser.parseIdentifier();
+            parser.expect("ON");
+
+            return getSchemaObjectNames(
+                    defaultSchemaName, name, parser.parseIdentifier());
+        } else if (parser.expectOptional("SCHEMA")) {
+            return getDatabaseObjectNames(
+                    ParserUtils.getObjectName(parser.parseIdentifier()));
+        } else {
+            return getDatabaseObjectNames(null);
+        }
+    }
+
+    /**
+     * Returns names for database level statement.
+     *
+     * @param name name of the object or null
+     *
+     * @return array containing null schema name and object name as object
+     *         and owner name
+     */
+    private static String[] getDatabaseObjectNames(final String name) {
+        return new String[]{null, name, name};
+    }
+
+    /**
+     * Returns names for statement that belongs to a schema. Owner of the
+     * object is expected to be in the same schema as the object.
+     *
+     * @param schemaName name of the schema the statement belongs to
+     * @param name       optionally schema qualified name of the object
+     * @param ownerName  optionally schema qualified name of the object that
+     *                   owns the object
+     *
+     * @return array containing schema name, schema qualified object name and
+     *         schema qualified owner name
+     */
+    private static String[] getSchemaObjectNames(final String schemaName,
+            final String name, final String ownerName) {
+        return new String[]{schemaName,
+                    schemaName + '.' + ParserUtils.getObjectName(name),
+                    schemaName + '.' + ParserUtils.getObjectName(ownerName)};
+    }
+
+    /**
+     * Index entry of single statement.
+     */
+    @SuppressWarnings("PublicInnerClass")
+    public static class Entry {
+
+        /**
+         * Ordinal number of the statement in the dump.
+         */
+        private final int ordinal;
+        /**
+         * Byte offset of the statement in the dump.
+         */
+        private final long offset;
+        /**
+         * Byte length of the statement in the dump.
+         */
+        private final int length;
+        /**
+         * Kind of the statement.
+         */
+        private final StatementKind kind;
+        /**
+         * Name of the schema the statement belongs to or null if it is
+         * database level statement.
+         */
+        private final String schemaName;
+        /**
+         * Schema qualified name of the object the statement is about, or null
+         * if the statement is not about single object.
+         */
+        private final String objectName;
+        /**
+         * Schema qualified name of the object that owns the object the
+         * statement is about, that is table of index, trigger, constraint or
+         * column, otherwise the same as {@link #objectName}.
+         */
+        private final String ownerName;
+        /**
+         * Hash code of the statement.
+         */
+        private final int hash;
+
+        /**
+         * Creates a new Entry object.
+         *
+         * @param ordinal    {@link #ordinal}
+         * @param offset     {@link #offset}
+         * @param length     {@link #length}
+         * @param kind       {@link #kind}
+         * @param schemaName {@link #schemaName}
+         * @param objectName {@link #objectName}
+         * @param ownerName  {@link #ownerName}
+         * @param hash       {@link #hash}
+         */
+        public Entry(final int ordinal, final long offset, final int length,
+                final StatementKind kind, final String schemaName,
+                final String objectName, final String ownerName,
+                final int hash) {
+            this.ordinal = ordinal;
+            this.offset = offset;
+            this.length = length;
+            this.kind = kind;
+            this.schemaName = schemaName;
+            this.objectName = objectName;
+            this.ownerName = ownerName;
+            this.hash = hash;
+        }
+
+        /**
+         * Getter for {@link #ordinal}.
+         *
+         * @return {@link #ordinal}
+         */
+        public int getOrdinal() {
+            return ordinal;
+        }
+
+        /**
+         * Getter for {@link #offset}.
+         *
+         * @return {@link #offset}
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * Getter for {@link #length}.
+         *
+         * @return {@link #length}
+         */
+        public int getLength() {
+            return length;
+        }
+
+        /**
+         * Getter for {@link #kind}.
+         *
+         * @return {@link #kind}
+         */
+        public StatementKind getKind() {
+            return kind;
+        }
+
+        /**
+         * Getter for {@link #schemaName}.
+         *
+         * @return {@link #schemaName}
+         */
+        public String getSchemaName() {
+            return schemaName;
+        }
+
+        /**
+         * Getter for {@link #objectName}.
+         *
+         * @return {@link #objectName}
+         */
+        public String getObjectName() {
+            return objectName;
+        }
+
+        /**
+         * Getter for {@link #ownerName}.
+         *
+         * @return {@link #ownerName}
+         */
+        public String getOwnerName() {
+            return ownerName;
+        }
+
+        /**
+         * Getter for {@link #hash}.
+         *
+         * @return {@link #hash}
+         */
+        public int getHash() {
+            return hash;
+        }
+    }
+}
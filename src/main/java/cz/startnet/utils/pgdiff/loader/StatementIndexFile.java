@@ -0,0 +1,295 @@
+/**
+ * Copyright 2006 StartNet s.r.o.
+ *
+ * Distributed under MIT license
+ */
+package cz.startnet.utils.pgdiff.loader;
+
+import cz.startnet.utils.pgdiff.Resources;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.MessageFormat;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+/**
+ * Sidecar file storing {@link StatementIndex} of a dump file, so that the
+ * dump does not have to be split into statements again on every run. The
+ * index file is stored next to the dump file with suffix
+ * {@link #FILE_SUFFIX} and it is used only if size, modification time and
+ * checksum of the dump file match the values stored in the index file.
+ *
+ * @author fordfrog
+ */
+public class StatementIndexFile {
+
+    /**
+     * Suffix of index file name.
+     */
+    public static final String FILE_SUFFIX = ".apgidx";
+    /**
+     * Magic string at the beginning of index file.
+     */
+    private static final String MAGIC = "APGIDX";
+    /**
+     * Version of index file format.
+     */
+    private static final int VERSION = 2;
+    /**
+     * Size of buffer used for computing checksum.
+     */
+    private static final int BUFFER_SIZE = 65536;
+
+    /**
+     * Returns index of the dump file. If valid index file exists, index is
+     * read from it, otherwise the dump file is indexed and the index file is
+     * written. Failure to write the index file is not an error, the index is
+     * just not reused next time.
+     *
+     * @param file        name of file containing the dump
+     * @param charsetName charset that should be used to read the file
+     *
+     * @return index of the dump file or null if offsets of statements cannot
+     *         be tracked for given charset
+     */
+    public static StatementIndex load(final String file,
+            final String charsetName) {
+        final File dumpFile = new File(file);
+        final File indexFile = new File(file + FILE_SUFFIX);
+        final long size = dumpFile.length();
+        final long lastModified = dumpFile.lastModified();
+
+        if (indexFile.isFile()) {
+            final StatementIndex index = read(indexFile, dumpFile, size,
+                    lastModified, charsetName);
+
+            if (index != null) {
+                return index;
+            }
+        }
+
+        final CRC32 checksum = new CRC32();
+        final InputStream inputStream;
+
+        try {
+            inputStream = new CheckedInputStream(
+                    new FileInputStream(dumpFile), checksum);
+        } catch (final FileNotFoundException ex) {
+            throw new FileException(MessageFormat.format(
+                    Resources.getString("FileNotFound"), file), ex);
+        }
+
+        final StatementIndex index;
+
+        try {
+            index = StatementIndex.create(inputStream, charsetName);
+        } finally {
+            close(inputStream, file);
+        }
+
+        if (index != null) {
+            write(indexFile, index, size, lastModified, checksum.getValue(),
+                    charsetName);
+        }
+
+        return index;
+    }
+
+    /**
+     * Reads index from index file.
+     *
+     * @param indexFile    index file
+     * @param dumpFile     dump file
+     * @param size         size of dump file
+     * @param lastModified modification time of dump file
+     * @param charsetName  charset that should be used to read the dump file
+     *
+     * @return read index or null if index file is not valid for the dump file
+     */
+    private static StatementIndex read(final File indexFile,
+            final File dumpFile, final long size, final long lastModified,
+            final String charsetName) {
+        DataInputStream input = null;
+
+        try {
+            input = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(indexFile), BUFFER_SIZE));
+
+            if (!MAGIC.equals(input.readUTF())
+                    || input.readInt() != VERSION
+                    || input.readLong() != size
+                    || input.readLong() != lastModified) {
+                return null;
+            }
+
+            final long checksum = input.readLong();
+
+            if (!charsetName.equals(input.readUTF())
+                    || checksum != getChecksum(dumpFile)) {
+                return null;
+            }
+
+            final StatementKind[] kinds = StatementKind.values();
+            final int count = input.readInt();
+            final StatementIndex index = new StatementIndex();
+
+            for (int i = 0; i < count; i++) {
+                index.add(new StatementIndex.Entry(i, input.readLong(),
+                        input.readInt(), kinds[input.readByte()],
+                        readString(input), readString(input),
+                        readString(input), input.readInt()));
+            }
+
+            return index;
+        } catch (final IOException ex) {
+            return null;
+        } catch (final ArrayIndexOutOfBoundsException ex) {
+            return null;
+        } finally {
+            if (input != null) {
+                close(input, indexFile.getPath());
+            }
+        }
+    }
+
+    /**
+     * Writes index to index file. The index is first written to temporary
+     * file that is then renamed, so the index file is never left incomplete.
+     *
+     * @param indexFile    index file
+     * @param index        index
+     * @param size         size of dump file
+     * @param lastModified modification time of dump file
+     * @param checksum     checksum of dump file
+     * @param charsetName  charset that was used to read the dump file
+     */
+    private static void write(final File indexFile, final StatementIndex index,
+            final long size, final long lastModified, final long checksum,
+            final String charsetName) {
+        final File tmpFile = new File(indexFile.getPath() + ".tmp");
+
+        try {
+            final DataOutputStream output = new DataOutputStream(
+                    new BufferedOutputStream(
+                    new FileOutputStream(tmpFile), BUFFER_SIZE));
+
+            try {
+                output.writeUTF(MAGIC);
+                output.writeInt(VERSION);
+                output.writeLong(size);
+                output.writeLong(lastModified);
+                output.writeLong(checksum);
+                output.writeUTF(charsetName);
+                output.writeInt(index.getSize());
+
+                for (final StatementIndex.Entry entry : index.getEntries()) {
+                    output.writeLong(entry.getOffset());
+                    output.writeInt(entry.getLength());
+                    output.writeByte(entry.getKind().ordinal());
+                    writeString(output, entry.getSchemaName());
+                    writeString(output, entry.getObjectName());
+                    writeString(output, entry.getOwnerName());
+                    output.writeInt(entry.getHash());
+                }
+            } finally {
+                output.close();
+            }
+
+            if (indexFile.exists() && !indexFile.delete()
+                    || !tmpFile.renameTo(indexFile)) {
+                tmpFile.delete();
+            }
+        } catch (final IOException ex) {
+            tmpFile.delete();
+        }
+    }
+
+    /**
+     * Computes CRC32 checksum of the file.
+     *
+     * @param file file
+     *
+     * @return checksum
+     *
+     * @throws IOException Thrown if problem occurred while reading the file.
+     */
+    private static long getChecksum(final File file) throws IOException {
+        final CRC32 checksum = new CRC32();
+        final InputStream input = new FileInputStream(file);
+
+        try {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            int count = input.read(buffer);
+
+            while (count != -1) {
+                checksum.update(buffer, 0, count);
+                count = input.read(buffer);
+            }
+        } finally {
+            input.close();
+        }
+
+        return checksum.getValue();
+    }
+
+    /**
+     * Reads string that might be null.
+     *
+     * @param input input
+     *
+     * @return read string or null
+     *
+     * @throws IOException Thrown if problem occurred while reading.
+     */
+    private static String readString(final DataInputStream input)
+            throws IOException {
+        return input.readBoolean() ? input.readUTF() : null;
+    }
+
+    /**
+     * Writes string that might be null.
+     *
+     * @param output output
+     * @param string string or null
+     *
+     * @throws IOException Thrown if problem occurred while writing.
+     */
+    private static void writeString(final DataOutputStream output,
+            final String string) throws IOException {
+        output.writeBoolean(string != null);
+
+        if (string != null) {
+            output.writeUTF(string);
+        }
+    }
+
+    /**
+     * Closes input stream.
+     *
+     * @param inputStream input stream
+     * @param file        name of the file the stream reads
+     */
+    private static void close(final InputStream inputStream,
+            final String file) {
+        try {
+            inputStream.close();
+        } catch (final IOException ex) {
+            throw new FileException(MessageFormat.format(
+                    Resources.getString("CannotReadFile"), file), ex);
+        }
+    }
+
+    /**
+     * Creates a new instance of StatementIndexFile.
+     */
+    private StatementIndexFile() {
+    }
+}
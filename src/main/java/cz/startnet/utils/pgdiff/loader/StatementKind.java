@@ -0,0 +1,71 @@
+/**
+ * Copyright 2006 StartNet s.r.o.
+ *
+ * Distributed under MIT license
+ */
+package cz.startnet.utils.pgdiff.loader;
+
+/**
+ * Kinds of statements found in dump.
+ *
+ * @author fordfrog
+ */
+public enum StatementKind {
+
+    /**
+     * CREATE SCHEMA statement.
+     */
+    CREATE_SCHEMA,
+    /**
+     * SET search_path statement.
+     */
+    SET_SEARCH_PATH,
+    /**
+     * CREATE TABLE statement.
+     */
+    CREATE_TABLE,
+    /**
+     * ALTER TABLE statement.
+     */
+    ALTER_TABLE,
+    /**
+     * CREATE SEQUENCE statement.
+     */
+    CREATE_SEQUENCE,
+    /**
+     * ALTER SEQUENCE statement.
+     */
+    ALTER_SEQUENCE,
+    /**
+     * CREATE INDEX statement.
+     */
+    CREATE_INDEX,
+    /**
+     * CREATE VIEW statement.
+     */
+    CREATE_VIEW,
+    /**
+     * ALTER VIEW statement.
+     */
+    ALTER_VIEW,
+    /**
+     * CREATE TRIGGER statement.
+     */
+    CREATE_TRIGGER,
+    /**
+     * CREATE FUNCTION statement.
+     */
+    CREATE_FUNCTION,
+    /**
+     * COMMENT statement.
+     */
+    COMMENT,
+    /**
+     * SELECT, INSERT, UPDATE or DELETE statement, these are always ignored.
+     */
+    DATA,
+    /**
+     * Any other statement.
+     */
+    OTHER
+}
@@ -0,0 +1,435 @@
+/**
+ * Copyright 2006 StartNet s.r.o.
+ *
+ * Distributed under MIT license
+ */
+package cz.startnet.utils.pgdiff.loader;
+
+import cz.startnet.utils.pgdiff.Resources;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
+import java.text.MessageFormat;
+import java.util.Arrays;
+
+/**
+ * Splits PostgreSQL dump into single-line statements. If the charset of the
+ * dump is ASCII compatible, byte offset and byte length of every returned
+ * statement in the dump is tracked too, so that the statement can be read
+ * again later directly from the dump file.
+ *
+ * @author fordfrog
+ */
+public class StatementReader {
+
+    /**
+     * Size of the input buffer.
+     */
+    private static final int BUFFER_SIZE = 65536;
+    /**
+     * Input stream that is read in byte mode, null if reader is used.
+     */
+    private final InputStream inputStream;
+    /**
+     * Reader that is used for charsets that are not ASCII compatible, null if
+     * input stream is read in byte mode.
+     */
+    private final BufferedReader reader;
+    /**
+     * Charset of the dump.
+     */
+    private final Charset charset;
+    /**
+     * Input buffer.
+     */
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    /**
+     * Position of next unread byte in {@link #buffer}.
+     */
+    private int bufferPos;
+    /**
+     * Number of valid bytes in {@link #buffer}.
+     */
+    private int bufferLength;
+    /**
+     * Buffer for bytes of currently read line.
+     */
+    private byte[] lineBytes = new byte[1024];
+    /**
+     * Byte offset of the next byte that will be read from the input.
+     */
+    private long inputOffset;
+    /**
+     * Byte offset of the line that was read last.
+     */
+    private long lineOffset;
+    /**
+     * Storage of unprocessed line part.
+     */
+    private String lineBuffer;
+    /**
+     * Byte offset of {@link #lineBuffer}.
+     */
+    private long lineBufferOffset;
+    /**
+     * Byte offset of the statement that was read last.
+     */
+    private long statementOffset = -1;
+    /**
+     * Byte length of the statement that was read last.
+     */
+    private int statementLength = -1;
+
+    /**
+     * Creates new instance of StatementReader.
+     *
+     * @param inputStream input stream that should be read
+     * @param charsetName charset that should be used to read the stream
+     */
+    public StatementReader(final InputStream inputStream,
+            final String charsetName) {
+        charset = getCharset(charsetName);
+
+        if (isAsciiCompatible(charset)) {
+            this.inputStream = inputStream;
+            reader = null;
+        } else {
+            this.inputStream = null;
+            reader = new BufferedReader(
+                    new InputStreamReader(inputStream, charset));
+        }
+    }
+
+    /**
+     * Returns charset for given charset name.
+     *
+     * @param charsetName charset name
+     *
+     * @return charset
+     */
+    static Charset getCharset(final String charsetName) {
+        try {
+            return Charset.forName(charsetName);
+        } catch (final IllegalCharsetNameException ex) {
+            throw new UnsupportedOperationException(
+                    Resources.getString("UnsupportedEncoding") + ": "
+                    + charsetName, ex);
+        } catch (final UnsupportedCharsetException ex) {
+            throw new UnsupportedOperationException(
+                    Resources.getString("UnsupportedEncoding") + ": "
+                    + charsetName, ex);
+        }
+    }
+
+    /**
+     * Checks whether characters used for splitting of lines and statements
+     * are encoded the same way as in ASCII.
+     *
+     * @param charset charset
+     *
+     * @return true if charset is ASCII compatible, otherwise false
+     */
+    static boolean isAsciiCompatible(final Charset charset) {
+        final String test = "\r\n;'$-";
+
+        try {
+            return Arrays.equals(test.getBytes("US-ASCII"),
+                    test.getBytes(charset.name()));
+        } catch (final UnsupportedEncodingException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns true if byte offsets of statements are tracked.
+     *
+     * @return true if byte offsets of statements are tracked, otherwise false
+     */
+    public boolean isTrackingOffsets() {
+        return inputStream != null;
+    }
+
+    /**
+     * Getter for {@link #statementOffset}. The value is -1 if offsets are not
+     * tracked.
+     *
+     * @return {@link #statementOffset}
+     */
+    public long getStatementOffset() {
+        return statementOffset;
+    }
+
+    /**
+     * Getter for {@link #statementLength}. The value is -1 if offsets are not
+     * tracked.
+     *
+     * @return {@link #statementLength}
+     */
+    public int getStatementLength() {
+        return statementLength;
+    }
+
+    /**
+     * Reads whole statement from the input into single-line string.
+     *
+     * @return whole statement from the input into single-line string or null
+     *         if end of input was reached
+     */
+    public String readStatement() {
+        final StringBuilder sbStatement = new StringBuilder(1024);
+        final long startOffset;
+        int lastLineStart = 0;
+        long lastLineOffset;
+
+        if (lineBuffer == null) {
+            startOffset = inputOffset;
+            lastLineOffset = inputOffset;
+        } else {
+            startOffset = lineBufferOffset;
+            lastLineOffset = lineBufferOffset;
+            sbStatement.append(lineBuffer);
+            lineBuffer = null;
+            stripComment(sbStatement);
+        }
+
+        int pos = sbStatement.indexOf(";");
+
+        while (true) {
+            if (pos == -1) {
+                final String newLine = readLine();
+
+                if (newLine == null) {
+                    if (sbStatement.toString().trim().length() == 0) {
+                        return null;
+                    } else {
+                        throw new RuntimeException(MessageFormat.format(
+                                Resources.getString("EndOfStatementNotFound"),
+                                sbStatement.toString()));
+                    }
+                }
+
+                if (sbStatement.length() > 0) {
+                    sbStatement.append('\n');
+                }
+
+                pos = sbStatement.length();
+                lastLineStart = pos;
+                lastLineOffset = lineOffset;
+                sbStatement.append(newLine);
+                stripComment(sbStatement);
+
+                pos = sbStatement.indexOf(";", pos);
+            } else {
+                if (!isQuoted(sbStatement, pos)) {
+                    if (isTrackingOffsets()) {
+                        final long endOffset = lastLineOffset + getByteLength(
+                                sbStatement, lastLineStart, pos + 1);
+                        statementOffset = startOffset;
+                        statementLength = (int) (endOffset - startOffset);
+                        lineBufferOffset = endOffset;
+                    }
+
+                    if (pos == sbStatement.length() - 1) {
+                        lineBuffer = null;
+                    } else {
+                        lineBuffer = sbStatement.substring(pos + 1);
+                        sbStatement.setLength(pos + 1);
+                    }
+
+                    return sbStatement.toString().trim();
+                }
+
+                pos = sbStatement.indexOf(";", pos + 1);
+            }
+        }
+    }
+
+    /**
+     * Returns number of bytes the part of string builder occupies in the
+     * input.
+     *
+     * @param sbString string builder
+     * @param start    start index, inclusive
+     * @param end      end index, exclusive
+     *
+     * @return number of bytes
+     */
+    private int getByteLength(final StringBuilder sbString, final int start,
+            final int end) {
+        boolean ascii = true;
+
+        for (int i = start; i < end; i++) {
+            if (sbString.charAt(i) >= 0x80) {
+                ascii = false;
+                break;
+            }
+        }
+
+        if (ascii) {
+            return end - start;
+        }
+
+        return charset.encode(CharBuffer.wrap(sbString, start, end)).
+                remaining();
+    }
+
+    /**
+     * Reads single line from the input. Line is terminated either by '\n',
+     * '\r' or "\r\n".
+     *
+     * @return line without line terminator, or null if end of input was
+     *         reached
+     */
+    private String readLine() {
+        if (reader != null) {
+            try {
+                return reader.readLine();
+            } catch (final IOException ex) {
+                throw new FileException(
+                        Resources.getString("CannotReadFile"), ex);
+            }
+        }
+
+        lineOffset = inputOffset;
+
+        int length = 0;
+        boolean lineRead = false;
+
+        while (true) {
+            if (bufferPos == bufferLength && !fillBuffer()) {
+                break;
+            }
+
+            final byte chr = buffer[bufferPos++];
+            inputOffset++;
+            lineRead = true;
+
+            if (chr == '\n') {
+                break;
+            } else if (chr == '\r') {
+                if ((bufferPos < bufferLength || fillBuffer())
+                        && buffer[bufferPos] == '\n') {
+                    bufferPos++;
+                    inputOffset++;
+                }
+
+                break;
+            }
+
+            if (length == lineBytes.length) {
+                lineBytes = Arrays.copyOf(lineBytes, length * 2);
+            }
+
+            lineBytes[length++] = chr;
+        }
+
+        if (!lineRead) {
+            return null;
+        }
+
+        return new String(lineBytes, 0, length, charset);
+    }
+
+    /**
+     * Fills input buffer with next bytes from the input stream.
+     *
+     * @return true if some bytes were read, false if end of stream was
+     *         reached
+     */
+    private boolean fillBuffer() {
+        try {
+            int count = 0;
+
+            while (count == 0) {
+                count = inputStream.read(buffer);
+            }
+
+            if (count == -1) {
+                return false;
+            }
+
+            bufferPos = 0;
+            bufferLength = count;
+
+            return true;
+        } catch (final IOException ex) {
+            throw new FileException(Resources.getString("CannotReadFile"), ex);
+        }
+    }
+
+    /**
+     * Strips comment from statement line.
+     *
+     * @param sbStatement string builder containing statement
+     */
+    private static void stripComment(final StringBuilder sbStatement) {
+        int pos = sbStatement.indexOf("--");
+
+        while (pos >= 0) {
+            if (pos == 0) {
+                sbStatement.setLength(0);
+
+                return;
+            } else {
+                if (!isQuoted(sbStatement, pos)) {
+                    sbStatement.setLength(pos);
+
+                    return;
+                }
+            }
+
+            pos = sbStatement.indexOf("--", pos + 1);
+        }
+    }
+
+    /**
+     * Checks whether specified position in the string builder is quoted. It
+     * might be quoted either by single quote or by dollar sign quoting.
+     *
+     * @param sbString string builder
+     * @param pos      position to be checked
+     *
+     * @return true if the specified position is quoted, otherwise false
+     */
+    @SuppressWarnings("AssignmentToForLoopParameter")
+    private static boolean isQuoted(final StringBuilder sbString,
+            final int pos) {
+        boolean isQuoted = false;
+
+        for (int curPos = 0; curPos < pos; curPos++) {
+            if (sbString.charAt(curPos) == '\'') {
+                isQuoted = !isQuoted;
+
+                // if quote was escaped by backslash, it's like double quote
+                if (pos > 0 && sbString.charAt(pos - 1) == '\\') {
+                    isQuoted = !isQuoted;
+                }
+            } else if (sbString.charAt(curPos) == '$' && !isQuoted) {
+                final int endPos = sbString.indexOf("$", curPos + 1);
+
+                if (endPos == -1) {
+                    return true;
+                }
+
+                final String tag = sbString.substring(curPos, endPos + 1);
+                final int endTagPos = sbString.indexOf(tag, endPos + 1);
+
+                // if end tag was not found or it was found after the checked
+                // position, it's quoted
+                if (endTagPos == -1 || endTagPos > pos) {
+                    return true;
+                }
+
+                curPos = endTagPos + tag.length() - 1;
+            }
+        }
+
+        return isQuoted;
+    }
+}
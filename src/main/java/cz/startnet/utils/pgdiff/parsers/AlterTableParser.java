@@ -13,6 +13,7 @@ import cz.startnet.utils.pgdiff.schema.PgSchema;
 import cz.startnet.utils.pgdiff.schema.PgSequence;
 import cz.startnet.utils.pgdiff.schema.PgTable;
 import cz.startnet.utils.pgdiff.schema.PgView;
+import cz.startnet.utils.pgdiff.schema.SourceText;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.List;
@@ -34,6 +35,23 @@ public class AlterTableParser {
      */
     public static void parse(final PgDatabase database,
             final String statement, final boolean outputIgnoredStatements) {
+        parse(database, statement, outputIgnoredStatements, null);
+    }
+
+    /**
+     * Parses ALTER TABLE statement.
+     *
+     * @param database                database
+     * @param statement               ALTER TABLE statement
+     * @param outputIgnoredStatements whether ignored statements should be
+     *                                output in the diff
+     * @param location                location of the statement in the dump
+     *                                or null if constraint definitions should
+     *                                be stored directly
+     */
+    public static void parse(final PgDatabase database,
+            final String statement, final boolean outputIgnoredStatements,
+            final SourceText.Location location) {
         final Parser parser = new Parser(statement);
         parser.expect("ALTER", "TABLE");
         parser.expectOptional("ONLY");
@@ -90,9 +108,9 @@ public class AlterTableParser {
                 }
             } else if (parser.expectOptional("ADD")) {
                 if (parser.expectOptional("FOREIGN", "KEY")) {
-                    parseAddForeignKey(parser, table);
+                    parseAddForeignKey(parser, table, location);
                 } else if (parser.expectOptional("CONSTRAINT")) {
-                    parseAddConstraint(parser, table, schema);
+                    parseAddConstraint(parser, table, schema, location);
                 } else {
                     parser.throwUnsupportedCommand();
                 }
@@ -204,12 +222,14 @@ public class AlterTableParser {
     /**
      * Parses ADD CONSTRAINT action.
      *
-     * @param parser parser
-     * @param table  table
-     * @param schema schema
+     * @param parser   parser
+     * @param table    table
+     * @param schema   schema
+     * @param location location of the statement in the dump or null
      */
     private static void parseAddConstraint(final Parser parser,
-            final PgTable table, final PgSchema schema) {
+            final PgTable table, final PgSchema schema,
+            final SourceText.Location location) {
         final String constraintName =
                 ParserUtils.getObjectName(parser.parseIdentifier());
         final PgConstraint constraint = new PgConstraint(constraintName);
@@ -220,7 +240,9 @@ public class AlterTableParser {
             schema.addPrimaryKey(constraint);
             constraint.setDefinition("PRIMARY KEY " + parser.getExpression());
         } else {
-            constraint.setDefinition(parser.getExpression());
+            final int definitionStart = parser.getPosition();
+            constraint.setDefinition(SourceText.valueOf(parser.getString(),
+                    parser.getExpression(), definitionStart, location));
         }
     }
 
@@ -298,11 +320,12 @@ public class AlterTableParser {
     /**
      * Parses ADD FOREIGN KEY action.
      *
-     * @param parser parser
-     * @param table  pg table
+     * @param parser   parser
+     * @param table    pg table
+     * @param location location of the statement in the dump or null
      */
     private static void parseAddForeignKey(final Parser parser,
-            final PgTable table) {
+            final PgTable table, final SourceText.Location location) {
         final List<String> columnNames = new ArrayList<String>(1);
         parser.expect("(");
 
@@ -322,7 +345,9 @@ public class AlterTableParser {
         final PgConstraint constraint =
                 new PgConstraint(constraintName);
         table.addConstraint(constraint);
-        constraint.setDefinition(parser.getExpression());
+        final int definitionStart = parser.getPosition();
+        constraint.setDefinition(SourceText.valueOf(parser.getString(),
+                parser.getExpression(), definitionStart, location));
         constraint.setTableName(table.getName());
     }
 
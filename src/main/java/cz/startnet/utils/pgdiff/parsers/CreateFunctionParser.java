@@ -9,6 +9,7 @@ import cz.startnet.utils.pgdiff.Resources;
 import cz.startnet.utils.pgdiff.schema.PgDatabase;
 import cz.startnet.utils.pgdiff.schema.PgFunction;
 import cz.startnet.utils.pgdiff.schema.PgSchema;
+import cz.startnet.utils.pgdiff.schema.SourceText;
 import java.text.MessageFormat;
 
 /**
@@ -26,6 +27,19 @@ public class CreateFunctionParser {
      */
     public static void parse(final PgDatabase database,
             final String statement) {
+        parse(database, statement, null);
+    }
+
+    /**
+     * Parses CREATE FUNCTION and CREATE OR REPLACE FUNCTION statement.
+     *
+     * @param database  database
+     * @param statement CREATE FUNCTION statement
+     * @param location  location of the statement in the dump or null if
+     *                  function body should be stored directly
+     */
+    public static void parse(final PgDatabase database,
+            final String statement, final SourceText.Location location) {
         final Parser parser = new Parser(statement);
         parser.expect("CREATE");
         parser.expectOptional("OR", "REPLACE");
@@ -103,7 +117,9 @@ public class CreateFunctionParser {
             }
         }
 
-        function.setBody(parser.getRest());
+        final int bodyStart = parser.getPosition();
+        function.setBody(SourceText.valueOf(
+                statement, parser.getRest(), bodyStart, location));
     }
 
     /**
@@ -11,6 +11,7 @@ import cz.startnet.utils.pgdiff.schema.PgConstraint;
 import cz.startnet.utils.pgdiff.schema.PgDatabase;
 import cz.startnet.utils.pgdiff.schema.PgSchema;
 import cz.startnet.utils.pgdiff.schema.PgTable;
+import cz.startnet.utils.pgdiff.schema.SourceText;
 import java.text.MessageFormat;
 
 /**
@@ -28,6 +29,19 @@ public class CreateTableParser {
      */
     public static void parse(final PgDatabase database,
             final String statement) {
+        parse(database, statement, null);
+    }
+
+    /**
+     * Parses CREATE TABLE statement.
+     *
+     * @param database  database
+     * @param statement CREATE TABLE statement
+     * @param location  location of the statement in the dump or null if
+     *                  constraint definitions should be stored directly
+     */
+    public static void parse(final PgDatabase database,
+            final String statement, final SourceText.Location location) {
         final Parser parser = new Parser(statement);
         parser.expect("CREATE", "TABLE");
 
@@ -52,7 +66,7 @@ public class CreateTableParser {
 
         while (!parser.expectOptional(")")) {
             if (parser.expectOptional("CONSTRAINT")) {
-                parseConstraint(parser, table);
+                parseConstraint(parser, table, location);
             } else {
                 parseColumn(parser, table);
             }
@@ -111,15 +125,18 @@ public class CreateTableParser {
     /**
      * Parses CONSTRAINT definition.
      *
-     * @param parser parser
-     * @param table  table
+     * @param parser   parser
+     * @param table    table
+     * @param location location of the statement in the dump or null
      */
     private static void parseConstraint(final Parser parser,
-            final PgTable table) {
+            final PgTable table, final SourceText.Location location) {
         final PgConstraint constraint = new PgConstraint(
                 ParserUtils.getObjectName(parser.parseIdentifier()));
         table.addConstraint(constraint);
-        constraint.setDefinition(parser.getExpression());
+        final int definitionStart = parser.getPosition();
+        constraint.setDefinition(SourceText.valueOf(parser.getString(),
+                parser.getExpression(), definitionStart, location));
         constraint.setTableName(table.getName());
     }
 
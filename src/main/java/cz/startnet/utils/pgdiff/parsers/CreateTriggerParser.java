@@ -8,6 +8,7 @@ package cz.startnet.utils.pgdiff.parsers;
 import cz.startnet.utils.pgdiff.schema.PgDatabase;
 import cz.startnet.utils.pgdiff.schema.PgSchema;
 import cz.startnet.utils.pgdiff.schema.PgTrigger;
+import cz.startnet.utils.pgdiff.schema.SourceText;
 
 /**
  * Parses CREATE TRIGGER statements.
@@ -25,6 +26,22 @@ public class CreateTriggerParser {
      */
     public static void parse(final PgDatabase database,
             final String statement, final boolean ignoreSlonyTriggers) {
+        parse(database, statement, ignoreSlonyTriggers, null);
+    }
+
+    /**
+     * Parses CREATE TRIGGER statement.
+     *
+     * @param database            database
+     * @param statement           CREATE TRIGGER statement
+     * @param ignoreSlonyTriggers whether Slony triggers should be ignored
+     * @param location            location of the statement in the dump or
+     *                            null if WHEN condition should be stored
+     *                            directly
+     */
+    public static void parse(final PgDatabase database,
+            final String statement, final boolean ignoreSlonyTriggers,
+            final SourceText.Location location) {
         final Parser parser = new Parser(statement);
         parser.expect("CREATE", "TRIGGER");
 
@@ -88,7 +105,9 @@ public class CreateTriggerParser {
 
         if (parser.expectOptional("WHEN")) {
             parser.expect("(");
-            trigger.setWhen(parser.getExpression());
+            final int whenStart = parser.getPosition();
+            trigger.setWhen(SourceText.valueOf(
+                    statement, parser.getExpression(), whenStart, location));
             parser.expect(")");
         }
 
@@ -9,6 +9,7 @@ import cz.startnet.utils.pgdiff.Resources;
 import cz.startnet.utils.pgdiff.schema.PgDatabase;
 import cz.startnet.utils.pgdiff.schema.PgSchema;
 import cz.startnet.utils.pgdiff.schema.PgView;
+import cz.startnet.utils.pgdiff.schema.SourceText;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.List;
@@ -28,6 +29,19 @@ public class CreateViewParser {
      */
     public static void parse(final PgDatabase database,
             final String statement) {
+        parse(database, statement, null);
+    }
+
+    /**
+     * Parses CREATE VIEW statement.
+     *
+     * @param database  database
+     * @param statement CREATE VIEW statement
+     * @param location  location of the statement in the dump or null if
+     *                  view query should be stored directly
+     */
+    public static void parse(final PgDatabase database,
+            final String statement, final SourceText.Location location) {
         final Parser parser = new Parser(statement);
         parser.expect("CREATE");
         parser.expectOptional("OR", "REPLACE");
@@ -48,7 +62,10 @@ public class CreateViewParser {
 
         parser.expect("AS");
 
-        final String query = parser.getRest();
+        final int queryStart = parser.getPosition();
+        final String queryText = parser.getRest();
+        final SourceText query = SourceText.valueOf(
+                statement, queryText, queryStart, location);
 
         final PgView view = new PgView(ParserUtils.getObjectName(viewName));
         view.setColumnNames(columnNames);
@@ -63,6 +80,15 @@ public class CreateViewParser {
                     statement));
         }
 
+        for (final String relationName
+                : QueryParser.getReferencedRelations(queryText)) {
+            if (schemaName.equals(
+                    ParserUtils.getSchemaName(relationName, schemaName))) {
+                view.addReferencedRelation(
+                        ParserUtils.getObjectName(relationName));
+            }
+        }
+
         schema.addView(view);
     }
 
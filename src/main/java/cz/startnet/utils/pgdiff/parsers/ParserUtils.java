@@ -76,6 +76,25 @@ public class ParserUtils {
         }
     }
 
+    /**
+     * Returns schema name from optionally schema qualified name.
+     *
+     * @param name              optionally schema qualified name
+     * @param defaultSchemaName name of the default schema
+     *
+     * @return name of the schema
+     */
+    public static String getSchemaName(final String name,
+            final String defaultSchemaName) {
+        final String[] names = splitNames(name);
+
+        if (names.length < 2) {
+            return defaultSchemaName;
+        } else {
+            return names[0];
+        }
+    }
+
     /**
      * Generates unique name from the prefix, list of names, and postfix.
      *
@@ -0,0 +1,477 @@
+/**
+ * Copyright 2006 StartNet s.r.o.
+ *
+ * Distributed under MIT license
+ */
+package cz.startnet.utils.pgdiff.parsers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Parser of view queries. The query is split to tokens, skipping whitespace
+ * and comments, so that parts of the query can be compared regardless of
+ * their formatting.
+ *
+ * @author fordfrog
+ */
+public class QueryParser {
+
+    /**
+     * Keywords that end select list.
+     */
+    private static final List<String> SELECT_LIST_END = Arrays.asList(
+            "FROM", "INTO", "WHERE", "GROUP", "HAVING", "WINDOW", "ORDER",
+            "LIMIT", "OFFSET", "FETCH", "FOR", "UNION", "INTERSECT", "EXCEPT");
+    /**
+     * Keywords of set operations.
+     */
+    private static final List<String> SET_OPERATIONS =
+            Arrays.asList("UNION", "INTERSECT", "EXCEPT");
+    /**
+     * Keywords that end FROM clause.
+     */
+    private static final List<String> FROM_CLAUSE_END = Arrays.asList(
+            "WHERE", "GROUP", "HAVING", "WINDOW", "ORDER", "LIMIT", "OFFSET",
+            "FETCH", "FOR", "UNION", "INTERSECT", "EXCEPT");
+    /**
+     * Keywords that can precede relation name in FROM clause.
+     */
+    private static final List<String> RELATION_PREFIXES =
+            Arrays.asList("ONLY", "LATERAL");
+    /**
+     * Keywords that start subquery.
+     */
+    private static final List<String> SUBQUERY_STARTS =
+            Arrays.asList("SELECT", "WITH", "VALUES");
+    /**
+     * State of parentheses level that is not a query.
+     */
+    private static final int LEVEL_EXPRESSION = 0;
+    /**
+     * State of parentheses level that is a query.
+     */
+    private static final int LEVEL_QUERY = 1;
+    /**
+     * State of parentheses level that is FROM clause of a query.
+     */
+    private static final int LEVEL_FROM = 2;
+    /**
+     * Characters that form operators.
+     */
+    private static final String OPERATOR_CHARS = "+-*/<>=~!@#%^&|`?:";
+
+    /**
+     * Returns items of select list of the query. Each item is returned as its
+     * tokens separated by single space. Items cannot be determined if the
+     * query does not start with SELECT or if it is combined from more queries
+     * using set operations.
+     *
+     * @param query query
+     *
+     * @return list of select list items or null if the items cannot be
+     *         determined
+     */
+    public static List<String> getSelectItems(final String query) {
+        final List<String> tokens = tokenize(query);
+
+        if (tokens.isEmpty() || !isKeyword(tokens.get(0), "SELECT")) {
+            return null;
+        }
+
+        int pos = 1;
+
+        if (pos < tokens.size() && isKeyword(tokens.get(pos), "ALL")) {
+            pos++;
+        } else if (pos < tokens.size()
+                && isKeyword(tokens.get(pos), "DISTINCT")) {
+            pos++;
+
+            if (pos < tokens.size() && isKeyword(tokens.get(pos), "ON")) {
+                pos = skipParentheses(tokens, pos + 1);
+            }
+        }
+
+        final List<String> items = new ArrayList<String>(10);
+        final StringBuilder sbItem = new StringBuilder(50);
+        int depth = 0;
+
+        for (; pos < tokens.size(); pos++) {
+            final String token = tokens.get(pos);
+
+            if (depth == 0 && (")".equals(token) || ";".equals(token)
+                    || isKeyword(token, SELECT_LIST_END))) {
+                break;
+            } else if (depth == 0 && ",".equals(token)) {
+                items.add(sbItem.toString());
+                sbItem.setLength(0);
+
+                continue;
+            } else if ("(".equals(token) || "[".equals(token)) {
+                depth++;
+            } else if (")".equals(token) || "]".equals(token)) {
+                depth--;
+            }
+
+            if (sbItem.length() > 0) {
+                sbItem.append(' ');
+            }
+
+            sbItem.append(token);
+        }
+
+        if (sbItem.length() > 0) {
+            items.add(sbItem.toString());
+        }
+
+        for (; pos < tokens.size(); pos++) {
+            final String token = tokens.get(pos);
+
+            if ("(".equals(token)) {
+                depth++;
+            } else if (")".equals(token)) {
+                depth--;
+            } else if (depth == 0 && isKeyword(token, SET_OPERATIONS)) {
+                return null;
+            }
+        }
+
+        return items;
+    }
+
+    /**
+     * Returns names of relations that are referenced in FROM clauses of the
+     * query and its subqueries. Names are returned as they are written in
+     * the query, that is optionally schema qualified and quoted. Names of
+     * common table expressions are returned too as they cannot be told apart
+     * from relations without knowing the WITH clause.
+     *
+     * @param query query
+     *
+     * @return list of referenced relation names, without duplicates
+     */
+    public static List<String> getReferencedRelations(final String query) {
+        final List<String> tokens = tokenize(query);
+        final List<String> relations = new ArrayList<String>(5);
+        // state of each level of parentheses
+        final List<Integer> levels = new ArrayList<Integer>(5);
+        levels.add(LEVEL_EXPRESSION);
+        boolean expectRelation = false;
+
+        for (int pos = 0; pos < tokens.size(); pos++) {
+            final String token = tokens.get(pos);
+            final int level = levels.size() - 1;
+            final int state = levels.get(level);
+
+            if (expectRelation && isKeyword(token, RELATION_PREFIXES)) {
+                continue;
+            }
+
+            if (expectRelation && isIdentifier(token)) {
+                final StringBuilder sbName = new StringBuilder(token);
+
+                while (pos + 2 < tokens.size()
+                        && ".".equals(tokens.get(pos + 1))
+                        && isIdentifier(tokens.get(pos + 2))) {
+                    sbName.append('.');
+                    sbName.append(tokens.get(pos + 2));
+                    pos += 2;
+                }
+
+                // function calls are not relations
+                final boolean function = pos + 1 < tokens.size()
+                        && "(".equals(tokens.get(pos + 1));
+
+                if (!function && !relations.contains(sbName.toString())) {
+                    relations.add(sbName.toString());
+                }
+
+                expectRelation = false;
+
+                continue;
+            }
+
+            if (expectRelation && "(".equals(token)) {
+                // either subquery or parenthesized join
+                expectRelation = pos + 1 < tokens.size()
+                        && !isKeyword(tokens.get(pos + 1), SUBQUERY_STARTS);
+                levels.add(expectRelation ? LEVEL_FROM : LEVEL_EXPRESSION);
+
+                continue;
+            }
+
+            expectRelation = false;
+
+            if ("(".equals(token)) {
+                levels.add(LEVEL_EXPRESSION);
+            } else if (")".equals(token)) {
+                if (level > 0) {
+                    levels.remove(level);
+                }
+            } else if (isKeyword(token, "SELECT")) {
+                levels.set(level, LEVEL_QUERY);
+            } else if (state == LEVEL_QUERY && isKeyword(token, "FROM")) {
+                levels.set(level, LEVEL_FROM);
+                expectRelation = true;
+            } else if (state == LEVEL_FROM
+                    && (isKeyword(token, "JOIN") || ",".equals(token))) {
+                expectRelation = true;
+            } else if (state == LEVEL_FROM
+                    && isKeyword(token, FROM_CLAUSE_END)) {
+                levels.set(level, LEVEL_QUERY);
+            }
+        }
+
+        return relations;
+    }
+
+    /**
+     * Checks whether the token is identifier, either quoted or unquoted.
+     *
+     * @param token token
+     *
+     * @return true if the token is identifier, otherwise false
+     */
+    private static boolean isIdentifier(final String token) {
+        final char chr = token.charAt(0);
+
+        return chr == '"' || Character.isLetter(chr) || chr == '_';
+    }
+
+    /**
+     * Skips tokens enclosed in parentheses.
+     *
+     * @param tokens list of tokens
+     * @param start  position of opening parenthesis
+     *
+     * @return position after closing parenthesis
+     */
+    private static int skipParentheses(final List<String> tokens,
+            final int start) {
+        int depth = 0;
+
+        for (int pos = start; pos < tokens.size(); pos++) {
+            if ("(".equals(tokens.get(pos))) {
+                depth++;
+            } else if (")".equals(tokens.get(pos))) {
+                depth--;
+
+                if (depth == 0) {
+                    return pos + 1;
+                }
+            }
+        }
+
+        return tokens.size();
+    }
+
+    /**
+     * Checks whether the token is unquoted keyword.
+     *
+     * @param token   token
+     * @param keyword keyword in upper case
+     *
+     * @return true if the token is the keyword, otherwise false
+     */
+    private static boolean isKeyword(final String token,
+            final String keyword) {
+        return token.equalsIgnoreCase(keyword);
+    }
+
+    /**
+     * Checks whether the token is one of unquoted keywords.
+     *
+     * @param token    token
+     * @param keywords keywords in upper case
+     *
+     * @return true if the token is one of the keywords, otherwise false
+     */
+    private static boolean isKeyword(final String token,
+            final List<String> keywords) {
+        return keywords.contains(token.toUpperCase(Locale.ENGLISH));
+    }
+
+    /**
+     * Splits query to tokens. Whitespace and comments are skipped, quoted
+     * strings and identifiers are returned as single tokens including
+     * quotes.
+     *
+     * @param query query
+     *
+     * @return list of tokens
+     */
+    static List<String> tokenize(final String query) {
+        final List<String> tokens = new ArrayList<String>(query.length() / 4);
+        final int length = query.length();
+        int pos = 0;
+
+        while (pos < length) {
+            final char chr = query.charAt(pos);
+            final int start = pos;
+
+            if (Character.isWhitespace(chr)) {
+                pos++;
+
+                continue;
+            } else if (query.startsWith("--", pos)) {
+                pos = query.indexOf('\n', pos);
+
+                if (pos == -1) {
+                    pos = length;
+                }
+
+                continue;
+            } else if (query.startsWith("/*", pos)) {
+                pos = skipBlockComment(query, pos);
+
+                continue;
+            } else if (chr == '\'') {
+                pos = skipQuoted(query, pos, '\'', false);
+            } else if (chr == '"') {
+                pos = skipQuoted(query, pos, '"', false);
+            } else if (chr == '$') {
+                pos = skipDollar(query, pos);
+            } else if (Character.isLetter(chr) || chr == '_') {
+                pos++;
+
+                while (pos < length
+                        && (Character.isLetterOrDigit(query.charAt(pos))
+                        || query.charAt(pos) == '_'
+                        || query.charAt(pos) == '$')) {
+                    pos++;
+                }
+
+                // string with C-style escapes
+                if (pos - start == 1 && (chr == 'E' || chr == 'e')
+                        && pos < length && query.charAt(pos) == '\'') {
+                    pos = skipQuoted(query, pos, '\'', true);
+                }
+            } else if (Character.isDigit(chr)) {
+                pos++;
+
+                while (pos < length
+                        && (Character.isLetterOrDigit(query.charAt(pos))
+                        || query.charAt(pos) == '.')) {
+                    pos++;
+                }
+            } else if (OPERATOR_CHARS.indexOf(chr) != -1) {
+                pos++;
+
+                while (pos < length
+                        && OPERATOR_CHARS.indexOf(query.charAt(pos)) != -1
+                        && !query.startsWith("--", pos)
+                        && !query.startsWith("/*", pos)) {
+                    pos++;
+                }
+            } else {
+                pos++;
+            }
+
+            tokens.add(query.substring(start, pos));
+        }
+
+        return tokens;
+    }
+
+    /**
+     * Skips block comment. Block comments can be nested.
+     *
+     * @param query query
+     * @param start position of the comment start
+     *
+     * @return position after the comment
+     */
+    private static int skipBlockComment(final String query, final int start) {
+        int depth = 0;
+        int pos = start;
+
+        while (pos < query.length()) {
+            if (query.startsWith("/*", pos)) {
+                depth++;
+                pos += 2;
+            } else if (query.startsWith("*/", pos)) {
+                depth--;
+                pos += 2;
+
+                if (depth == 0) {
+                    return pos;
+                }
+            } else {
+                pos++;
+            }
+        }
+
+        return pos;
+    }
+
+    /**
+     * Skips quoted string or identifier. Quote is escaped by doubling it or,
+     * if backslash escapes are enabled, by backslash.
+     *
+     * @param query            query
+     * @param start            position of the opening quote
+     * @param quote            quote character
+     * @param backslashEscapes whether backslash escapes are enabled
+     *
+     * @return position after the closing quote
+     */
+    private static int skipQuoted(final String query, final int start,
+            final char quote, final boolean backslashEscapes) {
+        int pos = start + 1;
+
+        while (pos < query.length()) {
+            final char chr = query.charAt(pos);
+
+            if (backslashEscapes && chr == '\\') {
+                pos += 2;
+            } else if (chr == quote) {
+                if (pos + 1 < query.length()
+                        && query.charAt(pos + 1) == quote) {
+                    pos += 2;
+                } else {
+                    return pos + 1;
+                }
+            } else {
+                pos++;
+            }
+        }
+
+        return query.length();
+    }
+
+    /**
+     * Skips dollar quoted string or positional parameter.
+     *
+     * @param query query
+     * @param start position of the dollar sign
+     *
+     * @return position after the dollar quoted string or parameter
+     */
+    private static int skipDollar(final String query, final int start) {
+        int pos = start + 1;
+
+        while (pos < query.length()
+                && (Character.isLetterOrDigit(query.charAt(pos))
+                || query.charAt(pos) == '_')) {
+            pos++;
+        }
+
+        if (pos < query.length() && query.charAt(pos) == '$'
+                && !Character.isDigit(query.charAt(start + 1))) {
+            final String tag = query.substring(start, pos + 1);
+            final int end = query.indexOf(tag, pos + 1);
+
+            return end == -1 ? query.length() : end + tag.length();
+        }
+
+        return pos;
+    }
+
+    /**
+     * Creates a new instance of QueryParser.
+     */
+    private QueryParser() {
+    }
+}
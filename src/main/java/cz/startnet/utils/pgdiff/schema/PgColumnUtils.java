@@ -6,6 +6,8 @@
 package cz.startnet.utils.pgdiff.schema;
 
 import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Utilities for {@link PgColumn}.
@@ -14,6 +16,20 @@ import java.util.Locale;
  */
 public class PgColumnUtils {
 
+    /**
+     * Pattern for parsing variable length character and numeric types with
+     * optional type modifiers.
+     */
+    private static final Pattern PATTERN_MODIFIED_TYPE = Pattern.compile(
+            "^(character varying|numeric)"
+            + "(?:\\((\\d+)(?:,(\\d+))?\\))?$");
+    /**
+     * Pattern for matching constant that is cast to type with type
+     * modifiers, like ''::character varying(10).
+     */
+    private static final Pattern PATTERN_CAST_TYPE = Pattern.compile(
+            "^[^(]*::[a-z_ ]+\\([0-9, ]+\\)(\\[\\])*$");
+
     /**
      * Returns default value for given column type. If no default value is
      * specified then null is returned.
@@ -55,6 +71,105 @@ public class PgColumnUtils {
         return defaultValue;
     }
 
+    /**
+     * Checks whether change of column type requires rewrite of the table.
+     * Type changes that do not require rewrite are increasing or removing
+     * length limit of varchar, changing varchar to text and increasing or
+     * removing precision of numeric without changing its scale.
+     *
+     * @param oldType original column type
+     * @param newType new column type
+     *
+     * @return true if the table has to be rewritten, otherwise false
+     */
+    public static boolean isRewriteRequired(final String oldType,
+            final String newType) {
+        final String adjOldType = normalizeType(oldType);
+        final String adjNewType = normalizeType(newType);
+
+        if (adjOldType.equals(adjNewType)) {
+            return false;
+        }
+
+        final Matcher oldMatcher = PATTERN_MODIFIED_TYPE.matcher(adjOldType);
+
+        if (!oldMatcher.matches()) {
+            return true;
+        }
+
+        if ("character varying".equals(oldMatcher.group(1))
+                && "text".equals(adjNewType)) {
+            return false;
+        }
+
+        final Matcher newMatcher = PATTERN_MODIFIED_TYPE.matcher(adjNewType);
+
+        if (!newMatcher.matches()
+                || !oldMatcher.group(1).equals(newMatcher.group(1))) {
+            return true;
+        }
+
+        if (newMatcher.group(2) == null) {
+            return false;
+        } else if (oldMatcher.group(2) == null) {
+            return true;
+        }
+
+        final String oldScale = oldMatcher.group(3) == null
+                ? "0" : oldMatcher.group(3);
+        final String newScale = newMatcher.group(3) == null
+                ? "0" : newMatcher.group(3);
+
+        return !oldScale.equals(newScale)
+                || Integer.parseInt(newMatcher.group(2))
+                < Integer.parseInt(oldMatcher.group(2));
+    }
+
+    /**
+     * Checks whether default value is known not to be volatile so that
+     * adding a column with this default does not require rewrite of the
+     * table on PostgreSQL 11 or newer. Constants, casts of constants and
+     * functions that are stable within transaction, like now(), are
+     * considered not volatile. Any other function call is considered
+     * volatile.
+     *
+     * @param defaultValue default value
+     *
+     * @return true if the default value is not volatile, otherwise false
+     */
+    public static boolean isNonVolatileDefault(final String defaultValue) {
+        final String adjValue = defaultValue.toLowerCase(Locale.ENGLISH).
+                replaceAll("'([^']|'')*'", "''").
+                replaceAll("\\b(now|statement_timestamp"
+                + "|transaction_timestamp)\\s*\\(\\s*\\)", "now");
+
+        return adjValue.indexOf('(') == -1
+                || PATTERN_CAST_TYPE.matcher(adjValue).matches();
+    }
+
+    /**
+     * Normalizes type name so that types can be compared, that is converts
+     * it to lower case, removes whitespace inside type modifiers and
+     * replaces type aliases.
+     *
+     * @param type type
+     *
+     * @return normalized type
+     */
+    private static String normalizeType(final String type) {
+        final String adjType = type.toLowerCase(Locale.ENGLISH).trim().
+                replaceAll("\\s*([(),])\\s*", "$1").
+                replaceAll("\\s+", " ");
+
+        if (adjType.startsWith("varchar")) {
+            return "character varying" + adjType.substring(7);
+        } else if (adjType.startsWith("decimal")) {
+            return "numeric" + adjType.substring(7);
+        }
+
+        return adjType;
+    }
+
     /**
      * Creates a new PgColumnUtils object.
      */
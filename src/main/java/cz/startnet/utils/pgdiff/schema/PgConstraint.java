@@ -6,6 +6,7 @@
 package cz.startnet.utils.pgdiff.schema;
 
 import cz.startnet.utils.pgdiff.PgDiffUtils;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
@@ -20,10 +21,38 @@ public class PgConstraint {
      */
     private static final Pattern PATTERN_PRIMARY_KEY =
             Pattern.compile(".*PRIMARY[\\s]+KEY.*", Pattern.CASE_INSENSITIVE);
+    /**
+     * Pattern for checking whether the constraint is FOREIGN KEY or CHECK
+     * constraint.
+     */
+    private static final Pattern PATTERN_FOREIGN_KEY_OR_CHECK =
+            Pattern.compile("^(?:FOREIGN[\\s]+KEY|CHECK)\\b.*",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    /**
+     * Pattern for parsing PRIMARY KEY or UNIQUE constraint that can be added
+     * using existing unique index, that is constraint on plain list of
+     * columns optionally followed by deferrability clauses.
+     */
+    private static final Pattern PATTERN_USING_INDEX = Pattern.compile(
+            "^(PRIMARY[\\s]+KEY|UNIQUE)[\\s]*(\\([^()]*\\))"
+            + "((?:[\\s]+(?:NOT[\\s]+)?DEFERRABLE"
+            + "|[\\s]+INITIALLY[\\s]+(?:DEFERRED|IMMEDIATE))*)[\\s]*$",
+            Pattern.CASE_INSENSITIVE);
+    /**
+     * Pattern for checking whether the constraint is already NOT VALID.
+     */
+    private static final Pattern PATTERN_NOT_VALID =
+            Pattern.compile(".*\\bNOT[\\s]+VALID[\\s]*",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
     /**
      * Definition of the constraint.
      */
-    private String definition;
+    private SourceText definition;
+    /**
+     * Cached result of {@link #isPrimaryKeyConstraint()}, null if not computed
+     * yet.
+     */
+    private Boolean primaryKeyConstraint;
     /**
      * Name of the constraint.
      */
@@ -52,25 +81,76 @@ public class PgConstraint {
      * @return created SQL
      */
     public String getCreationSQL() {
+        return getCreationSQL(false);
+    }
+
+    /**
+     * Creates and returns SQL for creation of the constraint.
+     *
+     * @param notValid whether the constraint should be added as NOT VALID,
+     *                 so that existing rows are not checked
+     *
+     * @return created SQL
+     */
+    public String getCreationSQL(final boolean notValid) {
         final StringBuilder sbSQL = new StringBuilder(100);
         sbSQL.append("ALTER TABLE ");
         sbSQL.append(PgDiffUtils.getQuotedName(getTableName()));
-        sbSQL.append("\n\tADD CONSTRAINT ");
+        sbSQL.append("\n\t");
+        sbSQL.append(getAddClause(notValid));
+        sbSQL.append(';');
+
+        final String commentSQL = getCommentSQL();
+
+        if (commentSQL != null) {
+            sbSQL.append("\n\n");
+            sbSQL.append(commentSQL);
+        }
+
+        return sbSQL.toString();
+    }
+
+    /**
+     * Creates and returns ADD CONSTRAINT clause of ALTER TABLE statement.
+     *
+     * @param notValid whether the constraint should be added as NOT VALID,
+     *                 so that existing rows are not checked
+     *
+     * @return created clause
+     */
+    public String getAddClause(final boolean notValid) {
+        final StringBuilder sbSQL = new StringBuilder(100);
+        sbSQL.append("ADD CONSTRAINT ");
         sbSQL.append(PgDiffUtils.getQuotedName(getName()));
         sbSQL.append(' ');
         sbSQL.append(getDefinition());
-        sbSQL.append(';');
 
-        if (comment != null && !comment.isEmpty()) {
-            sbSQL.append("\n\nCOMMENT ON CONSTRAINT ");
-            sbSQL.append(PgDiffUtils.getQuotedName(name));
-            sbSQL.append(" ON ");
-            sbSQL.append(PgDiffUtils.getQuotedName(tableName));
-            sbSQL.append(" IS ");
-            sbSQL.append(comment);
-            sbSQL.append(';');
+        if (notValid) {
+            sbSQL.append(" NOT VALID");
+        }
+
+        return sbSQL.toString();
+    }
+
+    /**
+     * Creates and returns SQL for setting comment of the constraint.
+     *
+     * @return created SQL or null if the constraint has no comment
+     */
+    public String getCommentSQL() {
+        if (comment == null || comment.isEmpty()) {
+            return null;
         }
 
+        final StringBuilder sbSQL = new StringBuilder(100);
+        sbSQL.append("COMMENT ON CONSTRAINT ");
+        sbSQL.append(PgDiffUtils.getQuotedName(name));
+        sbSQL.append(" ON ");
+        sbSQL.append(PgDiffUtils.getQuotedName(tableName));
+        sbSQL.append(" IS ");
+        sbSQL.append(comment);
+        sbSQL.append(';');
+
         return sbSQL.toString();
     }
 
@@ -98,7 +178,17 @@ public class PgConstraint {
      * @param definition {@link #definition}
      */
     public void setDefinition(final String definition) {
+        setDefinition(SourceText.valueOf(definition));
+    }
+
+    /**
+     * Setter for {@link #definition}.
+     *
+     * @param definition {@link #definition}
+     */
+    public void setDefinition(final SourceText definition) {
         this.definition = definition;
+        primaryKeyConstraint = null;
     }
 
     /**
@@ -107,7 +197,7 @@ public class PgConstraint {
      * @return {@link #definition}
      */
     public String getDefinition() {
-        return definition;
+        return definition == null ? null : definition.getText();
     }
 
     /**
@@ -116,13 +206,102 @@ public class PgConstraint {
      * @return created SQL
      */
     public String getDropSQL() {
+        return "ALTER TABLE " + PgDiffUtils.getQuotedName(getTableName())
+                + "\n\t" + getDropClause() + ';';
+    }
+
+    /**
+     * Creates and returns DROP CONSTRAINT clause of ALTER TABLE statement.
+     *
+     * @return created clause
+     */
+    public String getDropClause() {
+        return "DROP CONSTRAINT " + PgDiffUtils.getQuotedName(getName());
+    }
+
+    /**
+     * Creates and returns SQL for validation of the constraint that was added
+     * as NOT VALID.
+     *
+     * @return created SQL
+     */
+    public String getValidateSQL() {
+        final StringBuilder sbSQL = new StringBuilder(100);
+        sbSQL.append("ALTER TABLE ");
+        sbSQL.append(PgDiffUtils.getQuotedName(getTableName()));
+        sbSQL.append("\n\tVALIDATE CONSTRAINT ");
+        sbSQL.append(PgDiffUtils.getQuotedName(getName()));
+        sbSQL.append(';');
+
+        return sbSQL.toString();
+    }
+
+    /**
+     * Returns true if the constraint can be added as NOT VALID and validated
+     * later, that is if this is FOREIGN KEY or CHECK constraint that is not
+     * NOT VALID already.
+     *
+     * @return true if the constraint can be added as NOT VALID, otherwise
+     *         false
+     */
+    public boolean canBeNotValid() {
+        final String def = getDefinition().trim();
+
+        return PATTERN_FOREIGN_KEY_OR_CHECK.matcher(def).matches()
+                && !PATTERN_NOT_VALID.matcher(def).matches();
+    }
+
+    /**
+     * Returns parenthesized list of columns of PRIMARY KEY or UNIQUE
+     * constraint that can be added using existing unique index.
+     *
+     * @return list of columns or null if the constraint cannot be added using
+     *         existing index
+     */
+    public String getIndexColumns() {
+        final Matcher matcher =
+                PATTERN_USING_INDEX.matcher(getDefinition().trim());
+
+        return matcher.matches() ? matcher.group(2) : null;
+    }
+
+    /**
+     * Creates and returns SQL for creation of PRIMARY KEY or UNIQUE
+     * constraint using existing unique index. The index is renamed to the
+     * name of the constraint by PostgreSQL.
+     *
+     * @param indexName name of the index
+     *
+     * @return created SQL
+     */
+    public String getCreationSQLUsingIndex(final String indexName) {
+        final Matcher matcher =
+                PATTERN_USING_INDEX.matcher(getDefinition().trim());
+
+        if (!matcher.matches()) {
+            throw new IllegalStateException(
+                    "Constraint cannot be added using index: " + getName());
+        }
+
         final StringBuilder sbSQL = new StringBuilder(100);
         sbSQL.append("ALTER TABLE ");
         sbSQL.append(PgDiffUtils.getQuotedName(getTableName()));
-        sbSQL.append("\n\tDROP CONSTRAINT ");
+        sbSQL.append("\n\tADD CONSTRAINT ");
         sbSQL.append(PgDiffUtils.getQuotedName(getName()));
+        sbSQL.append(' ');
+        sbSQL.append(matcher.group(1));
+        sbSQL.append(" USING INDEX ");
+        sbSQL.append(PgDiffUtils.getQuotedName(indexName));
+        sbSQL.append(matcher.group(3));
         sbSQL.append(';');
 
+        final String commentSQL = getCommentSQL();
+
+        if (commentSQL != null) {
+            sbSQL.append("\n\n");
+            sbSQL.append(commentSQL);
+        }
+
         return sbSQL.toString();
     }
 
@@ -150,7 +329,12 @@ public class PgConstraint {
      * @return true if this is a PRIMARY KEY constraint, otherwise false
      */
     public boolean isPrimaryKeyConstraint() {
-        return PATTERN_PRIMARY_KEY.matcher(definition).matches();
+        if (primaryKeyConstraint == null) {
+            primaryKeyConstraint = Boolean.valueOf(PATTERN_PRIMARY_KEY.matcher(
+                    getDefinition()).matches());
+        }
+
+        return primaryKeyConstraint.booleanValue();
     }
 
     /**
@@ -186,7 +370,7 @@ public class PgConstraint {
             equals = true;
         } else if (object instanceof PgConstraint) {
             final PgConstraint constraint = (PgConstraint) object;
-            equals = definition.equals(constraint.getDefinition())
+            equals = definition.equals(constraint.definition)
                     && name.equals(constraint.getName())
                     && tableName.equals(constraint.getTableName());
         }
@@ -201,7 +385,7 @@ public class PgConstraint {
      */
     @Override
     public int hashCode() {
-        return (getClass().getName() + "|" + definition + "|" + name + "|"
-                + tableName).hashCode();
+        return (getClass().getName() + "|" + definition.hashCode() + "|"
+                + name + "|" + tableName).hashCode();
     }
 }
@@ -30,7 +30,7 @@ public class PgFunction {
     /**
      * Whole definition of the function from RETURNS keyword.
      */
-    private String body;
+    private SourceText body;
     /**
      * Comment.
      */
@@ -78,7 +78,7 @@ public class PgFunction {
         }
 
         sbSQL.append(") ");
-        sbSQL.append(body);
+        sbSQL.append(getBody());
         sbSQL.append(';');
 
         if (comment != null && !comment.isEmpty()) {
@@ -112,6 +112,15 @@ public class PgFunction {
      * @param body {@link #body}
      */
     public void setBody(final String body) {
+        this.body = SourceText.valueOf(body);
+    }
+
+    /**
+     * Setter for {@link #body}.
+     *
+     * @param body {@link #body}
+     */
+    public void setBody(final SourceText body) {
         this.body = body;
     }
 
@@ -121,7 +130,7 @@ public class PgFunction {
      * @return {@link #body}
      */
     public String getBody() {
-        return body;
+        return body == null ? null : body.getText();
     }
 
     /**
@@ -262,21 +271,16 @@ public class PgFunction {
                 return false;
             }
 
-            final String thisBody;
-            final String thatBody;
-
-            if (ignoreFunctionWhitespace) {
-                thisBody = body.replaceAll("\\s+", " ");
-                thatBody =
-                        function.getBody().replaceAll("\\s+", " ");
-            } else {
-                thisBody = body;
-                thatBody = function.getBody();
-            }
-
-            if (thisBody == null && thatBody != null
-                    || thisBody != null && !thisBody.equals(thatBody)) {
-                return false;
+            if (body == null || function.body == null) {
+                if (body != function.body) {
+                    return false;
+                }
+            } else if (!body.equals(function.body)) {
+                if (!ignoreFunctionWhitespace || !getBody().replaceAll(
+                        "\\s+", " ").equals(
+                        function.getBody().replaceAll("\\s+", " "))) {
+                    return false;
+                }
             }
 
             if (arguments.size() != function.getArguments().size()) {
@@ -298,7 +302,7 @@ public class PgFunction {
     @Override
     public int hashCode() {
         final StringBuilder sbString = new StringBuilder(500);
-        sbString.append(body);
+        sbString.append(body == null ? 0 : body.hashCode());
         sbString.append('|');
         sbString.append(name);
 
@@ -68,6 +68,18 @@ public class PgIndex {
      * @return created SQL
      */
     public String getCreationSQL() {
+        return getCreationSQL(false);
+    }
+
+    /**
+     * Creates and returns SQL for creation of the index.
+     *
+     * @param concurrently whether the index should be built without locking
+     *                     out writes to the table
+     *
+     * @return created SQL
+     */
+    public String getCreationSQL(final boolean concurrently) {
         final StringBuilder sbSQL = new StringBuilder(100);
         sbSQL.append("CREATE ");
 
@@ -76,6 +88,11 @@ public class PgIndex {
         }
 
         sbSQL.append("INDEX ");
+
+        if (concurrently) {
+            sbSQL.append("CONCURRENTLY ");
+        }
+
         sbSQL.append(PgDiffUtils.getQuotedName(getName()));
         sbSQL.append(" ON ");
         sbSQL.append(PgDiffUtils.getQuotedName(getTableName()));
@@ -118,6 +135,25 @@ public class PgIndex {
      * @return created SQL statement
      */
     public String getDropSQL() {
+        return getDropSQL(false);
+    }
+
+    /**
+     * Creates and returns SQL statement for dropping the index. Concurrent
+     * drop uses IF EXISTS because it is run after other statements, which
+     * might have dropped the index together with its column already.
+     *
+     * @param concurrently whether the index should be dropped without
+     *                     locking out access to the table
+     *
+     * @return created SQL statement
+     */
+    public String getDropSQL(final boolean concurrently) {
+        if (concurrently) {
+            return "DROP INDEX CONCURRENTLY IF EXISTS "
+                    + PgDiffUtils.getQuotedName(getName()) + ";";
+        }
+
         return "DROP INDEX " + PgDiffUtils.getQuotedName(getName()) + ";";
     }
 
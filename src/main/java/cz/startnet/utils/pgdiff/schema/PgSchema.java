@@ -375,6 +375,60 @@ public class PgSchema {
         views.add(view);
     }
 
+    /**
+     * Removes {@code index} from the list of indexes.
+     *
+     * @param index index
+     */
+    public void removeIndex(final PgIndex index) {
+        indexes.remove(index);
+    }
+
+    /**
+     * Removes primary key from the list of primary keys.
+     *
+     * @param primaryKey primary key
+     */
+    public void removePrimaryKey(final PgConstraint primaryKey) {
+        primaryKeys.remove(primaryKey);
+    }
+
+    /**
+     * Removes {@code function} from the list of functions.
+     *
+     * @param function function
+     */
+    public void removeFunction(final PgFunction function) {
+        functions.remove(function);
+    }
+
+    /**
+     * Removes {@code sequence} from the list of sequences.
+     *
+     * @param sequence sequence
+     */
+    public void removeSequence(final PgSequence sequence) {
+        sequences.remove(sequence);
+    }
+
+    /**
+     * Removes {@code table} from the list of tables.
+     *
+     * @param table table
+     */
+    public void removeTable(final PgTable table) {
+        tables.remove(table);
+    }
+
+    /**
+     * Removes {@code view} from the list of views.
+     *
+     * @param view view
+     */
+    public void removeView(final PgView view) {
+        views.remove(view);
+    }
+
     /**
      * Returns true if schema contains function with given {@code signature},
      * otherwise false.
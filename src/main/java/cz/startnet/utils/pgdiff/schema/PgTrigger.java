@@ -63,7 +63,7 @@ public class PgTrigger {
     /**
      * WHEN condition.
      */
-    private String when;
+    private SourceText when;
     /**
      * Comment.
      */
@@ -111,8 +111,22 @@ public class PgTrigger {
      * @return created SQL
      */
     public String getCreationSQL() {
+        return getCreationSQL(false);
+    }
+
+    /**
+     * Creates and returns SQL for creation of trigger. If the trigger
+     * replaces existing trigger, comment is not output as it is handled when
+     * comments of existing triggers are compared.
+     *
+     * @param replace whether CREATE OR REPLACE TRIGGER should be used
+     *
+     * @return created SQL
+     */
+    public String getCreationSQL(final boolean replace) {
         final StringBuilder sbSQL = new StringBuilder(100);
-        sbSQL.append("CREATE TRIGGER ");
+        sbSQL.append(replace
+                ? "CREATE OR REPLACE TRIGGER " : "CREATE TRIGGER ");
         sbSQL.append(PgDiffUtils.getQuotedName(getName()));
         sbSQL.append("\n\t");
         sbSQL.append(isBefore() ? "BEFORE" : "AFTER");
@@ -172,9 +186,9 @@ public class PgTrigger {
         sbSQL.append("\n\tFOR EACH ");
         sbSQL.append(isForEachRow() ? "ROW" : "STATEMENT");
 
-        if (when != null && !when.isEmpty()) {
+        if (when != null && when.length() > 0) {
             sbSQL.append("\n\tWHEN (");
-            sbSQL.append(when);
+            sbSQL.append(getWhen());
             sbSQL.append(')');
         }
 
@@ -182,7 +196,7 @@ public class PgTrigger {
         sbSQL.append(getFunction());
         sbSQL.append(';');
 
-        if (comment != null && !comment.isEmpty()) {
+        if (!replace && comment != null && !comment.isEmpty()) {
             sbSQL.append("\n\nCOMMENT ON TRIGGER ");
             sbSQL.append(PgDiffUtils.getQuotedName(name));
             sbSQL.append(" ON ");
@@ -373,7 +387,7 @@ public class PgTrigger {
      * @return {@link #when}
      */
     public String getWhen() {
-        return when;
+        return when == null ? null : when.getText();
     }
 
     /**
@@ -382,6 +396,15 @@ public class PgTrigger {
      * @param when {@link #when}
      */
     public void setWhen(final String when) {
+        this.when = SourceText.valueOf(when);
+    }
+
+    /**
+     * Setter for {@link #when}.
+     *
+     * @param when {@link #when}
+     */
+    public void setWhen(final SourceText when) {
         this.when = when;
     }
 
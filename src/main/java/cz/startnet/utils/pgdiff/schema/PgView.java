@@ -28,7 +28,7 @@ public class PgView {
     /**
      * SQL query of the view.
      */
-    private String query;
+    private SourceText query;
     /**
      * List of optional column default values.
      */
@@ -43,6 +43,12 @@ public class PgView {
      * Comment.
      */
     private String comment;
+    /**
+     * Names of relations from schema of the view that are referenced by
+     * query of the view.
+     */
+    private final List<String> referencedRelations =
+            new ArrayList<String>(0);
 
     /**
      * Creates a new PgView object.
@@ -98,24 +104,7 @@ public class PgView {
     public String getCreationSQL() {
         final StringBuilder sbSQL = new StringBuilder(query.length() * 2);
         sbSQL.append("CREATE VIEW ");
-        sbSQL.append(PgDiffUtils.getQuotedName(name));
-
-        if (columnNames != null && !columnNames.isEmpty()) {
-            sbSQL.append(" (");
-
-            for (int i = 0; i < columnNames.size(); i++) {
-                if (i > 0) {
-                    sbSQL.append(", ");
-                }
-
-                sbSQL.append(PgDiffUtils.getQuotedName(columnNames.get(i)));
-            }
-            sbSQL.append(')');
-        }
-
-        sbSQL.append(" AS\n\t");
-        sbSQL.append(query);
-        sbSQL.append(';');
+        appendDefinition(sbSQL);
 
         for (final DefaultValue defaultValue : defaultValues) {
             sbSQL.append("\n\nALTER VIEW ");
@@ -151,6 +140,46 @@ public class PgView {
         return sbSQL.toString();
     }
 
+    /**
+     * Creates and returns SQL for replacing query of the existing view.
+     * Default values and comments are kept by the view so they are not
+     * included.
+     *
+     * @return created SQL statement
+     */
+    public String getReplaceSQL() {
+        final StringBuilder sbSQL = new StringBuilder(query.length() + 100);
+        sbSQL.append("CREATE OR REPLACE VIEW ");
+        appendDefinition(sbSQL);
+
+        return sbSQL.toString();
+    }
+
+    /**
+     * Appends name, column names and query of the view to the SQL.
+     *
+     * @param sbSQL SQL
+     */
+    private void appendDefinition(final StringBuilder sbSQL) {
+        sbSQL.append(PgDiffUtils.getQuotedName(name));
+        if (columnNames != null && !columnNames.isEmpty()) {
+            sbSQL.append(" (");
+
+            for (int i = 0; i < columnNames.size(); i++) {
+                if (i > 0) {
+                    sbSQL.append(", ");
+                }
+
+                sbSQL.append(PgDiffUtils.getQuotedName(columnNames.get(i)));
+            }
+            sbSQL.append(')');
+        }
+
+        sbSQL.append(" AS\n\t");
+        sbSQL.append(getQuery());
+        sbSQL.append(';');
+    }
+
     /**
      * Creates and returns SQL statement for dropping the view.
      *
@@ -175,6 +204,15 @@ public class PgView {
      * @param query {@link #query}
      */
     public void setQuery(final String query) {
+        this.query = SourceText.valueOf(query);
+    }
+
+    /**
+     * Setter for {@link #query}.
+     *
+     * @param query {@link #query}
+     */
+    public void setQuery(final SourceText query) {
         this.query = query;
     }
 
@@ -184,7 +222,21 @@ public class PgView {
      * @return {@link #query}
      */
     public String getQuery() {
-        return query;
+        return query == null ? null : query.getText();
+    }
+
+    /**
+     * Checks whether query of this view is the same as query of the other
+     * view, ignoring leading and trailing whitespace. Queries are read from
+     * the dump only if their hashes differ.
+     *
+     * @param view view to compare
+     *
+     * @return true if queries are the same, otherwise false
+     */
+    public boolean isQueryEqual(final PgView view) {
+        return query.equals(view.query)
+                || getQuery().trim().equals(view.getQuery().trim());
     }
 
     /**
@@ -257,6 +309,26 @@ public class PgView {
         return Collections.unmodifiableList(columnComments);
     }
 
+    /**
+     * Adds name of relation referenced by query of the view.
+     *
+     * @param relationName name of the relation
+     */
+    public void addReferencedRelation(final String relationName) {
+        if (!referencedRelations.contains(relationName)) {
+            referencedRelations.add(relationName);
+        }
+    }
+
+    /**
+     * Getter for {@link #referencedRelations}. The list cannot be modified.
+     *
+     * @return {@link #referencedRelations}
+     */
+    public List<String> getReferencedRelations() {
+        return Collections.unmodifiableList(referencedRelations);
+    }
+
     /**
      * Contains information about default value of column.
      */
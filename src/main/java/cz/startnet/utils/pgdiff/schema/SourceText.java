@@ -0,0 +1,326 @@
+/**
+ * Copyright 2006 StartNet s.r.o.
+ *
+ * Distributed under MIT license
+ */
+package cz.startnet.utils.pgdiff.schema;
+
+import cz.startnet.utils.pgdiff.Resources;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.MessageFormat;
+import java.util.Arrays;
+
+/**
+ * Stores text of a definition (function body, view query etc.). The text is
+ * either stored directly, or only its location in the dump together with its
+ * hash is stored and the text is read back from the dump when it is needed.
+ *
+ * @author fordfrog
+ */
+public class SourceText {
+
+    /**
+     * Text or null if the text is read from {@link #location}.
+     */
+    private final String text;
+    /**
+     * Location of the statement the text is part of or null if the text is
+     * stored directly.
+     */
+    private final Location location;
+    /**
+     * Start index of the text in the statement.
+     */
+    private final int beginIndex;
+    /**
+     * End index of the text in the statement, exclusive.
+     */
+    private final int endIndex;
+    /**
+     * Hash code of the text, the same as {@link String#hashCode()}.
+     */
+    private final int hash;
+    /**
+     * MD5 digest of the text or null if the text is stored directly.
+     */
+    private final byte[] digest;
+
+    /**
+     * Creates a new SourceText object that stores the text directly.
+     *
+     * @param text {@link #text}
+     */
+    private SourceText(final String text) {
+        this.text = text;
+        location = null;
+        beginIndex = 0;
+        endIndex = text.length();
+        hash = text.hashCode();
+        digest = null;
+    }
+
+    /**
+     * Creates a new SourceText object that reads the text from the location.
+     *
+     * @param text       text, used only for computation of hashes
+     * @param location   {@link #location}
+     * @param beginIndex {@link #beginIndex}
+     * @param endIndex   {@link #endIndex}
+     */
+    private SourceText(final String text, final Location location,
+            final int beginIndex, final int endIndex) {
+        this.text = null;
+        this.location = location;
+        this.beginIndex = beginIndex;
+        this.endIndex = endIndex;
+        hash = text.hashCode();
+        digest = getDigest(text);
+    }
+
+    /**
+     * Creates text that is stored directly.
+     *
+     * @param text text or null
+     *
+     * @return created text or null if {@code text} is null
+     */
+    public static SourceText valueOf(final String text) {
+        return text == null ? null : new SourceText(text);
+    }
+
+    /**
+     * Creates text from part of the statement. If {@code location} is null,
+     * the text is stored directly, otherwise the text is read from the
+     * location whenever it is needed.
+     *
+     * @param statement  statement
+     * @param beginIndex start index of the text in the statement
+     * @param endIndex   end index of the text in the statement, exclusive
+     * @param location   location of the statement or null
+     *
+     * @return created text
+     */
+    public static SourceText valueOf(final String statement,
+            final int beginIndex, final int endIndex, final Location location) {
+        final String string = statement.substring(beginIndex, endIndex);
+
+        if (location == null) {
+            return new SourceText(string);
+        } else {
+            return new SourceText(string, location, beginIndex, endIndex);
+        }
+    }
+
+    /**
+     * Creates text from part of the statement, the text being the first
+     * occurrence of {@code string} at {@code fromIndex} or later. If
+     * {@code location} is null, the text is stored directly, otherwise the
+     * text is read from the location whenever it is needed.
+     *
+     * @param statement statement
+     * @param string    part of the statement
+     * @param fromIndex index from which the string is searched
+     * @param location  location of the statement or null
+     *
+     * @return created text or null if {@code string} is null
+     */
+    public static SourceText valueOf(final String statement,
+            final String string, final int fromIndex,
+            final Location location) {
+        if (string == null) {
+            return null;
+        } else if (location == null) {
+            return new SourceText(string);
+        }
+
+        final int beginIndex = statement.indexOf(string, fromIndex);
+
+        if (beginIndex == -1) {
+            return new SourceText(string);
+        }
+
+        return new SourceText(string, location, beginIndex,
+                beginIndex + string.length());
+    }
+
+    /**
+     * Returns the text. If the text is not stored directly, it is read from
+     * its location.
+     *
+     * @return text
+     */
+    public String getText() {
+        if (text != null) {
+            return text;
+        }
+
+        final String result =
+                location.getStatement().substring(beginIndex, endIndex);
+
+        if (result.hashCode() != hash) {
+            throw new IllegalStateException(MessageFormat.format(
+                    Resources.getString("TextInDumpModified"), result));
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns true if the text is stored directly, false if it is read from
+     * the dump.
+     *
+     * @return true if the text is stored directly, otherwise false
+     */
+    public boolean isLoaded() {
+        return text != null;
+    }
+
+    /**
+     * Returns length of the text.
+     *
+     * @return length of the text
+     */
+    public int length() {
+        return endIndex - beginIndex;
+    }
+
+    /**
+     * Compares texts. Texts that are not stored directly are compared using
+     * their hashes so they are not read from the dump.
+     *
+     * @param object object to compare
+     *
+     * @return true if the texts are the same, otherwise false
+     */
+    @Override
+    public boolean equals(final Object object) {
+        if (this == object) {
+            return true;
+        } else if (!(object instanceof SourceText)) {
+            return false;
+        }
+
+        final SourceText sourceText = (SourceText) object;
+
+        if (hash != sourceText.hash || length() != sourceText.length()) {
+            return false;
+        } else if (digest != null && sourceText.digest != null) {
+            return Arrays.equals(digest, sourceText.digest);
+        }
+
+        return getText().equals(sourceText.getText());
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    /**
+     * Returns the text.
+     *
+     * @return text
+     */
+    @Override
+    public String toString() {
+        return getText();
+    }
+
+    /**
+     * Computes MD5 digest of the text.
+     *
+     * @param string text
+     *
+     * @return digest
+     */
+    private static byte[] getDigest(final String string) {
+        try {
+            return MessageDigest.getInstance("MD5").digest(
+                    string.getBytes("UTF-8"));
+        } catch (final NoSuchAlgorithmException ex) {
+            throw new RuntimeException(ex);
+        } catch (final UnsupportedEncodingException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Reads statements from the dump.
+     */
+    @SuppressWarnings("PublicInnerClass")
+    public interface Source {
+
+        /**
+         * Reads statement from the dump.
+         *
+         * @param offset byte offset of the statement in the dump
+         * @param length byte length of the statement in the dump
+         *
+         * @return statement in the same form as it was passed to the parser
+         */
+        String readStatement(long offset, int length);
+    }
+
+    /**
+     * Location of statement in the dump.
+     */
+    @SuppressWarnings("PublicInnerClass")
+    public static class Location {
+
+        /**
+         * Source of the statement.
+         */
+        private final Source source;
+        /**
+         * Byte offset of the statement in the dump.
+         */
+        private final long offset;
+        /**
+         * Byte length of the statement in the dump.
+         */
+        private final int length;
+
+        /**
+         * Creates a new Location object.
+         *
+         * @param source {@link #source}
+         * @param offset {@link #offset}
+         * @param length {@link #length}
+         */
+        public Location(final Source source, final long offset,
+                final int length) {
+            this.source = source;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        /**
+         * Getter for {@link #offset}.
+         *
+         * @return {@link #offset}
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * Getter for {@link #length}.
+         *
+         * @return {@link #length}
+         */
+        public int getLength() {
+            return length;
+        }
+
+        /**
+         * Reads the statement from its source.
+         *
+         * @return statement
+         */
+        public String getStatement() {
+            return source.readStatement(offset, length);
+        }
+    }
+}
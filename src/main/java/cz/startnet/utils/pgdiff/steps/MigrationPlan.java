@@ -0,0 +1,329 @@
+/**
+ * Copyright 2006 StartNet s.r.o.
+ *
+ * Distributed under MIT license
+ */
+package cz.startnet.utils.pgdiff.steps;
+
+import cz.startnet.utils.pgdiff.PgDiffUtils;
+import cz.startnet.utils.pgdiff.Resources;
+import cz.startnet.utils.pgdiff.loader.FileException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Migration split into steps with dependencies between them. Step depends
+ * on previous step if it references or modifies an object the previous step
+ * modified, or if it modifies an object the previous step referenced.
+ * Sequential steps, that is steps which dependencies could not be resolved
+ * or that modify no known object, depend on all previous steps and all
+ * following steps depend on them. Steps that do not depend on each other
+ * can run concurrently on separate connections while the result is the same
+ * as if all steps were run sequentially.
+ *
+ * @author fordfrog
+ */
+public class MigrationPlan {
+
+    /**
+     * Name of the file the plan is written to.
+     */
+    public static final String PLAN_FILE_NAME = "steps.json";
+    /**
+     * Pattern for matching names of files containing the steps.
+     */
+    private static final Pattern PATTERN_STEP_FILE =
+            Pattern.compile("^\\d{3,}_\\d{4,}\\.sql$");
+    /**
+     * Steps of the migration.
+     */
+    @SuppressWarnings("CollectionWithoutInitialCapacity")
+    private final List<MigrationStep> steps = new ArrayList<MigrationStep>();
+    /**
+     * Last step that modified the object, by key of the object.
+     */
+    @SuppressWarnings("CollectionWithoutInitialCapacity")
+    private final Map<String, MigrationStep> modifiers =
+            new HashMap<String, MigrationStep>();
+    /**
+     * Steps that referenced the object since it was last modified, by key of
+     * the object.
+     */
+    @SuppressWarnings("CollectionWithoutInitialCapacity")
+    private final Map<String, List<MigrationStep>> referencers =
+            new HashMap<String, List<MigrationStep>>();
+    /**
+     * Steps added since last sequential step.
+     */
+    @SuppressWarnings("CollectionWithoutInitialCapacity")
+    private final List<MigrationStep> concurrentSteps =
+            new ArrayList<MigrationStep>();
+    /**
+     * Last sequential step or null if no sequential step was added yet.
+     */
+    private MigrationStep sequentialStep;
+
+    /**
+     * Adds step to the plan and resolves its dependencies on steps that
+     * were added before.
+     *
+     * @param searchPath       SET search_path statement that must be run
+     *                         before the step or null
+     * @param statement        statements of the step
+     * @param nonTransactional whether the statements cannot run inside
+     *                         transaction block
+     * @param sequential       whether the step must run after all previous
+     *                         steps and before all following steps
+     * @param modified         keys of objects modified by the step
+     * @param referenced       keys of objects referenced by the step
+     *
+     * @return the new step
+     */
+    public MigrationStep addStep(final String searchPath,
+            final String statement, final boolean nonTransactional,
+            final boolean sequential, final Set<String> modified,
+            final Set<String> referenced) {
+        final MigrationStep step = new MigrationStep(steps.size() + 1,
+                searchPath, statement, nonTransactional);
+
+        if (sequentialStep != null) {
+            step.addDependency(sequentialStep);
+        }
+
+        if (sequential || modified.isEmpty()) {
+            for (final MigrationStep concurrentStep : concurrentSteps) {
+                step.addDependency(concurrentStep);
+            }
+
+            concurrentSteps.clear();
+            sequentialStep = step;
+        } else {
+            concurrentSteps.add(step);
+        }
+
+        for (final String key : referenced) {
+            if (modified.contains(key)) {
+                continue;
+            }
+
+            final MigrationStep modifier = modifiers.get(key);
+
+            if (modifier != null) {
+                step.addDependency(modifier);
+            }
+
+            List<MigrationStep> keyReferencers = referencers.get(key);
+
+            if (keyReferencers == null) {
+                keyReferencers = new ArrayList<MigrationStep>(1);
+                referencers.put(key, keyReferencers);
+            }
+
+            keyReferencers.add(step);
+        }
+
+        for (final String key : modified) {
+            final MigrationStep modifier = modifiers.get(key);
+
+            if (modifier != null) {
+                step.addDependency(modifier);
+            }
+
+            final List<MigrationStep> keyReferencers = referencers.remove(key);
+
+            if (keyReferencers != null) {
+                for (final MigrationStep referencer : keyReferencers) {
+                    step.addDependency(referencer);
+                }
+            }
+
+            modifiers.put(key, step);
+        }
+
+        steps.add(step);
+
+        return step;
+    }
+
+    /**
+     * Getter for {@link #steps}.
+     *
+     * @return {@link #steps}
+     */
+    public List<MigrationStep> getSteps() {
+        return Collections.unmodifiableList(steps);
+    }
+
+    /**
+     * Returns steps grouped by levels. Steps of the same level do not depend
+     * on each other.
+     *
+     * @return list of levels, each containing list of steps
+     */
+    public List<List<MigrationStep>> getLevels() {
+        @SuppressWarnings("CollectionWithoutInitialCapacity")
+        final List<List<MigrationStep>> levels =
+                new ArrayList<List<MigrationStep>>();
+
+        for (final MigrationStep step : steps) {
+            while (levels.size() < step.getLevel()) {
+                levels.add(new ArrayList<MigrationStep>());
+            }
+
+            levels.get(step.getLevel() - 1).add(step);
+        }
+
+        return levels;
+    }
+
+    /**
+     * Writes every step to separate SQL file and description of the plan to
+     * {@link #PLAN_FILE_NAME} in JSON format. Step files left in the
+     * directory by previous run are deleted.
+     *
+     * @param directory directory the files should be written to, it is
+     *                  created if it does not exist
+     * @param charset   charset of the files
+     */
+    public void write(final File directory, final String charset) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new FileException(MessageFormat.format(
+                    Resources.getString("CannotWriteFile"), directory));
+        }
+
+        final File[] files = directory.listFiles();
+
+        if (files != null) {
+            for (final File file : files) {
+                if (PATTERN_STEP_FILE.matcher(file.getName()).matches()
+                        && !file.delete()) {
+                    throw new FileException(MessageFormat.format(
+                            Resources.getString("CannotWriteFile"), file));
+                }
+            }
+        }
+
+        for (final MigrationStep step : steps) {
+            final PrintWriter writer = openWriter(
+                    new File(directory, step.getFileName()), charset);
+
+            try {
+                writer.println(step.getSQL());
+            } finally {
+                writer.close();
+            }
+        }
+
+        final PrintWriter writer = openWriter(
+                new File(directory, PLAN_FILE_NAME), "UTF-8");
+
+        try {
+            writePlan(writer);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Writes description of the plan in JSON format.
+     *
+     * @param writer writer the description should be written to
+     */
+    public void writePlan(final PrintWriter writer) {
+        writer.println('{');
+        writer.println("\t\"steps\": [");
+
+        for (int i = 0; i < steps.size(); i++) {
+            final MigrationStep step = steps.get(i);
+
+            writer.println("\t\t{");
+            writer.println("\t\t\t\"id\": " + step.getId() + ',');
+            writer.println("\t\t\t\"level\": " + step.getLevel() + ',');
+            writer.println("\t\t\t\"file\": "
+                    + PgDiffUtils.getJsonString(step.getFileName()) + ',');
+            writer.println("\t\t\t\"transactional\": "
+                    + !step.isNonTransactional() + ',');
+            writer.println("\t\t\t\"dependsOn\": "
+                    + getJsonArray(step.getDependencies()) + ',');
+            writer.println("\t\t\t\"statement\": "
+                    + PgDiffUtils.getJsonString(step.getSQL()));
+            writer.println(i < steps.size() - 1 ? "\t\t}," : "\t\t}");
+        }
+
+        writer.println("\t],");
+        writer.println("\t\"levels\": [");
+
+        final List<List<MigrationStep>> levels = getLevels();
+
+        for (int i = 0; i < levels.size(); i++) {
+            @SuppressWarnings("CollectionWithoutInitialCapacity")
+            final List<Integer> ids = new ArrayList<Integer>();
+
+            for (final MigrationStep step : levels.get(i)) {
+                ids.add(step.getId());
+            }
+
+            writer.println("\t\t" + getJsonArray(ids)
+                    + (i < levels.size() - 1 ? "," : ""));
+        }
+
+        writer.println("\t]");
+        writer.println('}');
+    }
+
+    /**
+     * Opens writer of the file.
+     *
+     * @param file    file
+     * @param charset charset of the file
+     *
+     * @return writer
+     */
+    private static PrintWriter openWriter(final File file,
+            final String charset) {
+        try {
+            return new PrintWriter(new OutputStreamWriter(
+                    new FileOutputStream(file), charset));
+        } catch (final IOException ex) {
+            throw new FileException(MessageFormat.format(
+                    Resources.getString("CannotWriteFile"), file), ex);
+        }
+    }
+
+    /**
+     * Returns JSON array containing the numbers.
+     *
+     * @param values numbers
+     *
+     * @return JSON array
+     */
+    private static String getJsonArray(final Iterable<Integer> values) {
+        final StringBuilder sbArray = new StringBuilder(100);
+        sbArray.append('[');
+
+        for (final Iterator<Integer> iterator = values.iterator();
+                iterator.hasNext();) {
+            sbArray.append(iterator.next());
+
+            if (iterator.hasNext()) {
+                sbArray.append(", ");
+            }
+        }
+
+        sbArray.append(']');
+
+        return sbArray.toString();
+    }
+}
@@ -0,0 +1,164 @@
+/**
+ * Copyright 2006 StartNet s.r.o.
+ *
+ * Distributed under MIT license
+ */
+package cz.startnet.utils.pgdiff.steps;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Single step of migration, that is single statement or statements of
+ * single transaction block, together with steps it depends on.
+ *
+ * @author fordfrog
+ */
+public class MigrationStep {
+
+    /**
+     * Number of the step, steps are numbered from 1 in the order they were
+     * output.
+     */
+    private final int id;
+    /**
+     * SET search_path statement that must be run before the step or null if
+     * search path is not set.
+     */
+    private final String searchPath;
+    /**
+     * Statements of the step including comments preceding them.
+     */
+    private final String statement;
+    /**
+     * Whether the statements of the step cannot run inside transaction
+     * block.
+     */
+    private final boolean nonTransactional;
+    /**
+     * Numbers of steps that must finish before this step starts.
+     */
+    @SuppressWarnings("CollectionWithoutInitialCapacity")
+    private final Set<Integer> dependencies = new TreeSet<Integer>();
+    /**
+     * Level of the step. Steps of level 1 do not depend on any other step,
+     * steps of other levels depend only on steps of lower levels, so all
+     * steps of the same level can run concurrently.
+     */
+    private int level = 1;
+
+    /**
+     * Creates a new MigrationStep.
+     *
+     * @param id               {@link #id}
+     * @param searchPath       {@link #searchPath}
+     * @param statement        {@link #statement}
+     * @param nonTransactional {@link #nonTransactional}
+     */
+    public MigrationStep(final int id, final String searchPath,
+            final String statement, final boolean nonTransactional) {
+        this.id = id;
+        this.searchPath = searchPath;
+        this.statement = statement;
+        this.nonTransactional = nonTransactional;
+    }
+
+    /**
+     * Getter for {@link #id}.
+     *
+     * @return {@link #id}
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Getter for {@link #searchPath}.
+     *
+     * @return {@link #searchPath}
+     */
+    public String getSearchPath() {
+        return searchPath;
+    }
+
+    /**
+     * Getter for {@link #statement}.
+     *
+     * @return {@link #statement}
+     */
+    public String getStatement() {
+        return statement;
+    }
+
+    /**
+     * Getter for {@link #nonTransactional}.
+     *
+     * @return {@link #nonTransactional}
+     */
+    public boolean isNonTransactional() {
+        return nonTransactional;
+    }
+
+    /**
+     * Getter for {@link #dependencies}.
+     *
+     * @return {@link #dependencies}
+     */
+    public Set<Integer> getDependencies() {
+        return Collections.unmodifiableSet(dependencies);
+    }
+
+    /**
+     * Adds dependency on the step and raises level of this step so that it
+     * is higher than level of the step.
+     *
+     * @param step step this step depends on
+     */
+    void addDependency(final MigrationStep step) {
+        if (step == this) {
+            return;
+        }
+
+        dependencies.add(step.getId());
+
+        if (level <= step.getLevel()) {
+            level = step.getLevel() + 1;
+        }
+    }
+
+    /**
+     * Getter for {@link #level}.
+     *
+     * @return {@link #level}
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Returns name of the file the step is written to. The name starts with
+     * level of the step, so that sorting the files by name gives valid order
+     * of sequential run.
+     *
+     * @return file name
+     */
+    public String getFileName() {
+        return String.format(Locale.ENGLISH, "%03d_%04d.sql", level, id);
+    }
+
+    /**
+     * Returns SQL text of the step including search path.
+     *
+     * @return SQL text
+     */
+    public String getSQL() {
+        if (searchPath == null) {
+            return statement;
+        }
+
+        return searchPath + System.getProperty("line.separator")
+                + System.getProperty("line.separator") + statement;
+    }
+}
@@ -0,0 +1,437 @@
+/**
+ * Copyright 2006 StartNet s.r.o.
+ *
+ * Distributed under MIT license
+ */
+package cz.startnet.utils.pgdiff.steps;
+
+import cz.startnet.utils.pgdiff.PgDiffArguments;
+import cz.startnet.utils.pgdiff.impact.ImpactAnalyzer;
+import cz.startnet.utils.pgdiff.impact.LockMode;
+import cz.startnet.utils.pgdiff.impact.StatementImpact;
+import cz.startnet.utils.pgdiff.schema.PgColumn;
+import cz.startnet.utils.pgdiff.schema.PgConstraint;
+import cz.startnet.utils.pgdiff.schema.PgDatabase;
+import cz.startnet.utils.pgdiff.schema.PgIndex;
+import cz.startnet.utils.pgdiff.schema.PgSchema;
+import cz.startnet.utils.pgdiff.schema.PgTable;
+import cz.startnet.utils.pgdiff.schema.PgTrigger;
+import cz.startnet.utils.pgdiff.schema.PgView;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds database objects that are modified and referenced by generated
+ * statements. Objects are identified by keys, that is by schema qualified
+ * names of relations, sequences and functions (without arguments) and by
+ * names of schemas. Modified objects are those that are created, altered,
+ * dropped or locked by the statement in a way that conflicts with other
+ * statements. Referenced objects are all names that occur in the statement,
+ * including names in string literals, as the statement cannot be parsed
+ * completely. Statements that drop indexes, constraints, triggers, views,
+ * tables or columns do not name objects the dropped objects depend on, so
+ * these are taken from definitions of the dropped objects in the original
+ * database schema. If the original schema is not available or the dropped
+ * object is not found in it, the statement is reported as unresolved and
+ * its step has to run in the original order of the statements.
+ *
+ * @author fordfrog
+ */
+public class StepAnalyzer {
+
+    /**
+     * Flags of all patterns.
+     */
+    private static final int FLAGS = Pattern.CASE_INSENSITIVE | Pattern.DOTALL;
+    /**
+     * Pattern part matching single, possibly quoted, identifier.
+     */
+    private static final String IDENTIFIER =
+            "(?:\"(?:[^\"]|\"\")*\"|[a-zA-Z_][a-zA-Z_0-9$]*)";
+    /**
+     * Pattern part matching possibly schema qualified name, as a group.
+     */
+    private static final String NAME = "(" + IDENTIFIER + "(?:\\s*\\.\\s*"
+            + IDENTIFIER + ")?)";
+    /**
+     * Pattern for parsing SET search_path statement.
+     */
+    private static final Pattern PATTERN_SEARCH_PATH = Pattern.compile(
+            "^SET\\s+search_path\\s*=\\s*(" + IDENTIFIER + ")", FLAGS);
+    /**
+     * Pattern for parsing name of object created, altered or dropped by the
+     * statement.
+     */
+    private static final Pattern PATTERN_TARGET = Pattern.compile(
+            "^(CREATE(?:\\s+OR\\s+REPLACE)?(?:\\s+UNIQUE)?(?:\\s+UNLOGGED)?"
+            + "|ALTER|DROP|COMMENT\\s+ON)\\s+(TABLE|VIEW|MATERIALIZED\\s+VIEW"
+            + "|SEQUENCE|FUNCTION|INDEX|SCHEMA|TYPE|DOMAIN|AGGREGATE)\\s+"
+            + "(?:CONCURRENTLY\\s+)?(?:IF\\s+(?:NOT\\s+)?EXISTS\\s+)?"
+            + "(?:ONLY\\s+)?" + NAME, FLAGS);
+    /**
+     * Pattern for parsing name of dropped trigger and name of its table.
+     */
+    private static final Pattern PATTERN_DROP_TRIGGER = Pattern.compile(
+            "^DROP\\s+TRIGGER\\s+(?:IF\\s+EXISTS\\s+)?(" + IDENTIFIER
+            + ")\\s+ON\\s+" + NAME, FLAGS);
+    /**
+     * Pattern for parsing names of constraints dropped by ALTER TABLE
+     * statement.
+     */
+    private static final Pattern PATTERN_DROP_CONSTRAINT = Pattern.compile(
+            "\\bDROP\\s+CONSTRAINT\\s+(?:IF\\s+EXISTS\\s+)?(" + IDENTIFIER
+            + ")", FLAGS);
+    /**
+     * Pattern for parsing names of columns dropped or altered by ALTER TABLE
+     * statement.
+     */
+    private static final Pattern PATTERN_COLUMN = Pattern.compile(
+            "\\b(?:DROP|ALTER)\\s+COLUMN\\s+(?:IF\\s+EXISTS\\s+)?("
+            + IDENTIFIER + ")", FLAGS);
+    /**
+     * Pattern for parsing new name of renamed object.
+     */
+    private static final Pattern PATTERN_RENAME = Pattern.compile(
+            "\\sRENAME\\s+TO\\s+(" + IDENTIFIER + ")", FLAGS);
+    /**
+     * Pattern for finding names in the statement.
+     */
+    private static final Pattern PATTERN_NAME = Pattern.compile(NAME, FLAGS);
+    /**
+     * Analyzer used to find relations locked by the statements.
+     */
+    private final ImpactAnalyzer impactAnalyzer;
+    /**
+     * Original database schema or null if it is not available.
+     */
+    private final PgDatabase oldDatabase;
+    /**
+     * Schema unqualified names are resolved in.
+     */
+    private String schema = "public";
+
+    /**
+     * Creates a new StepAnalyzer.
+     *
+     * @param arguments   object containing arguments settings
+     * @param oldDatabase {@link #oldDatabase}
+     */
+    public StepAnalyzer(final PgDiffArguments arguments,
+            final PgDatabase oldDatabase) {
+        impactAnalyzer = new ImpactAnalyzer(arguments);
+        this.oldDatabase = oldDatabase;
+    }
+
+    /**
+     * Analyzes the statement and adds keys of objects it modifies and
+     * references to the sets. SET search_path statements only change schema
+     * unqualified names are resolved in.
+     *
+     * @param statement  statement
+     * @param modified   set the keys of modified objects are added to
+     * @param referenced set the keys of referenced objects are added to
+     *
+     * @return true if all objects the statement depends on were found,
+     *         false if the statement drops object that was not found in the
+     *         original database schema
+     */
+    public boolean analyze(final String statement,
+            final Set<String> modified, final Set<String> referenced) {
+        final String sql = statement.trim();
+        final StatementImpact impact = impactAnalyzer.analyze(sql);
+        boolean resolved = true;
+        Matcher matcher = PATTERN_SEARCH_PATH.matcher(sql);
+
+        if (matcher.find()) {
+            schema = getParts(matcher.group(1)).get(0);
+
+            return true;
+        }
+
+        matcher = PATTERN_TARGET.matcher(sql);
+
+        if (matcher.find()) {
+            final String key;
+
+            if ("SCHEMA".equalsIgnoreCase(matcher.group(2))) {
+                key = getParts(matcher.group(3)).get(0);
+            } else {
+                key = getKey(matcher.group(3));
+                resolved = addDroppedReferences(matcher.group(1),
+                        matcher.group(2), getQualifiedParts(matcher.group(3)),
+                        sql, referenced);
+            }
+
+            modified.add(key);
+
+            final Matcher renameMatcher = PATTERN_RENAME.matcher(sql);
+
+            if (renameMatcher.find()) {
+                final String name = getParts(renameMatcher.group(1)).get(0);
+                modified.add(key.indexOf('.') == -1 ? name
+                        : key.substring(0, key.indexOf('.') + 1) + name);
+            }
+        }
+
+        // plain CREATE INDEX acquires SHARE lock that does not conflict with
+        // itself, so indexes of the same table can be built concurrently
+        if (impact != null && impact.getRelation() != null) {
+            if (impact.getLockMode() == LockMode.SHARE) {
+                referenced.add(getKey(impact.getRelation()));
+            } else {
+                modified.add(getKey(impact.getRelation()));
+            }
+        }
+
+        matcher = PATTERN_DROP_TRIGGER.matcher(sql);
+
+        if (matcher.find()) {
+            final List<String> tableName = getQualifiedParts(matcher.group(2));
+            final PgTable table =
+                    getOldTable(tableName.get(0), tableName.get(1));
+            final PgTrigger trigger = table == null ? null
+                    : table.getTrigger(getParts(matcher.group(1)).get(0));
+
+            if (trigger == null) {
+                resolved = false;
+            } else {
+                addReferences(
+                        trigger.getFunction(), tableName.get(0), referenced);
+            }
+        }
+
+        addReferences(sql, schema, referenced);
+        referenced.add(schema);
+
+        return resolved;
+    }
+
+    /**
+     * Adds keys of objects referenced by definitions of objects that are
+     * dropped by the statement to the set. These are objects the index,
+     * view or table being dropped depends on, objects referenced by
+     * constraints being dropped and by defaults of columns being dropped or
+     * altered.
+     *
+     * @param action     action of the statement, like CREATE or DROP
+     * @param type       type of object the statement targets
+     * @param name       schema and name of the object
+     * @param sql        statement
+     * @param referenced set the keys of referenced objects are added to
+     *
+     * @return true if the dropped objects were found in the original
+     *         database schema, otherwise false
+     */
+    private boolean addDroppedReferences(final String action,
+            final String type, final List<String> name, final String sql,
+            final Set<String> referenced) {
+        final String schemaName = name.get(0);
+        final PgSchema oldSchema = oldDatabase == null
+                ? null : oldDatabase.getSchema(schemaName);
+
+        if ("DROP".equalsIgnoreCase(action)) {
+            if ("INDEX".equalsIgnoreCase(type)) {
+                final PgIndex index = oldSchema == null
+                        ? null : oldSchema.getIndex(name.get(1));
+
+                if (index == null) {
+                    return false;
+                }
+
+                referenced.add(schemaName + "." + index.getTableName());
+                addReferences(index.getDefinition(), schemaName, referenced);
+            } else if ("VIEW".equalsIgnoreCase(type)) {
+                final PgView view = oldSchema == null
+                        ? null : oldSchema.getView(name.get(1));
+
+                if (view == null) {
+                    return false;
+                }
+
+                addReferences(view.getQuery(), schemaName, referenced);
+            } else if ("TABLE".equalsIgnoreCase(type)) {
+                final PgTable table = getOldTable(schemaName, name.get(1));
+
+                if (table == null) {
+                    return false;
+                }
+
+                for (final PgConstraint constraint : table.getConstraints()) {
+                    addReferences(
+                            constraint.getDefinition(), schemaName, referenced);
+                }
+
+                for (final PgColumn column : table.getColumns()) {
+                    if (column.getDefaultValue() != null) {
+                        addReferences(column.getDefaultValue(), schemaName,
+                                referenced);
+                    }
+                }
+
+                for (final PgTrigger trigger : table.getTriggers()) {
+                    addReferences(
+                            trigger.getFunction(), schemaName, referenced);
+                }
+            }
+        } else if ("ALTER".equalsIgnoreCase(action)
+                && "TABLE".equalsIgnoreCase(type)) {
+            final PgTable table = getOldTable(schemaName, name.get(1));
+            Matcher matcher = PATTERN_DROP_CONSTRAINT.matcher(sql);
+
+            while (matcher.find()) {
+                final PgConstraint constraint = table == null ? null
+                        : table.getConstraint(
+                        getParts(matcher.group(1)).get(0));
+
+                if (constraint == null) {
+                    return false;
+                }
+
+                addReferences(
+                        constraint.getDefinition(), schemaName, referenced);
+            }
+
+            matcher = PATTERN_COLUMN.matcher(sql);
+
+            while (matcher.find()) {
+                if (oldDatabase == null) {
+                    return false;
+                } else if (table == null) {
+                    // columns of new table have no old defaults
+                    continue;
+                }
+
+                final PgColumn column =
+                        table.getColumn(getParts(matcher.group(1)).get(0));
+
+                if (column != null && column.getDefaultValue() != null) {
+                    addReferences(
+                            column.getDefaultValue(), schemaName, referenced);
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns table from original database schema.
+     *
+     * @param schemaName name of the schema
+     * @param tableName  name of the table
+     *
+     * @return found table or null if the table or original database schema
+     *         is not available
+     */
+    private PgTable getOldTable(final String schemaName,
+            final String tableName) {
+        final PgSchema oldSchema = oldDatabase == null
+                ? null : oldDatabase.getSchema(schemaName);
+
+        return oldSchema == null ? null : oldSchema.getTable(tableName);
+    }
+
+    /**
+     * Adds keys of all names that occur in the text to the set. First part
+     * of qualified name can be name of schema or of table, so both are added.
+     *
+     * @param text       statement or definition of an object
+     * @param schemaName schema unqualified names are resolved in
+     * @param referenced set the keys of referenced objects are added to
+     */
+    private static void addReferences(final String text,
+            final String schemaName, final Set<String> referenced) {
+        final Matcher matcher = PATTERN_NAME.matcher(text);
+
+        while (matcher.find()) {
+            final List<String> parts = getParts(matcher.group(1));
+
+            if (parts.size() == 1) {
+                referenced.add(schemaName + "." + parts.get(0));
+                referenced.add(parts.get(0));
+            } else {
+                referenced.add(parts.get(0) + "." + parts.get(1));
+                referenced.add(schemaName + "." + parts.get(0));
+                referenced.add(parts.get(0));
+            }
+        }
+    }
+
+    /**
+     * Returns key of object with given name, that is name qualified with
+     * current schema if it is not qualified.
+     *
+     * @param name possibly schema qualified and quoted name
+     *
+     * @return key of the object
+     */
+    private String getKey(final String name) {
+        final List<String> parts = getQualifiedParts(name);
+
+        return parts.get(0) + "." + parts.get(1);
+    }
+
+    /**
+     * Returns schema and name of object with given name. Schema is current
+     * schema if the name is not qualified.
+     *
+     * @param name possibly schema qualified and quoted name
+     *
+     * @return list containing name of schema and name of the object
+     */
+    private List<String> getQualifiedParts(final String name) {
+        final List<String> parts = getParts(name);
+
+        if (parts.size() == 1) {
+            parts.add(0, schema);
+        }
+
+        return parts;
+    }
+
+    /**
+     * Splits possibly qualified name to its parts. Quotes are removed from
+     * quoted parts and unquoted parts are converted to lower case.
+     *
+     * @param name possibly qualified name
+     *
+     * @return list of parts
+     */
+    @SuppressWarnings("AssignmentToForLoopParameter")
+    private static List<String> getParts(final String name) {
+        final List<String> parts = new ArrayList<String>(2);
+        final StringBuilder sbPart = new StringBuilder(name.length());
+
+        for (int pos = 0; pos < name.length(); pos++) {
+            final char chr = name.charAt(pos);
+
+            if (chr == '"') {
+                final int endPos = name.indexOf('"', pos + 1);
+
+                if (endPos != -1 && endPos + 1 < name.length()
+                        && name.charAt(endPos + 1) == '"') {
+                    sbPart.append(name, pos + 1, endPos + 1);
+                    pos = endPos;
+                } else if (endPos == -1) {
+                    sbPart.append(name.substring(pos + 1));
+                    pos = name.length();
+                } else {
+                    sbPart.append(name, pos + 1, endPos);
+                    pos = endPos;
+                }
+            } else if (chr == '.') {
+                parts.add(sbPart.toString());
+                sbPart.setLength(0);
+            } else if (!Character.isWhitespace(chr)) {
+                sbPart.append(Character.toLowerCase(chr));
+            }
+        }
+
+        parts.add(sbPart.toString());
+
+        return parts;
+    }
+}
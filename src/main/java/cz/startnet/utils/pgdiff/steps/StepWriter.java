@@ -0,0 +1,272 @@
+/**
+ * Copyright 2006 StartNet s.r.o.
+ *
+ * Distributed under MIT license
+ */
+package cz.startnet.utils.pgdiff.steps;
+
+import cz.startnet.utils.pgdiff.PgDiffArguments;
+import cz.startnet.utils.pgdiff.impact.ImpactWriter;
+import cz.startnet.utils.pgdiff.schema.PgDatabase;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Writer that passes the output unchanged to underlying writer and splits
+ * it into steps of {@link MigrationPlan}. Every statement is a separate
+ * step, except statements enclosed in START TRANSACTION and COMMIT
+ * TRANSACTION which form single step. Comment lines are part of the step of
+ * the statement that follows them, SET search_path statements are repeated
+ * in every step they apply to and ignored statements output in block
+ * comments are not part of any step.
+ *
+ * @author fordfrog
+ */
+public class StepWriter extends Writer {
+
+    /**
+     * Flags of all patterns.
+     */
+    private static final int FLAGS = Pattern.CASE_INSENSITIVE | Pattern.DOTALL;
+    /**
+     * Pattern for matching start of transaction block.
+     */
+    private static final Pattern PATTERN_BEGIN = Pattern.compile(
+            "^(?:START\\s+TRANSACTION|BEGIN)\\b(?:\\s+(?:TRANSACTION|WORK))?"
+            + "\\s*;$", FLAGS);
+    /**
+     * Pattern for matching end of transaction block.
+     */
+    private static final Pattern PATTERN_END = Pattern.compile(
+            "^(?:COMMIT|END|ROLLBACK)\\b(?:\\s+(?:TRANSACTION|WORK))?\\s*;$",
+            FLAGS);
+    /**
+     * Pattern for matching SET search_path statement.
+     */
+    private static final Pattern PATTERN_SEARCH_PATH =
+            Pattern.compile("^SET\\s+search_path\\b", FLAGS);
+    /**
+     * Pattern for matching statements that cannot run inside transaction
+     * block.
+     */
+    private static final Pattern PATTERN_NO_TRANSACTION = Pattern.compile(
+            "^(?:(?:CREATE\\s+(?:UNIQUE\\s+)?INDEX|DROP\\s+INDEX|REINDEX\\s+"
+            + "\\w+)\\s+CONCURRENTLY\\b.*|VACUUM\\b.*"
+            + "|DO\\s.*\\bCOMMIT\\s*;.*)$", FLAGS);
+    /**
+     * Writer the output is passed to.
+     */
+    private final PrintWriter output;
+    /**
+     * Analyzer of objects modified and referenced by the statements.
+     */
+    private final StepAnalyzer analyzer;
+    /**
+     * Plan the steps are added to.
+     */
+    private final MigrationPlan plan = new MigrationPlan();
+    /**
+     * Buffer of currently written line.
+     */
+    private final StringBuilder sbLine = new StringBuilder(256);
+    /**
+     * Buffer of currently written statement.
+     */
+    private final StringBuilder sbStatement = new StringBuilder(1024);
+    /**
+     * Buffer of current step, that is comment lines and statements.
+     */
+    private final StringBuilder sbStep = new StringBuilder(1024);
+    /**
+     * Keys of objects modified by current step.
+     */
+    @SuppressWarnings("CollectionWithoutInitialCapacity")
+    private final Set<String> modified = new HashSet<String>();
+    /**
+     * Keys of objects referenced by current step.
+     */
+    @SuppressWarnings("CollectionWithoutInitialCapacity")
+    private final Set<String> referenced = new HashSet<String>();
+    /**
+     * Current SET search_path statement or null if search path was not set.
+     */
+    private String searchPath;
+    /**
+     * Whether current step is enclosed in explicit transaction block.
+     */
+    private boolean inTransaction;
+    /**
+     * Whether objects all statements of current step depend on were found.
+     */
+    private boolean resolved = true;
+
+    /**
+     * Creates a new StepWriter.
+     *
+     * @param output      {@link #output}
+     * @param arguments   object containing arguments settings
+     * @param oldDatabase original database schema or null if it is not
+     *                    available, in which case steps that drop objects
+     *                    run in the original order
+     */
+    public StepWriter(final PrintWriter output,
+            final PgDiffArguments arguments, final PgDatabase oldDatabase) {
+        this.output = output;
+        analyzer = new StepAnalyzer(arguments, oldDatabase);
+    }
+
+    /**
+     * Getter for {@link #plan}. The plan is complete only after the writer
+     * is closed.
+     *
+     * @return {@link #plan}
+     */
+    public MigrationPlan getPlan() {
+        return plan;
+    }
+
+    @Override
+    public void write(final char[] cbuf, final int off, final int len) {
+        output.write(cbuf, off, len);
+
+        for (int i = off; i < off + len; i++) {
+            sbLine.append(cbuf[i]);
+
+            if (cbuf[i] == '\n') {
+                processLine();
+            }
+        }
+    }
+
+    @Override
+    public void flush() {
+        output.flush();
+    }
+
+    /**
+     * Processes rest of the buffered text and adds last step to the plan.
+     * The underlying writer is not closed.
+     */
+    @Override
+    public void close() {
+        if (sbLine.length() > 0) {
+            processLine();
+        }
+
+        if (sbStatement.toString().trim().length() > 0) {
+            processStatement(sbStatement.toString().trim());
+            sbStatement.setLength(0);
+        }
+
+        if (inTransaction) {
+            addStep(false);
+            inTransaction = false;
+        }
+
+        output.flush();
+    }
+
+    /**
+     * Processes buffered line. If the line completes statement, the
+     * statement is processed.
+     */
+    private void processLine() {
+        final String line = sbLine.toString();
+        sbLine.setLength(0);
+
+        if (sbStatement.length() == 0) {
+            final String trimmed = line.trim();
+
+            if (trimmed.isEmpty()) {
+                return;
+            } else if (trimmed.startsWith("--")) {
+                appendToStep(trimmed);
+
+                return;
+            }
+        }
+
+        sbStatement.append(line);
+
+        final String statement = sbStatement.toString().trim();
+
+        if (statement.startsWith("/*")) {
+            if (statement.endsWith("*/")) {
+                sbStatement.setLength(0);
+            }
+
+            return;
+        } else if (!ImpactWriter.isComplete(statement)) {
+            return;
+        }
+
+        sbStatement.setLength(0);
+        processStatement(statement);
+    }
+
+    /**
+     * Adds the statement to current step and adds the step to the plan if
+     * it is complete.
+     *
+     * @param statement complete statement
+     */
+    private void processStatement(final String statement) {
+        if (PATTERN_BEGIN.matcher(statement).matches()) {
+            appendToStep(statement);
+            inTransaction = true;
+        } else if (PATTERN_END.matcher(statement).matches()) {
+            appendToStep(statement);
+
+            if (inTransaction) {
+                inTransaction = false;
+                addStep(false);
+            }
+        } else if (!inTransaction
+                && PATTERN_SEARCH_PATH.matcher(statement).find()) {
+            analyzer.analyze(statement, modified, referenced);
+            searchPath = statement;
+        } else {
+            if (!analyzer.analyze(statement, modified, referenced)) {
+                resolved = false;
+            }
+
+            appendToStep(statement);
+
+            if (!inTransaction) {
+                addStep(PATTERN_NO_TRANSACTION.matcher(statement).matches());
+            }
+        }
+    }
+
+    /**
+     * Appends the text as new line of current step.
+     *
+     * @param text text
+     */
+    private void appendToStep(final String text) {
+        if (sbStep.length() > 0) {
+            sbStep.append(System.getProperty("line.separator"));
+        }
+
+        sbStep.append(text);
+    }
+
+    /**
+     * Adds current step to the plan and starts new step.
+     *
+     * @param nonTransactional whether the step cannot run inside transaction
+     *                         block
+     */
+    private void addStep(final boolean nonTransactional) {
+        plan.addStep(searchPath, sbStep.toString(), nonTransactional,
+                !resolved, new HashSet<String>(modified),
+                new HashSet<String>(referenced));
+        sbStep.setLength(0);
+        modified.clear();
+        referenced.clear();
+        resolved = true;
+    }
+}
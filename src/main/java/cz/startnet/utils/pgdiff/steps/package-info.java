@@ -0,0 +1,5 @@
+/**
+ * Contains splitting of generated statements into migration steps and
+ * resolution of dependencies between the steps.
+ */
+package cz.startnet.utils.pgdiff.steps;
@@ -0,0 +1,243 @@
+/**
+ * Copyright 2006 StartNet s.r.o.
+ *
+ * Distributed under MIT license
+ */
+package cz.startnet.utils.pgdiff;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Locale;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Tests for PgDiff class run on dump files with command line options.
+ *
+ * @author fordfrog
+ */
+@RunWith(value = Parameterized.class)
+public class PgDiffOptionsTest {
+
+    /**
+     * Provides parameters for running the tests.
+     *
+     * @return parameters for the tests
+     */
+    @Parameters
+    public static Collection<?> parameters() {
+        return Arrays.asList(
+                new Object[][]{
+                    // Tests lazy loading of modified function body.
+                    {"modify_function_args", new String[]{"--lazy-definitions"}},
+                    // Tests lazy loading of function bodies equal in
+                    // whitespace.
+                    {"function_equal_whitespace", new String[]{
+                            "--lazy-definitions",
+                            "--ignore-function-whitespace"}},
+                    // Tests lazy loading of modified view query.
+                    {"modify_view", new String[]{"--lazy-definitions"}},
+                    // Tests lazy loading of view queries.
+                    {"view_bug3080388", new String[]{"--lazy-definitions"}},
+                    // Tests lazy loading of trigger.
+                    {"modify_trigger", new String[]{"--lazy-definitions"}},
+                    // Tests lazy loading of modified constraint.
+                    {"modify_constraint", new String[]{"--lazy-definitions"}},
+                    // Tests lazy loading of added constraint.
+                    {"add_constraint", new String[]{"--lazy-definitions"}},
+                    // Tests lazy loading of objects in multiple schemas.
+                    {"multiple_schemas", new String[]{"--lazy-definitions"}},
+                    // Tests diff of dumps loaded one schema at a time.
+                    {"multiple_schemas", new String[]{"--partition-by-schema"}},
+                    // Tests diff of quoted schema loaded separately.
+                    {"quoted_schema", new String[]{"--partition-by-schema"}},
+                    // Tests diff of schema comments loaded separately.
+                    {"alter_comments", new String[]{"--partition-by-schema"}},
+                    // Tests diff of triggers, views and functions loaded one
+                    // schema at a time.
+                    {"modify_trigger", new String[]{"--partition-by-schema"}},
+                    {"modify_view", new String[]{"--partition-by-schema"}},
+                    {"modify_function_args", new String[]{
+                            "--partition-by-schema"}},
+                    // Tests lazy definitions loaded one schema at a time.
+                    {"multiple_schemas", new String[]{
+                            "--partition-by-schema", "--lazy-definitions"}},
+                    // Tests diff of dumps loaded using index files.
+                    {"modify_view", new String[]{"--use-index"}},
+                    {"modify_function_args", new String[]{
+                            "--use-index", "--lazy-definitions"}},
+                    // Tests diff of dumps loaded one schema at a time using
+                    // index files.
+                    {"quoted_schema", new String[]{
+                            "--use-index", "--partition-by-schema"}},
+                    // Tests diff of dumps where only changed objects are
+                    // loaded.
+                    {"modify_view", new String[]{"--skip-unchanged"}},
+                    {"alter_comments", new String[]{"--skip-unchanged"}},
+                    {"modify_index", new String[]{"--skip-unchanged"}},
+                    {"add_trigger", new String[]{"--skip-unchanged"}},
+                    {"drop_index_with_cluster", new String[]{
+                            "--skip-unchanged"}},
+                    {"multiple_schemas", new String[]{
+                            "--skip-unchanged", "--partition-by-schema"}},
+                    // Tests that unchanged views depending on modified view
+                    // are not skipped.
+                    {"modify_view_dependencies", new String[]{
+                            "--skip-unchanged"}},
+                    // Tests concurrent creation and dropping of indexes
+                    // outside of transaction.
+                    {"concurrent_indexes", new String[]{
+                            "--add-transaction", "--concurrent-indexes"}},
+                    // Tests swapping of modified indexes with indexes built
+                    // concurrently under temporary name.
+                    {"swap_indexes", new String[]{
+                            "--add-transaction", "--swap-indexes"}},
+                    // Tests adding of foreign keys and checks as NOT VALID
+                    // with validation outside of transaction.
+                    {"not_valid_constraints", new String[]{
+                            "--add-transaction", "--not-valid-constraints"}},
+                    // Tests setting of NOT NULL using validated check
+                    // constraint.
+                    {"online_not_null", new String[]{
+                            "--add-transaction", "--online-not-null"}},
+                    // Tests adding of primary keys and unique constraints
+                    // using indexes built concurrently.
+                    {"constraints_using_index", new String[]{
+                            "--add-transaction", "--constraints-using-index"}},
+                    // Tests coalescing of changes of a table into single
+                    // ALTER TABLE statements.
+                    {"coalesce_alter_table", new String[]{
+                            "--coalesce-alter-table"}},
+                    // Tests changes of constraints that cannot be coalesced
+                    // into ALTER TABLE statement of the table.
+                    {"coalesce_alter_table_separate", new String[]{
+                            "--coalesce-alter-table",
+                            "--not-valid-constraints"}},
+                    // Tests replacing of views extended with new columns.
+                    {"replace_views", new String[]{"--replace-views"}},
+                    // Tests changing of column types using shadow column
+                    // backfilled in batches.
+                    {"online_type_change", new String[]{"--add-transaction",
+                            "--online-type-change", "--batch-size", "5000"}},
+                    // Tests that columns used by views are not changed
+                    // online.
+                    {"online_type_change_view", new String[]{
+                            "--add-transaction", "--online-type-change",
+                            "--batch-size", "5000"}},
+                    // Tests filling of NOT NULL columns with default values
+                    // in batches.
+                    {"batched_defaults", new String[]{"--add-transaction",
+                            "--add-defaults", "--batched-defaults",
+                            "--batch-size", "1000"}},
+                    // Tests choosing of statements by target version.
+                    {"target_version", new String[]{"--add-defaults",
+                            "--batched-defaults", "--target-version", "14"}},
+                    // Tests annotation of statements with locks and table
+                    // rewrites.
+                    {"annotate_locks", new String[]{"--annotate-locks"}},
+                    // Tests splitting of statements into short transactions
+                    // with lock timeout and retries.
+                    {"short_transactions", new String[]{"--add-transaction",
+                            "--short-transactions", "--concurrent-indexes",
+                            "--lock-timeout", "2s", "--lock-retries", "3"}},
+                    // Tests output of pre-data and post-data sections.
+                    {"section_pre_data", new String[]{
+                            "--section", "pre-data"}},
+                    {"section_post_data", new String[]{
+                            "--section", "post-data"}},
+                    // Tests renaming of table and objects named after it.
+                    {"rename_table", new String[]{"--detect-renames"}},
+                    // Tests moving of objects between schemas.
+                    {"move_schema", new String[]{"--detect-renames"}},
+                    // Tests renaming of indexes and constraints.
+                    {"rename_index_constraint", new String[]{
+                            "--detect-renames"}}
+                });
+    }
+    /**
+     * Template for generating file names.
+     */
+    private final String fileNameTemplate;
+    /**
+     * Command line options.
+     */
+    private final String[] options;
+
+    /**
+     * Creates a new PgDiffOptionsTest object.
+     *
+     * @param fileNameTemplate {@link #fileNameTemplate}
+     * @param options          {@link #options}
+     */
+    public PgDiffOptionsTest(final String fileNameTemplate,
+            final String[] options) {
+        super();
+        this.fileNameTemplate = fileNameTemplate;
+        this.options = options.clone();
+        Locale.setDefault(Locale.ENGLISH);
+    }
+
+    /**
+     * Runs single test using class member variables.
+     *
+     * @throws IOException        Thrown if problem occurred while reading
+     *                            expected diff.
+     * @throws URISyntaxException Thrown if dump file could not be located.
+     */
+    @Test(timeout = 1000)
+    public void runDiff() throws IOException, URISyntaxException {
+        final ByteArrayOutputStream diffInput = new ByteArrayOutputStream();
+        final PrintWriter writer = new PrintWriter(diffInput, true);
+        final String[] args = Arrays.copyOf(options, options.length + 2);
+        args[options.length] = getFileName("_original.sql");
+        args[options.length + 1] = getFileName("_new.sql");
+
+        final PgDiffArguments arguments = new PgDiffArguments();
+        Assert.assertTrue(arguments.parse(writer, args));
+        PgDiff.createDiff(writer, arguments);
+        writer.flush();
+
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(
+                PgDiffOptionsTest.class.getResourceAsStream(
+                fileNameTemplate + "_diff.sql")));
+        final char[] part = new char[1024];
+        final StringBuilder sbExpDiff = new StringBuilder(1024);
+        int count = reader.read(part);
+
+        while (count != -1) {
+            sbExpDiff.append(part, 0, count);
+            count = reader.read(part);
+        }
+
+        reader.close();
+
+        Assert.assertEquals("File name template: " + fileNameTemplate,
+                sbExpDiff.toString().trim(),
+                diffInput.toString().trim());
+    }
+
+    /**
+     * Returns path of the dump file.
+     *
+     * @param suffix suffix of the file name
+     *
+     * @return path of the dump file
+     *
+     * @throws URISyntaxException Thrown if dump file could not be located.
+     */
+    private String getFileName(final String suffix)
+            throws URISyntaxException {
+        return new File(PgDiffOptionsTest.class.getResource(
+                fileNameTemplate + suffix).toURI()).getPath();
+    }
+}
@@ -206,7 +206,9 @@ public class PgDiffTest {
                     // Tests adding empty table
                     {"add_empty_table", false, false, false, false},
                     // Tests rename column
-                    {"modify_column_name", false, false, false, false}
+                    {"modify_column_name", false, false, false, false},
+                    // Tests recreation of views depending on modified view
+                    {"modify_view_dependencies", false, false, false, false}
                 });
     }
     /**
@@ -0,0 +1,251 @@
+/**
+ * Copyright 2006 StartNet s.r.o.
+ *
+ * Distributed under MIT license
+ */
+package cz.startnet.utils.pgdiff.executor;
+
+import cz.startnet.utils.pgdiff.PgDiff;
+import cz.startnet.utils.pgdiff.PgDiffArguments;
+import cz.startnet.utils.pgdiff.loader.PgDumpLoader;
+import cz.startnet.utils.pgdiff.steps.MigrationPlan;
+import cz.startnet.utils.pgdiff.steps.StepWriter;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for MigrationExecutor class.
+ *
+ * @author fordfrog
+ */
+public class MigrationExecutorTest {
+
+    /**
+     * Creates a new MigrationExecutorTest.
+     */
+    public MigrationExecutorTest() {
+        Locale.setDefault(Locale.ENGLISH);
+    }
+
+    /**
+     * Tests that independent steps run concurrently up to number of jobs and
+     * that step runs only after steps it depends on have finished.
+     */
+    @Test(timeout = 5000)
+    public void testConcurrentSteps() {
+        final MigrationPlan plan = new MigrationPlan();
+        plan.addStep(null, "ALTER TABLE a ADD COLUMN x integer;", false,
+                false, keys("public.a"), keys());
+        plan.addStep(null, "ALTER TABLE b ADD COLUMN x integer;", false,
+                false, keys("public.b"), keys());
+        plan.addStep(null, "ALTER TABLE c ADD COLUMN x integer;", false,
+                false, keys("public.c"), keys());
+        plan.addStep(null, "CREATE VIEW v AS SELECT * FROM a, b, c;", false,
+                false, keys("public.v"),
+                keys("public.a", "public.b", "public.c"));
+
+        final StubConnectionProvider provider =
+                new StubConnectionProvider(100, null);
+        final StringWriter log = new StringWriter();
+
+        new MigrationExecutor(provider, 2, new PrintWriter(log)).execute(plan);
+
+        final List<String> statements = provider.getStatements();
+
+        Assert.assertEquals(4, statements.size());
+        Assert.assertTrue(statements.get(3).endsWith(
+                "CREATE VIEW v AS SELECT * FROM a, b, c;"));
+        Assert.assertEquals(2, provider.getMaxRunning());
+        Assert.assertEquals(2, provider.getOpened());
+        Assert.assertEquals(2, provider.getClosed());
+
+        final String[] lines = log.toString().split("\\r?\\n");
+
+        Assert.assertEquals(5, lines.length);
+        Assert.assertTrue(lines[3].startsWith("Step 4 (002_0004.sql) finished"
+                + " in "));
+        Assert.assertTrue(lines[4].startsWith("All 4 steps finished in "));
+    }
+
+    /**
+     * Tests that search path is set only when it differs from search path
+     * of the session and that it is reset for steps without search path.
+     */
+    @Test(timeout = 5000)
+    public void testSearchPath() {
+        final String searchPath = "SET search_path = s, pg_catalog;";
+        final MigrationPlan plan = new MigrationPlan();
+        plan.addStep(searchPath, "ALTER TABLE a ADD COLUMN x integer;", false,
+                false, keys("s.a"), keys());
+        plan.addStep(searchPath, "ALTER TABLE a ADD COLUMN y integer;", false,
+                false, keys("s.a"), keys());
+        plan.addStep(null, "ALTER TABLE a ADD COLUMN z integer;", false,
+                false, keys("public.a"), keys("s.a"));
+
+        final StubConnectionProvider provider =
+                new StubConnectionProvider(0, null);
+
+        new MigrationExecutor(provider, 1, new PrintWriter(new StringWriter()))
+                .execute(plan);
+
+        Assert.assertEquals(Arrays.asList("1: " + searchPath,
+                "1: ALTER TABLE a ADD COLUMN x integer;",
+                "1: ALTER TABLE a ADD COLUMN y integer;",
+                "1: RESET search_path;",
+                "1: ALTER TABLE a ADD COLUMN z integer;"),
+                provider.getStatements());
+    }
+
+    /**
+     * Tests that no further steps are started after a step fails, running
+     * steps are let finish and all connections are closed.
+     */
+    @Test(timeout = 5000)
+    public void testFailure() {
+        final MigrationPlan plan = new MigrationPlan();
+        plan.addStep(null, "ALTER TABLE a ADD COLUMN x integer;", false,
+                false, keys("public.a"), keys());
+        plan.addStep(null, "ALTER TABLE b ADD COLUMN x integer;", false,
+                false, keys("public.b"), keys());
+        plan.addStep(null, "CREATE INDEX a_x_idx ON a USING btree (x);", false,
+                false, keys("public.a_x_idx"), keys("public.a"));
+        plan.addStep(null, "CREATE INDEX b_x_idx ON b USING btree (x);", false,
+                false, keys("public.b_x_idx"), keys("public.b"));
+
+        final StubConnectionProvider provider =
+                new StubConnectionProvider(100, "TABLE a");
+        final StringWriter log = new StringWriter();
+
+        try {
+            new MigrationExecutor(provider, 2, new PrintWriter(log))
+                    .execute(plan);
+            Assert.fail("MigrationException expected");
+        } catch (final MigrationException ex) {
+            Assert.assertTrue(ex.getMessage(), ex.getMessage().startsWith(
+                    "Step 1 (001_0001.sql) failed after "));
+        }
+
+        final List<String> statements = provider.getStatements();
+
+        Assert.assertEquals(2, statements.size());
+        Assert.assertEquals(provider.getOpened(), provider.getClosed());
+        Assert.assertTrue(log.toString().contains("Step 2 (001_0002.sql)"
+                + " finished in "));
+    }
+
+    /**
+     * Tests that steps of real diff that drops index and column of its table
+     * and foreign key and table it references run in order, while the
+     * independent steps still run concurrently.
+     *
+     * @throws UnsupportedEncodingException Thrown if UTF-8 is not supported.
+     */
+    @Test(timeout = 5000)
+    public void testPlanFromDiff() throws UnsupportedEncodingException {
+        final String oldDump = "CREATE TABLE t (\n"
+                + "    id integer,\n"
+                + "    c integer\n"
+                + ");\n\n"
+                + "CREATE TABLE b (\n"
+                + "    id integer NOT NULL\n"
+                + ");\n\n"
+                + "CREATE TABLE a (\n"
+                + "    b_id integer\n"
+                + ");\n\n"
+                + "ALTER TABLE ONLY b\n"
+                + "    ADD CONSTRAINT b_pkey PRIMARY KEY (id);\n\n"
+                + "ALTER TABLE ONLY a\n"
+                + "    ADD CONSTRAINT a_fk FOREIGN KEY (b_id) REFERENCES b(id);"
+                + "\n\n"
+                + "CREATE INDEX idx_c ON t USING btree (c);\n";
+        final String newDump = "CREATE TABLE t (\n"
+                + "    id integer\n"
+                + ");\n\n"
+                + "CREATE TABLE a (\n"
+                + "    b_id integer\n"
+                + ");\n";
+        final PgDiffArguments arguments = new PgDiffArguments();
+        final StepWriter stepWriter = new StepWriter(
+                new PrintWriter(new StringWriter()), arguments,
+                PgDumpLoader.loadDatabaseSchema(getStream(oldDump),
+                arguments.getInCharsetName(), false, false));
+        final PrintWriter writer = new PrintWriter(stepWriter);
+
+        PgDiff.createDiff(writer, arguments, getStream(oldDump),
+                getStream(newDump));
+        writer.close();
+
+        final StubConnectionProvider provider =
+                new StubConnectionProvider(100, null);
+
+        new MigrationExecutor(provider, 4, new PrintWriter(new StringWriter()))
+                .execute(stepWriter.getPlan());
+
+        final List<String> statements = provider.getStatements();
+
+        Assert.assertEquals(4, statements.size());
+        Assert.assertTrue(statements.toString(),
+                indexOf(statements, "DROP INDEX idx_c;")
+                < indexOf(statements, "DROP COLUMN c;"));
+        Assert.assertTrue(statements.toString(),
+                indexOf(statements, "DROP CONSTRAINT a_fk;")
+                < indexOf(statements, "DROP TABLE b;"));
+        Assert.assertEquals(2, provider.getMaxRunning());
+    }
+
+    /**
+     * Returns index of executed statement that ends with given text.
+     *
+     * @param statements executed statements
+     * @param text       end of the statement
+     *
+     * @return index of the statement
+     */
+    private static int indexOf(final List<String> statements,
+            final String text) {
+        for (int i = 0; i < statements.size(); i++) {
+            if (statements.get(i).endsWith(text)) {
+                return i;
+            }
+        }
+
+        Assert.fail("statement not executed: " + text);
+
+        return -1;
+    }
+
+    /**
+     * Returns input stream of the dump.
+     *
+     * @param dump dump
+     *
+     * @return input stream
+     *
+     * @throws UnsupportedEncodingException Thrown if UTF-8 is not supported.
+     */
+    private static InputStream getStream(final String dump)
+            throws UnsupportedEncodingException {
+        return new ByteArrayInputStream(dump.getBytes("UTF-8"));
+    }
+
+    /**
+     * Returns set of the keys.
+     *
+     * @param keys keys
+     *
+     * @return set of the keys
+     */
+    private static Set<String> keys(final String... keys) {
+        return new HashSet<String>(Arrays.asList(keys));
+    }
+}
@@ -0,0 +1,196 @@
+/**
+ * Copyright 2006 StartNet s.r.o.
+ *
+ * Distributed under MIT license
+ */
+package cz.startnet.utils.pgdiff.executor;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Provider of stub connections that record executed statements instead of
+ * running them. Every statement except SET and RESET is delayed and
+ * statements containing given text fail after half of the delay.
+ *
+ * @author fordfrog
+ */
+public class StubConnectionProvider implements ConnectionProvider {
+
+    /**
+     * Delay of every statement in milliseconds.
+     */
+    private final long delay;
+    /**
+     * Text that makes statement fail or null if no statement should fail.
+     */
+    private final String failOn;
+    /**
+     * Executed statements, each prefixed with number of the connection.
+     */
+    @SuppressWarnings("CollectionWithoutInitialCapacity")
+    private final List<String> statements = new ArrayList<String>();
+    /**
+     * Number of opened connections.
+     */
+    private int opened;
+    /**
+     * Number of closed connections.
+     */
+    private int closed;
+    /**
+     * Number of currently running statements.
+     */
+    private int running;
+    /**
+     * Maximum number of concurrently running statements.
+     */
+    private int maxRunning;
+
+    /**
+     * Creates a new StubConnectionProvider.
+     *
+     * @param delay  {@link #delay}
+     * @param failOn {@link #failOn}
+     */
+    public StubConnectionProvider(final long delay, final String failOn) {
+        this.delay = delay;
+        this.failOn = failOn;
+    }
+
+    @Override
+    public synchronized Connection getConnection() {
+        opened++;
+
+        final int number = opened;
+
+        return (Connection) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(final Object proxy,
+                            final Method method, final Object[] args) {
+                        if ("createStatement".equals(method.getName())) {
+                            return createStatement(number);
+                        } else if ("close".equals(method.getName())) {
+                            connectionClosed();
+                        }
+
+                        return null;
+                    }
+                });
+    }
+
+    /**
+     * Creates stub statement of the connection.
+     *
+     * @param number number of the connection
+     *
+     * @return stub statement
+     */
+    private Statement createStatement(final int number) {
+        return (Statement) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[]{Statement.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(final Object proxy,
+                            final Method method, final Object[] args)
+                            throws SQLException, InterruptedException {
+                        if ("execute".equals(method.getName())) {
+                            execute(number, (String) args[0]);
+
+                            return Boolean.FALSE;
+                        }
+
+                        return null;
+                    }
+                });
+    }
+
+    /**
+     * Records the statement and waits for the delay. Statement containing
+     * {@link #failOn} fails after half of the delay.
+     *
+     * @param number number of the connection
+     * @param sql    SQL statement
+     *
+     * @throws SQLException         Thrown if the statement should fail.
+     * @throws InterruptedException Thrown if the thread is interrupted.
+     */
+    private void execute(final int number, final String sql)
+            throws SQLException, InterruptedException {
+        synchronized (this) {
+            statements.add(number + ": " + sql);
+
+            if (sql.startsWith("SET ") || sql.startsWith("RESET ")) {
+                return;
+            }
+
+            running++;
+            maxRunning = Math.max(maxRunning, running);
+        }
+
+        final boolean fail = failOn != null && sql.contains(failOn);
+
+        try {
+            Thread.sleep(fail ? delay / 2 : delay);
+        } finally {
+            synchronized (this) {
+                running--;
+            }
+        }
+
+        if (fail) {
+            throw new SQLException("failed: " + sql);
+        }
+    }
+
+    /**
+     * Records that connection was closed.
+     */
+    private synchronized void connectionClosed() {
+        closed++;
+    }
+
+    /**
+     * Returns copy of {@link #statements}.
+     *
+     * @return executed statements
+     */
+    public synchronized List<String> getStatements() {
+        return new ArrayList<String>(statements);
+    }
+
+    /**
+     * Getter for {@link #opened}.
+     *
+     * @return {@link #opened}
+     */
+    public synchronized int getOpened() {
+        return opened;
+    }
+
+    /**
+     * Getter for {@link #closed}.
+     *
+     * @return {@link #closed}
+     */
+    public synchronized int getClosed() {
+        return closed;
+    }
+
+    /**
+     * Getter for {@link #maxRunning}.
+     *
+     * @return {@link #maxRunning}
+     */
+    public synchronized int getMaxRunning() {
+        return maxRunning;
+    }
+}
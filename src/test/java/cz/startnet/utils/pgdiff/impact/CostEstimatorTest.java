@@ -0,0 +1,171 @@
+/**
+ * Copyright 2006 StartNet s.r.o.
+ *
+ * Distributed under MIT license
+ */
+package cz.startnet.utils.pgdiff.impact;
+
+import cz.startnet.utils.pgdiff.PgDiffArguments;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Locale;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for CostEstimator class.
+ *
+ * @author fordfrog
+ */
+public class CostEstimatorTest {
+
+    /**
+     * Statistics used by the tests, foo has 1 GB table and 512 MB of indexes
+     * and 1 million rows, bar has 100 MB table.
+     */
+    private static final String STATISTICS =
+            "relation,table_bytes,rows,index_bytes\n"
+            + "# exported from production\n"
+            + "public.foo,1073741824,1000000,536870912\n"
+            + "\"bar\",104857600,50000,0\n";
+    /**
+     * Folder for statistics files.
+     */
+    @Rule
+    @SuppressWarnings("PublicField")
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Creates a new CostEstimatorTest.
+     */
+    public CostEstimatorTest() {
+        Locale.setDefault(Locale.ENGLISH);
+    }
+
+    /**
+     * Tests that statistics file is read and relation names are schema
+     * qualified.
+     *
+     * @throws IOException Thrown if problem occurred while writing the file.
+     */
+    @Test(timeout = 1000)
+    public void testReadStatistics() throws IOException {
+        final Map<String, RelationStatistics> statistics =
+                CostEstimator.readStatistics(writeStatistics());
+
+        Assert.assertEquals(2, statistics.size());
+        Assert.assertEquals(1073741824L,
+                statistics.get("public.foo").getTableBytes());
+        Assert.assertEquals(1000000L, statistics.get("public.foo").getRows());
+        Assert.assertEquals(536870912L,
+                statistics.get("public.foo").getIndexBytes());
+        Assert.assertEquals(104857600L,
+                statistics.get("public.bar").getTableBytes());
+    }
+
+    /**
+     * Tests estimates of statements with different effects.
+     *
+     * @throws IOException Thrown if problem occurred while writing the file.
+     */
+    @Test(timeout = 1000)
+    public void testEstimate() throws IOException {
+        final CostEstimator estimator = new CostEstimator(
+                CostEstimator.readStatistics(writeStatistics()),
+                "rewrite=64,index=32");
+
+        Assert.assertEquals(32, estimator.estimate(new StatementImpact("",
+                "public.foo", LockMode.ACCESS_EXCLUSIVE, TableEffect.REWRITE)),
+                0.001);
+        Assert.assertEquals(32, estimator.estimate(new StatementImpact("",
+                "public.foo", LockMode.SHARE, TableEffect.INDEX_BUILD)),
+                0.001);
+        Assert.assertEquals(5.12, estimator.estimate(new StatementImpact("",
+                "public.foo", LockMode.ACCESS_EXCLUSIVE, TableEffect.SCAN)),
+                0.001);
+        Assert.assertEquals(50, estimator.estimate(new StatementImpact("",
+                "public.foo", LockMode.ROW_EXCLUSIVE, TableEffect.BACKFILL)),
+                0.001);
+        Assert.assertEquals(-1, estimator.estimate(new StatementImpact("",
+                "public.baz", LockMode.ACCESS_EXCLUSIVE, TableEffect.REWRITE)),
+                0.001);
+        Assert.assertNull(CostEstimator.parseThroughput("rewrite=0"));
+        Assert.assertNull(CostEstimator.parseThroughput("copy=10"));
+    }
+
+    /**
+     * Tests formatting of durations.
+     */
+    @Test(timeout = 1000)
+    public void testFormatDuration() {
+        Assert.assertEquals("< 1 s", CostEstimator.formatDuration(0.2));
+        Assert.assertEquals("42 s", CostEstimator.formatDuration(42));
+        Assert.assertEquals("2 min 5 s", CostEstimator.formatDuration(125));
+        Assert.assertEquals("1 h 1 min", CostEstimator.formatDuration(3690));
+    }
+
+    /**
+     * Tests that consecutive index builds are reordered so that the most
+     * expensive one is output first and that other statements are kept in
+     * place.
+     *
+     * @throws IOException Thrown if problem occurred while writing the file.
+     */
+    @Test(timeout = 1000)
+    public void testExpensiveFirst() throws IOException {
+        final PgDiffArguments arguments = new PgDiffArguments();
+        arguments.setStatisticsFile(writeStatistics().getPath());
+        arguments.setExpensiveFirst(true);
+
+        final StringWriter stringWriter = new StringWriter();
+        final ImpactWriter impactWriter =
+                new ImpactWriter(new PrintWriter(stringWriter), arguments);
+        final PrintWriter writer = new PrintWriter(impactWriter);
+        writer.println("ALTER TABLE bar ADD COLUMN c integer;");
+        writer.println();
+        writer.println("CREATE INDEX bar_idx ON bar USING btree (a);");
+        writer.println();
+        writer.println("CREATE INDEX foo_idx ON foo USING btree (a);");
+        writer.close();
+
+        final String output = stringWriter.toString();
+        final int alterIndex = output.indexOf("ALTER TABLE bar");
+        final int fooIndex = output.indexOf("CREATE INDEX foo_idx");
+        final int barIndex = output.indexOf("CREATE INDEX bar_idx");
+
+        Assert.assertTrue(output, alterIndex < fooIndex);
+        Assert.assertTrue(output, fooIndex < barIndex);
+        Assert.assertTrue(output, output.contains(
+                "-- lock SHARE on public.foo, builds index, estimated time"
+                + " 34 s"));
+        Assert.assertTrue(output,
+                output.contains("-- Estimated total time: 37 s"));
+    }
+
+    /**
+     * Writes statistics to temporary file.
+     *
+     * @return statistics file
+     *
+     * @throws IOException Thrown if problem occurred while writing the file.
+     */
+    private File writeStatistics() throws IOException {
+        final File file = folder.newFile("statistics.csv");
+        final OutputStream output = new FileOutputStream(file);
+
+        try {
+            output.write(STATISTICS.getBytes("UTF-8"));
+        } finally {
+            output.close();
+        }
+
+        return file;
+    }
+}
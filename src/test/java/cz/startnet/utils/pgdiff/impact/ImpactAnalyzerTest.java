@@ -0,0 +1,135 @@
+/**
+ * Copyright 2006 StartNet s.r.o.
+ *
+ * Distributed under MIT license
+ */
+package cz.startnet.utils.pgdiff.impact;
+
+import cz.startnet.utils.pgdiff.PgDiffArguments;
+import java.util.Locale;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for ImpactAnalyzer class.
+ *
+ * @author fordfrog
+ */
+public class ImpactAnalyzerTest {
+
+    /**
+     * Creates a new ImpactAnalyzerTest.
+     */
+    public ImpactAnalyzerTest() {
+        Locale.setDefault(Locale.ENGLISH);
+    }
+
+    /**
+     * Tests that binary coercible type changes do not rewrite the table
+     * while other type changes do.
+     */
+    @Test(timeout = 1000)
+    public void testTypeChange() {
+        final ImpactAnalyzer analyzer =
+                new ImpactAnalyzer(new PgDiffArguments());
+
+        assertImpact(analyzer.analyze("ALTER TABLE foo\n"
+                + "\tALTER COLUMN a TYPE character varying(20) /* TYPE change"
+                + " - table: foo original: character varying(10) new:"
+                + " character varying(20) */;"), "public.foo",
+                LockMode.ACCESS_EXCLUSIVE, TableEffect.NONE);
+        assertImpact(analyzer.analyze("ALTER TABLE foo\n"
+                + "\tALTER COLUMN a TYPE numeric(12,2) /* TYPE change"
+                + " - table: foo original: numeric(10,4) new: numeric(12,2)"
+                + " */;"), "public.foo", LockMode.ACCESS_EXCLUSIVE,
+                TableEffect.REWRITE);
+    }
+
+    /**
+     * Tests that adding column with non-volatile default does not rewrite
+     * the table on servers supporting fast defaults.
+     */
+    @Test(timeout = 1000)
+    public void testAddColumnDefault() {
+        final String statement = "ALTER TABLE foo\n"
+                + "\tADD COLUMN b integer DEFAULT 0 NOT NULL;";
+        final PgDiffArguments arguments = new PgDiffArguments();
+
+        assertImpact(new ImpactAnalyzer(arguments).analyze(statement),
+                "public.foo", LockMode.ACCESS_EXCLUSIVE, TableEffect.REWRITE);
+
+        arguments.setTargetVersion(110000);
+
+        assertImpact(new ImpactAnalyzer(arguments).analyze(statement),
+                "public.foo", LockMode.ACCESS_EXCLUSIVE, TableEffect.NONE);
+        assertImpact(new ImpactAnalyzer(arguments).analyze("ALTER TABLE foo\n"
+                + "\tADD COLUMN c double precision DEFAULT random();"),
+                "public.foo", LockMode.ACCESS_EXCLUSIVE, TableEffect.REWRITE);
+    }
+
+    /**
+     * Tests that setting column NOT NULL does not scan the table if it has
+     * validated NOT NULL check constraint.
+     */
+    @Test(timeout = 1000)
+    public void testSetNotNullFromCheck() {
+        final ImpactAnalyzer analyzer =
+                new ImpactAnalyzer(new PgDiffArguments());
+
+        assertImpact(analyzer.analyze("SET search_path = s, pg_catalog;"),
+                null, null, null);
+        assertImpact(analyzer.analyze("ALTER TABLE foo\n"
+                + "\tALTER COLUMN a SET NOT NULL;"), "s.foo",
+                LockMode.ACCESS_EXCLUSIVE, TableEffect.SCAN);
+        assertImpact(analyzer.analyze("ALTER TABLE foo\n"
+                + "\tADD CONSTRAINT foo_a_not_null_check CHECK (a IS NOT NULL)"
+                + " NOT VALID;"), "s.foo", LockMode.ACCESS_EXCLUSIVE,
+                TableEffect.NONE);
+        assertImpact(analyzer.analyze("ALTER TABLE foo\n"
+                + "\tVALIDATE CONSTRAINT foo_a_not_null_check;"), "s.foo",
+                LockMode.SHARE_UPDATE_EXCLUSIVE, TableEffect.SCAN);
+        assertImpact(analyzer.analyze("ALTER TABLE foo\n"
+                + "\tALTER COLUMN a SET NOT NULL;"), "s.foo",
+                LockMode.ACCESS_EXCLUSIVE, TableEffect.NONE);
+    }
+
+    /**
+     * Tests that statements run outside of transaction block acquire weaker
+     * locks.
+     */
+    @Test(timeout = 1000)
+    public void testConcurrently() {
+        final ImpactAnalyzer analyzer =
+                new ImpactAnalyzer(new PgDiffArguments());
+
+        assertImpact(analyzer.analyze("CREATE INDEX CONCURRENTLY foo_idx ON"
+                + " foo USING btree (a);"), "public.foo",
+                LockMode.SHARE_UPDATE_EXCLUSIVE, TableEffect.INDEX_BUILD);
+        assertImpact(analyzer.analyze("DROP INDEX CONCURRENTLY foo_idx;"),
+                "public.foo_idx", LockMode.SHARE_UPDATE_EXCLUSIVE,
+                TableEffect.NONE);
+    }
+
+    /**
+     * Asserts impact of statement.
+     *
+     * @param impact   impact or null
+     * @param relation expected relation
+     * @param lockMode expected lock mode
+     * @param effect   expected effect or null if the statement should not be
+     *                 classified
+     */
+    private static void assertImpact(final StatementImpact impact,
+            final String relation, final LockMode lockMode,
+            final TableEffect effect) {
+        if (effect == null) {
+            Assert.assertNull(impact);
+
+            return;
+        }
+
+        Assert.assertEquals(relation, impact.getRelation());
+        Assert.assertEquals(lockMode, impact.getLockMode());
+        Assert.assertEquals(effect, impact.getEffect());
+    }
+}
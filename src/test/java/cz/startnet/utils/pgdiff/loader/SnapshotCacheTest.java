@@ -0,0 +1,191 @@
+/**
+ * Copyright 2006 StartNet s.r.o.
+ *
+ * Distributed under MIT license
+ */
+package cz.startnet.utils.pgdiff.loader;
+
+import cz.startnet.utils.pgdiff.schema.PgDatabase;
+import cz.startnet.utils.pgdiff.schema.PgSchema;
+import cz.startnet.utils.pgdiff.schema.PgTable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for SnapshotCache and DatabaseSnapshot classes.
+ *
+ * @author fordfrog
+ */
+public class SnapshotCacheTest {
+
+    /**
+     * Folder for dump files and cache directory.
+     */
+    @Rule
+    @SuppressWarnings("PublicField")
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests that snapshot of loaded database is read back unchanged.
+     *
+     * @throws IOException Thrown if problem occurred while writing or
+     *                     reading snapshot.
+     */
+    @Test(timeout = 1000)
+    public void testSnapshotRoundTrip() throws IOException {
+        for (int i = 1; i <= 15; i++) {
+            final PgDatabase database = PgDumpLoader.loadDatabaseSchema(
+                    getClass().getResourceAsStream("schema_" + i + ".sql"),
+                    "UTF-8", true, false);
+            final byte[] snapshot = writeSnapshot(database);
+            final PgDatabase readDatabase = DatabaseSnapshot.read(
+                    new ByteArrayInputStream(snapshot));
+
+            Assert.assertArrayEquals("schema_" + i + ".sql", snapshot,
+                    writeSnapshot(readDatabase));
+            Assert.assertEquals(database.getDefaultSchema().getName(),
+                    readDatabase.getDefaultSchema().getName());
+
+            for (final PgSchema schema : database.getSchemas()) {
+                for (final PgTable table : schema.getTables()) {
+                    Assert.assertEquals(table.getCreationSQL(),
+                            readDatabase.getSchema(schema.getName()).
+                            getTable(table.getName()).getCreationSQL());
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests that snapshot is stored in the cache and reused.
+     *
+     * @throws IOException Thrown if problem occurred while writing dump.
+     */
+    @Test(timeout = 1000)
+    public void testSnapshotReused() throws IOException {
+        final File dump = writeDump("dump.sql",
+                "CREATE TABLE t1 (id integer NOT NULL);\n");
+        final File directory = new File(folder.getRoot(), "cache");
+        final SnapshotCache cache = new SnapshotCache(directory.getPath());
+
+        cache.loadDatabaseSchema(
+                dump.getPath(), "UTF-8", false, false, false, false);
+
+        final File[] snapshots = directory.listFiles();
+        Assert.assertEquals(1, snapshots.length);
+        Assert.assertTrue(
+                snapshots[0].getName().endsWith(SnapshotCache.FILE_SUFFIX));
+
+        final long snapshotModified = snapshots[0].lastModified();
+
+        // the same content is found in the cache under different file name
+        final PgDatabase database = cache.loadDatabaseSchema(writeDump(
+                "copy.sql", "CREATE TABLE t1 (id integer NOT NULL);\n").
+                getPath(), "UTF-8", false, false, false, false);
+
+        Assert.assertEquals(1, directory.listFiles().length);
+        Assert.assertEquals(snapshotModified, snapshots[0].lastModified());
+        Assert.assertFalse(database.getDefaultSchema().getTable("t1").
+                getColumn("id").getNullValue());
+    }
+
+    /**
+     * Tests that different snapshot is used when dump or loader options
+     * change.
+     *
+     * @throws IOException Thrown if problem occurred while writing dump.
+     */
+    @Test(timeout = 1000)
+    public void testSnapshotKey() throws IOException {
+        final File dump = writeDump("dump.sql",
+                "CREATE TABLE t1 (id integer);\n"
+                + "GRANT ALL ON TABLE t1 TO PUBLIC;\n");
+        final File directory = new File(folder.getRoot(), "cache");
+        final SnapshotCache cache = new SnapshotCache(directory.getPath());
+
+        Assert.assertTrue(cache.loadDatabaseSchema(dump.getPath(), "UTF-8",
+                false, false, false, false).getIgnoredStatements().isEmpty());
+        Assert.assertEquals(1, cache.loadDatabaseSchema(dump.getPath(),
+                "UTF-8", true, false, false, false).
+                getIgnoredStatements().size());
+        Assert.assertEquals(2, directory.listFiles().length);
+
+        writeDump("dump.sql", "CREATE TABLE t2 (id integer);\n");
+
+        Assert.assertNotNull(cache.loadDatabaseSchema(dump.getPath(),
+                "UTF-8", false, false, false, false).
+                getDefaultSchema().getTable("t2"));
+        Assert.assertEquals(3, directory.listFiles().length);
+    }
+
+    /**
+     * Tests that corrupted snapshot is ignored and replaced.
+     *
+     * @throws IOException Thrown if problem occurred while writing files.
+     */
+    @Test(timeout = 1000)
+    public void testCorruptedSnapshotIgnored() throws IOException {
+        final File dump =
+                writeDump("dump.sql", "CREATE TABLE t1 (id integer);\n");
+        final File directory = new File(folder.getRoot(), "cache");
+        final SnapshotCache cache = new SnapshotCache(directory.getPath());
+
+        cache.loadDatabaseSchema(
+                dump.getPath(), "UTF-8", false, false, false, false);
+
+        final File snapshot = directory.listFiles()[0];
+        final OutputStream output = new FileOutputStream(snapshot);
+        output.write(new byte[]{'A', 'P', 'G', 'S', 'N', 'P', 1, 100});
+        output.close();
+
+        Assert.assertNotNull(cache.loadDatabaseSchema(dump.getPath(),
+                "UTF-8", false, false, false, false).
+                getDefaultSchema().getTable("t1"));
+        Assert.assertTrue(snapshot.length() > 8);
+    }
+
+    /**
+     * Writes snapshot of the database to byte array.
+     *
+     * @param database database
+     *
+     * @return snapshot
+     *
+     * @throws IOException Thrown if problem occurred while writing snapshot.
+     */
+    private static byte[] writeSnapshot(final PgDatabase database)
+            throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        DatabaseSnapshot.write(output, database);
+
+        return output.toByteArray();
+    }
+
+    /**
+     * Writes dump to the temporary folder.
+     *
+     * @param name    name of the dump file
+     * @param content content of the dump
+     *
+     * @return written dump
+     *
+     * @throws IOException Thrown if problem occurred while writing dump.
+     */
+    private File writeDump(final String name, final String content)
+            throws IOException {
+        final File file = new File(folder.getRoot(), name);
+        final OutputStream output = new FileOutputStream(file);
+        output.write(content.getBytes("UTF-8"));
+        output.close();
+
+        return file;
+    }
+}
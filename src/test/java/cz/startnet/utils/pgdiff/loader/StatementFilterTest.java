@@ -0,0 +1,157 @@
+/**
+ * Copyright 2006 StartNet s.r.o.
+ *
+ * Distributed under MIT license
+ */
+package cz.startnet.utils.pgdiff.loader;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for StatementFilter class.
+ *
+ * @author fordfrog
+ */
+public class StatementFilterTest {
+
+    /**
+     * Folder for dump files.
+     */
+    @Rule
+    @SuppressWarnings("PublicField")
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests that statements of unchanged objects are filtered out while
+     * statements of changed objects, views and database level statements
+     * are kept.
+     *
+     * @throws IOException Thrown if problem occurred while writing dumps.
+     */
+    @Test(timeout = 1000)
+    public void testUnchangedObjectsFiltered() throws IOException {
+        final StatementIndex[] indexes = filter(
+                "SET search_path = public, pg_catalog;\n"
+                + "CREATE TABLE t1 (id integer);\n"
+                + "CREATE TABLE t2 (id integer);\n"
+                + "CREATE VIEW v1 AS SELECT 1;\n",
+                "SET search_path = public, pg_catalog;\n"
+                + "CREATE TABLE t1 (id integer);\n"
+                + "CREATE TABLE t2 (id bigint);\n"
+                + "CREATE VIEW v1 AS SELECT 1;\n");
+
+        Assert.assertEquals(Arrays.asList(null, "public.t2", "public.v1"),
+                getObjectNames(indexes[0]));
+        Assert.assertEquals(Arrays.asList(null, "public.t2", "public.v1"),
+                getObjectNames(indexes[1]));
+    }
+
+    /**
+     * Tests that statements owned by table are grouped with the table.
+     *
+     * @throws IOException Thrown if problem occurred while writing dumps.
+     */
+    @Test(timeout = 1000)
+    public void testOwnedStatementsGrouped() throws IOException {
+        final String tables = "CREATE TABLE t1 (id integer);\n"
+                + "CREATE TABLE t2 (id integer);\n"
+                + "CREATE INDEX t1_idx ON t1 (id);\n"
+                + "CREATE INDEX t2_idx ON t2 (id);\n";
+        final StatementIndex[] indexes = filter(
+                tables + "COMMENT ON INDEX t2_idx IS 'old';\n",
+                tables + "COMMENT ON INDEX t2_idx IS 'new';\n");
+
+        Assert.assertEquals(Arrays.asList(
+                "public.t2", "public.t2_idx", "public.t2_idx"),
+                getObjectNames(indexes[0]));
+        Assert.assertEquals(Arrays.asList(
+                "public.t2", "public.t2_idx", "public.t2_idx"),
+                getObjectNames(indexes[1]));
+    }
+
+    /**
+     * Tests that objects with statements that have the same hash and length
+     * but different content are not filtered out.
+     *
+     * @throws IOException Thrown if problem occurred while writing dumps.
+     */
+    @Test(timeout = 1000)
+    public void testHashCollisionNotFiltered() throws IOException {
+        // "Aa" and "BB" have the same hash code
+        final StatementIndex[] indexes = filter(
+                "CREATE TABLE t1 (c text DEFAULT 'Aa');\n",
+                "CREATE TABLE t1 (c text DEFAULT 'BB');\n");
+
+        Assert.assertEquals(1, indexes[0].getSize());
+        Assert.assertEquals(1, indexes[1].getSize());
+    }
+
+    /**
+     * Writes dumps and filters their indexes.
+     *
+     * @param oldContent content of original dump
+     * @param newContent content of new dump
+     *
+     * @return filtered indexes
+     *
+     * @throws IOException Thrown if problem occurred while writing dumps.
+     */
+    private StatementIndex[] filter(final String oldContent,
+            final String newContent) throws IOException {
+        final File oldFile = writeDump("old.sql", oldContent);
+        final File newFile = writeDump("new.sql", newContent);
+
+        return StatementFilter.filterUnchanged(oldFile.getPath(),
+                StatementIndex.create(oldFile.getPath(), "UTF-8"),
+                newFile.getPath(),
+                StatementIndex.create(newFile.getPath(), "UTF-8"), "UTF-8");
+    }
+
+    /**
+     * Returns object names of the index entries.
+     *
+     * @param index index
+     *
+     * @return list of object names
+     */
+    private static List<String> getObjectNames(final StatementIndex index) {
+        final List<String> objectNames =
+                new ArrayList<String>(index.getSize());
+
+        for (final StatementIndex.Entry entry : index.getEntries()) {
+            objectNames.add(entry.getObjectName());
+        }
+
+        return objectNames;
+    }
+
+    /**
+     * Writes dump to the temporary folder.
+     *
+     * @param name    name of the dump file
+     * @param content content of the dump
+     *
+     * @return written dump
+     *
+     * @throws IOException Thrown if problem occurred while writing dump.
+     */
+    private File writeDump(final String name, final String content)
+            throws IOException {
+        final File file = new File(folder.getRoot(), name);
+        final OutputStream output = new FileOutputStream(file);
+        output.write(content.getBytes("UTF-8"));
+        output.close();
+
+        return file;
+    }
+}
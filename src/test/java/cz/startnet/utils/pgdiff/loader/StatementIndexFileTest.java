@@ -0,0 +1,173 @@
+/**
+ * Copyright 2006 StartNet s.r.o.
+ *
+ * Distributed under MIT license
+ */
+package cz.startnet.utils.pgdiff.loader;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for StatementIndexFile class.
+ *
+ * @author fordfrog
+ */
+public class StatementIndexFileTest {
+
+    /**
+     * Folder for dump files and their index files.
+     */
+    @Rule
+    @SuppressWarnings("PublicField")
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests that index file is created and then reused.
+     *
+     * @throws IOException Thrown if problem occurred while copying dump.
+     */
+    @Test(timeout = 1000)
+    public void testIndexFileReused() throws IOException {
+        final File dump = copyDump("schema_1.sql");
+        final StatementIndex created =
+                StatementIndexFile.load(dump.getPath(), "UTF-8");
+        final File indexFile =
+                new File(dump.getPath() + StatementIndexFile.FILE_SUFFIX);
+
+        Assert.assertTrue(indexFile.isFile());
+
+        final long indexModified = indexFile.lastModified();
+        final StatementIndex read =
+                StatementIndexFile.load(dump.getPath(), "UTF-8");
+
+        Assert.assertEquals(indexModified, indexFile.lastModified());
+        assertEntriesEqual(created.getEntries(), read.getEntries());
+    }
+
+    /**
+     * Tests that index file is not used when dump file changes.
+     *
+     * @throws IOException Thrown if problem occurred while copying dump.
+     */
+    @Test(timeout = 1000)
+    public void testModifiedDumpReindexed() throws IOException {
+        final File dump = copyDump("schema_1.sql");
+        final int size =
+                StatementIndexFile.load(dump.getPath(), "UTF-8").getSize();
+
+        final OutputStream output = new FileOutputStream(dump, true);
+        output.write("\nCREATE TABLE t (id integer);\n".getBytes("UTF-8"));
+        output.close();
+
+        Assert.assertEquals(size + 1,
+                StatementIndexFile.load(dump.getPath(), "UTF-8").getSize());
+    }
+
+    /**
+     * Tests that index file is not used when dump file changes but its size
+     * and modification time are the same.
+     *
+     * @throws IOException Thrown if problem occurred while copying dump.
+     */
+    @Test(timeout = 1000)
+    public void testSameSizeDumpReindexed() throws IOException {
+        final File dump = writeDump("CREATE TABLE t1 (id integer);\n");
+        final long lastModified = dump.lastModified();
+
+        Assert.assertEquals("public.t1", StatementIndexFile.load(
+                dump.getPath(), "UTF-8").getEntries().get(0).getObjectName());
+
+        writeDump("CREATE TABLE t2 (id integer);\n");
+        Assert.assertTrue(dump.setLastModified(lastModified));
+
+        Assert.assertEquals("public.t2", StatementIndexFile.load(
+                dump.getPath(), "UTF-8").getEntries().get(0).getObjectName());
+    }
+
+    /**
+     * Copies dump from test resources to the temporary folder.
+     *
+     * @param name name of the dump
+     *
+     * @return copied dump
+     *
+     * @throws IOException Thrown if problem occurred while copying dump.
+     */
+    private File copyDump(final String name) throws IOException {
+        final File file = new File(folder.getRoot(), name);
+        final InputStream input =
+                StatementIndexFileTest.class.getResourceAsStream(name);
+        final OutputStream output = new FileOutputStream(file);
+        final byte[] buffer = new byte[1024];
+        int count = input.read(buffer);
+
+        while (count != -1) {
+            output.write(buffer, 0, count);
+            count = input.read(buffer);
+        }
+
+        output.close();
+        input.close();
+
+        return file;
+    }
+
+    /**
+     * Writes dump to the temporary folder.
+     *
+     * @param content content of the dump
+     *
+     * @return written dump
+     *
+     * @throws IOException Thrown if problem occurred while writing dump.
+     */
+    private File writeDump(final String content) throws IOException {
+        final File file = new File(folder.getRoot(), "dump.sql");
+        final OutputStream output = new FileOutputStream(file);
+        output.write(content.getBytes("UTF-8"));
+        output.close();
+
+        return file;
+    }
+
+    /**
+     * Asserts that index entries are equal.
+     *
+     * @param expected expected entries
+     * @param actual   actual entries
+     */
+    private static void assertEntriesEqual(
+            final List<StatementIndex.Entry> expected,
+            final List<StatementIndex.Entry> actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+
+        for (int i = 0; i < expected.size(); i++) {
+            final StatementIndex.Entry expectedEntry = expected.get(i);
+            final StatementIndex.Entry actualEntry = actual.get(i);
+
+            Assert.assertEquals(
+                    expectedEntry.getOrdinal(), actualEntry.getOrdinal());
+            Assert.assertEquals(
+                    expectedEntry.getOffset(), actualEntry.getOffset());
+            Assert.assertEquals(
+                    expectedEntry.getLength(), actualEntry.getLength());
+            Assert.assertEquals(expectedEntry.getKind(), actualEntry.getKind());
+            Assert.assertEquals(
+                    expectedEntry.getSchemaName(), actualEntry.getSchemaName());
+            Assert.assertEquals(
+                    expectedEntry.getObjectName(), actualEntry.getObjectName());
+            Assert.assertEquals(
+                    expectedEntry.getOwnerName(), actualEntry.getOwnerName());
+            Assert.assertEquals(expectedEntry.getHash(), actualEntry.getHash());
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ * Copyright 2006 StartNet s.r.o.
+ *
+ * Distributed under MIT license
+ */
+package cz.startnet.utils.pgdiff.parsers;
+
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link QueryParser}.
+ *
+ * @author fordfrog
+ */
+public class QueryParserTest {
+
+    @Test(timeout = 1000)
+    public void testSelectItemsIgnoreFormatting() {
+        Assert.assertEquals(Arrays.asList("foo . a", "foo . b AS \"B\""),
+                QueryParser.getSelectItems("SELECT foo.a, -- first\n"
+                + "    foo.b  AS \"B\" /* second */ FROM foo"));
+    }
+
+    @Test(timeout = 1000)
+    public void testSelectItemsNested() {
+        Assert.assertEquals(Arrays.asList("coalesce ( a , 'x,y' )",
+                "( SELECT max ( b ) FROM bar )"),
+                QueryParser.getSelectItems("SELECT DISTINCT ON (a) "
+                + "coalesce(a, 'x,y'), (SELECT max(b) FROM bar) FROM foo"));
+    }
+
+    @Test(timeout = 1000)
+    public void testSelectItemsSetOperation() {
+        Assert.assertNull(QueryParser.getSelectItems(
+                "SELECT a FROM foo UNION SELECT a FROM bar"));
+        Assert.assertNull(QueryParser.getSelectItems("VALUES (1)"));
+    }
+
+    @Test(timeout = 1000)
+    public void testReferencedRelations() {
+        Assert.assertEquals(Arrays.asList("\"Bar\"", "public.foo", "baz"),
+                QueryParser.getReferencedRelations("SELECT f.a, "
+                + "(SELECT count(*) FROM ONLY \"Bar\" b WHERE b.a = f.a) "
+                + "FROM (public.foo f JOIN baz USING (a)), "
+                + "generate_series(1, 2) g WHERE f.a > 0"));
+    }
+
+    @Test(timeout = 1000)
+    public void testReferencedRelationsIgnoreExpressions() {
+        Assert.assertEquals(Arrays.asList("foo"),
+                QueryParser.getReferencedRelations("SELECT "
+                + "EXTRACT(year FROM foo.d), substring(foo.b FROM 2) "
+                + "FROM (SELECT * FROM foo) s"));
+    }
+}
@@ -0,0 +1,230 @@
+/**
+ * Copyright 2006 StartNet s.r.o.
+ *
+ * Distributed under MIT license
+ */
+package cz.startnet.utils.pgdiff.steps;
+
+import cz.startnet.utils.pgdiff.PgDiffArguments;
+import cz.startnet.utils.pgdiff.loader.PgDumpLoader;
+import cz.startnet.utils.pgdiff.schema.PgDatabase;
+import java.io.ByteArrayInputStream;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for StepWriter class.
+ *
+ * @author fordfrog
+ */
+public class StepWriterTest {
+
+    /**
+     * Creates a new StepWriterTest.
+     */
+    public StepWriterTest() {
+        Locale.setDefault(Locale.ENGLISH);
+    }
+
+    /**
+     * Tests that statements on different tables do not depend on each other,
+     * indexes depend on columns of their table, trigger depends on its
+     * function and view depends on its base table.
+     */
+    @Test(timeout = 1000)
+    public void testDependencies() {
+        final MigrationPlan plan = split("SET search_path = public, "
+                + "pg_catalog;\n\n"
+                + "ALTER TABLE foo\n\tADD COLUMN b integer;\n\n"
+                + "ALTER TABLE bar\n\tADD COLUMN c integer;\n\n"
+                + "CREATE OR REPLACE FUNCTION bar_trigger() RETURNS trigger\n"
+                + "    AS $$\nBEGIN\n\tRETURN NEW;\nEND;\n$$\n"
+                + "    LANGUAGE plpgsql;\n\n"
+                + "-- index comment\n"
+                + "CREATE INDEX foo_b_idx ON foo USING btree (b);\n\n"
+                + "CREATE INDEX foo_a_idx ON foo USING btree (a);\n\n"
+                + "CREATE INDEX bar_c_idx ON bar USING btree (c);\n\n"
+                + "CREATE TRIGGER bar_trigger\n\tBEFORE INSERT ON bar\n"
+                + "\tFOR EACH ROW\n\tEXECUTE PROCEDURE bar_trigger();\n\n"
+                + "CREATE VIEW foo_view AS\n\tSELECT foo.b FROM foo;\n");
+        final List<MigrationStep> steps = plan.getSteps();
+
+        Assert.assertEquals(8, steps.size());
+        assertStep(steps.get(0), 1);
+        assertStep(steps.get(1), 1);
+        assertStep(steps.get(2), 1);
+        assertStep(steps.get(3), 2, 1);
+        assertStep(steps.get(4), 2, 1);
+        assertStep(steps.get(5), 2, 2);
+        assertStep(steps.get(6), 3, 2, 3, 6);
+        assertStep(steps.get(7), 2, 1);
+
+        Assert.assertEquals("SET search_path = public, pg_catalog;",
+                steps.get(3).getSearchPath());
+        Assert.assertEquals("-- index comment\n"
+                + "CREATE INDEX foo_b_idx ON foo USING btree (b);",
+                steps.get(3).getStatement());
+        Assert.assertEquals("002_0004.sql", steps.get(3).getFileName());
+        Assert.assertEquals(3, plan.getLevels().size());
+    }
+
+    /**
+     * Tests that statements of explicit transaction block form single step
+     * and that CREATE INDEX CONCURRENTLY is marked as non-transactional.
+     */
+    @Test(timeout = 1000)
+    public void testTransactionBlock() {
+        final MigrationPlan plan = split("CREATE INDEX CONCURRENTLY foo_idx"
+                + " ON foo USING btree (a);\n\n"
+                + "START TRANSACTION;\n\n"
+                + "ALTER TABLE foo\n\tADD CONSTRAINT foo_pkey PRIMARY KEY"
+                + " USING INDEX foo_idx;\n\n"
+                + "COMMIT TRANSACTION;\n\n"
+                + "/* ignored statement */\n");
+        final List<MigrationStep> steps = plan.getSteps();
+
+        Assert.assertEquals(2, steps.size());
+        Assert.assertTrue(steps.get(0).isNonTransactional());
+        Assert.assertFalse(steps.get(1).isNonTransactional());
+        Assert.assertEquals("START TRANSACTION;\n"
+                + "ALTER TABLE foo\n\tADD CONSTRAINT foo_pkey PRIMARY KEY"
+                + " USING INDEX foo_idx;\n"
+                + "COMMIT TRANSACTION;", steps.get(1).getStatement());
+        assertStep(steps.get(1), 2, 1);
+    }
+
+    /**
+     * Tests that index is dropped before column of its table is dropped,
+     * which would drop the index too.
+     */
+    @Test(timeout = 1000)
+    public void testDropIndexBeforeColumn() {
+        final MigrationPlan plan = split("DROP INDEX idx_c;\n\n"
+                + "ALTER TABLE t\n\tDROP COLUMN c;\n",
+                load("CREATE TABLE t (\n    id integer,\n    c integer\n);\n\n"
+                + "CREATE INDEX idx_c ON t USING btree (c);\n"));
+        final List<MigrationStep> steps = plan.getSteps();
+
+        Assert.assertEquals(2, steps.size());
+        assertStep(steps.get(0), 1);
+        assertStep(steps.get(1), 2, 1);
+    }
+
+    /**
+     * Tests that foreign key is dropped before the table it references is
+     * dropped.
+     */
+    @Test(timeout = 1000)
+    public void testDropForeignKeyBeforeReferencedTable() {
+        final MigrationPlan plan = split("ALTER TABLE a\n"
+                + "\tDROP CONSTRAINT a_fk;\n\n"
+                + "DROP TABLE b;\n",
+                load("CREATE TABLE b (\n    id integer NOT NULL\n);\n\n"
+                + "CREATE TABLE a (\n    b_id integer\n);\n\n"
+                + "ALTER TABLE ONLY b\n"
+                + "    ADD CONSTRAINT b_pkey PRIMARY KEY (id);\n\n"
+                + "ALTER TABLE ONLY a\n"
+                + "    ADD CONSTRAINT a_fk FOREIGN KEY (b_id) REFERENCES b(id);"
+                + "\n"));
+        final List<MigrationStep> steps = plan.getSteps();
+
+        Assert.assertEquals(2, steps.size());
+        assertStep(steps.get(0), 1);
+        assertStep(steps.get(1), 2, 1);
+    }
+
+    /**
+     * Tests that steps dropping objects run in the original order if the
+     * original database schema is not available.
+     */
+    @Test(timeout = 1000)
+    public void testSequentialWithoutSchema() {
+        final MigrationPlan plan = split("ALTER TABLE c\n"
+                + "\tADD COLUMN x integer;\n\n"
+                + "DROP INDEX idx_c;\n\n"
+                + "ALTER TABLE d\n\tADD COLUMN x integer;\n\n"
+                + "ALTER TABLE t\n\tDROP COLUMN c;\n", null);
+        final List<MigrationStep> steps = plan.getSteps();
+
+        Assert.assertEquals(4, steps.size());
+        assertStep(steps.get(0), 1);
+        assertStep(steps.get(1), 2, 1);
+        assertStep(steps.get(2), 3, 2);
+        assertStep(steps.get(3), 4, 1, 2, 3);
+    }
+
+    /**
+     * Splits the script into migration steps and checks that the script is
+     * passed to the underlying writer unchanged.
+     *
+     * @param script script
+     *
+     * @return migration plan
+     */
+    private static MigrationPlan split(final String script) {
+        return split(script, new PgDatabase());
+    }
+
+    /**
+     * Splits the script into migration steps and checks that the script is
+     * passed to the underlying writer unchanged.
+     *
+     * @param script      script
+     * @param oldDatabase original database schema or null
+     *
+     * @return migration plan
+     */
+    private static MigrationPlan split(final String script,
+            final PgDatabase oldDatabase) {
+        final StringWriter output = new StringWriter();
+        final StepWriter stepWriter = new StepWriter(new PrintWriter(output),
+                new PgDiffArguments(), oldDatabase);
+        final PrintWriter writer = new PrintWriter(stepWriter);
+
+        writer.print(script);
+        writer.close();
+
+        Assert.assertEquals(script, output.toString());
+
+        return stepWriter.getPlan();
+    }
+
+    /**
+     * Loads database schema from the dump.
+     *
+     * @param dump dump
+     *
+     * @return database schema
+     */
+    private static PgDatabase load(final String dump) {
+        try {
+            return PgDumpLoader.loadDatabaseSchema(
+                    new ByteArrayInputStream(dump.getBytes("UTF-8")), "UTF-8",
+                    false, false);
+        } catch (final UnsupportedEncodingException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Checks level and dependencies of the step.
+     *
+     * @param step         step
+     * @param level        expected level
+     * @param dependencies expected numbers of steps the step depends on
+     */
+    private static void assertStep(final MigrationStep step, final int level,
+            final Integer... dependencies) {
+        Assert.assertEquals("level of step " + step.getId(), level,
+                step.getLevel());
+        Assert.assertEquals("dependencies of step " + step.getId(),
+                Arrays.asList(dependencies),
+                Arrays.asList(step.getDependencies().toArray()));
+    }
+}
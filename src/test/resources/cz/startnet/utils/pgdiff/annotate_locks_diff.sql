@@ -0,0 +1,25 @@
+
+-- no lock on existing relations
+CREATE TABLE baz (
+	id integer
+);
+
+-- lock ACCESS EXCLUSIVE on public.foo, scans the table
+ALTER TABLE foo
+	ALTER COLUMN name TYPE character varying(100) /* TYPE change - table: foo original: character varying(50) new: character varying(100) */,
+	ALTER COLUMN note SET NOT NULL;
+
+-- lock ACCESS EXCLUSIVE on public.bar, rewrites the table
+ALTER TABLE bar
+	TABLESPACE slow;
+
+-- lock ACCESS EXCLUSIVE on public.qux, rewrites the table
+ALTER TABLE qux
+	ADD COLUMN created timestamp without time zone DEFAULT now(),
+	ALTER COLUMN amount TYPE bigint /* TYPE change - table: qux original: integer new: bigint */;
+
+-- lock SHARE on public.foo, builds index
+CREATE INDEX foo_name_idx ON foo USING btree (name);
+
+-- lock SHARE on public.baz
+CREATE INDEX baz_id_idx ON baz USING btree (id);
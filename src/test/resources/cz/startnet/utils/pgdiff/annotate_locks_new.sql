@@ -0,0 +1,27 @@
+CREATE TABLE foo (
+    id integer NOT NULL,
+    name character varying(100),
+    note text NOT NULL
+);
+
+ALTER TABLE ONLY foo
+    ADD CONSTRAINT foo_pkey PRIMARY KEY (id);
+
+CREATE INDEX foo_name_idx ON foo USING btree (name);
+
+CREATE TABLE bar (
+    id integer
+)
+TABLESPACE slow;
+
+CREATE TABLE baz (
+    id integer
+);
+
+CREATE INDEX baz_id_idx ON baz USING btree (id);
+
+CREATE TABLE qux (
+    id integer NOT NULL,
+    amount bigint,
+    created timestamp without time zone DEFAULT now()
+);
@@ -0,0 +1,18 @@
+CREATE TABLE foo (
+    id integer NOT NULL,
+    name character varying(50),
+    note text
+);
+
+ALTER TABLE ONLY foo
+    ADD CONSTRAINT foo_pkey PRIMARY KEY (id);
+
+CREATE TABLE bar (
+    id integer
+)
+TABLESPACE fast;
+
+CREATE TABLE qux (
+    id integer NOT NULL,
+    amount integer
+);
@@ -0,0 +1,70 @@
+START TRANSACTION;
+
+ALTER TABLE foo
+	ADD COLUMN c boolean,
+	ALTER COLUMN c SET DEFAULT false,
+	ADD COLUMN d timestamp without time zone,
+	ALTER COLUMN d SET DEFAULT now(),
+	ALTER COLUMN a SET DEFAULT 0,
+	ALTER COLUMN a SET NOT NULL,
+	ALTER COLUMN b SET DEFAULT '',
+	ALTER COLUMN b SET NOT NULL;
+
+ALTER TABLE foo
+	ALTER COLUMN a DROP DEFAULT,
+	ALTER COLUMN b DROP DEFAULT;
+
+ALTER TABLE bar
+	ADD COLUMN b integer DEFAULT 0 NOT NULL;
+
+ALTER TABLE bar
+	ALTER COLUMN b DROP DEFAULT;
+
+COMMIT TRANSACTION;
+
+CREATE TABLE IF NOT EXISTS apgdiff_backfill_progress (
+	table_name text NOT NULL,
+	column_name text NOT NULL,
+	last_key bigint,
+	PRIMARY KEY (table_name, column_name)
+);
+
+INSERT INTO apgdiff_backfill_progress (table_name, column_name)
+	SELECT 'foo', 'c,d'
+	WHERE NOT EXISTS (SELECT 1 FROM apgdiff_backfill_progress
+		WHERE table_name = 'foo' AND column_name = 'c,d');
+
+DO $$
+DECLARE
+	batch_start bigint;
+	max_key bigint;
+BEGIN
+	SELECT last_key INTO batch_start FROM apgdiff_backfill_progress
+		WHERE table_name = 'foo' AND column_name = 'c,d';
+
+	IF batch_start IS NULL THEN
+		SELECT min(id) INTO batch_start FROM foo;
+	END IF;
+
+	SELECT max(id) INTO max_key FROM foo;
+
+	WHILE batch_start <= max_key LOOP
+		UPDATE foo SET c = coalesce(c, false), d = coalesce(d, now())
+			WHERE id >= batch_start AND id < batch_start + 1000 AND (c IS NULL OR d IS NULL);
+		batch_start := batch_start + 1000;
+
+		UPDATE apgdiff_backfill_progress SET last_key = batch_start
+			WHERE table_name = 'foo' AND column_name = 'c,d';
+
+		COMMIT;
+	END LOOP;
+END;
+$$;
+
+ALTER TABLE foo
+	ALTER COLUMN c SET NOT NULL,
+	ALTER COLUMN c DROP DEFAULT,
+	ALTER COLUMN d SET NOT NULL;
+
+DELETE FROM apgdiff_backfill_progress
+	WHERE table_name = 'foo' AND column_name = 'c,d';
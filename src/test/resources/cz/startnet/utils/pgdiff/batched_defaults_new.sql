@@ -0,0 +1,15 @@
+CREATE TABLE foo (
+    id integer NOT NULL,
+    a integer NOT NULL,
+    b text DEFAULT 'x'::text NOT NULL,
+    c boolean NOT NULL,
+    d timestamp without time zone DEFAULT now() NOT NULL
+);
+
+ALTER TABLE ONLY foo
+    ADD CONSTRAINT foo_pkey PRIMARY KEY (id);
+
+CREATE TABLE bar (
+    a integer,
+    b integer NOT NULL
+);
@@ -0,0 +1,12 @@
+CREATE TABLE foo (
+    id integer NOT NULL,
+    a integer,
+    b text DEFAULT 'x'::text
+);
+
+ALTER TABLE ONLY foo
+    ADD CONSTRAINT foo_pkey PRIMARY KEY (id);
+
+CREATE TABLE bar (
+    a integer
+);
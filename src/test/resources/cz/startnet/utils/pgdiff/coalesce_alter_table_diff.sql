@@ -0,0 +1,15 @@
+
+ALTER TABLE testtable
+	RENAME COLUMN field2 TO field4 /* RENAME column - table: testtable original: field2 new: field4 */;
+
+ALTER TABLE testtable
+	DROP CONSTRAINT field1check,
+	DROP CONSTRAINT field2check,
+	ALTER COLUMN field1 TYPE bigint /* TYPE change - table: testtable original: integer new: bigint */,
+	ALTER COLUMN field3 SET NOT NULL,
+	SET WITHOUT OIDS,
+	INHERIT parenttable,
+	ADD CONSTRAINT field4check CHECK ((field4 > 0)),
+	ADD CONSTRAINT testtable_id_fkey FOREIGN KEY (id) REFERENCES parenttable(id);
+
+COMMENT ON CONSTRAINT testtable_id_fkey ON testtable IS 'parent';
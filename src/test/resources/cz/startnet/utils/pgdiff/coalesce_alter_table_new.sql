@@ -0,0 +1,20 @@
+CREATE TABLE parenttable (
+    id integer NOT NULL
+);
+
+CREATE TABLE testtable (
+    id integer NOT NULL,
+    field1 bigint,
+    field3 character varying(150) NOT NULL,
+    field4 integer,
+    CONSTRAINT field4check CHECK ((field4 > 0))
+)
+INHERITS (parenttable);
+
+ALTER TABLE ONLY parenttable
+    ADD CONSTRAINT parenttable_pkey PRIMARY KEY (id);
+
+ALTER TABLE ONLY testtable
+    ADD CONSTRAINT testtable_id_fkey FOREIGN KEY (id) REFERENCES parenttable(id);
+
+COMMENT ON CONSTRAINT testtable_id_fkey ON testtable IS 'parent';
@@ -0,0 +1,15 @@
+CREATE TABLE parenttable (
+    id integer NOT NULL
+);
+
+CREATE TABLE testtable (
+    id integer NOT NULL,
+    field1 integer,
+    field2 integer,
+    field3 character varying(150),
+    CONSTRAINT field1check CHECK ((field1 > 0)),
+    CONSTRAINT field2check CHECK ((field2 > 0))
+) WITH OIDS;
+
+ALTER TABLE ONLY parenttable
+    ADD CONSTRAINT parenttable_pkey PRIMARY KEY (id);
@@ -0,0 +1,29 @@
+
+ALTER TABLE testtable
+	DROP CONSTRAINT testtable_parent_id_fkey;
+
+DROP TABLE parenttable;
+
+CREATE TABLE othertable (
+	id integer NOT NULL
+);
+
+ALTER TABLE testtable
+	RENAME COLUMN parent_id TO other_id /* RENAME column - table: testtable original: parent_id new: other_id */;
+
+ALTER TABLE testtable
+	ALTER COLUMN field1 TYPE bigint /* TYPE change - table: testtable original: integer new: bigint */,
+	ADD CONSTRAINT testtable_pkey PRIMARY KEY (id);
+
+ALTER TABLE othertable
+	ADD CONSTRAINT othertable_pkey PRIMARY KEY (id);
+
+ALTER TABLE testtable
+	ADD CONSTRAINT field1check CHECK ((field1 > 0)) NOT VALID,
+	ADD CONSTRAINT testtable_other_id_fkey FOREIGN KEY (other_id) REFERENCES othertable(id) NOT VALID;
+
+ALTER TABLE testtable
+	VALIDATE CONSTRAINT field1check;
+
+ALTER TABLE testtable
+	VALIDATE CONSTRAINT testtable_other_id_fkey;
@@ -0,0 +1,19 @@
+CREATE TABLE othertable (
+    id integer NOT NULL
+);
+
+CREATE TABLE testtable (
+    id integer NOT NULL,
+    other_id integer,
+    field1 bigint,
+    CONSTRAINT field1check CHECK ((field1 > 0))
+);
+
+ALTER TABLE ONLY othertable
+    ADD CONSTRAINT othertable_pkey PRIMARY KEY (id);
+
+ALTER TABLE ONLY testtable
+    ADD CONSTRAINT testtable_pkey PRIMARY KEY (id);
+
+ALTER TABLE ONLY testtable
+    ADD CONSTRAINT testtable_other_id_fkey FOREIGN KEY (other_id) REFERENCES othertable(id);
@@ -0,0 +1,15 @@
+CREATE TABLE parenttable (
+    id integer NOT NULL
+);
+
+CREATE TABLE testtable (
+    id integer NOT NULL,
+    parent_id integer,
+    field1 integer
+);
+
+ALTER TABLE ONLY parenttable
+    ADD CONSTRAINT parenttable_pkey PRIMARY KEY (id);
+
+ALTER TABLE ONLY testtable
+    ADD CONSTRAINT testtable_parent_id_fkey FOREIGN KEY (parent_id) REFERENCES parenttable(id);
@@ -0,0 +1,67 @@
+START TRANSACTION;
+
+CREATE TABLE testtable2 (
+	field1 integer
+);
+
+CREATE INDEX testindex4 ON testtable2 USING btree (field1);
+
+COMMIT TRANSACTION;
+
+DROP INDEX CONCURRENTLY IF EXISTS testindex;
+
+DO $$
+BEGIN
+	IF EXISTS (SELECT 1 FROM pg_index i
+			JOIN pg_class c ON c.oid = i.indexrelid
+			JOIN pg_namespace n ON n.oid = c.relnamespace
+			WHERE c.relname = 'testindex' AND n.nspname = current_schema()
+			AND NOT i.indisvalid) THEN
+		RAISE EXCEPTION 'Index % is invalid', 'testindex';
+	END IF;
+END;
+$$;
+
+DROP INDEX CONCURRENTLY IF EXISTS testindex2;
+
+DO $$
+BEGIN
+	IF EXISTS (SELECT 1 FROM pg_index i
+			JOIN pg_class c ON c.oid = i.indexrelid
+			JOIN pg_namespace n ON n.oid = c.relnamespace
+			WHERE c.relname = 'testindex2' AND n.nspname = current_schema()
+			AND NOT i.indisvalid) THEN
+		RAISE EXCEPTION 'Index % is invalid', 'testindex2';
+	END IF;
+END;
+$$;
+
+CREATE INDEX CONCURRENTLY testindex ON testtable USING btree (field3);
+
+DO $$
+BEGIN
+	IF EXISTS (SELECT 1 FROM pg_index i
+			JOIN pg_class c ON c.oid = i.indexrelid
+			JOIN pg_namespace n ON n.oid = c.relnamespace
+			WHERE c.relname = 'testindex' AND n.nspname = current_schema()
+			AND NOT i.indisvalid) THEN
+		RAISE EXCEPTION 'Index % is invalid', 'testindex';
+	END IF;
+END;
+$$;
+
+CREATE UNIQUE INDEX CONCURRENTLY testindex3 ON testtable USING btree (field2);
+
+DO $$
+BEGIN
+	IF EXISTS (SELECT 1 FROM pg_index i
+			JOIN pg_class c ON c.oid = i.indexrelid
+			JOIN pg_namespace n ON n.oid = c.relnamespace
+			WHERE c.relname = 'testindex3' AND n.nspname = current_schema()
+			AND NOT i.indisvalid) THEN
+		RAISE EXCEPTION 'Index % is invalid', 'testindex3';
+	END IF;
+END;
+$$;
+
+ALTER TABLE testtable CLUSTER ON testindex3;
@@ -0,0 +1,44 @@
+--
+-- PostgreSQL database dump
+--
+
+SET client_encoding = 'UTF8';
+SET check_function_bodies = false;
+SET client_min_messages = warning;
+
+SET search_path = public, pg_catalog;
+
+SET default_tablespace = '';
+
+SET default_with_oids = false;
+
+--
+-- Name: testtable; Type: TABLE; Schema: public; Owner: fordfrog; Tablespace: 
+--
+
+CREATE TABLE testtable (
+    field1 integer,
+    field2 integer,
+    field3 character varying(150)
+);
+
+
+ALTER TABLE public.testtable OWNER TO fordfrog;
+
+--
+-- Name: testindex; Type: INDEX; Schema: public; Owner: fordfrog; Tablespace: 
+--
+
+CREATE INDEX testindex ON testtable USING btree (field1);
+
+--
+-- Name: testindex2; Type: INDEX; Schema: public; Owner: fordfrog; Tablespace: 
+--
+
+CREATE INDEX testindex2 ON testtable USING btree (field2);
+
+
+--
+-- PostgreSQL database dump complete
+--
+
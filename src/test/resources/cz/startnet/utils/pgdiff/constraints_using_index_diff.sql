@@ -0,0 +1,53 @@
+START TRANSACTION;
+
+CREATE TABLE newtable (
+	id integer NOT NULL,
+	testtable_field2 integer
+);
+
+ALTER TABLE newtable
+	ADD CONSTRAINT newtable_pkey PRIMARY KEY (id);
+
+COMMIT TRANSACTION;
+
+CREATE UNIQUE INDEX CONCURRENTLY testtable_pkey_idx ON testtable USING btree (id);
+
+DO $$
+BEGIN
+	IF EXISTS (SELECT 1 FROM pg_index i
+			JOIN pg_class c ON c.oid = i.indexrelid
+			JOIN pg_namespace n ON n.oid = c.relnamespace
+			WHERE c.relname = 'testtable_pkey_idx' AND n.nspname = current_schema()
+			AND NOT i.indisvalid) THEN
+		RAISE EXCEPTION 'Index % is invalid', 'testtable_pkey_idx';
+	END IF;
+END;
+$$;
+
+ALTER TABLE testtable
+	ADD CONSTRAINT testtable_pkey PRIMARY KEY USING INDEX testtable_pkey_idx;
+
+CREATE UNIQUE INDEX CONCURRENTLY testtable_field2_key_idx ON testtable USING btree (field2);
+
+DO $$
+BEGIN
+	IF EXISTS (SELECT 1 FROM pg_index i
+			JOIN pg_class c ON c.oid = i.indexrelid
+			JOIN pg_namespace n ON n.oid = c.relnamespace
+			WHERE c.relname = 'testtable_field2_key_idx' AND n.nspname = current_schema()
+			AND NOT i.indisvalid) THEN
+		RAISE EXCEPTION 'Index % is invalid', 'testtable_field2_key_idx';
+	END IF;
+END;
+$$;
+
+ALTER TABLE testtable
+	ADD CONSTRAINT testtable_field2_key UNIQUE USING INDEX testtable_field2_key_idx DEFERRABLE INITIALLY DEFERRED;
+
+COMMENT ON CONSTRAINT testtable_field2_key ON testtable IS 'unique field2';
+
+ALTER TABLE reftable
+	ADD CONSTRAINT reftable_testtable_id_fkey FOREIGN KEY (testtable_id) REFERENCES testtable(id);
+
+ALTER TABLE newtable
+	ADD CONSTRAINT newtable_testtable_field2_fkey FOREIGN KEY (testtable_field2) REFERENCES testtable(field2);
@@ -0,0 +1,103 @@
+--
+-- PostgreSQL database dump
+--
+
+SET client_encoding = 'UTF8';
+SET check_function_bodies = false;
+SET client_min_messages = warning;
+
+SET search_path = public, pg_catalog;
+
+SET default_tablespace = '';
+
+SET default_with_oids = false;
+
+--
+-- Name: reftable; Type: TABLE; Schema: public; Owner: fordfrog; Tablespace: 
+--
+
+CREATE TABLE reftable (
+    id integer NOT NULL,
+    testtable_id integer
+);
+
+
+ALTER TABLE public.reftable OWNER TO fordfrog;
+
+--
+-- Name: testtable; Type: TABLE; Schema: public; Owner: fordfrog; Tablespace: 
+--
+
+CREATE TABLE testtable (
+    id integer NOT NULL,
+    field2 integer
+);
+
+
+ALTER TABLE public.testtable OWNER TO fordfrog;
+
+--
+-- Name: newtable; Type: TABLE; Schema: public; Owner: fordfrog; Tablespace: 
+--
+
+CREATE TABLE newtable (
+    id integer NOT NULL,
+    testtable_field2 integer
+);
+
+
+ALTER TABLE public.newtable OWNER TO fordfrog;
+
+--
+-- Name: newtable_pkey; Type: CONSTRAINT; Schema: public; Owner: fordfrog; Tablespace: 
+--
+
+ALTER TABLE ONLY newtable
+    ADD CONSTRAINT newtable_pkey PRIMARY KEY (id);
+
+--
+-- Name: reftable_pkey; Type: CONSTRAINT; Schema: public; Owner: fordfrog; Tablespace: 
+--
+
+ALTER TABLE ONLY reftable
+    ADD CONSTRAINT reftable_pkey PRIMARY KEY (id);
+
+--
+-- Name: testtable_pkey; Type: CONSTRAINT; Schema: public; Owner: fordfrog; Tablespace: 
+--
+
+ALTER TABLE ONLY testtable
+    ADD CONSTRAINT testtable_pkey PRIMARY KEY (id);
+
+--
+-- Name: testtable_field2_key; Type: CONSTRAINT; Schema: public; Owner: fordfrog; Tablespace: 
+--
+
+ALTER TABLE ONLY testtable
+    ADD CONSTRAINT testtable_field2_key UNIQUE (field2) DEFERRABLE INITIALLY DEFERRED;
+
+--
+-- Name: COMMENT testtable_field2_key; Type: COMMENT; Schema: public; Owner: fordfrog
+--
+
+COMMENT ON CONSTRAINT testtable_field2_key ON testtable IS 'unique field2';
+
+--
+-- Name: newtable_testtable_field2_fkey; Type: FK CONSTRAINT; Schema: public; Owner: fordfrog
+--
+
+ALTER TABLE ONLY newtable
+    ADD CONSTRAINT newtable_testtable_field2_fkey FOREIGN KEY (testtable_field2) REFERENCES testtable(field2);
+
+--
+-- Name: reftable_testtable_id_fkey; Type: FK CONSTRAINT; Schema: public; Owner: fordfrog
+--
+
+ALTER TABLE ONLY reftable
+    ADD CONSTRAINT reftable_testtable_id_fkey FOREIGN KEY (testtable_id) REFERENCES testtable(id);
+
+
+--
+-- PostgreSQL database dump complete
+--
+
@@ -0,0 +1,50 @@
+--
+-- PostgreSQL database dump
+--
+
+SET client_encoding = 'UTF8';
+SET check_function_bodies = false;
+SET client_min_messages = warning;
+
+SET search_path = public, pg_catalog;
+
+SET default_tablespace = '';
+
+SET default_with_oids = false;
+
+--
+-- Name: reftable; Type: TABLE; Schema: public; Owner: fordfrog; Tablespace: 
+--
+
+CREATE TABLE reftable (
+    id integer NOT NULL,
+    testtable_id integer
+);
+
+
+ALTER TABLE public.reftable OWNER TO fordfrog;
+
+--
+-- Name: testtable; Type: TABLE; Schema: public; Owner: fordfrog; Tablespace: 
+--
+
+CREATE TABLE testtable (
+    id integer NOT NULL,
+    field2 integer
+);
+
+
+ALTER TABLE public.testtable OWNER TO fordfrog;
+
+--
+-- Name: reftable_pkey; Type: CONSTRAINT; Schema: public; Owner: fordfrog; Tablespace: 
+--
+
+ALTER TABLE ONLY reftable
+    ADD CONSTRAINT reftable_pkey PRIMARY KEY (id);
+
+
+--
+-- PostgreSQL database dump complete
+--
+
@@ -0,0 +1,15 @@
+
+DROP VIEW grandchild_view;
+
+DROP VIEW child_view;
+
+DROP VIEW base_view;
+
+CREATE VIEW base_view AS
+	SELECT foo.a, foo.b FROM foo WHERE (foo.b IS NOT NULL);
+
+CREATE VIEW child_view AS
+	SELECT base_view.a FROM base_view WHERE (base_view.a > 0);
+
+CREATE VIEW grandchild_view AS
+	SELECT c.a, f.b FROM (child_view c JOIN foo f ON ((c.a = f.a)));
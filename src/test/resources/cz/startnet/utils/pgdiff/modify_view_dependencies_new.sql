@@ -0,0 +1,19 @@
+CREATE TABLE foo (
+    a integer,
+    b text
+);
+
+CREATE VIEW grandchild_view AS
+    SELECT c.a, f.b FROM (child_view c JOIN foo f ON ((c.a = f.a)));
+
+CREATE VIEW child_view AS
+    SELECT base_view.a FROM base_view WHERE (base_view.a > 0);
+
+CREATE VIEW base_view AS
+    SELECT foo.a, foo.b FROM foo WHERE (foo.b IS NOT NULL);
+
+CREATE VIEW other_view AS
+    SELECT foo.b FROM foo;
+
+CREATE VIEW other_child_view AS
+    SELECT other_view.b FROM other_view;
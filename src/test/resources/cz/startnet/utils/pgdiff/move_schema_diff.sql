@@ -0,0 +1,11 @@
+
+ALTER TABLE public.invoice SET SCHEMA archive;
+
+ALTER VIEW public.big_invoice SET SCHEMA archive;
+
+ALTER FUNCTION public.invoice_total(integer) SET SCHEMA archive;
+
+SET search_path = archive, pg_catalog;
+
+ALTER TABLE invoice
+	ALTER COLUMN amount SET NOT NULL;
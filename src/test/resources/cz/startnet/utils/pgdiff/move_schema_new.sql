@@ -0,0 +1,29 @@
+CREATE SCHEMA archive;
+
+SET search_path = archive, pg_catalog;
+
+CREATE SEQUENCE invoice_id_seq
+    START WITH 1
+    INCREMENT BY 1
+    NO MAXVALUE
+    NO MINVALUE
+    CACHE 1;
+
+CREATE TABLE invoice (
+    id integer DEFAULT nextval('invoice_id_seq'::regclass) NOT NULL,
+    amount numeric(10,2) NOT NULL
+);
+
+ALTER SEQUENCE invoice_id_seq OWNED BY invoice.id;
+
+ALTER TABLE ONLY invoice
+    ADD CONSTRAINT invoice_pkey PRIMARY KEY (id);
+
+CREATE INDEX invoice_amount_idx ON invoice USING btree (amount);
+
+CREATE VIEW big_invoice AS
+    SELECT invoice.id FROM invoice WHERE invoice.amount > 1000;
+
+CREATE FUNCTION invoice_total(integer) RETURNS numeric
+    AS $$SELECT amount FROM invoice WHERE id = $1$$
+    LANGUAGE sql;
@@ -0,0 +1,34 @@
+START TRANSACTION;
+
+ALTER TABLE testtable
+	DROP CONSTRAINT field2check;
+
+CREATE TABLE newtable (
+	parent_id integer
+);
+
+ALTER TABLE testtable
+	ADD CONSTRAINT field2check CHECK ((field2 > 10)) NOT VALID;
+
+ALTER TABLE testtable
+	ADD CONSTRAINT field3check CHECK (((field3)::text <> ''::text)) NOT VALID;
+
+ALTER TABLE testtable
+	ADD CONSTRAINT testtable_field2_key UNIQUE (field2);
+
+ALTER TABLE testtable
+	ADD CONSTRAINT testtable_field1_fkey FOREIGN KEY (field1) REFERENCES parenttable(id) ON DELETE CASCADE NOT VALID;
+
+ALTER TABLE newtable
+	ADD CONSTRAINT newtable_parent_id_fkey FOREIGN KEY (parent_id) REFERENCES parenttable(id);
+
+COMMIT TRANSACTION;
+
+ALTER TABLE testtable
+	VALIDATE CONSTRAINT field2check;
+
+ALTER TABLE testtable
+	VALIDATE CONSTRAINT field3check;
+
+ALTER TABLE testtable
+	VALIDATE CONSTRAINT testtable_field1_fkey;
@@ -0,0 +1,84 @@
+--
+-- PostgreSQL database dump
+--
+
+SET client_encoding = 'UTF8';
+SET check_function_bodies = false;
+SET client_min_messages = warning;
+
+SET search_path = public, pg_catalog;
+
+SET default_tablespace = '';
+
+SET default_with_oids = false;
+
+--
+-- Name: parenttable; Type: TABLE; Schema: public; Owner: fordfrog; Tablespace: 
+--
+
+CREATE TABLE parenttable (
+    id integer NOT NULL
+);
+
+
+ALTER TABLE public.parenttable OWNER TO fordfrog;
+
+--
+-- Name: testtable; Type: TABLE; Schema: public; Owner: fordfrog; Tablespace: 
+--
+
+CREATE TABLE testtable (
+    field1 integer,
+    field2 integer,
+    field3 character varying(150),
+    CONSTRAINT field2check CHECK ((field2 > 10)),
+    CONSTRAINT field3check CHECK (((field3)::text <> ''::text))
+);
+
+
+ALTER TABLE public.testtable OWNER TO fordfrog;
+
+--
+-- Name: newtable; Type: TABLE; Schema: public; Owner: fordfrog; Tablespace: 
+--
+
+CREATE TABLE newtable (
+    parent_id integer
+);
+
+
+ALTER TABLE public.newtable OWNER TO fordfrog;
+
+--
+-- Name: parenttable_pkey; Type: CONSTRAINT; Schema: public; Owner: fordfrog; Tablespace: 
+--
+
+ALTER TABLE ONLY parenttable
+    ADD CONSTRAINT parenttable_pkey PRIMARY KEY (id);
+
+--
+-- Name: testtable_field2_key; Type: CONSTRAINT; Schema: public; Owner: fordfrog; Tablespace: 
+--
+
+ALTER TABLE ONLY testtable
+    ADD CONSTRAINT testtable_field2_key UNIQUE (field2);
+
+--
+-- Name: newtable_parent_id_fkey; Type: FK CONSTRAINT; Schema: public; Owner: fordfrog
+--
+
+ALTER TABLE ONLY newtable
+    ADD CONSTRAINT newtable_parent_id_fkey FOREIGN KEY (parent_id) REFERENCES parenttable(id);
+
+--
+-- Name: testtable_field1_fkey; Type: FK CONSTRAINT; Schema: public; Owner: fordfrog
+--
+
+ALTER TABLE ONLY testtable
+    ADD CONSTRAINT testtable_field1_fkey FOREIGN KEY (field1) REFERENCES parenttable(id) ON DELETE CASCADE;
+
+
+--
+-- PostgreSQL database dump complete
+--
+
@@ -0,0 +1,51 @@
+--
+-- PostgreSQL database dump
+--
+
+SET client_encoding = 'UTF8';
+SET check_function_bodies = false;
+SET client_min_messages = warning;
+
+SET search_path = public, pg_catalog;
+
+SET default_tablespace = '';
+
+SET default_with_oids = false;
+
+--
+-- Name: parenttable; Type: TABLE; Schema: public; Owner: fordfrog; Tablespace: 
+--
+
+CREATE TABLE parenttable (
+    id integer NOT NULL
+);
+
+
+ALTER TABLE public.parenttable OWNER TO fordfrog;
+
+--
+-- Name: testtable; Type: TABLE; Schema: public; Owner: fordfrog; Tablespace: 
+--
+
+CREATE TABLE testtable (
+    field1 integer,
+    field2 integer,
+    field3 character varying(150),
+    CONSTRAINT field2check CHECK ((field2 > 0))
+);
+
+
+ALTER TABLE public.testtable OWNER TO fordfrog;
+
+--
+-- Name: parenttable_pkey; Type: CONSTRAINT; Schema: public; Owner: fordfrog; Tablespace: 
+--
+
+ALTER TABLE ONLY parenttable
+    ADD CONSTRAINT parenttable_pkey PRIMARY KEY (id);
+
+
+--
+-- PostgreSQL database dump complete
+--
+
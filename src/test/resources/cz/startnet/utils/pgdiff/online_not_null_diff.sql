@@ -0,0 +1,21 @@
+START TRANSACTION;
+
+ALTER TABLE testtable
+	ADD CONSTRAINT testtable_field1_not_null_check CHECK (field1 IS NOT NULL) NOT VALID,
+	ADD CONSTRAINT testtable_field3_not_null_check CHECK (field3 IS NOT NULL) NOT VALID;
+
+COMMIT TRANSACTION;
+
+ALTER TABLE testtable
+	VALIDATE CONSTRAINT testtable_field1_not_null_check;
+
+ALTER TABLE testtable
+	VALIDATE CONSTRAINT testtable_field3_not_null_check;
+
+ALTER TABLE testtable
+	ALTER COLUMN field1 SET NOT NULL,
+	ALTER COLUMN field3 SET NOT NULL;
+
+ALTER TABLE testtable
+	DROP CONSTRAINT testtable_field1_not_null_check,
+	DROP CONSTRAINT testtable_field3_not_null_check;
@@ -0,0 +1,94 @@
+START TRANSACTION;
+
+ALTER TABLE foo
+	ALTER COLUMN name TYPE character varying(100) /* TYPE change - table: foo original: character varying(50) new: character varying(100) */,
+	ALTER COLUMN code TYPE text /* TYPE change - table: foo original: integer new: text */;
+
+COMMIT TRANSACTION;
+
+ALTER TABLE foo
+	ADD COLUMN IF NOT EXISTS amount_new bigint;
+
+CREATE OR REPLACE FUNCTION foo_amount_sync() RETURNS trigger AS $$
+BEGIN
+	NEW.amount_new := NEW.amount;
+	RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS foo_amount_sync ON foo;
+
+CREATE TRIGGER foo_amount_sync
+	BEFORE INSERT OR UPDATE ON foo
+	FOR EACH ROW
+	EXECUTE PROCEDURE foo_amount_sync();
+
+CREATE TABLE IF NOT EXISTS apgdiff_backfill_progress (
+	table_name text NOT NULL,
+	column_name text NOT NULL,
+	last_key bigint,
+	PRIMARY KEY (table_name, column_name)
+);
+
+INSERT INTO apgdiff_backfill_progress (table_name, column_name)
+	SELECT 'foo', 'amount'
+	WHERE NOT EXISTS (SELECT 1 FROM apgdiff_backfill_progress
+		WHERE table_name = 'foo' AND column_name = 'amount');
+
+DO $$
+DECLARE
+	batch_start bigint;
+	max_key bigint;
+BEGIN
+	SELECT last_key INTO batch_start FROM apgdiff_backfill_progress
+		WHERE table_name = 'foo' AND column_name = 'amount';
+
+	IF batch_start IS NULL THEN
+		SELECT min(id) INTO batch_start FROM foo;
+	END IF;
+
+	SELECT max(id) INTO max_key FROM foo;
+
+	WHILE batch_start <= max_key LOOP
+		UPDATE foo SET amount_new = amount
+			WHERE id >= batch_start AND id < batch_start + 5000;
+		batch_start := batch_start + 5000;
+
+		UPDATE apgdiff_backfill_progress SET last_key = batch_start
+			WHERE table_name = 'foo' AND column_name = 'amount';
+
+		COMMIT;
+	END LOOP;
+END;
+$$;
+
+ALTER TABLE foo
+	DROP CONSTRAINT IF EXISTS foo_amount_not_null_check,
+	ADD CONSTRAINT foo_amount_not_null_check CHECK (amount_new IS NOT NULL) NOT VALID;
+
+ALTER TABLE foo
+	VALIDATE CONSTRAINT foo_amount_not_null_check;
+
+START TRANSACTION;
+
+DROP TRIGGER foo_amount_sync ON foo;
+
+DROP FUNCTION foo_amount_sync();
+
+ALTER TABLE foo
+	DROP COLUMN amount;
+
+ALTER TABLE foo
+	RENAME COLUMN amount_new TO amount;
+
+ALTER TABLE foo
+	ALTER COLUMN amount SET DEFAULT 0,
+	ALTER COLUMN amount SET NOT NULL,
+	DROP CONSTRAINT foo_amount_not_null_check;
+
+COMMENT ON COLUMN foo.amount IS 'amount';
+
+DELETE FROM apgdiff_backfill_progress
+	WHERE table_name = 'foo' AND column_name = 'amount';
+
+COMMIT TRANSACTION;
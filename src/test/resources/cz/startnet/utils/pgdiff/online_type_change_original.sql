@@ -0,0 +1,13 @@
+CREATE TABLE foo (
+    id integer NOT NULL,
+    amount integer DEFAULT 0 NOT NULL,
+    name character varying(50),
+    code integer
+);
+
+ALTER TABLE ONLY foo
+    ADD CONSTRAINT foo_pkey PRIMARY KEY (id);
+
+CREATE INDEX foo_code_idx ON foo USING btree (code);
+
+COMMENT ON COLUMN foo.amount IS 'amount';
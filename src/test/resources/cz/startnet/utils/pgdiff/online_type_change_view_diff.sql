@@ -0,0 +1,79 @@
+START TRANSACTION;
+
+ALTER TABLE foo
+	ALTER COLUMN amount TYPE bigint /* TYPE change - table: foo original: integer new: bigint */;
+
+COMMIT TRANSACTION;
+
+ALTER TABLE foo
+	ADD COLUMN IF NOT EXISTS total_new bigint;
+
+CREATE OR REPLACE FUNCTION foo_total_sync() RETURNS trigger AS $$
+BEGIN
+	NEW.total_new := NEW.total;
+	RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS foo_total_sync ON foo;
+
+CREATE TRIGGER foo_total_sync
+	BEFORE INSERT OR UPDATE ON foo
+	FOR EACH ROW
+	EXECUTE PROCEDURE foo_total_sync();
+
+CREATE TABLE IF NOT EXISTS apgdiff_backfill_progress (
+	table_name text NOT NULL,
+	column_name text NOT NULL,
+	last_key bigint,
+	PRIMARY KEY (table_name, column_name)
+);
+
+INSERT INTO apgdiff_backfill_progress (table_name, column_name)
+	SELECT 'foo', 'total'
+	WHERE NOT EXISTS (SELECT 1 FROM apgdiff_backfill_progress
+		WHERE table_name = 'foo' AND column_name = 'total');
+
+DO $$
+DECLARE
+	batch_start bigint;
+	max_key bigint;
+BEGIN
+	SELECT last_key INTO batch_start FROM apgdiff_backfill_progress
+		WHERE table_name = 'foo' AND column_name = 'total';
+
+	IF batch_start IS NULL THEN
+		SELECT min(id) INTO batch_start FROM foo;
+	END IF;
+
+	SELECT max(id) INTO max_key FROM foo;
+
+	WHILE batch_start <= max_key LOOP
+		UPDATE foo SET total_new = total
+			WHERE id >= batch_start AND id < batch_start + 5000;
+		batch_start := batch_start + 5000;
+
+		UPDATE apgdiff_backfill_progress SET last_key = batch_start
+			WHERE table_name = 'foo' AND column_name = 'total';
+
+		COMMIT;
+	END LOOP;
+END;
+$$;
+
+START TRANSACTION;
+
+DROP TRIGGER foo_total_sync ON foo;
+
+DROP FUNCTION foo_total_sync();
+
+ALTER TABLE foo
+	DROP COLUMN total;
+
+ALTER TABLE foo
+	RENAME COLUMN total_new TO total;
+
+DELETE FROM apgdiff_backfill_progress
+	WHERE table_name = 'foo' AND column_name = 'total';
+
+COMMIT TRANSACTION;
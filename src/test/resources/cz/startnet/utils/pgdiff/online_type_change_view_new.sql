@@ -0,0 +1,11 @@
+CREATE TABLE foo (
+    id integer NOT NULL,
+    amount bigint,
+    total bigint
+);
+
+ALTER TABLE ONLY foo
+    ADD CONSTRAINT foo_pkey PRIMARY KEY (id);
+
+CREATE VIEW foo_amounts AS
+    SELECT foo.id, foo.amount FROM foo;
@@ -0,0 +1,14 @@
+
+ALTER INDEX idx_account_email RENAME TO account_email_key;
+
+ALTER INDEX idx_account_created RENAME TO account_created_idx;
+
+ALTER TABLE account RENAME CONSTRAINT pk_account TO account_pkey;
+
+ALTER TABLE account RENAME CONSTRAINT fk_account_parent TO account_parent_id_fkey;
+
+ALTER TABLE account RENAME CONSTRAINT chk_email TO account_email_check;
+
+DROP INDEX idx_account_parent;
+
+CREATE INDEX account_parent_idx ON account USING btree (parent_id, created);
@@ -0,0 +1,21 @@
+CREATE TABLE account (
+    id integer NOT NULL,
+    parent_id integer,
+    email character varying(100),
+    created timestamp without time zone
+);
+
+ALTER TABLE ONLY account
+    ADD CONSTRAINT account_pkey PRIMARY KEY (id);
+
+ALTER TABLE ONLY account
+    ADD CONSTRAINT account_parent_id_fkey FOREIGN KEY (parent_id) REFERENCES account(id);
+
+ALTER TABLE ONLY account
+    ADD CONSTRAINT account_email_check CHECK ((email IS NOT NULL));
+
+CREATE UNIQUE INDEX account_email_key ON account USING btree (email);
+
+CREATE INDEX account_created_idx ON account USING btree (created);
+
+CREATE INDEX account_parent_idx ON account USING btree (parent_id, created);
@@ -0,0 +1,21 @@
+CREATE TABLE account (
+    id integer NOT NULL,
+    parent_id integer,
+    email character varying(100),
+    created timestamp without time zone
+);
+
+ALTER TABLE ONLY account
+    ADD CONSTRAINT pk_account PRIMARY KEY (id);
+
+ALTER TABLE ONLY account
+    ADD CONSTRAINT fk_account_parent FOREIGN KEY (parent_id) REFERENCES account(id);
+
+ALTER TABLE ONLY account
+    ADD CONSTRAINT chk_email CHECK ((email IS NOT NULL));
+
+CREATE UNIQUE INDEX idx_account_email ON account USING btree (email);
+
+CREATE INDEX idx_account_created ON account USING btree (created);
+
+CREATE INDEX idx_account_parent ON account USING btree (parent_id);
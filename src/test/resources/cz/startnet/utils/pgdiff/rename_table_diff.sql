@@ -0,0 +1,11 @@
+
+ALTER TABLE customer RENAME TO client;
+
+ALTER INDEX customer_email_idx RENAME TO client_email_idx;
+
+ALTER TABLE client RENAME CONSTRAINT customer_pkey TO client_pkey;
+
+ALTER SEQUENCE customer_id_seq RENAME TO client_id_seq;
+
+ALTER TABLE client
+	ADD COLUMN phone character varying(20);
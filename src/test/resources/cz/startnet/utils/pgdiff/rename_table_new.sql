@@ -0,0 +1,30 @@
+CREATE SEQUENCE client_id_seq
+    START WITH 1
+    INCREMENT BY 1
+    NO MAXVALUE
+    NO MINVALUE
+    CACHE 1;
+
+CREATE TABLE client (
+    id integer DEFAULT nextval('client_id_seq'::regclass) NOT NULL,
+    name character varying(50) NOT NULL,
+    email character varying(100),
+    phone character varying(20)
+);
+
+COMMENT ON TABLE client IS 'Customers';
+
+ALTER SEQUENCE client_id_seq OWNED BY client.id;
+
+ALTER TABLE ONLY client
+    ADD CONSTRAINT client_pkey PRIMARY KEY (id);
+
+CREATE INDEX client_email_idx ON client USING btree (email);
+
+CREATE TABLE orders (
+    id integer NOT NULL,
+    customer_id integer
+);
+
+ALTER TABLE ONLY orders
+    ADD CONSTRAINT orders_customer_id_fkey FOREIGN KEY (customer_id) REFERENCES client(id);
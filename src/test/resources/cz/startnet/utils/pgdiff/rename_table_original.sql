@@ -0,0 +1,29 @@
+CREATE SEQUENCE customer_id_seq
+    START WITH 1
+    INCREMENT BY 1
+    NO MAXVALUE
+    NO MINVALUE
+    CACHE 1;
+
+CREATE TABLE customer (
+    id integer DEFAULT nextval('customer_id_seq'::regclass) NOT NULL,
+    name character varying(50) NOT NULL,
+    email character varying(100)
+);
+
+COMMENT ON TABLE customer IS 'Customers';
+
+ALTER SEQUENCE customer_id_seq OWNED BY customer.id;
+
+ALTER TABLE ONLY customer
+    ADD CONSTRAINT customer_pkey PRIMARY KEY (id);
+
+CREATE INDEX customer_email_idx ON customer USING btree (email);
+
+CREATE TABLE orders (
+    id integer NOT NULL,
+    customer_id integer
+);
+
+ALTER TABLE ONLY orders
+    ADD CONSTRAINT orders_customer_id_fkey FOREIGN KEY (customer_id) REFERENCES customer(id);
@@ -0,0 +1,14 @@
+
+DROP VIEW baz_view;
+
+CREATE OR REPLACE VIEW foo_view AS
+	SELECT foo.a,
+        foo.b,
+        foo.c
+    FROM foo;
+
+CREATE OR REPLACE VIEW bar_view (x, y, z) AS
+	SELECT foo.a, foo.b, (foo.c)::date FROM foo WHERE (foo.a > 0);
+
+CREATE VIEW baz_view AS
+	SELECT foo.b, foo.a FROM foo;
@@ -0,0 +1,19 @@
+CREATE TABLE foo (
+    a integer,
+    b text,
+    c timestamp without time zone
+);
+
+CREATE VIEW foo_view AS
+    SELECT foo.a,
+        foo.b,
+        foo.c
+    FROM foo;
+
+COMMENT ON VIEW foo_view IS 'foo view';
+
+CREATE VIEW bar_view (x, y, z) AS
+    SELECT foo.a, foo.b, (foo.c)::date FROM foo WHERE (foo.a > 0);
+
+CREATE VIEW baz_view AS
+    SELECT foo.b, foo.a FROM foo;
@@ -0,0 +1,16 @@
+CREATE TABLE foo (
+    a integer,
+    b text,
+    c timestamp without time zone
+);
+
+CREATE VIEW foo_view AS
+    SELECT foo.a, foo.b FROM foo;
+
+COMMENT ON VIEW foo_view IS 'foo view';
+
+CREATE VIEW bar_view (x, y) AS
+    SELECT foo.a, foo.b FROM foo WHERE (foo.a > 0);
+
+CREATE VIEW baz_view AS
+    SELECT foo.a, foo.b FROM foo;
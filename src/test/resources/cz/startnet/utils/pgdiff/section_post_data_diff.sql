@@ -0,0 +1,18 @@
+
+COMMENT ON TABLE baz IS 'baz table';
+
+COMMENT ON COLUMN foo.note IS 'free text';
+
+ALTER TABLE bar
+	ADD CONSTRAINT bar_foo_id_fkey FOREIGN KEY (foo_id) REFERENCES foo(id);
+
+CREATE INDEX foo_name_idx ON foo USING btree (name);
+
+COMMENT ON INDEX foo_name_idx IS 'name lookup';
+
+CREATE TRIGGER baz_trigger
+	BEFORE INSERT ON baz
+	FOR EACH ROW
+	EXECUTE PROCEDURE baz_trigger();
+
+COMMENT ON VIEW foo_view IS 'foo names';
@@ -0,0 +1,46 @@
+CREATE TABLE foo (
+    id integer NOT NULL,
+    name character varying(50),
+    note text
+);
+
+ALTER TABLE ONLY foo
+    ADD CONSTRAINT foo_pkey PRIMARY KEY (id);
+
+CREATE TABLE bar (
+    id integer,
+    foo_id integer
+);
+
+CREATE TABLE baz (
+    id integer
+);
+
+COMMENT ON TABLE baz IS 'baz table';
+
+COMMENT ON COLUMN foo.note IS 'free text';
+
+ALTER TABLE ONLY bar
+    ADD CONSTRAINT bar_foo_id_fkey FOREIGN KEY (foo_id) REFERENCES foo(id);
+
+CREATE INDEX foo_name_idx ON foo USING btree (name);
+
+COMMENT ON INDEX foo_name_idx IS 'name lookup';
+
+CREATE FUNCTION baz_trigger() RETURNS trigger
+    AS $$
+BEGIN
+	RETURN NEW;
+END;
+$$
+    LANGUAGE plpgsql;
+
+CREATE TRIGGER baz_trigger
+    BEFORE INSERT ON baz
+    FOR EACH ROW
+    EXECUTE PROCEDURE baz_trigger();
+
+CREATE VIEW foo_view AS
+    SELECT foo.id, foo.name FROM foo;
+
+COMMENT ON VIEW foo_view IS 'foo names';
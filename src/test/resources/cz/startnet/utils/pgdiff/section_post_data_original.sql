@@ -0,0 +1,27 @@
+CREATE TABLE foo (
+    id integer NOT NULL,
+    name character varying(50)
+);
+
+ALTER TABLE ONLY foo
+    ADD CONSTRAINT foo_pkey PRIMARY KEY (id);
+
+CREATE TABLE bar (
+    id integer,
+    foo_id integer
+);
+
+CREATE INDEX bar_id_idx ON bar USING btree (id);
+
+CREATE FUNCTION bar_trigger() RETURNS trigger
+    AS $$
+BEGIN
+	RETURN NEW;
+END;
+$$
+    LANGUAGE plpgsql;
+
+CREATE TRIGGER bar_trigger
+    BEFORE INSERT ON bar
+    FOR EACH ROW
+    EXECUTE PROCEDURE bar_trigger();
@@ -0,0 +1,24 @@
+
+DROP TRIGGER bar_trigger ON bar;
+
+DROP FUNCTION bar_trigger();
+
+DROP INDEX bar_id_idx;
+
+CREATE TABLE baz (
+	id integer
+);
+
+ALTER TABLE foo
+	ADD COLUMN note text;
+
+CREATE OR REPLACE FUNCTION baz_trigger() RETURNS trigger
+    AS $$
+BEGIN
+	RETURN NEW;
+END;
+$$
+    LANGUAGE plpgsql;
+
+CREATE VIEW foo_view AS
+	SELECT foo.id, foo.name FROM foo;
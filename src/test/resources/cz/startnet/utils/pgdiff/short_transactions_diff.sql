@@ -0,0 +1,91 @@
+
+CREATE TABLE baz (
+	id integer
+);
+
+SET lock_timeout = '2s';
+SET statement_timeout = '0';
+
+DO $apgdiff$
+DECLARE
+	attempt integer := 1;
+BEGIN
+	LOOP
+		BEGIN
+			EXECUTE $statement$ALTER TABLE foo
+	ALTER COLUMN name TYPE character varying(100) /* TYPE change - table: foo original: character varying(50) new: character varying(100) */,
+	ALTER COLUMN note SET NOT NULL$statement$;
+
+			EXIT;
+		EXCEPTION WHEN lock_not_available OR deadlock_detected THEN
+			IF attempt >= 3 THEN
+				RAISE;
+			END IF;
+
+			PERFORM pg_sleep(0.1 * 2 ^ attempt);
+			attempt := attempt + 1;
+		END;
+	END LOOP;
+END;
+$apgdiff$;
+
+SET lock_timeout = '2s';
+SET statement_timeout = '0';
+
+DO $apgdiff$
+DECLARE
+	attempt integer := 1;
+BEGIN
+	LOOP
+		BEGIN
+			EXECUTE $statement$ALTER TABLE bar
+	ADD COLUMN label text$statement$;
+			EXECUTE $statement$ALTER TABLE bar
+	ADD CONSTRAINT bar_foo_id_fkey FOREIGN KEY (foo_id) REFERENCES foo(id)$statement$;
+
+			EXIT;
+		EXCEPTION WHEN lock_not_available OR deadlock_detected THEN
+			IF attempt >= 3 THEN
+				RAISE;
+			END IF;
+
+			PERFORM pg_sleep(0.1 * 2 ^ attempt);
+			attempt := attempt + 1;
+		END;
+	END LOOP;
+END;
+$apgdiff$;
+
+SET lock_timeout = '2s';
+SET statement_timeout = '0';
+
+DROP INDEX CONCURRENTLY IF EXISTS bar_id_idx;
+
+DO $$
+BEGIN
+	IF EXISTS (SELECT 1 FROM pg_index i
+			JOIN pg_class c ON c.oid = i.indexrelid
+			JOIN pg_namespace n ON n.oid = c.relnamespace
+			WHERE c.relname = 'bar_id_idx' AND n.nspname = current_schema()
+			AND NOT i.indisvalid) THEN
+		RAISE EXCEPTION 'Index % is invalid', 'bar_id_idx';
+	END IF;
+END;
+$$;
+
+SET lock_timeout = '2s';
+SET statement_timeout = '0';
+
+CREATE INDEX CONCURRENTLY foo_name_idx ON foo USING btree (name);
+
+DO $$
+BEGIN
+	IF EXISTS (SELECT 1 FROM pg_index i
+			JOIN pg_class c ON c.oid = i.indexrelid
+			JOIN pg_namespace n ON n.oid = c.relnamespace
+			WHERE c.relname = 'foo_name_idx' AND n.nspname = current_schema()
+			AND NOT i.indisvalid) THEN
+		RAISE EXCEPTION 'Index % is invalid', 'foo_name_idx';
+	END IF;
+END;
+$$;
@@ -0,0 +1,23 @@
+CREATE TABLE foo (
+    id integer NOT NULL,
+    name character varying(100),
+    note text NOT NULL
+);
+
+ALTER TABLE ONLY foo
+    ADD CONSTRAINT foo_pkey PRIMARY KEY (id);
+
+CREATE INDEX foo_name_idx ON foo USING btree (name);
+
+CREATE TABLE bar (
+    id integer,
+    foo_id integer,
+    label text
+);
+
+ALTER TABLE ONLY bar
+    ADD CONSTRAINT bar_foo_id_fkey FOREIGN KEY (foo_id) REFERENCES foo(id);
+
+CREATE TABLE baz (
+    id integer
+);
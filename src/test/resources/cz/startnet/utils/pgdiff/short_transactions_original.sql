@@ -0,0 +1,15 @@
+CREATE TABLE foo (
+    id integer NOT NULL,
+    name character varying(50),
+    note text
+);
+
+ALTER TABLE ONLY foo
+    ADD CONSTRAINT foo_pkey PRIMARY KEY (id);
+
+CREATE TABLE bar (
+    id integer,
+    foo_id integer
+);
+
+CREATE INDEX bar_id_idx ON bar USING btree (id);
@@ -0,0 +1,101 @@
+START TRANSACTION;
+
+COMMENT ON INDEX testindex2 IS 'comment';
+
+COMMIT TRANSACTION;
+
+CREATE INDEX CONCURRENTLY testindex_swap ON testtable USING btree (field1, field2);
+
+DO $$
+BEGIN
+	IF EXISTS (SELECT 1 FROM pg_index i
+			JOIN pg_class c ON c.oid = i.indexrelid
+			JOIN pg_namespace n ON n.oid = c.relnamespace
+			WHERE c.relname = 'testindex_swap' AND n.nspname = current_schema()
+			AND NOT i.indisvalid) THEN
+		RAISE EXCEPTION 'Index % is invalid', 'testindex_swap';
+	END IF;
+END;
+$$;
+
+ALTER TABLE testtable CLUSTER ON testindex_swap;
+
+DROP INDEX CONCURRENTLY IF EXISTS testindex;
+
+DO $$
+BEGIN
+	IF EXISTS (SELECT 1 FROM pg_index i
+			JOIN pg_class c ON c.oid = i.indexrelid
+			JOIN pg_namespace n ON n.oid = c.relnamespace
+			WHERE c.relname = 'testindex' AND n.nspname = current_schema()
+			AND NOT i.indisvalid) THEN
+		RAISE EXCEPTION 'Index % is invalid', 'testindex';
+	END IF;
+END;
+$$;
+
+ALTER INDEX testindex_swap RENAME TO testindex;
+
+CREATE INDEX CONCURRENTLY testindex2_swap ON testtable USING btree (field3);
+
+COMMENT ON INDEX testindex2_swap IS 'comment';
+
+DO $$
+BEGIN
+	IF EXISTS (SELECT 1 FROM pg_index i
+			JOIN pg_class c ON c.oid = i.indexrelid
+			JOIN pg_namespace n ON n.oid = c.relnamespace
+			WHERE c.relname = 'testindex2_swap' AND n.nspname = current_schema()
+			AND NOT i.indisvalid) THEN
+		RAISE EXCEPTION 'Index % is invalid', 'testindex2_swap';
+	END IF;
+END;
+$$;
+
+DROP INDEX CONCURRENTLY IF EXISTS testindex2;
+
+DO $$
+BEGIN
+	IF EXISTS (SELECT 1 FROM pg_index i
+			JOIN pg_class c ON c.oid = i.indexrelid
+			JOIN pg_namespace n ON n.oid = c.relnamespace
+			WHERE c.relname = 'testindex2' AND n.nspname = current_schema()
+			AND NOT i.indisvalid) THEN
+		RAISE EXCEPTION 'Index % is invalid', 'testindex2';
+	END IF;
+END;
+$$;
+
+ALTER INDEX testindex2_swap RENAME TO testindex2;
+
+CREATE UNIQUE INDEX CONCURRENTLY testindex4_swap ON testtable2 USING btree (field2);
+
+DO $$
+BEGIN
+	IF EXISTS (SELECT 1 FROM pg_index i
+			JOIN pg_class c ON c.oid = i.indexrelid
+			JOIN pg_namespace n ON n.oid = c.relnamespace
+			WHERE c.relname = 'testindex4_swap' AND n.nspname = current_schema()
+			AND NOT i.indisvalid) THEN
+		RAISE EXCEPTION 'Index % is invalid', 'testindex4_swap';
+	END IF;
+END;
+$$;
+
+ALTER TABLE testtable2 CLUSTER ON testindex4_swap;
+
+DROP INDEX CONCURRENTLY IF EXISTS testindex4;
+
+DO $$
+BEGIN
+	IF EXISTS (SELECT 1 FROM pg_index i
+			JOIN pg_class c ON c.oid = i.indexrelid
+			JOIN pg_namespace n ON n.oid = c.relnamespace
+			WHERE c.relname = 'testindex4' AND n.nspname = current_schema()
+			AND NOT i.indisvalid) THEN
+		RAISE EXCEPTION 'Index % is invalid', 'testindex4';
+	END IF;
+END;
+$$;
+
+ALTER INDEX testindex4_swap RENAME TO testindex4;
@@ -0,0 +1,78 @@
+--
+-- PostgreSQL database dump
+--
+
+SET client_encoding = 'UTF8';
+SET check_function_bodies = false;
+SET client_min_messages = warning;
+
+SET search_path = public, pg_catalog;
+
+SET default_tablespace = '';
+
+SET default_with_oids = false;
+
+--
+-- Name: testtable; Type: TABLE; Schema: public; Owner: fordfrog; Tablespace: 
+--
+
+CREATE TABLE testtable (
+    field1 integer,
+    field2 integer,
+    field3 character varying(150)
+);
+
+
+ALTER TABLE public.testtable OWNER TO fordfrog;
+
+--
+-- Name: testtable2; Type: TABLE; Schema: public; Owner: fordfrog; Tablespace: 
+--
+
+CREATE TABLE testtable2 (
+    field1 integer,
+    field2 integer
+);
+
+
+ALTER TABLE public.testtable2 OWNER TO fordfrog;
+
+--
+-- Name: testindex; Type: INDEX; Schema: public; Owner: fordfrog; Tablespace: 
+--
+
+CREATE INDEX testindex ON testtable USING btree (field1, field2);
+
+ALTER TABLE testtable CLUSTER ON testindex;
+
+--
+-- Name: testindex2; Type: INDEX; Schema: public; Owner: fordfrog; Tablespace: 
+--
+
+CREATE INDEX testindex2 ON testtable USING btree (field3);
+
+--
+-- Name: INDEX testindex2; Type: COMMENT; Schema: public; Owner: fordfrog
+--
+
+COMMENT ON INDEX testindex2 IS 'comment';
+
+--
+-- Name: testindex3; Type: INDEX; Schema: public; Owner: fordfrog; Tablespace: 
+--
+
+CREATE INDEX testindex3 ON testtable2 USING btree (field1);
+
+--
+-- Name: testindex4; Type: INDEX; Schema: public; Owner: fordfrog; Tablespace: 
+--
+
+CREATE UNIQUE INDEX testindex4 ON testtable2 USING btree (field2);
+
+ALTER TABLE testtable2 CLUSTER ON testindex4;
+
+
+--
+-- PostgreSQL database dump complete
+--
+
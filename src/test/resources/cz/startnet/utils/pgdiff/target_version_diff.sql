@@ -0,0 +1,55 @@
+
+ALTER TABLE foo
+	ADD COLUMN created timestamp without time zone DEFAULT now() NOT NULL,
+	ADD COLUMN score double precision,
+	ALTER COLUMN score SET DEFAULT random();
+
+CREATE OR REPLACE TRIGGER foo_trg
+	BEFORE INSERT OR UPDATE ON foo
+	FOR EACH ROW
+	EXECUTE PROCEDURE foo_trg_fn();
+
+CREATE TABLE IF NOT EXISTS apgdiff_backfill_progress (
+	table_name text NOT NULL,
+	column_name text NOT NULL,
+	last_key bigint,
+	PRIMARY KEY (table_name, column_name)
+);
+
+INSERT INTO apgdiff_backfill_progress (table_name, column_name)
+	SELECT 'foo', 'score'
+	WHERE NOT EXISTS (SELECT 1 FROM apgdiff_backfill_progress
+		WHERE table_name = 'foo' AND column_name = 'score');
+
+DO $$
+DECLARE
+	batch_start bigint;
+	max_key bigint;
+BEGIN
+	SELECT last_key INTO batch_start FROM apgdiff_backfill_progress
+		WHERE table_name = 'foo' AND column_name = 'score';
+
+	IF batch_start IS NULL THEN
+		SELECT min(id) INTO batch_start FROM foo;
+	END IF;
+
+	SELECT max(id) INTO max_key FROM foo;
+
+	WHILE batch_start <= max_key LOOP
+		UPDATE foo SET score = random()
+			WHERE id >= batch_start AND id < batch_start + 10000 AND score IS NULL;
+		batch_start := batch_start + 10000;
+
+		UPDATE apgdiff_backfill_progress SET last_key = batch_start
+			WHERE table_name = 'foo' AND column_name = 'score';
+
+		COMMIT;
+	END LOOP;
+END;
+$$;
+
+ALTER TABLE foo
+	ALTER COLUMN score SET NOT NULL;
+
+DELETE FROM apgdiff_backfill_progress
+	WHERE table_name = 'foo' AND column_name = 'score';
@@ -0,0 +1,16 @@
+CREATE TABLE foo (
+    id integer NOT NULL,
+    a integer,
+    created timestamp without time zone DEFAULT now() NOT NULL,
+    score double precision DEFAULT random() NOT NULL
+);
+
+ALTER TABLE ONLY foo
+    ADD CONSTRAINT foo_pkey PRIMARY KEY (id);
+
+CREATE TRIGGER foo_trg
+    BEFORE INSERT OR UPDATE ON foo
+    FOR EACH ROW
+    EXECUTE PROCEDURE foo_trg_fn();
+
+COMMENT ON TRIGGER foo_trg ON foo IS 'foo trigger';
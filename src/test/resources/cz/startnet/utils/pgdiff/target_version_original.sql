@@ -0,0 +1,14 @@
+CREATE TABLE foo (
+    id integer NOT NULL,
+    a integer
+);
+
+ALTER TABLE ONLY foo
+    ADD CONSTRAINT foo_pkey PRIMARY KEY (id);
+
+CREATE TRIGGER foo_trg
+    BEFORE INSERT ON foo
+    FOR EACH ROW
+    EXECUTE PROCEDURE foo_trg_fn();
+
+COMMENT ON TRIGGER foo_trg ON foo IS 'foo trigger';